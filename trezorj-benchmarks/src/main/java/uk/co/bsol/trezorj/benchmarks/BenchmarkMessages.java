@@ -0,0 +1,155 @@
+package uk.co.bsol.trezorj.benchmarks;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+
+/**
+ * <p>Utility to provide the following to benchmarks:</p>
+ * <ul>
+ * <li>A representative populated message for every message type</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ *
+ */
+public class BenchmarkMessages {
+
+  /**
+   * Utilities should not have public constructors
+   */
+  private BenchmarkMessages() {
+  }
+
+  /**
+   * @param messageType The message type
+   *
+   * @return A message of the given type with all required fields (and typical optional fields) populated
+   */
+  public static Message newMessage(MessageType messageType) {
+
+    switch (messageType) {
+      case INITALIZE:
+        return TrezorMessage.Initialize.newBuilder().setSessionId(newBytes(8)).build();
+      case PING:
+        return TrezorMessage.Ping.newBuilder().setMessage("Pong!").build();
+      case SUCCESS:
+        return TrezorMessage.Success.newBuilder().setMessage("Pong!").build();
+      case FAILURE:
+        return TrezorMessage.Failure.newBuilder().setCode(1).setMessage("Failed").build();
+      case GET_UUID:
+        return TrezorMessage.GetUUID.getDefaultInstance();
+      case UUID:
+        return TrezorMessage.UUID.newBuilder().setUUID(newBytes(16)).build();
+      case OTP_REQUEST:
+        return TrezorMessage.OtpRequest.newBuilder().setMessage("Enter OTP").build();
+      case OTP_ACK:
+        return TrezorMessage.OtpAck.newBuilder().setOtp("123456").build();
+      case OTP_CANCEL:
+        return TrezorMessage.OtpCancel.getDefaultInstance();
+      case GET_ENTROPY:
+        return TrezorMessage.GetEntropy.newBuilder().setSize(32).build();
+      case ENTROPY:
+        return TrezorMessage.Entropy.newBuilder().setEntropy(newBytes(32)).build();
+      case GET_MASTER_PUBLIC_KEY:
+        return TrezorMessage.GetMasterPublicKey.getDefaultInstance();
+      case MASTER_PUBLIC_KEY:
+        return TrezorMessage.MasterPublicKey.newBuilder().setKey(newBytes(65)).build();
+      case LOAD_DEVICE:
+        return TrezorMessage.LoadDevice
+          .newBuilder()
+          .setSeed("beyond neighbor scratch swirl embarrass doll cause also stick softly physical nice")
+          .setPin(newBytes(4))
+          .build();
+      case RESET_DEVICE:
+        return TrezorMessage.ResetDevice.newBuilder().setRandom(newBytes(32)).build();
+      case SIGN_TX:
+        return TrezorMessage.SignTx.newBuilder().setInputsCount(2).setOutputsCount(3).setRandom(newBytes(256)).build();
+      case FEATURES:
+        return TrezorMessage.Features
+          .newBuilder()
+          .setSessionId(newBytes(8))
+          .setVendor("bitcointrezor.com")
+          .setMajorVersion(0)
+          .setMinorVersion(1)
+          .setHasOtp(false)
+          .setHasSpv(false)
+          .setPin(true)
+          .setAlgo(TrezorMessage.Algorithm.ELECTRUM)
+          .addAlgoAvailable(TrezorMessage.Algorithm.ELECTRUM)
+          .setMaxfeeKb(1000000)
+          .build();
+      case PIN_REQUEST:
+        return TrezorMessage.PinRequest.newBuilder().setMessage("Enter PIN").build();
+      case PIN_ACK:
+        return TrezorMessage.PinAck.newBuilder().setPin("1234").build();
+      case PIN_CANCEL:
+        return TrezorMessage.PinCancel.getDefaultInstance();
+      case TX_REQUEST:
+        return TrezorMessage.TxRequest
+          .newBuilder()
+          .setRequestIndex(1)
+          .setRequestType(TrezorMessage.RequestType.TXINPUT)
+          .setSignedIndex(0)
+          .setSignature(newBytes(71))
+          .setSerializedTx(newBytes(148))
+          .build();
+      case TX_INPUT:
+        return TrezorMessage.TxInput
+          .newBuilder()
+          .setIndex(0)
+          .addAddressN(0)
+          .addAddressN(1)
+          .setAmount(100000L)
+          .setPrevHash(newBytes(32))
+          .setPrevIndex(1)
+          .build();
+      case TX_OUTPUT:
+        return TrezorMessage.TxOutput
+          .newBuilder()
+          .setIndex(0)
+          .setAddress("1BitcoinEaterAddressDontSendf59kuE")
+          .setAmount(50000L)
+          .setScriptType(TrezorMessage.ScriptType.PAYTOADDRESS)
+          .build();
+      case SET_MAX_FEE_KB:
+        return TrezorMessage.SetMaxFeeKb.newBuilder().setMaxfeeKb(1000000).build();
+      case BUTTON_REQUEST:
+        return TrezorMessage.ButtonRequest.getDefaultInstance();
+      case BUTTON_ACK:
+        return TrezorMessage.ButtonAck.getDefaultInstance();
+      case BUTTON_CANCEL:
+        return TrezorMessage.ButtonCancel.getDefaultInstance();
+      case GET_ADDRESS:
+        return TrezorMessage.GetAddress.newBuilder().addAddressN(0).addAddressN(1).build();
+      case ADDRESS:
+        return TrezorMessage.Address.newBuilder().setAddress("1BitcoinEaterAddressDontSendf59kuE").build();
+      case DEBUG_LINK_DECISION:
+        return TrezorMessage.DebugLinkDecision.newBuilder().setYesNo(true).build();
+      case DEBUG_LINK_GET_STATE:
+        return TrezorMessage.DebugLinkGetState.newBuilder().setLayout(true).setPin(true).build();
+      case DEBUG_LINK_STATE:
+        return TrezorMessage.DebugLinkState.newBuilder().setLayout(newBytes(1024)).build();
+      case DEBUG_LINK_STOP:
+        return TrezorMessage.DebugLinkStop.getDefaultInstance();
+      default:
+        throw new IllegalArgumentException("Message type '" + messageType.name() + "' is not known");
+    }
+  }
+
+  /**
+   * @param length The number of bytes
+   *
+   * @return A deterministic non-zero byte string of the given length
+   */
+  private static ByteString newBytes(int length) {
+
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) (i * 31 + 7);
+    }
+    return ByteString.copyFrom(bytes);
+  }
+
+}
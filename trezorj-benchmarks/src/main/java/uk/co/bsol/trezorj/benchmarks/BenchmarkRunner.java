@@ -0,0 +1,46 @@
+package uk.co.bsol.trezorj.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Entry point to provide the following to the release process:</p>
+ * <ul>
+ * <li>A run of every benchmark reporting throughput, sampled latency percentiles and allocation rate</li>
+ * <li>A JSON result file for comparison against the previous release</li>
+ * </ul>
+ * <p>Usage: <code>BenchmarkRunner [include regex] [result file]</code> (defaults to all benchmarks and
+ * <code>target/jmh-result.json</code>). The self-contained JAR also accepts the usual JMH command line, for example
+ * <code>java -jar target/benchmarks.jar -prof gc Codec</code>.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class BenchmarkRunner {
+
+  /**
+   * @param args Optional include pattern and result file
+   *
+   * @throws RunnerException If the benchmarks fail to run
+   */
+  public static void main(String[] args) throws RunnerException {
+
+    String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName() + ".*Benchmark";
+    String result = args.length > 1 ? args[1] : "target/jmh-result.json";
+
+    Options options = new OptionsBuilder()
+      .include(include)
+      // Normalised allocation rate (bytes per operation) alongside the timings
+      .addProfiler(GCProfiler.class)
+      .resultFormat(ResultFormatType.JSON)
+      .result(result)
+      .build();
+
+    new Runner(options).run();
+  }
+
+}
@@ -0,0 +1,77 @@
+package uk.co.bsol.trezorj.benchmarks;
+
+import com.google.protobuf.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.utils.TrezorMessageUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Benchmark to provide the following to the codec:</p>
+ * <ul>
+ * <li>Throughput and latency of framing a message with {@link TrezorMessageUtils#writeMessage}</li>
+ * <li>Throughput and latency of {@link MessageType#parse} for every message type</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+  // No values given so every message type is measured
+  @Param
+  public MessageType messageType;
+
+  private Message message;
+  private short headerCode;
+  private byte[] detail;
+
+  private ByteArrayOutputStream baos;
+  private DataOutputStream out;
+
+  @Setup
+  public void setUp() {
+
+    message = BenchmarkMessages.newMessage(messageType);
+    headerCode = messageType.getHeaderCode();
+    detail = message.toByteArray();
+
+    baos = new ByteArrayOutputStream(detail.length + 16);
+    out = new DataOutputStream(baos);
+  }
+
+  @Benchmark
+  public int writeMessage() throws IOException {
+
+    baos.reset();
+    TrezorMessageUtils.writeMessage(message, out);
+
+    return baos.size();
+  }
+
+  @Benchmark
+  public Message parse() throws IOException {
+    return MessageType.parse(headerCode, detail);
+  }
+
+}
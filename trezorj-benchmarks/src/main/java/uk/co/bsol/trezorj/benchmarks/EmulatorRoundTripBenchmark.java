@@ -0,0 +1,92 @@
+package uk.co.bsol.trezorj.benchmarks;
+
+import com.google.bitcoin.core.Transaction;
+import com.google.common.base.Optional;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.clients.BlockingTrezorClient;
+import uk.co.bsol.trezorj.core.clients.TrezorClients;
+import uk.co.bsol.trezorj.core.emulators.ReactiveTrezorEmulator;
+import uk.co.bsol.trezorj.core.utils.FakeTransactions;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Benchmark to provide the following to the client:</p>
+ * <ul>
+ * <li>End-to-end throughput and latency of ping, getAddress and signTx against the reactive emulator</li>
+ * </ul>
+ * <p>The emulator runs in-process on an ephemeral loopback port with no added latency so the figures cover the
+ * client, codec, socket and emulator handling only.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmulatorRoundTripBenchmark {
+
+  private ReactiveTrezorEmulator emulator;
+  private BlockingTrezorClient client;
+  private Transaction tx;
+
+  @Setup
+  public void setUp() throws IOException, InterruptedException {
+
+    emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.start();
+
+    client = TrezorClients.newBlockingSocketInstance("localhost", emulator.getPort(), TrezorClients.newSessionId());
+    client.connect();
+
+    // Consume the connection event
+    client.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
+    client.initialize();
+
+    tx = FakeTransactions.newMainNetFakeTx(
+      FakeTransactions.getElectrumAddressN(new int[]{0, 0}),
+      FakeTransactions.getElectrumAddressN(new int[]{0, 1}),
+      FakeTransactions.asMainNetAddress("1MKw8vWxvBnaBcrL2yXvZceqyRMoeG2kRn"),
+      BigInteger.TEN,
+      BigInteger.ONE
+    );
+  }
+
+  @TearDown
+  public void tearDown() {
+    client.close();
+    emulator.stop();
+  }
+
+  @Benchmark
+  public TrezorEvent ping() {
+    return client.ping();
+  }
+
+  @Benchmark
+  public TrezorEvent getAddress() {
+    return client.getAddress(0, 1);
+  }
+
+  @Benchmark
+  public Optional<Transaction> signTx() {
+    return client.signTx(tx);
+  }
+
+}
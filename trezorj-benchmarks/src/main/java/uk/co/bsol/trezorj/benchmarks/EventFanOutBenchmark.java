@@ -0,0 +1,131 @@
+package uk.co.bsol.trezorj.benchmarks;
+
+import com.google.common.collect.Lists;
+import com.google.protobuf.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorListener;
+import uk.co.bsol.trezorj.core.events.TrezorEvents;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.trezors.AbstractTrezor;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Benchmark to provide the following to the event path:</p>
+ * <ul>
+ * <li>Throughput and latency of {@link AbstractTrezor#emitTrezorEvent} with 1..N listeners</li>
+ * </ul>
+ * <p>Each invocation emits one event and drains it from every listener queue so the queues never fill.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventFanOutBenchmark {
+
+  @Param({"1", "2", "4", "8", "16"})
+  public int listenerCount;
+
+  private FanOutTrezor trezor;
+  private List<QueueListener> listeners;
+  private TrezorEvent event;
+
+  @Setup
+  public void setUp() {
+
+    trezor = new FanOutTrezor();
+    listeners = Lists.newArrayList();
+    for (int i = 0; i < listenerCount; i++) {
+      QueueListener listener = new QueueListener();
+      trezor.addListener(listener);
+      listeners.add(listener);
+    }
+
+    Message message = BenchmarkMessages.newMessage(MessageType.SUCCESS);
+    event = TrezorEvents.newProtocolEvent(MessageType.SUCCESS, message);
+  }
+
+  @TearDown
+  public void tearDown() {
+    trezor.close();
+  }
+
+  @Benchmark
+  public int emit() throws InterruptedException {
+
+    trezor.emit(event);
+
+    int received = 0;
+    for (QueueListener listener : listeners) {
+      if (listener.trezorEventQueue.poll() != null) {
+        received++;
+      }
+    }
+    return received;
+  }
+
+  /**
+   * <p>Trezor exposing the event fan-out without any device</p>
+   */
+  private static class FanOutTrezor extends AbstractTrezor {
+
+    void emit(TrezorEvent event) throws InterruptedException {
+      emitTrezorEvent(event);
+    }
+
+    @Override
+    public void connect() {
+    }
+
+    @Override
+    public void internalClose() {
+    }
+
+    @Override
+    public void sendMessage(Message message) {
+    }
+
+    @Override
+    public String getDeviceId() {
+      return "fan-out";
+    }
+  }
+
+  /**
+   * <p>Listener holding the queue assigned by the Trezor</p>
+   */
+  private static class QueueListener implements TrezorListener {
+
+    private volatile BlockingQueue<TrezorEvent> trezorEventQueue;
+
+    @Override
+    public BlockingQueue<TrezorEvent> getTrezorEventQueue() {
+      return trezorEventQueue;
+    }
+
+    @Override
+    public void setTrezorEventQueue(BlockingQueue<TrezorEvent> trezorEventQueue) {
+      this.trezorEventQueue = trezorEventQueue;
+    }
+  }
+
+}
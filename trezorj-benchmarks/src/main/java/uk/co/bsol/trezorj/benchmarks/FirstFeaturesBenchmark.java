@@ -0,0 +1,99 @@
+package uk.co.bsol.trezorj.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.bsol.trezorj.core.StartupProfile;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.clients.BlockingTrezorClient;
+import uk.co.bsol.trezorj.core.clients.TrezorClients;
+import uk.co.bsol.trezorj.core.emulators.ReactiveTrezorEmulator;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Benchmark to provide the following to the startup profile:</p>
+ * <ul>
+ * <li>Time from a cold JVM to the first Features message, with and without a prewarm</li>
+ * </ul>
+ * <p>Each fork measures a single invocation so the one-time costs (class initialisation, protocol buffer
+ * descriptors, SecureRandom seeding) are included every time. Both arms run in the same benchmark so they share
+ * the machine and the build. With <code>prewarm</code> set the prewarm is started inside the measurement, as the
+ * application would at the top of main, and is not waited for. It then overlaps the application's own startup
+ * (<code>applicationStartupMillis</code>, e.g. reading configuration) and the opening of the client. The emulator
+ * shares the JVM but is started before the measurement and exchanges no messages until then.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class FirstFeaturesBenchmark {
+
+  @Param({"false", "true"})
+  public boolean prewarm;
+
+  @Param({"0", "200"})
+  public long applicationStartupMillis;
+
+  private ReactiveTrezorEmulator emulator;
+  private BlockingTrezorClient client;
+
+  @Setup
+  public void setUp() throws IOException {
+
+    emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.start();
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (client != null) {
+      client.close();
+    }
+    emulator.stop();
+  }
+
+  @Benchmark
+  public TrezorEvent firstFeatures() throws InterruptedException {
+
+    if (prewarm) {
+      // Socket only so the native HID library is not required
+      StartupProfile.prewarm(false);
+    }
+
+    // The rest of the application startup
+    if (applicationStartupMillis > 0) {
+      Thread.sleep(applicationStartupMillis);
+    }
+
+    client = TrezorClients.newBlockingSocketInstance("localhost", emulator.getPort(), TrezorClients.newSessionId());
+    client.connect();
+
+    // Consume the connection event
+    client.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
+
+    TrezorEvent event = client.initialize();
+    if (!TrezorEventType.PROTOCOL_MESSAGE.equals(event.eventType())) {
+      throw new IllegalStateException("Expected Features but received " + event.eventType());
+    }
+
+    return event;
+  }
+
+}
@@ -0,0 +1,96 @@
+package uk.co.bsol.trezorj.benchmarks;
+
+import com.google.protobuf.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.usb.HIDInputStream;
+import uk.co.bsol.trezorj.core.usb.HIDOutputStream;
+import uk.co.bsol.trezorj.core.utils.TrezorMessageUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Benchmark to provide the following to the USB transport:</p>
+ * <ul>
+ * <li>Throughput and latency of splitting a frame into HID reports through {@link HIDOutputStream}</li>
+ * <li>Throughput and latency of reassembling a frame from HID reports through {@link HIDInputStream}</li>
+ * </ul>
+ * <p>A {@link LoopbackHIDDevice} stands in for the device so no native code is involved.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HIDFramingBenchmark {
+
+  // Single report, two reports and a multi-report response
+  @Param({"PING", "TX_REQUEST", "DEBUG_LINK_STATE"})
+  public MessageType messageType;
+
+  private Message message;
+
+  private LoopbackHIDDevice writeDevice;
+  private DataOutputStream out;
+
+  private DataInputStream in;
+
+  @Setup
+  public void setUp() throws IOException {
+
+    message = BenchmarkMessages.newMessage(messageType);
+
+    writeDevice = LoopbackHIDDevice.newInstance();
+    out = new DataOutputStream(new HIDOutputStream(writeDevice));
+
+    // Prepare the reports a device would send for the framed message
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    TrezorMessageUtils.writeMessage(message, new DataOutputStream(baos));
+    byte[] frame = baos.toByteArray();
+
+    int reportCount = (frame.length + 62) / 63;
+    byte[][] reports = new byte[reportCount][];
+    for (int i = 0; i < reportCount; i++) {
+      int payloadLength = Math.min(63, frame.length - i * 63);
+      reports[i] = new byte[payloadLength + 1];
+      reports[i][0] = (byte) payloadLength;
+      System.arraycopy(frame, i * 63, reports[i], 1, payloadLength);
+    }
+
+    LoopbackHIDDevice readDevice = LoopbackHIDDevice.newInstance();
+    readDevice.setReports(reports);
+    in = new DataInputStream(new HIDInputStream(readDevice));
+  }
+
+  @Benchmark
+  public long write() throws IOException {
+
+    TrezorMessageUtils.writeMessage(message, out);
+
+    return writeDevice.getBytesWritten();
+  }
+
+  @Benchmark
+  public Message read() throws IOException {
+    return TrezorMessageUtils.readMessage(in);
+  }
+
+}
@@ -0,0 +1,128 @@
+package uk.co.bsol.trezorj.benchmarks;
+
+import com.codeminders.hidapi.HIDDevice;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+
+/**
+ * <p>Fake HID device to provide the following to benchmarks:</p>
+ * <ul>
+ * <li>Writes that are accepted and counted without any native calls</li>
+ * <li>Reads that replay a fixed set of reports then time out immediately (once per message)</li>
+ * </ul>
+ * <p>Unlike the emulated device there are no locks, FIFOs or timeouts so only the stream framing is measured.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class LoopbackHIDDevice extends HIDDevice {
+
+  private byte[][] reports = new byte[0][];
+  private int reportIndex = 0;
+
+  private long bytesWritten = 0;
+
+  /**
+   * @return A new device with no reports to read
+   */
+  public static LoopbackHIDDevice newInstance() {
+    return new LoopbackHIDDevice();
+  }
+
+  /**
+   * Use the utility constructor
+   */
+  private LoopbackHIDDevice() {
+    // No native peer
+    super(0);
+  }
+
+  /**
+   * @param reports The reports returned on each read (a timeout follows the last one, then they repeat)
+   */
+  public void setReports(byte[][] reports) {
+
+    Preconditions.checkNotNull(reports, "'reports' must be present");
+
+    this.reports = reports;
+    this.reportIndex = 0;
+  }
+
+  /**
+   * @return The total number of bytes written
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  @Override
+  public void close() throws IOException {
+    // Nothing to release
+  }
+
+  @Override
+  public int write(byte[] report) throws IOException {
+    bytesWritten += report.length;
+    return report.length;
+  }
+
+  @Override
+  public int read(byte[] buffer) throws IOException {
+    return readTimeout(buffer, 0);
+  }
+
+  @Override
+  public int readTimeout(byte[] buffer, int timeoutMillis) {
+
+    if (reportIndex >= reports.length) {
+      // Report the end of the message and start again on the next read
+      reportIndex = 0;
+      return 0;
+    }
+
+    byte[] report = reports[reportIndex++];
+    System.arraycopy(report, 0, buffer, 0, report.length);
+
+    return report.length;
+  }
+
+  @Override
+  public void enableBlocking() throws IOException {
+  }
+
+  @Override
+  public void disableBlocking() throws IOException {
+  }
+
+  @Override
+  public int sendFeatureReport(byte[] report) throws IOException {
+    return report.length;
+  }
+
+  @Override
+  public int getFeatureReport(byte[] report) throws IOException {
+    return 0;
+  }
+
+  @Override
+  public String getManufacturerString() throws IOException {
+    return "Trezorj";
+  }
+
+  @Override
+  public String getProductString() throws IOException {
+    return "Loopback";
+  }
+
+  @Override
+  public String getSerialNumberString() throws IOException {
+    return "loopback";
+  }
+
+  @Override
+  public String getIndexedString(int index) throws IOException {
+    return "";
+  }
+
+}
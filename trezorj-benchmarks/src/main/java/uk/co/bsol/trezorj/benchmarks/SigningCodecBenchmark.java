@@ -0,0 +1,139 @@
+package uk.co.bsol.trezorj.benchmarks;
+
+import com.google.bitcoin.core.Transaction;
+import com.google.protobuf.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.protobuf.TxMessageEncoder;
+import uk.co.bsol.trezorj.core.protobuf.TxRequestFlyweight;
+import uk.co.bsol.trezorj.core.utils.FakeTransactions;
+import uk.co.bsol.trezorj.core.utils.TrezorMessageUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Benchmark to provide the following to the SignTx conversation:</p>
+ * <ul>
+ * <li>Generated protocol buffer code against {@link TxMessageEncoder} for framing TxInput and TxOutput</li>
+ * <li>Generated protocol buffer code against {@link TxRequestFlyweight} for reading a TxRequest</li>
+ * </ul>
+ * <p>Run with the GC profiler (see {@link BenchmarkRunner}) to compare the allocation per operation.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SigningCodecBenchmark {
+
+  private Transaction tx;
+  private short txRequestHeaderCode;
+  private byte[] txRequestDetail;
+
+  private ByteArrayOutputStream baos;
+  private DataOutputStream out;
+
+  private TxMessageEncoder encoder;
+  private TxRequestFlyweight flyweight;
+
+  @Setup
+  public void setUp() {
+
+    tx = FakeTransactions.newMainNetFakeTx(
+      FakeTransactions.getElectrumAddressN(new int[]{0, 0}),
+      FakeTransactions.getElectrumAddressN(new int[]{0, 1}),
+      FakeTransactions.asMainNetAddress("1MKw8vWxvBnaBcrL2yXvZceqyRMoeG2kRn"),
+      BigInteger.TEN,
+      BigInteger.ONE
+    );
+
+    txRequestHeaderCode = MessageType.TX_REQUEST.getHeaderCode();
+    txRequestDetail = BenchmarkMessages.newMessage(MessageType.TX_REQUEST).toByteArray();
+
+    baos = new ByteArrayOutputStream(1024);
+    out = new DataOutputStream(baos);
+
+    encoder = TxMessageEncoder.newInstance();
+    flyweight = new TxRequestFlyweight();
+  }
+
+  @Benchmark
+  public int generatedTxInput() throws IOException {
+
+    baos.reset();
+    TrezorMessageUtils.writeMessage(TrezorMessageUtils.newTxInput(tx, 0), out);
+
+    return baos.size();
+  }
+
+  @Benchmark
+  public int fastTxInput() throws IOException {
+
+    baos.reset();
+    encoder.encodeTxInput(tx, 0);
+    encoder.writeTo(baos);
+
+    return baos.size();
+  }
+
+  @Benchmark
+  public int generatedTxOutput() throws IOException {
+
+    baos.reset();
+    TrezorMessageUtils.writeMessage(TrezorMessageUtils.newTxOutput(tx, 1), out);
+
+    return baos.size();
+  }
+
+  @Benchmark
+  public int fastTxOutput() throws IOException {
+
+    baos.reset();
+    encoder.encodeTxOutput(tx, 1);
+    encoder.writeTo(baos);
+
+    return baos.size();
+  }
+
+  @Benchmark
+  public int generatedTxRequest() throws IOException {
+
+    baos.reset();
+    Message message = MessageType.parse(txRequestHeaderCode, txRequestDetail);
+    TrezorMessage.TxRequest txRequest = (TrezorMessage.TxRequest) message;
+    baos.write(txRequest.getSignature().toByteArray());
+    baos.write(txRequest.getSerializedTx().toByteArray());
+
+    return txRequest.getRequestIndex() + baos.size();
+  }
+
+  @Benchmark
+  public int fastTxRequest() throws IOException {
+
+    baos.reset();
+    flyweight.wrap(txRequestDetail, 0, txRequestDetail.length);
+    flyweight.writeSignatureTo(baos);
+    flyweight.writeSerializedTxTo(baos);
+
+    return flyweight.getRequestIndex() + baos.size();
+  }
+
+}
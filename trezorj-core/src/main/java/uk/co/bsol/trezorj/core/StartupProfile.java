@@ -0,0 +1,88 @@
+package uk.co.bsol.trezorj.core;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.usb.NativeHIDLibrary;
+import uk.co.bsol.trezorj.core.utils.SharedSecureRandom;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>Utility to provide the following to applications that restart often (e.g. a Raspberry Pi signer):</p>
+ * <ul>
+ * <li>Prewarming of the one-time startup costs on a background thread while the application starts</li>
+ * </ul>
+ * <p>The startup costs are the native HID library load (see {@link NativeHIDLibrary}), the protocol buffer
+ * descriptor for the Trezor messages and the seeding of the shared SecureRandom (see {@link SharedSecureRandom}).
+ * Each is paid once per JVM whether or not it is prewarmed, so calling this is optional and safe to repeat.</p>
+ * <p>Example:</p>
+ * <pre>
+ * public static void main(String[] args) {
+ *   StartupProfile.prewarm(true);
+ *   // Read configuration etc while the prewarm runs
+ *   BlockingTrezorClient client = TrezorClients.newBlockingtUsbInstance(TrezorClients.newSessionId());
+ *   ...
+ * }
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class StartupProfile {
+
+  private static final Logger log = LoggerFactory.getLogger(StartupProfile.class);
+
+  /**
+   * Utilities do not require a public constructor
+   */
+  private StartupProfile() {
+  }
+
+  /**
+   * <p>Start the prewarm on a daemon thread and return immediately</p>
+   *
+   * @param includeNativeHID True if the native HID library should be loaded (false for socket-only applications)
+   *
+   * @return A future completing when the prewarm is finished (true if the native HID library is available or was
+   * not requested)
+   */
+  public static Future<Boolean> prewarm(final boolean includeNativeHID) {
+
+    ExecutorService executorService = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder()
+        .setNameFormat("trezorj-prewarm-%d")
+        .setDaemon(true)
+        .build()
+    );
+
+    Future<Boolean> future = executorService.submit(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+
+        long start = System.nanoTime();
+
+        boolean isNativeHIDAvailable = !includeNativeHID || NativeHIDLibrary.load();
+
+        // Builds the descriptors shared by every message type
+        TrezorMessage.getDescriptor();
+
+        SharedSecureRandom.seed();
+
+        log.debug("Prewarm complete ({} ms)", (System.nanoTime() - start) / 1000000);
+
+        return isNativeHIDAvailable;
+      }
+    });
+
+    // The thread ends once the prewarm completes
+    executorService.shutdown();
+
+    return future;
+  }
+
+}
@@ -32,6 +32,14 @@ public interface Trezor {
    */
   void sendMessage(Message message);
 
+  /**
+   * <p>Implementations that do not extend {@link uk.co.bsol.trezorj.core.trezors.AbstractTrezor} must now provide
+   * this method (the abstract base class provides a default that is unique to each instance)</p>
+   *
+   * @return A stable identifier for the device based on its communication link (e.g. "socket:localhost:3000#1")
+   */
+  String getDeviceId();
+
   /**
    * <p>Add a Trezor listener - duplicates will be rejected</p>
    *
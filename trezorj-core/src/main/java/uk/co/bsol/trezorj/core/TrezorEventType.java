@@ -37,10 +37,35 @@ public enum TrezorEventType {
   DEVICE_CONNECTED,
 
   /**
-   * Received on a device disconnect (no longer able to communicate)
+   * Received on a device disconnect (no longer able to communicate, including the device closing a socket)
    */
   DEVICE_DISCONNECTED,
 
+  /**
+   * Raised by a heartbeat when the round trip time exceeds its threshold (still communicating but slowly)
+   */
+  DEVICE_DEGRADED,
+
+  /**
+   * Raised by a heartbeat when consecutive pings have gone unanswered (the link is probably dead)
+   */
+  DEVICE_UNRESPONSIVE,
+
+  /**
+   * Raised by a circuit breaker when it trips and in place of a response to each request it rejects
+   */
+  DEVICE_CIRCUIT_OPEN,
+
+  /**
+   * Raised by a circuit breaker when it starts probing a device that had tripped it
+   */
+  DEVICE_CIRCUIT_HALF_OPEN,
+
+  /**
+   * Raised by a circuit breaker when a probe succeeds and requests are accepted again
+   */
+  DEVICE_CIRCUIT_CLOSED,
+
   // End of enum
   ;
 
@@ -1,5 +1,6 @@
 package uk.co.bsol.trezorj.core;
 
+import com.codeminders.hidapi.HIDDevice;
 import com.google.common.base.Optional;
 import uk.co.bsol.trezorj.core.trezors.SocketTrezor;
 import uk.co.bsol.trezorj.core.trezors.UsbTrezor;
@@ -38,6 +39,18 @@ public class TrezorFactory {
     return new UsbTrezor(vendorIdOptional, productIdOptional, serialNumberOptional);
   }
 
+  /**
+   * <p>Create a new instance of a USB-based Trezor device around an existing HID device (testing)</p>
+   *
+   * @param device The HID device (e.g. an EmulatedHIDDevice)
+   *
+   * @return A USB-based Trezor
+   */
+  public static UsbTrezor newUsbTrezor(HIDDevice device) {
+
+    return new UsbTrezor(device);
+  }
+
   /**
    * <p>Create a new instance of a socket-based Trezor device (development)</p>
    *
@@ -0,0 +1,450 @@
+package uk.co.bsol.trezorj.core.audit;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.ByteString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * <p>Journal to provide the following to compliance auditing:</p>
+ * <ul>
+ * <li>An append only record of every SignTx conversation (see {@link SigningRecord})</li>
+ * <li>Appends costing microseconds by copying into a pre-allocated memory-mapped segment</li>
+ * <li>Batched writes to disk with a periodic force() rather than one per record</li>
+ * <li>Rollover to a new segment when the current one is full</li>
+ * </ul>
+ * <p>Each record carries a checksum and its length is written last, so a record torn by a crash is never
+ * mistaken for a complete one. On opening an existing journal the last segment is scanned, anything after the
+ * last complete record is cleared and appending continues from there. A process crash loses nothing that was
+ * appended (the pages belong to the operating system), while a power loss can lose the records since the last
+ * force. See {@link SigningJournalReader} for the format and for reading the records back.</p>
+ * <p>A {@link #flush()} that finds a force already running waits for it and forces again if records were appended
+ * after it started, so every record appended before the flush is on disk when it returns.</p>
+ * <p>Example:</p>
+ * <pre>
+ * SigningJournal journal = SigningJournal.newInstance(new File("audit"));
+ * client.setSigningJournal(journal);
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class SigningJournal implements Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(SigningJournal.class);
+
+  /**
+   * The default size of each segment file
+   */
+  public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+  /**
+   * The default time between forcing appended records to disk
+   */
+  public static final long DEFAULT_FORCE_INTERVAL_MILLIS = 1000;
+
+  private final File directory;
+  private final int segmentSize;
+  private final ScheduledExecutorService forceExecutorService = Executors.newSingleThreadScheduledExecutor(
+    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("trezorj-journal-%d").build()
+  );
+
+  // Guarded by this
+  private final CRC32 crc = new CRC32();
+  private ByteBuffer scratch = ByteBuffer.allocate(4096);
+  private RandomAccessFile segmentFile;
+  private MappedByteBuffer segment;
+  private long segmentNumber;
+  private long nextSequence;
+  // Every record before this sequence is on disk
+  private long forcedSequence;
+  private boolean isForcing = false;
+  private boolean isOpen = true;
+
+  /**
+   * @param directory The journal directory (created if absent)
+   *
+   * @return The journal with default segment size and force interval
+   *
+   * @throws IOException If the journal cannot be opened
+   */
+  public static SigningJournal newInstance(File directory) throws IOException {
+    return newInstance(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_FORCE_INTERVAL_MILLIS);
+  }
+
+  /**
+   * @param directory           The journal directory (created if absent)
+   * @param segmentSize         The size of each segment file in bytes
+   * @param forceIntervalMillis The time in milliseconds between forcing appended records to disk
+   *
+   * @return The journal, ready to append after any existing records
+   *
+   * @throws IOException If the journal cannot be opened
+   */
+  public static SigningJournal newInstance(File directory, int segmentSize, long forceIntervalMillis) throws IOException {
+
+    Preconditions.checkNotNull(directory, "'directory' must be present");
+    Preconditions.checkState(segmentSize > SigningJournalReader.HEADER_SIZE + SigningJournalReader.RECORD_HEADER_SIZE, "'segmentSize' is too small");
+    Preconditions.checkState(forceIntervalMillis > 0, "'forceIntervalMillis' must be greater than zero");
+
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create journal directory: " + directory);
+    }
+
+    SigningJournal journal = new SigningJournal(directory, segmentSize);
+    journal.recover();
+    journal.startForcing(forceIntervalMillis);
+
+    return journal;
+  }
+
+  /**
+   * Use the utility constructor
+   */
+  private SigningJournal(File directory, int segmentSize) {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+  }
+
+  /**
+   * @param record The record of a SignTx conversation
+   *
+   * @return The sequence number of the record in the journal
+   *
+   * @throws IllegalStateException If the journal is closed or a new segment cannot be created
+   */
+  public synchronized long append(SigningRecord record) {
+
+    Preconditions.checkNotNull(record, "'record' must be present");
+    Preconditions.checkState(isOpen, "Journal is closed");
+
+    long sequence = nextSequence;
+    int length = encode(record, sequence);
+
+    // Always leave room for a zero length after the record to mark the end
+    int required = SigningJournalReader.RECORD_HEADER_SIZE + length + 4;
+    Preconditions.checkState(required <= segmentSize - SigningJournalReader.HEADER_SIZE, "Record is larger than a segment");
+    if (segment.remaining() < required) {
+      try {
+        rollover();
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not create a new journal segment", e);
+      }
+    }
+
+    crc.reset();
+    crc.update(scratch.array(), 0, length);
+
+    int start = segment.position();
+    segment.position(start + SigningJournalReader.RECORD_HEADER_SIZE);
+    segment.put(scratch.array(), 0, length);
+    segment.putInt(start + 4, (int) crc.getValue());
+
+    // The length goes in last so that a torn record is never valid
+    segment.putInt(start, length);
+
+    nextSequence++;
+
+    return sequence;
+  }
+
+  /**
+   * @return The sequence number the next record will have
+   */
+  public synchronized long getNextSequence() {
+    return nextSequence;
+  }
+
+  /**
+   * <p>Force appended records to disk now rather than waiting for the next interval</p>
+   *
+   * @throws IllegalStateException If interrupted while waiting for a force in progress
+   */
+  public void flush() {
+    force(true);
+  }
+
+  /**
+   * @return The sequence number before which every record is known to be on disk
+   */
+  synchronized long getForcedSequence() {
+    return forcedSequence;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+
+    if (!isOpen) {
+      return;
+    }
+    isOpen = false;
+
+    forceExecutorService.shutdownNow();
+    segment.force();
+    forcedSequence = nextSequence;
+    segmentFile.close();
+  }
+
+  /**
+   * <p>Open the last segment and position after its last complete record (or start a new journal)</p>
+   */
+  private synchronized void recover() throws IOException {
+
+    List<File> segmentFiles = SigningJournalReader.listSegments(directory);
+    if (segmentFiles.isEmpty()) {
+      createSegment(0, 0);
+      return;
+    }
+
+    File lastFile = segmentFiles.get(segmentFiles.size() - 1);
+    segmentFile = new RandomAccessFile(lastFile, "rw");
+    segment = segmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentFile.length());
+
+    if (segment.capacity() < SigningJournalReader.HEADER_SIZE || segment.getInt(0) != SigningJournalReader.MAGIC) {
+      // A crash during rollover left the segment uninitialised so start it again
+      log.warn("Reinitialising journal segment {}", lastFile.getName());
+      long number = SigningJournalReader.getSegmentNumber(lastFile);
+      long firstSequence = segmentFiles.size() > 1 ? scanForNextSequence(segmentFiles.get(segmentFiles.size() - 2)) : 0;
+      segmentFile.close();
+      createSegment(number, firstSequence);
+      return;
+    }
+
+    segmentNumber = segment.getLong(8);
+    nextSequence = segment.getLong(16);
+    segment.position(SigningJournalReader.HEADER_SIZE);
+    nextSequence = scan(segment, nextSequence);
+    forcedSequence = nextSequence;
+
+    // Clear a torn record so that a shorter record appended over it cannot be confused with it
+    if (segment.remaining() >= 4 && segment.getInt(segment.position()) != 0) {
+      log.warn("Discarded a torn record at offset {} of {}", segment.position(), lastFile.getName());
+      int position = segment.position();
+      byte[] zeros = new byte[4096];
+      while (segment.hasRemaining()) {
+        segment.put(zeros, 0, Math.min(zeros.length, segment.remaining()));
+      }
+      segment.position(position);
+      segment.force();
+    }
+
+    log.info("Journal opened at sequence {} in {}", nextSequence, lastFile.getName());
+  }
+
+  /**
+   * @param buffer        The segment positioned at its first record
+   * @param firstSequence The sequence of the first record
+   *
+   * @return The sequence after the last complete record (the buffer is positioned after it)
+   */
+  private long scan(ByteBuffer buffer, long firstSequence) {
+
+    long sequence = firstSequence;
+    while (true) {
+      int start = buffer.position();
+      int length = SigningJournalReader.readRecordLength(buffer, start, crc);
+      if (length < 0) {
+        return sequence;
+      }
+      sequence = buffer.getLong(start + SigningJournalReader.RECORD_HEADER_SIZE) + 1;
+      buffer.position(start + SigningJournalReader.RECORD_HEADER_SIZE + length);
+    }
+  }
+
+  private long scanForNextSequence(File file) throws IOException {
+
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+      buffer.position(SigningJournalReader.HEADER_SIZE);
+      return scan(buffer, buffer.getLong(16));
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
+  /**
+   * <p>Force the full segment to disk and continue in a new one</p>
+   */
+  private void rollover() throws IOException {
+
+    segment.force();
+    segmentFile.close();
+    createSegment(segmentNumber + 1, nextSequence);
+
+    log.debug("Journal rolled over to segment {}", segmentNumber);
+  }
+
+  /**
+   * <p>Pre-allocate a zero filled segment and write its header</p>
+   */
+  private void createSegment(long number, long firstSequence) throws IOException {
+
+    File file = SigningJournalReader.newSegmentFile(directory, number);
+    segmentFile = new RandomAccessFile(file, "rw");
+    segmentFile.setLength(segmentSize);
+    segment = segmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+
+    segment.putInt(SigningJournalReader.MAGIC);
+    segment.putShort(SigningJournalReader.VERSION);
+    segment.putShort((short) 0);
+    segment.putLong(number);
+    segment.putLong(firstSequence);
+    segment.putLong(0);
+    segment.force();
+
+    segmentNumber = number;
+    nextSequence = firstSequence;
+    forcedSequence = firstSequence;
+  }
+
+  private void startForcing(long forceIntervalMillis) {
+
+    forceExecutorService.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          force(false);
+        } catch (RuntimeException e) {
+          log.warn("Journal force failed: {}", e.getMessage());
+        }
+      }
+    }, forceIntervalMillis, forceIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * <p>Force outside the lock so that appends are not held up by the disk</p>
+   *
+   * @param isWaiting True if a force in progress should be waited for (otherwise it covers this call)
+   */
+  private void force(boolean isWaiting) {
+
+    MappedByteBuffer dirtySegment;
+    long sequence;
+    synchronized (this) {
+      // The records appended so far
+      long target = nextSequence;
+      while (isForcing && forcedSequence < target) {
+        if (!isWaiting) {
+          return;
+        }
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException(e);
+        }
+      }
+      if (!isOpen || forcedSequence >= target) {
+        return;
+      }
+      isForcing = true;
+      sequence = nextSequence;
+      dirtySegment = segment;
+    }
+
+    boolean isForced = false;
+    try {
+      dirtySegment.force();
+      isForced = true;
+    } finally {
+      synchronized (this) {
+        isForcing = false;
+        if (isForced) {
+          forcedSequence = Math.max(forcedSequence, sequence);
+        }
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * @return The length of the record body encoded into the scratch buffer
+   */
+  private int encode(SigningRecord record, long sequence) {
+
+    while (true) {
+      scratch.clear();
+      try {
+        encodeBody(record, sequence);
+        return scratch.position();
+      } catch (BufferOverflowException e) {
+        scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+      }
+    }
+  }
+
+  private void encodeBody(SigningRecord record, long sequence) {
+
+    scratch.putLong(sequence);
+    scratch.putLong(record.getStartTimeMillis());
+    scratch.putLong(record.getDurationNanos());
+    scratch.put((byte) (record.isSigned() ? 1 : 0));
+    putString(record.getDeviceId());
+    putBytes(record.getDeviceUuid());
+
+    putCount(record.getInputs().size());
+    for (TrezorMessage.TxInput input : record.getInputs()) {
+      scratch.putInt(input.getIndex());
+      scratch.putLong(input.getAmount());
+      scratch.putInt(input.getPrevIndex());
+      putBytes(input.getPrevHash());
+      putBytes(input.getScriptSig());
+      putCount(input.getAddressNCount());
+      for (int addressN : input.getAddressNList()) {
+        scratch.putInt(addressN);
+      }
+    }
+
+    putCount(record.getOutputs().size());
+    for (TrezorMessage.TxOutput output : record.getOutputs()) {
+      scratch.putInt(output.getIndex());
+      scratch.putLong(output.getAmount());
+      scratch.putInt(output.getScriptType().getNumber());
+      putString(output.getAddress());
+      putCount(output.getAddressNCount());
+      for (int addressN : output.getAddressNList()) {
+        scratch.putInt(addressN);
+      }
+    }
+
+    putCount(record.getSignatures().size());
+    for (ByteString signature : record.getSignatures()) {
+      putBytes(signature);
+    }
+
+    scratch.putInt(record.getSerializedTx().size());
+    record.getSerializedTx().copyTo(scratch);
+  }
+
+  private void putCount(int count) {
+    Preconditions.checkState(count <= 0xffff, "Too many entries for a journal record");
+    scratch.putShort((short) count);
+  }
+
+  private void putBytes(ByteString bytes) {
+    putCount(bytes.size());
+    bytes.copyTo(scratch);
+  }
+
+  private void putString(String value) {
+    putBytes(ByteString.copyFromUtf8(value));
+  }
+
+}
@@ -0,0 +1,351 @@
+package uk.co.bsol.trezorj.core.audit;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.protobuf.ByteString;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * <p>Reader to provide the following to compliance auditing:</p>
+ * <ul>
+ * <li>The records written by a {@link SigningJournal} in the order they were appended, across all segments</li>
+ * </ul>
+ * <p>A journal is a directory of segment files named "signing-NNNNNNNN.journal". Each segment is pre-allocated
+ * to a fixed size and zero filled. The binary format is big endian throughout:</p>
+ * <ul>
+ * <li>Segment header ({@link #HEADER_SIZE} bytes): magic (int "TZSJ"), version (short), reserved (short),
+ * segment number (long), sequence of the first record (long), reserved (long)</li>
+ * <li>Record: body length (int), CRC-32 of the body (int), body</li>
+ * <li>Body: sequence (long), start time (long, milliseconds since the epoch), duration (long, nanoseconds),
+ * signed (byte), device ID (string), device UUID (bytes), inputs, outputs, signatures (short count of bytes),
+ * serialized transaction (int length and bytes)</li>
+ * <li>Inputs: count (short) then for each index (int), amount (long), previous index (int), previous hash
+ * (bytes), script signature (bytes), address path (short count of ints)</li>
+ * <li>Outputs: count (short) then for each index (int), amount (long), script type (int), address (string),
+ * address path (short count of ints)</li>
+ * <li>Strings and byte arrays are a short length followed by the bytes (UTF-8 for strings)</li>
+ * </ul>
+ * <p>A zero length marks the end of the records in a segment. A record with a bad length or checksum (e.g. torn
+ * by a crash) also ends the segment.</p>
+ * <p>Example:</p>
+ * <pre>
+ * SigningJournalReader reader = SigningJournalReader.newInstance(directory);
+ * while (reader.hasNext()) {
+ *   SigningRecord record = reader.next();
+ * }
+ * reader.close();
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class SigningJournalReader implements Iterator<SigningRecord>, Closeable {
+
+  /**
+   * The magic number at the start of a segment ("TZSJ")
+   */
+  public static final int MAGIC = 0x545a534a;
+
+  /**
+   * The current format version
+   */
+  public static final short VERSION = 1;
+
+  /**
+   * The size of a segment header
+   */
+  public static final int HEADER_SIZE = 32;
+
+  /**
+   * The size of the length and checksum before each record body
+   */
+  public static final int RECORD_HEADER_SIZE = 8;
+
+  static final String SEGMENT_PREFIX = "signing-";
+  static final String SEGMENT_SUFFIX = ".journal";
+
+  private final Iterator<File> segmentFiles;
+  private final CRC32 crc = new CRC32();
+
+  private RandomAccessFile currentFile = null;
+  private MappedByteBuffer currentSegment = null;
+  private SigningRecord nextRecord = null;
+
+  /**
+   * @param directory The journal directory
+   *
+   * @return A reader positioned before the first record
+   *
+   * @throws IOException If the directory cannot be read
+   */
+  public static SigningJournalReader newInstance(File directory) throws IOException {
+
+    Preconditions.checkNotNull(directory, "'directory' must be present");
+    if (!directory.isDirectory()) {
+      throw new IOException("Journal directory not found: " + directory);
+    }
+
+    return new SigningJournalReader(listSegments(directory));
+  }
+
+  /**
+   * Use the utility constructor
+   */
+  private SigningJournalReader(List<File> segmentFiles) {
+    this.segmentFiles = segmentFiles.iterator();
+  }
+
+  @Override
+  public boolean hasNext() {
+
+    while (nextRecord == null) {
+      try {
+        if (currentSegment == null && !openNextSegment()) {
+          return false;
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not read journal segment", e);
+      }
+
+      int start = currentSegment.position();
+      int length = readRecordLength(currentSegment, start, crc);
+      if (length < 0) {
+        // End of this segment
+        closeSegment();
+        continue;
+      }
+
+      ByteBuffer body = currentSegment.duplicate();
+      body.position(start + RECORD_HEADER_SIZE);
+      body.limit(start + RECORD_HEADER_SIZE + length);
+      nextRecord = decode(body);
+      currentSegment.position(start + RECORD_HEADER_SIZE + length);
+    }
+
+    return true;
+  }
+
+  @Override
+  public SigningRecord next() {
+
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+
+    SigningRecord record = nextRecord;
+    nextRecord = null;
+    return record;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException("The journal is append only");
+  }
+
+  @Override
+  public void close() {
+    closeSegment();
+  }
+
+  private boolean openNextSegment() throws IOException {
+
+    if (!segmentFiles.hasNext()) {
+      return false;
+    }
+
+    File file = segmentFiles.next();
+    currentFile = new RandomAccessFile(file, "r");
+    currentSegment = currentFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, currentFile.length());
+    if (currentSegment.capacity() < HEADER_SIZE || currentSegment.getInt(0) != MAGIC) {
+      // Created but never initialised (e.g. a crash during rollover)
+      currentSegment.position(currentSegment.limit());
+    } else {
+      currentSegment.position(HEADER_SIZE);
+    }
+
+    return true;
+  }
+
+  private void closeSegment() {
+
+    currentSegment = null;
+    if (currentFile != null) {
+      try {
+        currentFile.close();
+      } catch (IOException e) {
+        // Nothing more can be read from it anyway
+      }
+      currentFile = null;
+    }
+  }
+
+  /**
+   * @param directory The journal directory
+   *
+   * @return The segment files in order
+   */
+  static List<File> listSegments(File directory) {
+
+    File[] files = directory.listFiles(new FileFilter() {
+      @Override
+      public boolean accept(File file) {
+        return file.isFile() && file.getName().startsWith(SEGMENT_PREFIX) && file.getName().endsWith(SEGMENT_SUFFIX);
+      }
+    });
+    if (files == null) {
+      return Lists.newArrayList();
+    }
+
+    // Segment numbers are zero padded so the names sort in order
+    Arrays.sort(files);
+    return Lists.newArrayList(files);
+  }
+
+  /**
+   * @param directory     The journal directory
+   * @param segmentNumber The segment number
+   *
+   * @return The segment file
+   */
+  static File newSegmentFile(File directory, long segmentNumber) {
+    return new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX));
+  }
+
+  /**
+   * @param segmentFile The segment file
+   *
+   * @return The segment number from the file name
+   */
+  static long getSegmentNumber(File segmentFile) {
+    String name = segmentFile.getName();
+    return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  /**
+   * @param buffer The segment
+   * @param start  The position of the record
+   * @param crc    A checksum to reuse
+   *
+   * @return The length of the valid record body at the position or -1 if there is none
+   */
+  static int readRecordLength(ByteBuffer buffer, int start, CRC32 crc) {
+
+    if (buffer.limit() - start < RECORD_HEADER_SIZE) {
+      return -1;
+    }
+
+    int length = buffer.getInt(start);
+    if (length <= 0 || length > buffer.limit() - start - RECORD_HEADER_SIZE) {
+      return -1;
+    }
+
+    byte[] body = new byte[length];
+    ByteBuffer source = buffer.duplicate();
+    source.position(start + RECORD_HEADER_SIZE);
+    source.get(body);
+
+    crc.reset();
+    crc.update(body, 0, length);
+    if ((int) crc.getValue() != buffer.getInt(start + 4)) {
+      return -1;
+    }
+
+    return length;
+  }
+
+  /**
+   * @param body The record body
+   *
+   * @return The record
+   */
+  static SigningRecord decode(ByteBuffer body) {
+
+    long sequence = body.getLong();
+    long startTimeMillis = body.getLong();
+    long durationNanos = body.getLong();
+    boolean isSigned = body.get() != 0;
+    String deviceId = readString(body);
+    ByteString deviceUuid = readBytes(body);
+
+    int inputCount = body.getShort() & 0xffff;
+    List<TrezorMessage.TxInput> inputs = Lists.newArrayListWithCapacity(inputCount);
+    for (int i = 0; i < inputCount; i++) {
+      TrezorMessage.TxInput.Builder builder = TrezorMessage.TxInput.newBuilder()
+        .setIndex(body.getInt())
+        .setAmount(body.getLong())
+        .setPrevIndex(body.getInt())
+        .setPrevHash(readBytes(body));
+      ByteString scriptSig = readBytes(body);
+      if (!scriptSig.isEmpty()) {
+        builder.setScriptSig(scriptSig);
+      }
+      int addressCount = body.getShort() & 0xffff;
+      for (int j = 0; j < addressCount; j++) {
+        builder.addAddressN(body.getInt());
+      }
+      inputs.add(builder.build());
+    }
+
+    int outputCount = body.getShort() & 0xffff;
+    List<TrezorMessage.TxOutput> outputs = Lists.newArrayListWithCapacity(outputCount);
+    for (int i = 0; i < outputCount; i++) {
+      TrezorMessage.TxOutput.Builder builder = TrezorMessage.TxOutput.newBuilder()
+        .setIndex(body.getInt())
+        .setAmount(body.getLong())
+        .setScriptType(TrezorMessage.ScriptType.valueOf(body.getInt()))
+        .setAddress(readString(body));
+      int addressCount = body.getShort() & 0xffff;
+      for (int j = 0; j < addressCount; j++) {
+        builder.addAddressN(body.getInt());
+      }
+      outputs.add(builder.build());
+    }
+
+    int signatureCount = body.getShort() & 0xffff;
+    List<ByteString> signatures = Lists.newArrayListWithCapacity(signatureCount);
+    for (int i = 0; i < signatureCount; i++) {
+      signatures.add(readBytes(body));
+    }
+
+    byte[] serializedTx = new byte[body.getInt()];
+    body.get(serializedTx);
+
+    return new SigningRecord(
+      sequence,
+      deviceId,
+      deviceUuid,
+      startTimeMillis,
+      durationNanos,
+      isSigned,
+      inputs,
+      outputs,
+      signatures,
+      ByteString.copyFrom(serializedTx)
+    );
+  }
+
+  private static ByteString readBytes(ByteBuffer body) {
+    byte[] bytes = new byte[body.getShort() & 0xffff];
+    body.get(bytes);
+    return ByteString.copyFrom(bytes);
+  }
+
+  private static String readString(ByteBuffer body) {
+    return readBytes(body).toStringUtf8();
+  }
+
+}
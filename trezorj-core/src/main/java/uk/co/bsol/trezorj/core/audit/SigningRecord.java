@@ -0,0 +1,278 @@
+package uk.co.bsol.trezorj.core.audit;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.protobuf.ByteString;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * <p>Value object to provide the following to compliance auditing:</p>
+ * <ul>
+ * <li>A record of one SignTx conversation: the inputs and outputs sent to the device and what it returned</li>
+ * <li>The device identity and the timing of the conversation</li>
+ * </ul>
+ * <p>Signatures are held by input index (an empty signature if the device did not sign that input). A record
+ * built by a client has a sequence number of -1 until it is read back from a {@link SigningJournal}.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class SigningRecord {
+
+  private final long sequence;
+  private final String deviceId;
+  private final ByteString deviceUuid;
+  private final long startTimeMillis;
+  private final long durationNanos;
+  private final boolean isSigned;
+  private final List<TrezorMessage.TxInput> inputs;
+  private final List<TrezorMessage.TxOutput> outputs;
+  private final List<ByteString> signatures;
+  private final ByteString serializedTx;
+
+  SigningRecord(
+    long sequence,
+    String deviceId,
+    ByteString deviceUuid,
+    long startTimeMillis,
+    long durationNanos,
+    boolean isSigned,
+    List<TrezorMessage.TxInput> inputs,
+    List<TrezorMessage.TxOutput> outputs,
+    List<ByteString> signatures,
+    ByteString serializedTx
+  ) {
+    this.sequence = sequence;
+    this.deviceId = deviceId;
+    this.deviceUuid = deviceUuid;
+    this.startTimeMillis = startTimeMillis;
+    this.durationNanos = durationNanos;
+    this.isSigned = isSigned;
+    this.inputs = ImmutableList.copyOf(inputs);
+    this.outputs = ImmutableList.copyOf(outputs);
+    this.signatures = ImmutableList.copyOf(signatures);
+    this.serializedTx = serializedTx;
+  }
+
+  /**
+   * @return A new builder for recording a conversation as it happens
+   */
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * @return The position of the record in the journal (-1 if not read from a journal)
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * @return The identifier of the device (e.g. "socket:localhost:3000#1")
+   */
+  public String getDeviceId() {
+    return deviceId;
+  }
+
+  /**
+   * @return The UUID reported by the device (empty if unknown)
+   */
+  public ByteString getDeviceUuid() {
+    return deviceUuid;
+  }
+
+  /**
+   * @return The start of the conversation in milliseconds since the epoch
+   */
+  public long getStartTimeMillis() {
+    return startTimeMillis;
+  }
+
+  /**
+   * @return The length of the conversation in nanoseconds
+   */
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  /**
+   * @return True if the device completed the conversation
+   */
+  public boolean isSigned() {
+    return isSigned;
+  }
+
+  /**
+   * @return The inputs sent to the device in the order first requested
+   */
+  public List<TrezorMessage.TxInput> getInputs() {
+    return inputs;
+  }
+
+  /**
+   * @return The outputs sent to the device in the order first requested
+   */
+  public List<TrezorMessage.TxOutput> getOutputs() {
+    return outputs;
+  }
+
+  /**
+   * @return The signatures by input index
+   */
+  public List<ByteString> getSignatures() {
+    return signatures;
+  }
+
+  /**
+   * @return The serialized transaction assembled from the device responses (empty if none)
+   */
+  public ByteString getSerializedTx() {
+    return serializedTx;
+  }
+
+  /**
+   * @return The total amount of the inputs in satoshis
+   */
+  public long getInputAmount() {
+    long amount = 0;
+    for (TrezorMessage.TxInput input : inputs) {
+      amount += input.getAmount();
+    }
+    return amount;
+  }
+
+  /**
+   * @return The total amount of the outputs in satoshis
+   */
+  public long getOutputAmount() {
+    long amount = 0;
+    for (TrezorMessage.TxOutput output : outputs) {
+      amount += output.getAmount();
+    }
+    return amount;
+  }
+
+  @Override
+  public String toString() {
+    return "SigningRecord{" +
+      "sequence=" + sequence +
+      ", deviceId='" + deviceId + '\'' +
+      ", isSigned=" + isSigned +
+      ", inputs=" + inputs.size() +
+      ", outputs=" + outputs.size() +
+      ", durationNanos=" + durationNanos +
+      '}';
+  }
+
+  /**
+   * <p>Builder to provide the following to a client during a SignTx conversation:</p>
+   * <ul>
+   * <li>Collection of the messages exchanged with the device</li>
+   * </ul>
+   */
+  public static class Builder {
+
+    private String deviceId = "";
+    private ByteString deviceUuid = ByteString.EMPTY;
+    private final long startTimeMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final List<TrezorMessage.TxInput> inputs = Lists.newArrayList();
+    private final List<TrezorMessage.TxOutput> outputs = Lists.newArrayList();
+    private final List<ByteString> signatures = Lists.newArrayList();
+    private final ByteArrayOutputStream serializedTx = new ByteArrayOutputStream();
+
+    /**
+     * Use SigningRecord.newBuilder()
+     */
+    private Builder() {
+    }
+
+    public Builder setDeviceId(String deviceId) {
+      Preconditions.checkNotNull(deviceId, "'deviceId' must be present");
+      this.deviceId = deviceId;
+      return this;
+    }
+
+    public Builder setDeviceUuid(ByteString deviceUuid) {
+      Preconditions.checkNotNull(deviceUuid, "'deviceUuid' must be present");
+      this.deviceUuid = deviceUuid;
+      return this;
+    }
+
+    /**
+     * @param input The input sent to the device (the device asks for each input more than once but it is kept once)
+     */
+    public Builder addInput(TrezorMessage.TxInput input) {
+      for (TrezorMessage.TxInput existing : inputs) {
+        if (existing.getIndex() == input.getIndex()) {
+          return this;
+        }
+      }
+      inputs.add(input);
+      return this;
+    }
+
+    /**
+     * @param output The output sent to the device (kept once like the inputs)
+     */
+    public Builder addOutput(TrezorMessage.TxOutput output) {
+      for (TrezorMessage.TxOutput existing : outputs) {
+        if (existing.getIndex() == output.getIndex()) {
+          return this;
+        }
+      }
+      outputs.add(output);
+      return this;
+    }
+
+    /**
+     * @param index     The input index signed
+     * @param signature The signature
+     */
+    public Builder setSignature(int index, ByteString signature) {
+
+      Preconditions.checkState(index >= 0, "'index' must not be negative");
+
+      while (signatures.size() <= index) {
+        signatures.add(ByteString.EMPTY);
+      }
+      signatures.set(index, signature);
+      return this;
+    }
+
+    /**
+     * @param chunk The next part of the serialized transaction
+     */
+    public Builder appendSerializedTx(ByteString chunk) {
+      byte[] bytes = chunk.toByteArray();
+      serializedTx.write(bytes, 0, bytes.length);
+      return this;
+    }
+
+    /**
+     * @param isSigned True if the device completed the conversation
+     *
+     * @return The record timed from the creation of this builder
+     */
+    public SigningRecord build(boolean isSigned) {
+      return new SigningRecord(
+        -1,
+        deviceId,
+        deviceUuid,
+        startTimeMillis,
+        System.nanoTime() - startNanos,
+        isSigned,
+        inputs,
+        outputs,
+        signatures,
+        ByteString.copyFrom(serializedTx.toByteArray())
+      );
+    }
+  }
+
+}
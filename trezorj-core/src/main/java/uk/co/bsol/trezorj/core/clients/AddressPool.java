@@ -0,0 +1,272 @@
+package uk.co.bsol.trezorj.core.clients;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Queues;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.utils.Clock;
+import uk.co.bsol.trezorj.core.utils.SystemClock;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>Pool to provide the following to applications:</p>
+ * <ul>
+ * <li>A supply of fresh addresses generated ahead of time by the device</li>
+ * <li>Automatic background refill when the pool drops below a threshold</li>
+ * </ul>
+ * <p>Refills use {@link BlockingTrezorClient#getAddresses(int, int, int, java.util.concurrent.BlockingQueue)} so
+ * the responses stream into the pool as they arrive. The client may continue to be used by the application since
+ * the refill holds the client conversation lock only while it is talking to the device.</p>
+ * <p>Only an unbroken run of addresses from the next key pair number is kept. If the device refuses a request
+ * or stops responding part way through a refill, the addresses after the gap are dropped and the next refill
+ * starts again from the first missing key pair number, so no key pair number is ever skipped.</p>
+ * <p>A refill that provides no addresses at all (e.g. the device is disconnected) is not retried on the next
+ * {@link #take(long, java.util.concurrent.TimeUnit)}. The pool backs off for {@link #INITIAL_BACKOFF_MILLIS},
+ * doubling after each further failure up to {@link #MAX_BACKOFF_MILLIS}, so callers are not each held up by a
+ * failed round trip.</p>
+ * <p>Example:</p>
+ * <pre>
+ * AddressPool pool = new AddressPool(client, 0, 0, 100, 500);
+ * pool.start();
+ *
+ * Optional&lt;String&gt; address = pool.take(5, TimeUnit.SECONDS);
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class AddressPool {
+
+  private static final Logger log = LoggerFactory.getLogger(AddressPool.class);
+
+  /**
+   * The time to wait before retrying a refill that provided no addresses
+   */
+  public static final long INITIAL_BACKOFF_MILLIS = 500;
+
+  /**
+   * The longest time to wait between refills that provide no addresses
+   */
+  public static final long MAX_BACKOFF_MILLIS = 30000;
+
+  private final BlockingTrezorClient client;
+  private final int index;
+  private final int lowWaterMark;
+  private final int batchSize;
+
+  // Addresses in key pair number order
+  private final BlockingQueue<String> addresses = Queues.newLinkedBlockingQueue();
+  private final ExecutorService refillExecutorService = Executors.newSingleThreadExecutor(
+    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("trezorj-address-pool-%d").build()
+  );
+  private final AtomicBoolean isRefilling = new AtomicBoolean(false);
+
+  private volatile Clock clock = SystemClock.getDefaultInstance();
+
+  // Only modified on the refill thread (the first key pair number not yet in the pool)
+  private volatile int nextValue;
+
+  // Only modified on the refill thread (no refill before the next attempt time while backing off)
+  private volatile boolean isBackingOff = false;
+  private volatile long nextAttemptNanos;
+  private long backoffMillis = 0;
+
+  /**
+   * @param client       The connected and initialized blocking client
+   * @param index        The index position of the generated external public keys (account i from BIP 0032)
+   * @param firstValue   The first key pair number to generate (k'th key from BIP 0032)
+   * @param lowWaterMark The pool size below which a refill is triggered
+   * @param batchSize    The number of addresses to request in each refill
+   */
+  public AddressPool(BlockingTrezorClient client, int index, int firstValue, int lowWaterMark, int batchSize) {
+
+    Preconditions.checkNotNull(client, "'client' must be present");
+    Preconditions.checkState(lowWaterMark >= 0, "'lowWaterMark' must not be negative");
+    Preconditions.checkState(batchSize > 0, "'batchSize' must be greater than zero");
+
+    this.client = client;
+    this.index = index;
+    this.nextValue = firstValue;
+    this.lowWaterMark = lowWaterMark;
+    this.batchSize = batchSize;
+
+  }
+
+  /**
+   * <p>Start filling the pool in the background</p>
+   */
+  public void start() {
+    refillIfRequired();
+  }
+
+  /**
+   * <p>Take the next address from the pool, waiting for a refill if necessary</p>
+   *
+   * @param duration The maximum time to wait
+   * @param timeUnit The time unit
+   *
+   * @return The next address in base58 encoding (absent if none arrived in time)
+   */
+  public Optional<String> take(long duration, TimeUnit timeUnit) {
+
+    refillIfRequired();
+
+    try {
+      return Optional.fromNullable(addresses.poll(duration, timeUnit));
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      // Taking the address may have crossed the low water mark
+      refillIfRequired();
+    }
+
+  }
+
+  /**
+   * @return The number of addresses currently available (approximate during a refill)
+   */
+  public int size() {
+    return addresses.size();
+  }
+
+  /**
+   * @return True if a refill is in progress
+   */
+  public boolean isRefilling() {
+    return isRefilling.get();
+  }
+
+  /**
+   * @return The first key pair number that has not yet been added to the pool
+   */
+  public int getNextValue() {
+    return nextValue;
+  }
+
+  /**
+   * <p>Provide a clock other than the system clock for the backoff (e.g. a VirtualClock in tests)</p>
+   *
+   * @param clock The clock
+   */
+  public void setClock(Clock clock) {
+    Preconditions.checkNotNull(clock, "'clock' must be present");
+    this.clock = clock;
+  }
+
+  /**
+   * <p>Stop any further refills (the client is not closed)</p>
+   */
+  public void close() {
+    refillExecutorService.shutdownNow();
+  }
+
+  /**
+   * <p>Schedule a refill if the pool is below the low water mark, no refill is in progress and the pool is not
+   * backing off after a failed refill</p>
+   */
+  private void refillIfRequired() {
+
+    if (addresses.size() >= lowWaterMark) {
+      return;
+    }
+    if (isBackingOff && clock.nanoTime() - nextAttemptNanos < 0) {
+      return;
+    }
+    if (!isRefilling.compareAndSet(false, true)) {
+      return;
+    }
+
+    refillExecutorService.submit(new Runnable() {
+      @Override
+      public void run() {
+        int addressCount = 0;
+        try {
+          int firstValue = nextValue;
+
+          log.debug("Refilling address pool from value {}", firstValue);
+          RefillSink sink = new RefillSink();
+          client.getAddresses(index, firstValue, batchSize, sink);
+          addressCount = sink.addressCount;
+
+          // Resume from the first missing key pair number
+          nextValue = firstValue + addressCount;
+          if (addressCount < batchSize) {
+            log.warn("Address pool refill provided {} of {} addresses", addressCount, batchSize);
+          }
+        } catch (RuntimeException e) {
+          log.error("Address pool refill failed", e);
+        } finally {
+          updateBackoff(addressCount);
+          isRefilling.set(false);
+        }
+      }
+    });
+
+  }
+
+  /**
+   * <p>Back off after a refill that provided no addresses and stop backing off after one that did</p>
+   *
+   * @param addressCount The number of addresses the refill provided
+   */
+  private void updateBackoff(int addressCount) {
+
+    if (addressCount > 0) {
+      backoffMillis = 0;
+      isBackingOff = false;
+      return;
+    }
+
+    backoffMillis = backoffMillis == 0 ? INITIAL_BACKOFF_MILLIS : Math.min(2 * backoffMillis, MAX_BACKOFF_MILLIS);
+    nextAttemptNanos = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+    isBackingOff = true;
+    log.debug("Address pool backing off for {} ms", backoffMillis);
+  }
+
+  /**
+   * <p>Sink to provide the following to a refill:</p>
+   * <ul>
+   * <li>Streaming of the unbroken run of Address responses into the pool as they arrive</li>
+   * </ul>
+   * <p>The client only calls put() on the refill thread.</p>
+   */
+  private class RefillSink extends LinkedBlockingQueue<TrezorEvent> {
+
+    private int addressCount = 0;
+    private boolean isBroken = false;
+
+    @Override
+    public void put(TrezorEvent event) {
+
+      if (!isBroken && event.protocolMessageType().isPresent() && MessageType.ADDRESS.equals(event.protocolMessageType().get())) {
+        addresses.add(((TrezorMessage.Address) event.protocolMessage().get()).getAddress());
+        addressCount++;
+        return;
+      }
+
+      // A refusal or system event (already reported by the client) ends the run
+      if (!isBroken) {
+        log.debug("Address pool refill stopped by '{}'", event.protocolMessageType().isPresent() ? event.protocolMessageType().get().name() : event.eventType().name());
+      }
+      isBroken = true;
+    }
+
+    @Override
+    public boolean offer(TrezorEvent event) {
+      put(event);
+      return true;
+    }
+  }
+
+}
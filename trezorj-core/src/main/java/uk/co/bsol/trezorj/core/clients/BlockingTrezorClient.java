@@ -13,9 +13,16 @@ import org.slf4j.LoggerFactory;
 import uk.co.bsol.trezorj.core.Trezor;
 import uk.co.bsol.trezorj.core.TrezorEvent;
 import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.audit.SigningJournal;
+import uk.co.bsol.trezorj.core.audit.SigningRecord;
 import uk.co.bsol.trezorj.core.events.TrezorEvents;
 import uk.co.bsol.trezorj.core.protobuf.MessageType;
 import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.tracing.Span;
+import uk.co.bsol.trezorj.core.tracing.Tracer;
+import uk.co.bsol.trezorj.core.utils.Clock;
+import uk.co.bsol.trezorj.core.utils.SharedSecureRandom;
+import uk.co.bsol.trezorj.core.utils.SystemClock;
 import uk.co.bsol.trezorj.core.utils.TrezorMessageUtils;
 
 import java.io.ByteArrayOutputStream;
@@ -26,6 +33,7 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * <p>Client to provide the following to applications:</p>
@@ -34,6 +42,11 @@ import java.util.concurrent.TimeUnit;
  * </ul>
  * <p>This is intended as a high level API to the Trezor device. Developers who need more control over the
  * responses and events are advised to study the examples module.</p>
+ * <p>Each conversation with the device (a single request or a multi-message exchange such as signing) holds
+ * a conversation lock so that background services (e.g. an {@link AddressPool}) can safely share the client.</p>
+ * <p>If a {@link ReconnectPolicy} is provided the client is supervised: an unexpected disconnect or failure
+ * triggers a reconnect with backoff and the session is resumed with the same session ID. An idempotent request
+ * (see {@link MessageType#isIdempotent()}) that was in flight is sent again so the caller sees a delayed response.</p>
  * <p>Example:</p>
  * <pre>
  * // Create a socket based Trezor client with blocking methods
@@ -60,15 +73,45 @@ public class BlockingTrezorClient implements TrezorClient {
   private static final Logger log = LoggerFactory.getLogger(BlockingTrezorClient.class);
   private static final int MIN_ENTROPY = 256;
 
+  /**
+   * The maximum number of requests in flight during a pipelined operation (kept well within the listener queue)
+   */
+  public static final int MAX_PIPELINE_DEPTH = 8;
+
+  /**
+   * How long a response to a request that timed out is still expected before it is assumed lost
+   */
+  public static final long LATE_RESPONSE_WINDOW_MILLIS = 60000;
+
   private final Trezor trezor;
-  private boolean isTrezorValid = false;
+
+  // Read without the conversation lock (e.g. by a heartbeat)
+  private volatile boolean isTrezorValid = false;
 
   private BlockingQueue<TrezorEvent> trezorEventQueue;
   private ExecutorService trezorEventExecutorService = Executors.newSingleThreadExecutor();
-  private boolean isSessionIdValid = true;
+  private volatile boolean isSessionIdValid = true;
   private final ByteString sessionId;
-  private final SecureRandom secureRandom = new SecureRandom();
+  private final SecureRandom secureRandom = SharedSecureRandom.getInstance();
+  private Optional<EntropyPool> entropyPoolOptional = Optional.absent();
+  private FeaturesCache featuresCache = FeaturesCache.getDefaultInstance();
+  private Optional<ReconnectPolicy> reconnectPolicyOptional = Optional.absent();
+  private final RoundTripStatistics roundTripStatistics = new RoundTripStatistics();
+  private Clock clock = SystemClock.getDefaultInstance();
+  private Optional<SigningJournal> signingJournalOptional = Optional.absent();
+
+  // Responses still due for requests that timed out (guarded by the conversation lock)
+  private int lateResponseCount = 0;
+  private long lateResponseDeadlineNanos = 0;
+
+  // Read once per device for the signing journal
+  private Optional<ByteString> deviceUuidOptional = Optional.absent();
 
+  // Updated whenever a response arrives so that a heartbeat can stay quiet during normal traffic
+  private volatile long lastActivityNanos = clock.nanoTime();
+
+  // Serialises conversations with the device across threads
+  private final ReentrantLock conversationLock = new ReentrantLock();
 
   /**
    * <p>Reduced visibility constructor since applications should use the static builder methods</p>
@@ -91,7 +134,8 @@ public class BlockingTrezorClient implements TrezorClient {
   public void close() {
     isSessionIdValid = false;
     isTrezorValid = false;
-    trezor.close();
+    // The device may already have been closed by a failed reconnect
+    closeTrezorQuietly();
     trezorEventExecutorService.shutdownNow();
   }
 
@@ -108,9 +152,54 @@ public class BlockingTrezorClient implements TrezorClient {
     return sendDefaultBlockingMessage(TrezorMessage.Ping.getDefaultInstance());
   }
 
+  /**
+   * <p>Send the Ping message to the device only if no other conversation is in progress (e.g. signing)</p>
+   *
+   * @return The response from the device (absent if the device is busy, DEVICE_DISCONNECTED if the client is not
+   *         valid or loses the device during the Ping)
+   */
+  public Optional<TrezorEvent> pingIfIdle() {
+
+    if (!conversationLock.tryLock()) {
+      return Optional.absent();
+    }
+    try {
+      if (isTrezorValid && isSessionIdValid) {
+        return Optional.of(ping());
+      }
+    } catch (IllegalStateException e) {
+      log.debug("Ping failed: {}", e.getMessage());
+    } finally {
+      conversationLock.unlock();
+    }
+
+    return Optional.of(TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_DISCONNECTED));
+  }
+
+  /**
+   * <p>Handle a device that a heartbeat has found to be unresponsive as a lost connection (reconnect if
+   * supervised, otherwise close). Nothing is done during a conversation since it will find out for itself.</p>
+   */
+  void onUnresponsive() {
+
+    if (!conversationLock.tryLock()) {
+      return;
+    }
+    try {
+      if (isTrezorValid) {
+        handleTrezorEvent(TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_UNRESPONSIVE));
+      }
+    } finally {
+      conversationLock.unlock();
+    }
+  }
+
   /**
    * <p>Send the Initialize message to the device. This initiates the session using a unique session ID for this
    * client instance.</p>
+   * <p>If the Features for this device and session ID are already cached (e.g. a repeated initialize, or the first
+   * initialize after a reconnect since the reconnect resumes the session and caches the Features it receives) then
+   * the cached Features are returned without contacting the device.</p>
    * <p>Expected response events are:</p>
    * <ul>
    * <li>Features containing the available feature set</li>
@@ -119,12 +208,84 @@ public class BlockingTrezorClient implements TrezorClient {
    * @return The response from the device (may take up to 2s to perform this operation)
    */
   public TrezorEvent initialize() {
-    return sendBlockingMessage(TrezorMessage.Initialize
+
+    Optional<TrezorMessage.Features> featuresOptional = featuresCache.get(trezor.getDeviceId(), sessionId);
+    if (featuresOptional.isPresent()) {
+      log.debug("Using cached features. Skipping initialize.");
+      return TrezorEvents.newProtocolEvent(MessageType.FEATURES, featuresOptional.get());
+    }
+
+    TrezorEvent event = sendBlockingMessage(TrezorMessage.Initialize
       .newBuilder()
       .setSessionId(sessionId)
       .build(),
       2, TimeUnit.SECONDS
     );
+
+    if (event.protocolMessageType().isPresent() && MessageType.FEATURES.equals(event.protocolMessageType().get())) {
+      featuresCache.put(trezor.getDeviceId(), (TrezorMessage.Features) event.protocolMessage().get());
+    }
+
+    return event;
+  }
+
+  /**
+   * <p>Provide the Features for this device and session, initializing only if they are not already cached</p>
+   *
+   * @return The Features (absent if the device did not provide them)
+   */
+  public Optional<TrezorMessage.Features> getFeatures() {
+
+    TrezorEvent event = initialize();
+    if (event.protocolMessageType().isPresent() && MessageType.FEATURES.equals(event.protocolMessageType().get())) {
+      return Optional.of((TrezorMessage.Features) event.protocolMessage().get());
+    }
+
+    return Optional.absent();
+  }
+
+  /**
+   * @return The maximum fee per Kb in satoshis (answered locally once the Features are cached)
+   */
+  public Optional<Long> getMaxFeeKb() {
+    Optional<TrezorMessage.Features> featuresOptional = getFeatures();
+    if (featuresOptional.isPresent() && featuresOptional.get().hasMaxfeeKb()) {
+      return Optional.of(featuresOptional.get().getMaxfeeKb());
+    }
+    return Optional.absent();
+  }
+
+  /**
+   * @return True if the device will send an OtpRequest on important actions (answered locally once the Features are cached)
+   */
+  public Optional<Boolean> hasOtp() {
+    Optional<TrezorMessage.Features> featuresOptional = getFeatures();
+    if (featuresOptional.isPresent() && featuresOptional.get().hasHasOtp()) {
+      return Optional.of(featuresOptional.get().getHasOtp());
+    }
+    return Optional.absent();
+  }
+
+  /**
+   * @return True if the device will send a PinRequest on important actions (answered locally once the Features are cached)
+   */
+  public Optional<Boolean> hasPin() {
+    Optional<TrezorMessage.Features> featuresOptional = getFeatures();
+    if (featuresOptional.isPresent() && featuresOptional.get().hasPin()) {
+      return Optional.of(featuresOptional.get().getPin());
+    }
+    return Optional.absent();
+  }
+
+  /**
+   * @return The key generation algorithm in use (answered locally once the Features are cached)
+   */
+  public Optional<TrezorMessage.Algorithm> getAlgorithm() {
+    Optional<TrezorMessage.Features> featuresOptional = getFeatures();
+    if (featuresOptional.isPresent() && featuresOptional.get().hasAlgo()) {
+      return Optional.of(featuresOptional.get().getAlgo());
+    }
+    return Optional.absent();
   }
 
   /**
@@ -245,6 +406,28 @@ public class BlockingTrezorClient implements TrezorClient {
     return sendDefaultBlockingMessage(TrezorMessage.GetEntropy.getDefaultInstance());
   }
 
+  /**
+   * <p>Send the GetEntropy message to the device requesting a specific amount of random data from its internal
+   * hardware random number generator.</p>
+   * <p>Expected response events are:</p>
+   * <ul>
+   * <li>Entropy (with data) if the operation succeeded</li>
+   * <li>OptRequest if the one-time password is needed</li>
+   * <li>PinRequest if the PIN is needed</li>
+   * <li>Failure if the operation was unsuccessful</li>
+   * </ul>
+   *
+   * @param size The number of bytes of random data required
+   *
+   * @return The response from the device
+   */
+  public TrezorEvent getEntropy(int size) {
+    return sendDefaultBlockingMessage(TrezorMessage.GetEntropy
+      .newBuilder()
+      .setSize(size)
+      .build());
+  }
+
   /**
    * <p>Send the SetMaxFeeKb message to the device. The device will respond by updating its maximum
    * fee to that provided. This level is used to provide internal sanity checking during transaction signing
@@ -267,11 +450,16 @@ public class BlockingTrezorClient implements TrezorClient {
       satoshisPerKb >= 0L && satoshisPerKb < 10000000L,
       "Max fee per Kb is outside a reasonable range");
 
-    return sendDefaultBlockingMessage(TrezorMessage.SetMaxFeeKb
+    TrezorEvent event = sendDefaultBlockingMessage(TrezorMessage.SetMaxFeeKb
       .newBuilder()
       .setMaxfeeKb(satoshisPerKb)
       .build()
     );
+
+    // The cached Features no longer reflect the device
+    featuresCache.invalidate(trezor.getDeviceId());
+
+    return event;
   }
 
   /**
@@ -313,10 +501,100 @@ public class BlockingTrezorClient implements TrezorClient {
    * @return The response from the device
    */
   public TrezorEvent getAddress(int index, int value) {
-    return sendDefaultBlockingMessage(TrezorMessage.GetAddress
-      .newBuilder()
-      .setAddressN(index, value)
-      .build());
+    return sendDefaultBlockingMessage(newGetAddress(index, value));
+  }
+
+  /**
+   * <p>Send a series of GetAddress messages to the device for consecutive key pair numbers. The requests are
+   * pipelined (up to {@link #MAX_PIPELINE_DEPTH} in flight) so that the device is never idle waiting for the
+   * next request and the responses are streamed into the sink in request order as they arrive.</p>
+   * <p>Expected response events placed in the sink are:</p>
+   * <ul>
+   * <li>Address (with data) for each successful request</li>
+   * <li>OptRequest, PinRequest or Failure if the device refused (no further requests are sent)</li>
+   * <li>DEVICE_EOF if the device stopped responding (the operation ends and any responses that arrive later
+   * are discarded rather than taken as the answer to a later request)</li>
+   * </ul>
+   *
+   * @param index      The index position of the generated external public key (account i from BIP 0032)
+   * @param firstValue The first key pair number (k'th key from BIP 0032)
+   * @param count      The number of consecutive key pair numbers to request
+   * @param sink       The queue that will receive the response events in request order
+   *
+   * @return The number of Address responses placed in the sink
+   */
+  public int getAddresses(int index, int firstValue, int count, BlockingQueue<TrezorEvent> sink) {
+
+    Preconditions.checkState(count >= 0, "'count' must not be negative");
+    Preconditions.checkNotNull(sink, "'sink' must be present");
+
+    conversationLock.lock();
+    try {
+
+      Preconditions.checkState(isTrezorValid, "Trezor device is not valid. Try connecting or start a new session after a disconnect.");
+      Preconditions.checkState(isSessionIdValid, "An old session ID must be discarded. Create a new instance.");
+
+      // Check for any new events
+      TrezorEvent event = pollResponse(10, TimeUnit.MILLISECONDS);
+      if (event != null) {
+        // Spontaneous event has arrived
+        handleTrezorEvent(event);
+      }
+
+      if (!isTrezorValid) {
+        throw new IllegalStateException("Trezor is not valid");
+      }
+
+      int sent = 0;
+      int received = 0;
+      int addressCount = 0;
+      boolean refused = false;
+
+      while (received < sent || (!refused && sent < count)) {
+
+        // Keep the pipeline full
+        while (!refused && sent < count && sent - received < MAX_PIPELINE_DEPTH) {
+          trezor.sendMessage(newGetAddress(index, firstValue + sent));
+          sent++;
+        }
+
+        // Block until the next response arrives
+        event = pollResponse(1, TimeUnit.SECONDS);
+        if (event == null) {
+          // Timeout so unexpected EOF (the outstanding responses are discarded if they arrive later)
+          log.warn("Address pipeline timed out with {} requests outstanding", sent - received);
+          expectLateResponses(sent - received);
+          sink.put(TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_EOF));
+          break;
+        }
+
+        if (!event.protocolMessage().isPresent()) {
+          // System event (e.g. disconnect) so the pipeline cannot continue
+          handleTrezorEvent(event);
+          sink.put(event);
+          break;
+        }
+
+        received++;
+        lastActivityNanos = clock.nanoTime();
+        sink.put(event);
+
+        if (MessageType.ADDRESS.equals(event.protocolMessageType().get())) {
+          addressCount++;
+        } else {
+          // Stop sending but continue to drain the outstanding responses
+          log.warn("Address pipeline refused at value {} with '{}'", firstValue + received - 1, event.protocolMessageType().get().name());
+          refused = true;
+        }
+      }
+
+      return addressCount;
+
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      conversationLock.unlock();
+    }
   }
 
   /**
@@ -359,6 +637,9 @@ public class BlockingTrezorClient implements TrezorClient {
 
     secureErase(seed);
 
+    // The cached Features no longer reflect the device
+    featuresCache.invalidate(trezor.getDeviceId());
+
     return event;
 
   }
@@ -394,6 +675,9 @@ public class BlockingTrezorClient implements TrezorClient {
 
     secureErase(entropy);
 
+    // The cached Features no longer reflect the device
+    featuresCache.invalidate(trezor.getDeviceId());
+
     return event;
 
   }
@@ -416,15 +700,50 @@ public class BlockingTrezorClient implements TrezorClient {
    */
   public Optional<Transaction> signTx(Transaction tx) {
 
+    Span span = Tracer.getDefaultInstance().startSpan("client.signTx");
+
+    // Hold the device for the entire conversation
+    conversationLock.lock();
+    try {
+      if (!signingJournalOptional.isPresent()) {
+        return signTxConversation(tx, Optional.<SigningRecord.Builder>absent());
+      }
+
+      SigningRecord.Builder recordBuilder = SigningRecord.newBuilder()
+        .setDeviceId(trezor.getDeviceId())
+        .setDeviceUuid(getDeviceUuid());
+      Optional<Transaction> signedTx = Optional.absent();
+      try {
+        signedTx = signTxConversation(tx, Optional.of(recordBuilder));
+      } finally {
+        journal(recordBuilder.build(signedTx.isPresent()));
+      }
+      return signedTx;
+
+    } finally {
+      conversationLock.unlock();
+      span.end();
+    }
+
+  }
+
+  /**
+   * <p>Work through the SignTx conversation (the conversation lock must be held)</p>
+   *
+   * @param tx                    The Bitcoinj transaction providing all the necessary information (will be modified)
+   * @param recordBuilderOptional The journal record to fill in with the messages exchanged (if journaling)
+   *
+   * @return The signed transaction from the device (if present)
+   */
+  private Optional<Transaction> signTxConversation(Transaction tx, Optional<SigningRecord.Builder> recordBuilderOptional) {
+
     byte[] entropy = new byte[MIN_ENTROPY];
 
     int inputsCount = tx.getInputs().size();
     int outputsCount = tx.getOutputs().size();
 
-    int inputIndex = 0;
-    int outputIndex = 0;
 
-    secureRandom.nextBytes(entropy);
+    fillEntropy(entropy);
 
     Preconditions.checkState(
       entropy.length >= MIN_ENTROPY,
@@ -447,95 +766,86 @@ public class BlockingTrezorClient implements TrezorClient {
 
     while (!finished) {
 
-      // Check the response is a transaction request
-      if (TrezorEventType.PROTOCOL_MESSAGE.equals(event.eventType())) {
-        if (MessageType.TX_REQUEST.equals(event.protocolMessageType().get())) {
-
-          // Examine the response (it may contain signature information in response to a TxOutput etc)
-          TrezorMessage.TxRequest txRequest = (TrezorMessage.TxRequest) event.protocolMessage().get();
-
-          // Check for a serialized transaction
-          if (txRequest.getSerializedTx() != null) {
-            try {
-              trezorSerializedTx.write(txRequest.getSerializedTx().toByteArray());
-            } catch (IOException e) {
-              throw new IllegalStateException(
-                "Could not read serialized transaction at request index " + txRequest
-                  .getRequestIndex(), e);
-            }
-          }
-
-          // Check for a signature
-          if (txRequest.getSignedIndex() >= 0 && txRequest.getSignature() != null) {
-            try {
-              ByteArrayOutputStream signature = new ByteArrayOutputStream();
-              signature.write(txRequest.getSignature().toByteArray());
-              trezorSignatures.add(txRequest.getSignedIndex(), signature);
-            } catch (IOException e) {
-              throw new IllegalStateException(
-                "Could not read signature for signed index " + txRequest.getSignedIndex(),
-                e);
-            }
-          }
-
-          // Check for completion
-          if (txRequest.getRequestIndex() >= 0) {
-
-            // Require txInput/txOutput from transaction
-            switch (txRequest.getRequestType()) {
-              case TXINPUT:
-                // Provide the requested input
-                TrezorMessage.TxInput txInput = TrezorMessageUtils.newTxInput(tx, txRequest.getRequestIndex());
-
-                // Allow plenty of time for the signing operation
-                event = sendBlockingMessage(txInput, 30, TimeUnit.SECONDS);
-
-                if (event.eventType().equals(TrezorEventType.PROTOCOL_MESSAGE)) {
+      // Anything other than a TxRequest ends the conversation (e.g. Failure or a disconnect)
+      if (!TrezorEventType.PROTOCOL_MESSAGE.equals(event.eventType()) || !MessageType.TX_REQUEST.equals(event.protocolMessageType().get())) {
+        log.warn("Transaction signing failed with event type '{}'", event.eventType().name());
+        return Optional.absent();
+      }
 
-                  // Check for a TxRequest which can be processed as part of the overall loop
-                  // in order to extract signature information etc
-                  if (MessageType.TX_REQUEST.equals(event.protocolMessageType().get())) {
-                    continue;
-                  }
+      // Examine the response (it may contain signature information in response to a TxOutput etc)
+      TrezorMessage.TxRequest txRequest = (TrezorMessage.TxRequest) event.protocolMessage().get();
 
-                }
+      // Check for a serialized transaction
+      if (txRequest.hasSerializedTx()) {
+        try {
+          trezorSerializedTx.write(txRequest.getSerializedTx().toByteArray());
+          if (recordBuilderOptional.isPresent()) {
+            recordBuilderOptional.get().appendSerializedTx(txRequest.getSerializedTx());
+          }
+        } catch (IOException e) {
+          throw new IllegalStateException(
+            "Could not read serialized transaction at request index " + txRequest
+              .getRequestIndex(), e);
+        }
+      }
 
-                log.warn("Transaction signing failed on input index {} with event type '{}'", inputIndex, event.eventType().name());
+      // Check for a signature
+      if (txRequest.hasSignedIndex() && txRequest.getSignedIndex() >= 0 && txRequest.hasSignature()) {
+        try {
+          ByteArrayOutputStream signature = new ByteArrayOutputStream();
+          signature.write(txRequest.getSignature().toByteArray());
+          trezorSignatures.add(txRequest.getSignedIndex(), signature);
+          if (recordBuilderOptional.isPresent()) {
+            recordBuilderOptional.get().setSignature(txRequest.getSignedIndex(), txRequest.getSignature());
+          }
+        } catch (IOException e) {
+          throw new IllegalStateException(
+            "Could not read signature for signed index " + txRequest.getSignedIndex(),
+            e);
+        }
+      }
 
-                return Optional.absent();
+      // Check for completion (an absent request index also indicates completion)
+      if (txRequest.hasRequestIndex() && txRequest.getRequestIndex() >= 0) {
 
-              case TXOUTPUT:
-                // Provide the requested output
-                TrezorMessage.TxOutput txOutput = TrezorMessageUtils.newTxOutput(tx, txRequest.getRequestIndex());
+        // Require txInput/txOutput from transaction
+        switch (txRequest.getRequestType()) {
+          case TXINPUT:
+            // Provide the requested input
+            TrezorMessage.TxInput txInput = TrezorMessageUtils.newTxInput(tx, txRequest.getRequestIndex());
+            if (recordBuilderOptional.isPresent()) {
+              recordBuilderOptional.get().addInput(txInput);
+            }
 
-                // Allow plenty of time for the signing operation
-                event = sendBlockingMessage(txOutput, 30, TimeUnit.SECONDS);
+            // Allow plenty of time for the signing operation
+            event = sendBlockingMessage(txInput, 30, TimeUnit.SECONDS);
 
-                if (event.eventType().equals(TrezorEventType.PROTOCOL_MESSAGE)) {
+            // A TxRequest is examined (and anything else ends the conversation) at the top of the loop
+            continue;
 
-                  // Check for a TxRequest which can be processed as part of the overall loop
-                  // in order to extract signature information etc
-                  if (MessageType.TX_REQUEST.equals(event.protocolMessageType().get())) {
-                    continue;
-                  }
-                }
+          case TXOUTPUT:
+            // Provide the requested output
+            TrezorMessage.TxOutput txOutput = TrezorMessageUtils.newTxOutput(tx, txRequest.getRequestIndex());
+            if (recordBuilderOptional.isPresent()) {
+              recordBuilderOptional.get().addOutput(txOutput);
+            }
 
-                log.warn("Transaction signing failed on output index {} with event type '{}'", outputIndex, event.eventType().name());
+            // Allow plenty of time for the signing operation
+            event = sendBlockingMessage(txOutput, 30, TimeUnit.SECONDS);
 
-                return Optional.absent();
+            // A TxRequest is examined (and anything else ends the conversation) at the top of the loop
+            continue;
 
-              default:
-                throw new IllegalStateException("Unknown request type " + txRequest.getRequestType().name());
-            }
-          } else {
+          default:
+            throw new IllegalStateException("Unknown request type " + txRequest.getRequestType().name());
+        }
+      } else {
 
-            log.info("Completed transaction signing");
+        log.info("Completed transaction signing");
 
-            // This should be the end of building the transaction
-            finished = true;
+        // This should be the end of building the transaction
+        finished = true;
 
-          }
-        }
       }
     }
 
@@ -625,14 +935,41 @@ public class BlockingTrezorClient implements TrezorClient {
    * @throws IllegalStateException If anything goes wrong
    */
   private TrezorEvent sendBlockingMessage(Message trezorMessage, int duration, TimeUnit timeUnit) {
+    return sendBlockingMessage(trezorMessage, duration, timeUnit, true);
+  }
 
-    Preconditions.checkState(isTrezorValid, "Trezor device is not valid. Try connecting or start a new session after a disconnect.");
-    Preconditions.checkState(isSessionIdValid, "An old session ID must be discarded. Create a new instance.");
+  /**
+   * <p>Blocking method for synchronous communication with the device</p>
+   *
+   * @param trezorMessage The Trezor message
+   * @param allowReplay   True if an idempotent message may be sent again following a reconnect
+   *
+   * @return The Trezor event
+   *
+   * @throws IllegalStateException If anything goes wrong
+   */
+  private TrezorEvent sendBlockingMessage(Message trezorMessage, int duration, TimeUnit timeUnit, boolean allowReplay) {
+
+    Tracer tracer = Tracer.getDefaultInstance();
+    Span span = tracer.startSpan("client.request");
+    if (span.isRecording()) {
+      span.setDetail(MessageType.getMessageType(trezorMessage).name());
+    }
 
+    conversationLock.lock();
     try {
 
+      Preconditions.checkState(isTrezorValid, "Trezor device is not valid. Try connecting or start a new session after a disconnect.");
+      Preconditions.checkState(isSessionIdValid, "An old session ID must be discarded. Create a new instance.");
+
       // Check for any new events
-      TrezorEvent event = getTrezorEventQueue().poll(10, TimeUnit.MILLISECONDS);
+      TrezorEvent event;
+      Span drainSpan = tracer.startSpan("client.drain");
+      try {
+        event = pollResponse(10, TimeUnit.MILLISECONDS);
+      } finally {
+        drainSpan.end();
+      }
       if (event != null) {
         // Spontaneous event has arrived
         handleTrezorEvent(event);
@@ -643,13 +980,25 @@ public class BlockingTrezorClient implements TrezorClient {
       }
 
       trezor.sendMessage(trezorMessage);
+      long sentNanos = clock.nanoTime();
 
       // Block until response arrives for the specified duration
-      event = getTrezorEventQueue().poll(duration, timeUnit);
+      Span waitSpan = tracer.startSpan("client.wait");
+      try {
+        event = pollResponse(duration, timeUnit);
+      } finally {
+        waitSpan.end();
+      }
       if (event != null) {
+        lastActivityNanos = clock.nanoTime();
+        if (event.protocolMessage().isPresent() && MessageType.getMessageType(trezorMessage).isIdempotent()) {
+          // Only requests that never wait for the user give a meaningful round trip time
+          roundTripStatistics.record(lastActivityNanos - sentNanos);
+        }
         handleTrezorEvent(event);
       } else {
-        // Timeout so unexpected EOF
+        // Timeout so unexpected EOF (the response is discarded if it arrives later)
+        expectLateResponses(1);
         return TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_EOF);
       }
 
@@ -657,16 +1006,84 @@ public class BlockingTrezorClient implements TrezorClient {
         throw new IllegalStateException("Trezor is not valid");
       }
 
+      // A supervised client will have reconnected to get here
+      if (isConnectionLost(event) && allowReplay && MessageType.getMessageType(trezorMessage).isIdempotent()) {
+        log.info("Replaying '{}' after reconnect", trezorMessage.getClass().getSimpleName());
+        return sendBlockingMessage(trezorMessage, duration, timeUnit, false);
+      }
+
       return event;
 
     } catch (InterruptedException e) {
       throw new IllegalStateException(e);
+    } finally {
+      conversationLock.unlock();
+      span.end();
     }
 
   }
 
+  /**
+   * @return The UUID of the device (empty if it could not be read, in which case it is not asked again until the
+   * device reconnects)
+   */
+  private ByteString getDeviceUuid() {
+
+    if (!deviceUuidOptional.isPresent()) {
+      TrezorEvent event = sendDefaultBlockingMessage(TrezorMessage.GetUUID.getDefaultInstance());
+      if (!event.protocolMessageType().isPresent() || !MessageType.UUID.equals(event.protocolMessageType().get())) {
+        log.warn("Device UUID is not available for the signing journal");
+        // Cache the miss so that every journaled signing does not wait on the device again
+        deviceUuidOptional = Optional.of(ByteString.EMPTY);
+      } else {
+        deviceUuidOptional = Optional.of(((TrezorMessage.UUID) event.protocolMessage().get()).getUUID());
+      }
+    }
+
+    return deviceUuidOptional.get();
+  }
+
+  /**
+   * <p>Append a record to the signing journal without failing the signing operation</p>
+   *
+   * @param record The record of the SignTx conversation
+   */
+  private void journal(SigningRecord record) {
+
+    try {
+      long sequence = signingJournalOptional.get().append(record);
+      log.debug("Journaled signing as record {}", sequence);
+    } catch (RuntimeException e) {
+      log.error("Signing could not be journaled", e);
+    }
+  }
+
+  /**
+   * @param index The index position of the generated external public key (account i from BIP 0032)
+   * @param value The key pair number (k'th key from BIP 0032)
+   *
+   * @return A new GetAddress message
+   */
+  private TrezorMessage.GetAddress newGetAddress(int index, int value) {
+    return TrezorMessage.GetAddress
+      .newBuilder()
+      .addAddressN(index)
+      .addAddressN(value)
+      .build();
+  }
+
   private void handleTrezorEvent(TrezorEvent event) {
 
+    Span span = Tracer.getDefaultInstance().startSpan("client.handle");
+    try {
+      processTrezorEvent(event);
+    } finally {
+      span.end();
+    }
+  }
+
+  private void processTrezorEvent(TrezorEvent event) {
+
     // Decode into a message type for use with a switch
     Optional<MessageType> messageType = event.protocolMessageType();
     if (event.protocolMessage().isPresent()) {
@@ -686,9 +1103,18 @@ public class BlockingTrezorClient implements TrezorClient {
       }
 
     } else {
-      if (
-        TrezorEventType.DEVICE_DISCONNECTED.equals(event.eventType()) ||
-          TrezorEventType.DEVICE_FAILURE.equals(event.eventType())) {
+      if (isConnectionLost(event)) {
+
+        // The device may have been reset or replaced (a successful reconnect caches the Features it resumes with)
+        featuresCache.invalidate(trezor.getDeviceId());
+        deviceUuidOptional = Optional.absent();
+
+        // Nothing more will arrive on the old connection
+        lateResponseCount = 0;
+
+        if (reconnectPolicyOptional.isPresent() && reconnect()) {
+          return;
+        }
 
         // Stop further processing
         close();
@@ -697,17 +1123,252 @@ public class BlockingTrezorClient implements TrezorClient {
     }
   }
 
+  /**
+   * <p>Poll for the next event, discarding any late responses to requests that timed out (the conversation lock
+   * must be held)</p>
+   *
+   * @param duration The maximum time to wait
+   * @param timeUnit The time unit
+   *
+   * @return The next event or null if the timeout expired
+   *
+   * @throws InterruptedException If interrupted while waiting
+   */
+  private TrezorEvent pollResponse(long duration, TimeUnit timeUnit) throws InterruptedException {
+
+    long deadlineNanos = clock.nanoTime() + timeUnit.toNanos(duration);
+    while (true) {
+      TrezorEvent event = clock.poll(getTrezorEventQueue(), Math.max(0, deadlineNanos - clock.nanoTime()), TimeUnit.NANOSECONDS);
+      if (event == null || !isLateResponse(event)) {
+        return event;
+      }
+      log.debug("Discarding late '{}' from a request that timed out", event.protocolMessageType().get().name());
+    }
+  }
+
+  /**
+   * <p>The device answers requests in order so the next responses after a timeout belong to the timed out
+   * requests (the conversation lock must be held)</p>
+   *
+   * @param count The number of requests that timed out
+   */
+  private void expectLateResponses(int count) {
+    lateResponseCount += count;
+    lateResponseDeadlineNanos = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LATE_RESPONSE_WINDOW_MILLIS);
+  }
+
+  /**
+   * @param event The Trezor event
+   *
+   * @return True if the event is a late response that must be discarded
+   */
+  private boolean isLateResponse(TrezorEvent event) {
+
+    if (lateResponseCount == 0 || !event.protocolMessage().isPresent()) {
+      return false;
+    }
+
+    if (clock.nanoTime() - lateResponseDeadlineNanos > 0) {
+      // The device has dropped them so this is a genuine response
+      log.warn("{} late response(s) did not arrive", lateResponseCount);
+      lateResponseCount = 0;
+      return false;
+    }
+
+    lateResponseCount--;
+    return true;
+  }
+
+  /**
+   * @param event The Trezor event
+   *
+   * @return True if the event indicates the connection to the device has been lost
+   */
+  private boolean isConnectionLost(TrezorEvent event) {
+    return TrezorEventType.DEVICE_DISCONNECTED.equals(event.eventType()) ||
+      TrezorEventType.DEVICE_FAILURE.equals(event.eventType()) ||
+      TrezorEventType.DEVICE_UNRESPONSIVE.equals(event.eventType());
+  }
+
+  /**
+   * <p>Reconnect to the device according to the reconnect policy and resume the session using the same session
+   * ID. The caller must hold the conversation lock.</p>
+   *
+   * @return True if the session was resumed
+   */
+  private boolean reconnect() {
+
+    ReconnectPolicy reconnectPolicy = reconnectPolicyOptional.get();
+
+    try {
+      for (int attempt = 0; attempt < reconnectPolicy.getMaxAttempts(); attempt++) {
+
+        // Discard the old connection and any events it raised
+        closeTrezorQuietly();
+        getTrezorEventQueue().clear();
+
+        long delayMillis = reconnectPolicy.getDelayMillis(attempt);
+        log.info("Reconnect attempt {} in {}ms", attempt + 1, delayMillis);
+        clock.sleep(delayMillis, TimeUnit.MILLISECONDS);
+
+        try {
+          trezor.connect();
+        } catch (RuntimeException e) {
+          log.debug("Reconnect attempt {} failed: {}", attempt + 1, e.getMessage());
+          continue;
+        }
+
+        TrezorEvent event = pollReconnectEvent(1, TimeUnit.SECONDS);
+        if (event == null || !TrezorEventType.DEVICE_CONNECTED.equals(event.eventType())) {
+          continue;
+        }
+
+        // Always resume with the device rather than the cache since it may have restarted
+        trezor.sendMessage(TrezorMessage.Initialize
+          .newBuilder()
+          .setSessionId(sessionId)
+          .build());
+        event = pollReconnectEvent(2, TimeUnit.SECONDS);
+        if (event != null && event.protocolMessageType().isPresent() && MessageType.FEATURES.equals(event.protocolMessageType().get())) {
+          featuresCache.put(trezor.getDeviceId(), (TrezorMessage.Features) event.protocolMessage().get());
+          log.info("Session resumed after {} reconnect attempt(s)", attempt + 1);
+          return true;
+        }
+
+      }
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+
+    log.warn("Unable to reconnect after {} attempts", reconnectPolicy.getMaxAttempts());
+    return false;
+  }
+
+  /**
+   * <p>Poll for the next event on the new connection, skipping the disconnect that the monitor of the old
+   * connection may still be delivering</p>
+   *
+   * @param duration The maximum time to wait
+   * @param timeUnit The time unit
+   *
+   * @return The next event or null if the timeout expired
+   *
+   * @throws InterruptedException If interrupted while waiting
+   */
+  private TrezorEvent pollReconnectEvent(long duration, TimeUnit timeUnit) throws InterruptedException {
+
+    long deadlineNanos = clock.nanoTime() + timeUnit.toNanos(duration);
+    while (true) {
+      TrezorEvent event = clock.poll(getTrezorEventQueue(), Math.max(0, deadlineNanos - clock.nanoTime()), TimeUnit.NANOSECONDS);
+      if (event == null || !TrezorEventType.DEVICE_DISCONNECTED.equals(event.eventType())) {
+        return event;
+      }
+    }
+  }
+
+  /**
+   * <p>Close the device ignoring any failure (it may already be closed)</p>
+   */
+  private void closeTrezorQuietly() {
+    try {
+      trezor.close();
+    } catch (RuntimeException e) {
+      log.debug("Ignoring failure during close: {}", e.getMessage());
+    }
+  }
+
   /**
    * @param size The number of bytes of random data required
    *
-   * @return The random bytes (based on SecureRandom implementation)
+   * @return The random bytes (based on the entropy pool if present, otherwise the SecureRandom implementation)
    */
   public byte[] newEntropy(int size) {
     byte[] entropy = new byte[size];
-    secureRandom.nextBytes(entropy);
+    fillEntropy(entropy);
     return entropy;
   }
 
+  /**
+   * <p>Provide an entropy pool to serve random data without blocking on SecureRandom seeding or the device</p>
+   *
+   * @param entropyPool The entropy pool (typically shared across clients)
+   */
+  public void setEntropyPool(EntropyPool entropyPool) {
+    this.entropyPoolOptional = Optional.fromNullable(entropyPool);
+  }
+
+  /**
+   * <p>Provide a Features cache other than the default shared instance</p>
+   *
+   * @param featuresCache The Features cache
+   */
+  public void setFeaturesCache(FeaturesCache featuresCache) {
+    Preconditions.checkNotNull(featuresCache, "'featuresCache' must be present");
+    this.featuresCache = featuresCache;
+  }
+
+  /**
+   * <p>Record every SignTx conversation in the journal (the device UUID is read once before the first)</p>
+   *
+   * @param signingJournal The signing journal
+   */
+  public void setSigningJournal(SigningJournal signingJournal) {
+    Preconditions.checkNotNull(signingJournal, "'signingJournal' must be present");
+    this.signingJournalOptional = Optional.of(signingJournal);
+  }
+
+  /**
+   * @return The round trip statistics for this device (idempotent requests only)
+   */
+  public RoundTripStatistics getRoundTripStatistics() {
+    return roundTripStatistics;
+  }
+
+  /**
+   * @return The identifier of the device (e.g. "socket:localhost:3000#1")
+   */
+  public String getDeviceId() {
+    return trezor.getDeviceId();
+  }
+
+  /**
+   * @return The number of milliseconds since the last response from the device
+   */
+  public long getIdleMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(clock.nanoTime() - lastActivityNanos);
+  }
+
+  /**
+   * <p>Provide a clock other than the system clock for all timeouts and delays (e.g. a VirtualClock in tests)</p>
+   *
+   * @param clock The clock
+   */
+  public void setClock(Clock clock) {
+    Preconditions.checkNotNull(clock, "'clock' must be present");
+    this.clock = clock;
+    this.lastActivityNanos = clock.nanoTime();
+  }
+
+  /**
+   * <p>Supervise the connection so that an unexpected disconnect results in a reconnect rather than a close</p>
+   *
+   * @param reconnectPolicy The reconnect policy (null to stop supervision)
+   */
+  public void setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+    this.reconnectPolicyOptional = Optional.fromNullable(reconnectPolicy);
+  }
+
+  /**
+   * @param entropy The array to fill with random data
+   */
+  private void fillEntropy(byte[] entropy) {
+    if (entropyPoolOptional.isPresent()) {
+      entropyPoolOptional.get().nextBytes(entropy);
+    } else {
+      secureRandom.nextBytes(entropy);
+    }
+  }
+
   @Override
   public BlockingQueue<TrezorEvent> getTrezorEventQueue() {
     return trezorEventQueue;
@@ -0,0 +1,208 @@
+package uk.co.bsol.trezorj.core.clients;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.utils.SharedSecureRandom;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Pool to provide the following to clients:</p>
+ * <ul>
+ * <li>Random data drawn from the device hardware random number generator mixed with SecureRandom output</li>
+ * <li>Non-blocking service of requests from a lock-free pool that refills itself in the background</li>
+ * </ul>
+ * <p>Large Entropy blocks are fetched from the device on a background thread, combined (XOR) with the same amount
+ * of SecureRandom output and split into fixed size chunks. Callers take whole chunks so that no chunk is ever
+ * served twice. If the pool is exhausted the caller falls back to SecureRandom directly rather than waiting for
+ * the device.</p>
+ * <p>The shared SecureRandom is seeded on the refill thread before the first block is mixed, so once the first
+ * refill after {@link #start()} has completed the fallback never waits. A fallback before then seeds the
+ * SecureRandom on the caller's thread, which can block on the platform entropy source.</p>
+ * <p>Example:</p>
+ * <pre>
+ * EntropyPool entropyPool = new EntropyPool(Optional.of(client), 1024, 64);
+ * entropyPool.start();
+ *
+ * client.setEntropyPool(entropyPool);
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class EntropyPool {
+
+  private static final Logger log = LoggerFactory.getLogger(EntropyPool.class);
+
+  /**
+   * The number of bytes in each pooled chunk
+   */
+  public static final int CHUNK_SIZE = 32;
+
+  private final Optional<BlockingTrezorClient> clientOptional;
+  private final int blockSize;
+  private final int lowWaterMark;
+
+  private final ConcurrentLinkedQueue<byte[]> chunks = new ConcurrentLinkedQueue<byte[]>();
+  private final AtomicInteger chunkCount = new AtomicInteger(0);
+  private final AtomicBoolean isRefilling = new AtomicBoolean(false);
+  private final ExecutorService refillExecutorService = Executors.newSingleThreadExecutor(
+    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("trezorj-entropy-%d").build()
+  );
+
+  private final SecureRandom secureRandom = SharedSecureRandom.getInstance();
+
+  /**
+   * @param clientOptional The blocking client providing hardware entropy (absent for SecureRandom only)
+   * @param blockSize      The number of bytes to request from the device in each refill (multiple of chunk size)
+   * @param lowWaterMark   The number of chunks below which a refill is triggered
+   */
+  public EntropyPool(Optional<BlockingTrezorClient> clientOptional, int blockSize, int lowWaterMark) {
+
+    Preconditions.checkNotNull(clientOptional, "'clientOptional' must be present");
+    Preconditions.checkState(blockSize > 0 && blockSize % CHUNK_SIZE == 0, "'blockSize' must be a positive multiple of " + CHUNK_SIZE);
+    Preconditions.checkState(lowWaterMark >= 0, "'lowWaterMark' must not be negative");
+
+    this.clientOptional = clientOptional;
+    this.blockSize = blockSize;
+    this.lowWaterMark = lowWaterMark;
+
+  }
+
+  /**
+   * <p>Start filling the pool in the background (this also seeds the SecureRandom)</p>
+   */
+  public void start() {
+    refillIfRequired();
+  }
+
+  /**
+   * <p>Fill the given array with random data without blocking on the device</p>
+   *
+   * @param bytes The array to fill
+   */
+  public void nextBytes(byte[] bytes) {
+
+    int offset = 0;
+    while (offset < bytes.length) {
+
+      byte[] chunk = chunks.poll();
+      if (chunk == null) {
+        // Pool exhausted so fall back rather than wait for the device
+        if (!SharedSecureRandom.isSeeded()) {
+          log.warn("Entropy pool used before SecureRandom was seeded. The caller will wait for the seed.");
+        }
+        log.debug("Entropy pool exhausted. Using SecureRandom for {} bytes", bytes.length - offset);
+        byte[] remainder = new byte[bytes.length - offset];
+        secureRandom.nextBytes(remainder);
+        System.arraycopy(remainder, 0, bytes, offset, remainder.length);
+        Arrays.fill(remainder, (byte) 0);
+        break;
+      }
+      chunkCount.decrementAndGet();
+
+      int length = Math.min(CHUNK_SIZE, bytes.length - offset);
+      System.arraycopy(chunk, 0, bytes, offset, length);
+      offset += length;
+
+      // Unused parts of a chunk are discarded
+      Arrays.fill(chunk, (byte) 0);
+    }
+
+    refillIfRequired();
+
+  }
+
+  /**
+   * @return The number of bytes currently available in the pool
+   */
+  public int available() {
+    return chunkCount.get() * CHUNK_SIZE;
+  }
+
+  /**
+   * <p>Stop any further refills and erase the pooled data (the client is not closed)</p>
+   */
+  public void close() {
+
+    refillExecutorService.shutdownNow();
+
+    byte[] chunk;
+    while ((chunk = chunks.poll()) != null) {
+      Arrays.fill(chunk, (byte) 0);
+    }
+    chunkCount.set(0);
+
+  }
+
+  /**
+   * <p>Schedule a refill if the pool is below the low water mark and no refill is in progress</p>
+   */
+  private void refillIfRequired() {
+
+    if (chunkCount.get() >= lowWaterMark || !isRefilling.compareAndSet(false, true)) {
+      return;
+    }
+
+    refillExecutorService.submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          refill();
+        } catch (RuntimeException e) {
+          log.error("Entropy pool refill failed", e);
+        } finally {
+          isRefilling.set(false);
+        }
+      }
+    });
+
+  }
+
+  /**
+   * <p>Fetch a block from the device, mix it with SecureRandom output and add the chunks to the pool</p>
+   */
+  private void refill() {
+
+    // Seeding can block for some time so it takes place here rather than on a caller's thread
+    SharedSecureRandom.seed();
+
+    byte[] block = new byte[blockSize];
+    secureRandom.nextBytes(block);
+
+    if (clientOptional.isPresent()) {
+      TrezorEvent event = clientOptional.get().getEntropy(blockSize);
+      if (event.protocolMessageType().isPresent() && MessageType.ENTROPY.equals(event.protocolMessageType().get())) {
+        byte[] hardwareEntropy = ((TrezorMessage.Entropy) event.protocolMessage().get()).getEntropy().toByteArray();
+        for (int i = 0; i < block.length && i < hardwareEntropy.length; i++) {
+          block[i] ^= hardwareEntropy[i];
+        }
+        Arrays.fill(hardwareEntropy, (byte) 0);
+      } else {
+        log.warn("Device did not provide entropy ('{}'). Using SecureRandom only.", event.eventType().name());
+      }
+    }
+
+    for (int offset = 0; offset < block.length; offset += CHUNK_SIZE) {
+      chunks.offer(Arrays.copyOfRange(block, offset, offset + CHUNK_SIZE));
+      chunkCount.incrementAndGet();
+    }
+    Arrays.fill(block, (byte) 0);
+
+    log.debug("Entropy pool refilled to {} bytes", available());
+
+  }
+
+}
@@ -0,0 +1,110 @@
+package uk.co.bsol.trezorj.core.clients;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.protobuf.ByteString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Cache to provide the following to clients:</p>
+ * <ul>
+ * <li>The Features response for each device keyed by its session ID</li>
+ * <li>Local answers to capability questions (max fee, OTP, PIN, algorithm) without a device round trip</li>
+ * <li>Selection of devices by capability</li>
+ * </ul>
+ * <p>An entry is only returned for the session ID that was echoed back in the Features message so a new session
+ * always results in a fresh Initialize. Entries must be invalidated whenever the device state may have changed
+ * (e.g. an unexpected disconnect, LoadDevice, ResetDevice or SetMaxFeeKb).</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class FeaturesCache {
+
+  private static final Logger log = LoggerFactory.getLogger(FeaturesCache.class);
+
+  private static final FeaturesCache defaultInstance = new FeaturesCache();
+
+  // Keyed by device ID
+  private final ConcurrentMap<String, TrezorMessage.Features> featuresMap = Maps.newConcurrentMap();
+
+  /**
+   * @return The cache shared by all clients unless they are given their own
+   */
+  public static FeaturesCache getDefaultInstance() {
+    return defaultInstance;
+  }
+
+  /**
+   * @param deviceId  The device ID (see {@link uk.co.bsol.trezorj.core.Trezor#getDeviceId()})
+   * @param sessionId The session ID used for the Initialize message
+   *
+   * @return The cached Features if present for this device and session
+   */
+  public Optional<TrezorMessage.Features> get(String deviceId, ByteString sessionId) {
+
+    Preconditions.checkNotNull(deviceId, "'deviceId' must be present");
+    Preconditions.checkNotNull(sessionId, "'sessionId' must be present");
+
+    TrezorMessage.Features features = featuresMap.get(deviceId);
+    if (features != null && sessionId.equals(features.getSessionId())) {
+      return Optional.of(features);
+    }
+
+    return Optional.absent();
+  }
+
+  /**
+   * @param deviceId The device ID
+   * @param features The Features response from the device (contains the echoed session ID)
+   */
+  public void put(String deviceId, TrezorMessage.Features features) {
+
+    Preconditions.checkNotNull(deviceId, "'deviceId' must be present");
+    Preconditions.checkNotNull(features, "'features' must be present");
+
+    log.debug("Caching features for '{}'", deviceId);
+    featuresMap.put(deviceId, features);
+  }
+
+  /**
+   * <p>Remove any cached Features for the device (all sessions)</p>
+   *
+   * @param deviceId The device ID
+   */
+  public void invalidate(String deviceId) {
+
+    if (featuresMap.remove(deviceId) != null) {
+      log.debug("Invalidated features for '{}'", deviceId);
+    }
+  }
+
+  /**
+   * <p>Select devices by capability without asking them (e.g. all devices without OTP)</p>
+   *
+   * @param predicate The predicate applied to each cached Features
+   *
+   * @return The IDs of the devices with matching Features
+   */
+  public List<String> findDeviceIds(Predicate<TrezorMessage.Features> predicate) {
+
+    List<String> deviceIds = Lists.newArrayList();
+    for (Map.Entry<String, TrezorMessage.Features> entry : featuresMap.entrySet()) {
+      if (predicate.apply(entry.getValue())) {
+        deviceIds.add(entry.getKey());
+      }
+    }
+
+    return deviceIds;
+  }
+
+}
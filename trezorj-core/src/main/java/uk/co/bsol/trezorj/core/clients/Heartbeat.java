@@ -0,0 +1,223 @@
+package uk.co.bsol.trezorj.core.clients;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.TrezorListener;
+import uk.co.bsol.trezorj.core.events.TrezorEvents;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.trezors.AbstractTrezor;
+
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Heartbeat to provide the following to applications:</p>
+ * <ul>
+ * <li>Early detection of a slow or dead link to the device</li>
+ * <li>Round trip time tracking during idle periods</li>
+ * </ul>
+ * <p>A Ping is sent only when the client has been idle for the interval and no conversation is in progress so
+ * a signing operation is never interrupted. Normal traffic counts as proof of life. Listeners receive
+ * DEVICE_DEGRADED when the moving average round trip time crosses the threshold and DEVICE_UNRESPONSIVE
+ * when consecutive pings go unanswered or the client has lost its device. Each is raised once per transition.</p>
+ * <p>DEVICE_UNRESPONSIVE is also passed to the client, which handles it as a lost connection (a reconnect if
+ * supervised, otherwise a close). A Ping that times out has its late response discarded by the client so it
+ * cannot be taken as the answer to the next request.</p>
+ * <p>Example:</p>
+ * <pre>
+ * Heartbeat heartbeat = new Heartbeat(client, 5000, 250, 3);
+ * heartbeat.addListener(listener);
+ * heartbeat.start();
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class Heartbeat {
+
+  private static final Logger log = LoggerFactory.getLogger(Heartbeat.class);
+
+  private final BlockingTrezorClient client;
+  private final long intervalMillis;
+  private final double degradedMillis;
+  private final int maxMissedPings;
+
+  private final Set<TrezorListener> listeners = Sets.newLinkedHashSet();
+  private final ScheduledExecutorService heartbeatExecutorService = Executors.newSingleThreadScheduledExecutor(
+    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("trezorj-heartbeat-%d").build()
+  );
+
+  // Only modified on the heartbeat thread
+  private volatile int missedPings = 0;
+  private volatile boolean isDegraded = false;
+  private volatile boolean isUnresponsive = false;
+
+  /**
+   * @param client         The connected blocking client
+   * @param intervalMillis The idle period in milliseconds after which a Ping is sent
+   * @param degradedMillis The moving average round trip time in milliseconds above which the device is degraded
+   * @param maxMissedPings The number of consecutive unanswered pings after which the device is unresponsive
+   */
+  public Heartbeat(BlockingTrezorClient client, long intervalMillis, double degradedMillis, int maxMissedPings) {
+
+    Preconditions.checkNotNull(client, "'client' must be present");
+    Preconditions.checkState(intervalMillis > 0, "'intervalMillis' must be greater than zero");
+    Preconditions.checkState(degradedMillis > 0, "'degradedMillis' must be greater than zero");
+    Preconditions.checkState(maxMissedPings > 0, "'maxMissedPings' must be greater than zero");
+
+    this.client = client;
+    this.intervalMillis = intervalMillis;
+    this.degradedMillis = degradedMillis;
+    this.maxMissedPings = maxMissedPings;
+
+  }
+
+  /**
+   * @param trezorListener The listener to receive heartbeat events (a new queue is provided)
+   */
+  public synchronized void addListener(TrezorListener trezorListener) {
+
+    Preconditions.checkState(listeners.add(trezorListener), "Listener is already present");
+
+    BlockingQueue<TrezorEvent> listenerQueue = Queues.newArrayBlockingQueue(AbstractTrezor.MAX_QUEUE_SIZE);
+    trezorListener.setTrezorEventQueue(listenerQueue);
+  }
+
+  /**
+   * @param trezorListener The listener to remove
+   */
+  public synchronized void removeListener(TrezorListener trezorListener) {
+
+    Preconditions.checkState(listeners.remove(trezorListener), "Listener was not present");
+
+    trezorListener.setTrezorEventQueue(null);
+  }
+
+  /**
+   * <p>Start checking the device at the heartbeat interval</p>
+   */
+  public void start() {
+
+    heartbeatExecutorService.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          beat();
+        } catch (RuntimeException e) {
+          log.warn("Heartbeat failed: {}", e.getMessage());
+        }
+      }
+    }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+
+  }
+
+  /**
+   * <p>Stop the heartbeat (the client is not closed)</p>
+   */
+  public void close() {
+    heartbeatExecutorService.shutdownNow();
+  }
+
+  /**
+   * @return True if the round trip time was above the threshold at the last check
+   */
+  public boolean isDegraded() {
+    return isDegraded;
+  }
+
+  /**
+   * @return True if the device failed to answer the last pings
+   */
+  public boolean isUnresponsive() {
+    return isUnresponsive;
+  }
+
+  /**
+   * <p>Ping the device if it has been idle and update the health state (package visible so that tests can beat
+   * without the scheduler)</p>
+   */
+  void beat() {
+
+    if (client.getIdleMillis() < intervalMillis) {
+      // Recent traffic proves the link is alive
+      missedPings = 0;
+      isUnresponsive = false;
+      checkDegraded();
+      return;
+    }
+
+    Optional<TrezorEvent> eventOptional = client.pingIfIdle();
+    if (!eventOptional.isPresent()) {
+      // A conversation is in progress so try again later
+      return;
+    }
+
+    TrezorEvent event = eventOptional.get();
+    if (event.protocolMessageType().isPresent() && MessageType.SUCCESS.equals(event.protocolMessageType().get())) {
+      missedPings = 0;
+      isUnresponsive = false;
+      checkDegraded();
+      return;
+    }
+
+    if (TrezorEventType.DEVICE_DISCONNECTED.equals(event.eventType())) {
+      // The client has lost its device so there is no point waiting for more pings to go unanswered
+      missedPings = maxMissedPings;
+    } else {
+      missedPings++;
+      log.debug("Heartbeat missed ({} of {})", missedPings, maxMissedPings);
+    }
+
+    if (missedPings >= maxMissedPings && !isUnresponsive) {
+      isUnresponsive = true;
+      log.warn("Device is unresponsive after {} missed pings", missedPings);
+      emitHeartbeatEvent(TrezorEventType.DEVICE_UNRESPONSIVE);
+      client.onUnresponsive();
+    }
+
+  }
+
+  /**
+   * <p>Compare the moving average with the threshold and raise an event on the transition to degraded</p>
+   */
+  private void checkDegraded() {
+
+    double averageMillis = client.getRoundTripStatistics().getAverageMillis();
+    if (averageMillis > degradedMillis) {
+      if (!isDegraded) {
+        isDegraded = true;
+        log.warn("Device is degraded with an average round trip of {}ms", averageMillis);
+        emitHeartbeatEvent(TrezorEventType.DEVICE_DEGRADED);
+      }
+    } else {
+      isDegraded = false;
+    }
+
+  }
+
+  /**
+   * @param eventType The system event type to send to all listeners
+   */
+  private synchronized void emitHeartbeatEvent(TrezorEventType eventType) {
+
+    TrezorEvent event = TrezorEvents.newSystemEvent(eventType);
+    for (TrezorListener listener : listeners) {
+      // Never block the heartbeat on a slow consumer
+      if (!listener.getTrezorEventQueue().offer(event)) {
+        log.warn("Dropped '{}' for a full listener queue", eventType.name());
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,78 @@
+package uk.co.bsol.trezorj.core.clients;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>Budget to provide the following to hedged readers:</p>
+ * <ul>
+ * <li>A cap on the extra load that hedged requests place on the replicas</li>
+ * </ul>
+ * <p>This is a token bucket. Each query deposits a fraction of a token (the hedge ratio) and each hedge spends a
+ * whole token, so over time no more than that fraction of queries are hedged. The bucket holds at most the
+ * maximum number of tokens so a quiet period cannot save up a large burst of hedges. It starts full.</p>
+ * <p>Example:</p>
+ * <pre>
+ * // Hedge at most 1 in 10 queries with bursts of up to 5
+ * HedgeBudget budget = new HedgeBudget(0.1, 5);
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class HedgeBudget {
+
+  private final double hedgeRatio;
+  private final double maxTokens;
+
+  // Guarded by this
+  private double tokens;
+
+  /**
+   * @param hedgeRatio The fraction of queries that may be hedged (e.g. 0.1 for 10% extra load)
+   * @param maxTokens  The largest burst of hedges allowed
+   */
+  public HedgeBudget(double hedgeRatio, int maxTokens) {
+
+    Preconditions.checkState(hedgeRatio > 0 && hedgeRatio <= 1, "'hedgeRatio' must be within (0, 1]");
+    Preconditions.checkState(maxTokens > 0, "'maxTokens' must be greater than zero");
+
+    this.hedgeRatio = hedgeRatio;
+    this.maxTokens = maxTokens;
+    this.tokens = maxTokens;
+
+  }
+
+  /**
+   * @return A budget allowing 10% extra load with bursts of up to 10 hedges
+   */
+  public static HedgeBudget newDefaultBudget() {
+    return new HedgeBudget(0.1, 10);
+  }
+
+  /**
+   * <p>Earn a fraction of a token for a query</p>
+   */
+  public synchronized void deposit() {
+    tokens = Math.min(maxTokens, tokens + hedgeRatio);
+  }
+
+  /**
+   * @return True if a token was available and has been spent on a hedge
+   */
+  public synchronized boolean tryAcquire() {
+
+    if (tokens < 1) {
+      return false;
+    }
+    tokens--;
+    return true;
+  }
+
+  /**
+   * @return The number of whole hedges currently allowed
+   */
+  public synchronized int getAvailable() {
+    return (int) tokens;
+  }
+
+}
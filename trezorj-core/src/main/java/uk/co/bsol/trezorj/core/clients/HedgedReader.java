@@ -0,0 +1,354 @@
+package uk.co.bsol.trezorj.core.clients;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.events.TrezorEvents;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Reader to provide the following to applications with several devices holding the same seed:</p>
+ * <ul>
+ * <li>Lower tail latency for idempotent queries (Ping, GetUUID, GetMasterPublicKey and GetAddress)</li>
+ * <li>A cap on the extra load through a {@link HedgeBudget}</li>
+ * </ul>
+ * <p>Each query goes to the next replica in turn. If no response has arrived within the 95th percentile round
+ * trip time for that query type, the same query is sent to the following replica and whichever answers first is
+ * returned. A replica that is busy (e.g. signing a transaction) holds its client's conversation lock, so a hedge
+ * routes the query around it.</p>
+ * <p>The slower request is not interrupted. Its call runs on to the end and takes its own response, so the next
+ * request on that replica is not answered with it. A request that has not started yet (the replica is still busy
+ * with earlier work) is withdrawn. Each replica has a single query thread since its client runs one conversation
+ * at a time.</p>
+ * <p>Until enough samples have been gathered the default hedge delay is used. A replica that fails at once
+ * (e.g. an open circuit breaker) triggers the hedge immediately if the budget allows.</p>
+ * <p>Example:</p>
+ * <pre>
+ * HedgedReader reader = new HedgedReader(Lists.newArrayList(client1, client2), HedgeBudget.newDefaultBudget(), 100);
+ * TrezorEvent address = reader.getAddress(0, 1);
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class HedgedReader {
+
+  private static final Logger log = LoggerFactory.getLogger(HedgedReader.class);
+
+  /**
+   * The number of samples for a query type before its percentile is trusted
+   */
+  public static final int MIN_SAMPLES = 20;
+
+  /**
+   * The percentile of the round trip time after which a query is hedged
+   */
+  private static final double HEDGE_PERCENTILE = 95;
+
+  private final List<BlockingTrezorClient> replicas;
+  private final HedgeBudget hedgeBudget;
+  private final long defaultHedgeDelayMillis;
+
+  private final Map<MessageType, RoundTripStatistics> roundTripStatistics = Maps.newEnumMap(MessageType.class);
+  private final List<ExecutorService> queryExecutorServices;
+
+  private final AtomicInteger nextReplica = new AtomicInteger();
+  private final AtomicLong queryCount = new AtomicLong();
+  private final AtomicLong hedgeCount = new AtomicLong();
+  private final AtomicLong hedgeWinCount = new AtomicLong();
+
+  /**
+   * @param replicas                The connected clients of devices holding the same seed (at least one)
+   * @param hedgeBudget             The budget limiting the number of hedged queries
+   * @param defaultHedgeDelayMillis The hedge delay in milliseconds until enough round trips have been seen
+   */
+  public HedgedReader(List<BlockingTrezorClient> replicas, HedgeBudget hedgeBudget, long defaultHedgeDelayMillis) {
+
+    Preconditions.checkNotNull(replicas, "'replicas' must be present");
+    Preconditions.checkState(!replicas.isEmpty(), "'replicas' must not be empty");
+    Preconditions.checkNotNull(hedgeBudget, "'hedgeBudget' must be present");
+    Preconditions.checkState(defaultHedgeDelayMillis > 0, "'defaultHedgeDelayMillis' must be greater than zero");
+
+    this.replicas = ImmutableList.copyOf(replicas);
+    this.hedgeBudget = hedgeBudget;
+    this.defaultHedgeDelayMillis = defaultHedgeDelayMillis;
+
+    // One thread per replica is enough since each client runs one conversation at a time
+    List<ExecutorService> executorServices = Lists.newArrayListWithCapacity(this.replicas.size());
+    for (int i = 0; i < this.replicas.size(); i++) {
+      executorServices.add(Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("trezorj-hedge-" + i + "-%d").build()
+      ));
+    }
+    this.queryExecutorServices = ImmutableList.copyOf(executorServices);
+
+    for (MessageType messageType : MessageType.values()) {
+      if (messageType.isIdempotent()) {
+        roundTripStatistics.put(messageType, new RoundTripStatistics());
+      }
+    }
+
+  }
+
+  /**
+   * @return The Success response from the first replica to answer
+   */
+  public TrezorEvent ping() {
+    return query(MessageType.PING, new Query() {
+      @Override
+      public TrezorEvent call(BlockingTrezorClient client) {
+        return client.ping();
+      }
+    });
+  }
+
+  /**
+   * @return The UUID response from the first replica to answer
+   */
+  public TrezorEvent getUUID() {
+    return query(MessageType.GET_UUID, new Query() {
+      @Override
+      public TrezorEvent call(BlockingTrezorClient client) {
+        return client.getUUID();
+      }
+    });
+  }
+
+  /**
+   * @return The MasterPublicKey response from the first replica to answer
+   */
+  public TrezorEvent getMasterPublicKey() {
+    return query(MessageType.GET_MASTER_PUBLIC_KEY, new Query() {
+      @Override
+      public TrezorEvent call(BlockingTrezorClient client) {
+        return client.getMasterPublicKey();
+      }
+    });
+  }
+
+  /**
+   * @param index The index position of the generated external public key (account i from BIP 0032)
+   * @param value The key pair number (k'th key from BIP 0032)
+   *
+   * @return The Address response from the first replica to answer
+   */
+  public TrezorEvent getAddress(final int index, final int value) {
+    return query(MessageType.GET_ADDRESS, new Query() {
+      @Override
+      public TrezorEvent call(BlockingTrezorClient client) {
+        return client.getAddress(index, value);
+      }
+    });
+  }
+
+  /**
+   * <p>Stop accepting queries (requests still running finish and the clients are not closed)</p>
+   */
+  public void close() {
+    for (ExecutorService executorService : queryExecutorServices) {
+      executorService.shutdown();
+    }
+  }
+
+  /**
+   * @return The number of queries made
+   */
+  public long getQueryCount() {
+    return queryCount.get();
+  }
+
+  /**
+   * @return The number of queries that were sent to a second replica
+   */
+  public long getHedgeCount() {
+    return hedgeCount.get();
+  }
+
+  /**
+   * @return The number of hedged queries answered first by the second replica
+   */
+  public long getHedgeWinCount() {
+    return hedgeWinCount.get();
+  }
+
+  /**
+   * @param messageType The query type
+   *
+   * @return The round trip statistics for the query type across all replicas
+   */
+  public RoundTripStatistics getRoundTripStatistics(MessageType messageType) {
+
+    Preconditions.checkState(messageType.isIdempotent(), "'messageType' must be idempotent");
+
+    return roundTripStatistics.get(messageType);
+  }
+
+  /**
+   * @param messageType The query type
+   *
+   * @return The time in milliseconds to wait for the first replica before hedging
+   */
+  long getHedgeDelayMillis(MessageType messageType) {
+
+    RoundTripStatistics statistics = roundTripStatistics.get(messageType);
+    if (statistics.getSampleCount() < MIN_SAMPLES) {
+      return defaultHedgeDelayMillis;
+    }
+    return Math.max(1, (long) Math.ceil(statistics.getPercentileMillis(HEDGE_PERCENTILE)));
+  }
+
+  /**
+   * <p>Send the query to the next replica and hedge to the one after it if the answer is slow</p>
+   *
+   * @param messageType The query type
+   * @param query       The query
+   *
+   * @return The first answer, or the last failure if no replica answered
+   */
+  private TrezorEvent query(MessageType messageType, Query query) {
+
+    queryCount.incrementAndGet();
+    hedgeBudget.deposit();
+
+    int primaryIndex = (nextReplica.getAndIncrement() & Integer.MAX_VALUE) % replicas.size();
+    int secondaryIndex = (primaryIndex + 1) % replicas.size();
+    BlockingTrezorClient primary = replicas.get(primaryIndex);
+    BlockingTrezorClient secondary = replicas.get(secondaryIndex);
+
+    // Both replicas complete into the same queue
+    BlockingQueue<Future<TrezorEvent>> completionQueue = new LinkedBlockingQueue<Future<TrezorEvent>>();
+    List<Future<TrezorEvent>> futures = Lists.newArrayListWithCapacity(2);
+    try {
+
+      futures.add(newCompletionService(primaryIndex, completionQueue).submit(newTimedCall(messageType, primary, query)));
+
+      TrezorEvent lastFailure = null;
+      Future<TrezorEvent> done = completionQueue.poll(getHedgeDelayMillis(messageType), TimeUnit.MILLISECONDS);
+      if (done != null) {
+        TrezorEvent event = getResult(done);
+        if (isAnswer(event)) {
+          return event;
+        }
+        lastFailure = event;
+      }
+
+      if (primary == secondary || !hedgeBudget.tryAcquire()) {
+        // No hedge so wait out the primary
+        return lastFailure != null ? lastFailure : getResult(completionQueue.take());
+      }
+
+      hedgeCount.incrementAndGet();
+      log.debug("Hedging {} to replica {}", messageType, secondaryIndex);
+      futures.add(newCompletionService(secondaryIndex, completionQueue).submit(newTimedCall(messageType, secondary, query)));
+
+      int outstanding = lastFailure == null ? 2 : 1;
+      while (outstanding > 0) {
+        done = completionQueue.take();
+        outstanding--;
+        TrezorEvent event = getResult(done);
+        if (isAnswer(event)) {
+          if (done == futures.get(1)) {
+            hedgeWinCount.incrementAndGet();
+          }
+          return event;
+        }
+        lastFailure = event;
+      }
+
+      return lastFailure;
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } finally {
+      // Withdraw the slower request if it has not started but let a running one take its own response
+      for (Future<TrezorEvent> future : futures) {
+        future.cancel(false);
+      }
+    }
+
+  }
+
+  /**
+   * @param replicaIndex    The replica index
+   * @param completionQueue The queue shared by the replicas of one query
+   *
+   * @return A completion service running requests on the replica's query thread
+   */
+  private CompletionService<TrezorEvent> newCompletionService(int replicaIndex, BlockingQueue<Future<TrezorEvent>> completionQueue) {
+    return new ExecutorCompletionService<TrezorEvent>(queryExecutorServices.get(replicaIndex), completionQueue);
+  }
+
+  /**
+   * @return A call that records the round trip time of each answer
+   */
+  private Callable<TrezorEvent> newTimedCall(final MessageType messageType, final BlockingTrezorClient client, final Query query) {
+
+    return new Callable<TrezorEvent>() {
+      @Override
+      public TrezorEvent call() throws Exception {
+        long startNanos = System.nanoTime();
+        TrezorEvent event = query.call(client);
+        if (isAnswer(event)) {
+          roundTripStatistics.get(messageType).record(System.nanoTime() - startNanos);
+        }
+        return event;
+      }
+    };
+  }
+
+  /**
+   * @param future The completed request
+   *
+   * @return The response or a DEVICE_FAILURE if the client threw an exception
+   */
+  private TrezorEvent getResult(Future<TrezorEvent> future) throws InterruptedException {
+
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      log.warn("Replica query failed: {}", e.getCause().getMessage());
+      return TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_FAILURE);
+    }
+  }
+
+  /**
+   * @param event The response
+   *
+   * @return True if the device answered with a protocol message
+   */
+  private static boolean isAnswer(TrezorEvent event) {
+    return TrezorEventType.PROTOCOL_MESSAGE.equals(event.eventType());
+  }
+
+  /**
+   * <p>A single idempotent request on a client</p>
+   */
+  private interface Query {
+
+    TrezorEvent call(BlockingTrezorClient client);
+
+  }
+
+}
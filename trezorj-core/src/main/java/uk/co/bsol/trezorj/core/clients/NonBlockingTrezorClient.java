@@ -13,8 +13,14 @@ import org.slf4j.LoggerFactory;
 import uk.co.bsol.trezorj.core.Trezor;
 import uk.co.bsol.trezorj.core.TrezorEvent;
 import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.events.TrezorEvents;
 import uk.co.bsol.trezorj.core.protobuf.MessageType;
 import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.tracing.Span;
+import uk.co.bsol.trezorj.core.tracing.Tracer;
+import uk.co.bsol.trezorj.core.utils.Clock;
+import uk.co.bsol.trezorj.core.utils.SharedSecureRandom;
+import uk.co.bsol.trezorj.core.utils.SystemClock;
 import uk.co.bsol.trezorj.core.utils.TrezorMessageUtils;
 
 import java.io.ByteArrayOutputStream;
@@ -66,7 +72,9 @@ public class NonBlockingTrezorClient implements TrezorClient {
   private ExecutorService trezorEventExecutorService = Executors.newSingleThreadExecutor();
   private boolean isSessionIdValid = true;
   private final ByteString sessionId;
-  private final SecureRandom secureRandom = new SecureRandom();
+  private final SecureRandom secureRandom = SharedSecureRandom.getInstance();
+  private Optional<EntropyPool> entropyPoolOptional = Optional.absent();
+  private Clock clock = SystemClock.getDefaultInstance();
 
   /**
    * <p>Reduced visibility constructor since applications should use the static builder methods</p>
@@ -227,6 +235,26 @@ public class NonBlockingTrezorClient implements TrezorClient {
     sendDefaultMessage(TrezorMessage.GetEntropy.getDefaultInstance());
   }
 
+  /**
+   * <p>Send the GetEntropy message to the device requesting a specific amount of random data from its internal
+   * hardware random number generator.</p>
+   * <p>Expected response events are:</p>
+   * <ul>
+   * <li>Entropy (with data) if the operation succeeded</li>
+   * <li>OptRequest if the one-time password is needed</li>
+   * <li>PinRequest if the PIN is needed</li>
+   * <li>Failure if the operation was unsuccessful</li>
+   * </ul>
+   *
+   * @param size The number of bytes of random data required
+   */
+  public void getEntropy(int size) {
+    sendDefaultMessage(TrezorMessage.GetEntropy
+      .newBuilder()
+      .setSize(size)
+      .build());
+  }
+
   /**
    * <p>Send the SetMaxFeeKb message to the device. The device will respond by updating its maximum
    * fee to that provided. This level is used to provide internal sanity checking during transaction signing
@@ -291,7 +319,8 @@ public class NonBlockingTrezorClient implements TrezorClient {
   public void getAddress(int index, int value) {
     sendDefaultMessage(TrezorMessage.GetAddress
       .newBuilder()
-      .setAddressN(index, value)
+      .addAddressN(index)
+      .addAddressN(value)
       .build());
   }
 
@@ -369,6 +398,8 @@ public class NonBlockingTrezorClient implements TrezorClient {
    * <p>Send the SignTx message to the device. Behind the scenes the device will response with a series of TxRequests
    * in order to  build up the overall transaction. This client takes care of all the chatter leaving a final
    * response condition.</p>
+   * <p>Unlike the other methods the signing conversation takes its responses from the event queue (blocking for
+   * each step) since every TxInput and TxOutput depends on the preceding TxRequest.</p>
    * <p>Expected response events are:</p>
    * <ul>
    * <li>Success if the operation succeeded</li>
@@ -382,15 +413,29 @@ public class NonBlockingTrezorClient implements TrezorClient {
    */
   public void signTx(Transaction tx) {
 
+    Span span = Tracer.getDefaultInstance().startSpan("client.signTx");
+    try {
+      signTxConversation(tx);
+    } finally {
+      span.end();
+    }
+
+  }
+
+  /**
+   * <p>Work through the SignTx conversation</p>
+   *
+   * @param tx The Bitcoinj transaction providing all the necessary information (will be modified)
+   */
+  private void signTxConversation(Transaction tx) {
+
     byte[] entropy = new byte[MIN_ENTROPY];
 
     int inputsCount = tx.getInputs().size();
     int outputsCount = tx.getOutputs().size();
 
-    int inputIndex = 0;
-    int outputIndex = 0;
 
-    secureRandom.nextBytes(entropy);
+    fillEntropy(entropy);
 
     Preconditions.checkState(
       entropy.length >= MIN_ENTROPY,
@@ -408,8 +453,8 @@ public class NonBlockingTrezorClient implements TrezorClient {
 
     boolean finished = false;
 
-    // TODO Fix this
-    TrezorEvent event = null;
+    // The conversation cannot continue without the responses
+    TrezorEvent event = pollConversationEvent(1, TimeUnit.SECONDS);
 
     // Prepare structures for signatures
     List<ByteArrayOutputStream> trezorSignatures = Lists.newArrayList();
@@ -417,95 +462,76 @@ public class NonBlockingTrezorClient implements TrezorClient {
 
     while (!finished) {
 
-      // Check the response is a transaction request
-      if (TrezorEventType.PROTOCOL_MESSAGE.equals(event.eventType())) {
-        if (MessageType.TX_REQUEST.equals(event.protocolMessageType().get())) {
-
-          // Examine the response (it may contain signature information in response to a TxOutput etc)
-          TrezorMessage.TxRequest txRequest = (TrezorMessage.TxRequest) event.protocolMessage().get();
-
-          // Check for a serialized transaction
-          if (txRequest.getSerializedTx() != null) {
-            try {
-              trezorSerializedTx.write(txRequest.getSerializedTx().toByteArray());
-            } catch (IOException e) {
-              throw new IllegalStateException(
-                "Could not read serialized transaction at request index " + txRequest
-                  .getRequestIndex(), e);
-            }
-          }
-
-          // Check for a signature
-          if (txRequest.getSignedIndex() >= 0 && txRequest.getSignature() != null) {
-            try {
-              ByteArrayOutputStream signature = new ByteArrayOutputStream();
-              signature.write(txRequest.getSignature().toByteArray());
-              trezorSignatures.add(txRequest.getSignedIndex(), signature);
-            } catch (IOException e) {
-              throw new IllegalStateException(
-                "Could not read signature for signed index " + txRequest.getSignedIndex(),
-                e);
-            }
-          }
-
-          // Check for completion
-          if (txRequest.getRequestIndex() >= 0) {
-
-            // Require txInput/txOutput from transaction
-            switch (txRequest.getRequestType()) {
-              case TXINPUT:
-                // Provide the requested input
-                TrezorMessage.TxInput txInput = TrezorMessageUtils.newTxInput(tx, txRequest.getRequestIndex());
-
-                // Allow plenty of time for the signing operation
-                sendNonBlockingMessage(txInput, 30, TimeUnit.SECONDS);
-
-                if (event.eventType().equals(TrezorEventType.PROTOCOL_MESSAGE)) {
-
-                  // Check for a TxRequest which can be processed as part of the overall loop
-                  // in order to extract signature information etc
-                  if (MessageType.TX_REQUEST.equals(event.protocolMessageType().get())) {
-                    continue;
-                  }
+      // Anything other than a TxRequest ends the conversation (e.g. Failure or a disconnect)
+      if (!TrezorEventType.PROTOCOL_MESSAGE.equals(event.eventType()) || !MessageType.TX_REQUEST.equals(event.protocolMessageType().get())) {
+        log.warn("Transaction signing failed with event type '{}'", event.eventType().name());
+        return;
+      }
 
-                }
+      // Examine the response (it may contain signature information in response to a TxOutput etc)
+      TrezorMessage.TxRequest txRequest = (TrezorMessage.TxRequest) event.protocolMessage().get();
+
+      // Check for a serialized transaction
+      if (txRequest.hasSerializedTx()) {
+        try {
+          trezorSerializedTx.write(txRequest.getSerializedTx().toByteArray());
+        } catch (IOException e) {
+          throw new IllegalStateException(
+            "Could not read serialized transaction at request index " + txRequest
+              .getRequestIndex(), e);
+        }
+      }
 
-                log.warn("Transaction signing failed on input index {} with event type '{}'", inputIndex, event.eventType().name());
+      // Check for a signature
+      if (txRequest.hasSignedIndex() && txRequest.getSignedIndex() >= 0 && txRequest.hasSignature()) {
+        try {
+          ByteArrayOutputStream signature = new ByteArrayOutputStream();
+          signature.write(txRequest.getSignature().toByteArray());
+          trezorSignatures.add(txRequest.getSignedIndex(), signature);
+        } catch (IOException e) {
+          throw new IllegalStateException(
+            "Could not read signature for signed index " + txRequest.getSignedIndex(),
+            e);
+        }
+      }
 
-                return;
+      // Check for completion (an absent request index also indicates completion)
+      if (txRequest.hasRequestIndex() && txRequest.getRequestIndex() >= 0) {
 
-              case TXOUTPUT:
-                // Provide the requested output
-                TrezorMessage.TxOutput txOutput = TrezorMessageUtils.newTxOutput(tx, txRequest.getRequestIndex());
+        // Require txInput/txOutput from transaction
+        switch (txRequest.getRequestType()) {
+          case TXINPUT:
+            // Provide the requested input
+            TrezorMessage.TxInput txInput = TrezorMessageUtils.newTxInput(tx, txRequest.getRequestIndex());
 
-                // Allow plenty of time for the signing operation
-                sendNonBlockingMessage(txOutput, 30, TimeUnit.SECONDS);
+            // Allow plenty of time for the signing operation
+            sendNonBlockingMessage(txInput, 30, TimeUnit.SECONDS);
+            event = pollConversationEvent(30, TimeUnit.SECONDS);
 
-                if (event.eventType().equals(TrezorEventType.PROTOCOL_MESSAGE)) {
+            // A TxRequest is examined (and anything else ends the conversation) at the top of the loop
+            continue;
 
-                  // Check for a TxRequest which can be processed as part of the overall loop
-                  // in order to extract signature information etc
-                  if (MessageType.TX_REQUEST.equals(event.protocolMessageType().get())) {
-                    continue;
-                  }
-                }
+          case TXOUTPUT:
+            // Provide the requested output
+            TrezorMessage.TxOutput txOutput = TrezorMessageUtils.newTxOutput(tx, txRequest.getRequestIndex());
 
-                log.warn("Transaction signing failed on output index {} with event type '{}'", outputIndex, event.eventType().name());
+            // Allow plenty of time for the signing operation
+            sendNonBlockingMessage(txOutput, 30, TimeUnit.SECONDS);
+            event = pollConversationEvent(30, TimeUnit.SECONDS);
 
-                return;
+            // A TxRequest is examined (and anything else ends the conversation) at the top of the loop
+            continue;
 
-              default:
-                throw new IllegalStateException("Unknown request type " + txRequest.getRequestType().name());
-            }
-          } else {
+          default:
+            throw new IllegalStateException("Unknown request type " + txRequest.getRequestType().name());
+        }
+      } else {
 
-            log.info("Completed transaction signing");
+        log.info("Completed transaction signing");
 
-            // This should be the end of building the transaction
-            finished = true;
+        // This should be the end of building the transaction
+        finished = true;
 
-          }
-        }
       }
     }
 
@@ -592,10 +618,22 @@ public class NonBlockingTrezorClient implements TrezorClient {
     Preconditions.checkState(isTrezorValid, "Trezor device is not valid. Try connecting or start a new session after a disconnect.");
     Preconditions.checkState(isSessionIdValid, "An old session ID must be discarded. Create a new instance.");
 
+    Tracer tracer = Tracer.getDefaultInstance();
+    Span span = tracer.startSpan("client.request");
+    if (span.isRecording()) {
+      span.setDetail(MessageType.getMessageType(trezorMessage).name());
+    }
+
     try {
 
       // Check for any new events
-      TrezorEvent event = getTrezorEventQueue().poll(10, TimeUnit.MILLISECONDS);
+      TrezorEvent event;
+      Span drainSpan = tracer.startSpan("client.drain");
+      try {
+        event = clock.poll(getTrezorEventQueue(), 10, TimeUnit.MILLISECONDS);
+      } finally {
+        drainSpan.end();
+      }
       if (event != null) {
         // Spontaneous event has arrived
         handleTrezorEvent(event);
@@ -610,6 +648,35 @@ public class NonBlockingTrezorClient implements TrezorClient {
 
     } catch (InterruptedException e) {
       throw new IllegalStateException(e);
+    } finally {
+      span.end();
+    }
+
+  }
+
+  /**
+   * <p>Wait for the next response during a multi-message conversation (e.g. signing)</p>
+   *
+   * @param duration The maximum time to wait
+   * @param timeUnit The time unit
+   *
+   * @return The Trezor event (DEVICE_EOF on timeout)
+   */
+  private TrezorEvent pollConversationEvent(int duration, TimeUnit timeUnit) {
+
+    Span span = Tracer.getDefaultInstance().startSpan("client.wait");
+    try {
+      TrezorEvent event = clock.poll(getTrezorEventQueue(), duration, timeUnit);
+      if (event == null) {
+        // Timeout so unexpected EOF
+        return TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_EOF);
+      }
+      handleTrezorEvent(event);
+      return event;
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      span.end();
     }
 
   }
@@ -649,14 +716,44 @@ public class NonBlockingTrezorClient implements TrezorClient {
   /**
    * @param size The number of bytes of random data required
    *
-   * @return The random bytes (based on SecureRandom implementation)
+   * @return The random bytes (based on the entropy pool if present, otherwise the SecureRandom implementation)
    */
   public byte[] newEntropy(int size) {
     byte[] entropy = new byte[size];
-    secureRandom.nextBytes(entropy);
+    fillEntropy(entropy);
     return entropy;
   }
 
+  /**
+   * <p>Provide an entropy pool to serve random data without blocking on SecureRandom seeding or the device</p>
+   *
+   * @param entropyPool The entropy pool (typically shared across clients)
+   */
+  public void setEntropyPool(EntropyPool entropyPool) {
+    this.entropyPoolOptional = Optional.fromNullable(entropyPool);
+  }
+
+  /**
+   * <p>Provide a clock other than the system clock for all timeouts (e.g. a VirtualClock in tests)</p>
+   *
+   * @param clock The clock
+   */
+  public void setClock(Clock clock) {
+    Preconditions.checkNotNull(clock, "'clock' must be present");
+    this.clock = clock;
+  }
+
+  /**
+   * @param entropy The array to fill with random data
+   */
+  private void fillEntropy(byte[] entropy) {
+    if (entropyPoolOptional.isPresent()) {
+      entropyPoolOptional.get().nextBytes(entropy);
+    } else {
+      secureRandom.nextBytes(entropy);
+    }
+  }
+
   @Override
   public BlockingQueue<TrezorEvent> getTrezorEventQueue() {
     return trezorEventQueue;
@@ -0,0 +1,81 @@
+package uk.co.bsol.trezorj.core.clients;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Random;
+
+/**
+ * <p>Policy to provide the following to supervised clients:</p>
+ * <ul>
+ * <li>The number of reconnect attempts to make after an unexpected disconnect</li>
+ * <li>Jittered exponential backoff between attempts</li>
+ * </ul>
+ * <p>The delay ceiling doubles with each attempt (up to the maximum) and the actual delay is chosen at random from
+ * the upper half of the ceiling. This prevents several clients sharing a host from reconnecting in lock step.</p>
+ * <p>Example:</p>
+ * <pre>
+ * client.setReconnectPolicy(new ReconnectPolicy(250, 8000, 8));
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class ReconnectPolicy {
+
+  private final long baseDelayMillis;
+  private final long maxDelayMillis;
+  private final int maxAttempts;
+
+  private final Random random = new Random();
+
+  /**
+   * @param baseDelayMillis The delay ceiling for the first attempt in milliseconds
+   * @param maxDelayMillis  The largest delay ceiling in milliseconds
+   * @param maxAttempts     The number of attempts before giving up
+   */
+  public ReconnectPolicy(long baseDelayMillis, long maxDelayMillis, int maxAttempts) {
+
+    Preconditions.checkState(baseDelayMillis > 0, "'baseDelayMillis' must be greater than zero");
+    Preconditions.checkState(maxDelayMillis >= baseDelayMillis, "'maxDelayMillis' must not be less than 'baseDelayMillis'");
+    Preconditions.checkState(maxAttempts > 0, "'maxAttempts' must be greater than zero");
+
+    this.baseDelayMillis = baseDelayMillis;
+    this.maxDelayMillis = maxDelayMillis;
+    this.maxAttempts = maxAttempts;
+
+  }
+
+  /**
+   * @return A policy suitable for most devices (8 attempts over roughly 30 seconds)
+   */
+  public static ReconnectPolicy newDefaultPolicy() {
+    return new ReconnectPolicy(250, 8000, 8);
+  }
+
+  /**
+   * @param attempt The attempt number (starting at zero)
+   *
+   * @return The delay in milliseconds to wait before making the attempt
+   */
+  public long getDelayMillis(int attempt) {
+
+    Preconditions.checkState(attempt >= 0, "'attempt' must not be negative");
+
+    // Avoid overflow on the shift
+    long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt, 30));
+    if (ceiling < 0) {
+      ceiling = maxDelayMillis;
+    }
+
+    long half = ceiling / 2;
+    return half + (long) (random.nextDouble() * (ceiling - half));
+  }
+
+  /**
+   * @return The number of attempts before giving up
+   */
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+}
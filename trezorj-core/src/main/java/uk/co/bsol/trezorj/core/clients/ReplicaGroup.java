@@ -0,0 +1,259 @@
+package uk.co.bsol.trezorj.core.clients;
+
+import com.google.bitcoin.core.Transaction;
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <p>Group to provide the following to applications with several devices holding the same seed:</p>
+ * <ul>
+ * <li>Routing of each wallet to a consistent device so that per-device caches stay warm</li>
+ * <li>Spreading of concurrent work (e.g. signing) across the healthy members</li>
+ * </ul>
+ * <p>Members are placed on a consistent hash ring with {@link #VIRTUAL_NODES} points each. A wallet is routed to
+ * the first healthy member clockwise from its own hash unless that member is already carrying more than its
+ * fair share of the work in progress (bounded load consistent hashing), in which case the walk continues. A
+ * wallet therefore stays on one device while the group is lightly loaded and spills to the next device on the
+ * ring when it is busy. Adding or removing a member only moves the wallets next to its points.</p>
+ * <p>The points are keyed on the device ID and the number of earlier members with the same ID, so devices that
+ * report the same ID (e.g. two USB devices of the same model) each keep their own points.</p>
+ * <p>Groups are built by {@link ReplicaGroups} from the master public key of each device.</p>
+ * <p>Example:</p>
+ * <pre>
+ * Optional&lt;Transaction&gt; signedTx = group.signTx(walletId, tx);
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class ReplicaGroup {
+
+  /**
+   * The number of points on the ring for each member
+   */
+  public static final int VIRTUAL_NODES = 64;
+
+  /**
+   * The load a member may carry above the group average before work spills to the next member
+   */
+  private static final double LOAD_FACTOR = 1.25;
+
+  private static final HashFunction RING_HASH = Hashing.murmur3_128();
+
+  private final String fingerprint;
+
+  // Guarded by this
+  private final List<Member> members = Lists.newArrayList();
+  private final TreeMap<Long, Member> ring = Maps.newTreeMap();
+  private int totalLoad = 0;
+
+  /**
+   * @param fingerprint The fingerprint of the master public key shared by the members
+   */
+  ReplicaGroup(String fingerprint) {
+    this.fingerprint = fingerprint;
+  }
+
+  /**
+   * @return The fingerprint of the master public key shared by the members
+   */
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * @return The clients of the members in the order they joined
+   */
+  public synchronized List<BlockingTrezorClient> getMembers() {
+
+    List<BlockingTrezorClient> clients = Lists.newArrayListWithCapacity(members.size());
+    for (Member member : members) {
+      clients.add(member.client);
+    }
+    return ImmutableList.copyOf(clients);
+  }
+
+  /**
+   * @param client The member
+   *
+   * @return The number of acquisitions of the member not yet released
+   */
+  public synchronized int getLoad(BlockingTrezorClient client) {
+    return getMember(client).load;
+  }
+
+  /**
+   * <p>Route requests away from a member (e.g. after a heartbeat reports it unresponsive) or back to it</p>
+   *
+   * @param client    The member
+   * @param isHealthy True if the member should receive requests
+   */
+  public synchronized void setHealthy(BlockingTrezorClient client, boolean isHealthy) {
+    getMember(client).isHealthy = isHealthy;
+  }
+
+  /**
+   * <p>Choose a member for the wallet and count the work against it until released</p>
+   *
+   * @param walletId The wallet identifier (any stable key such as an account name)
+   *
+   * @return The chosen member (absent if no member is healthy)
+   */
+  public synchronized Optional<BlockingTrezorClient> acquire(String walletId) {
+
+    Preconditions.checkNotNull(walletId, "'walletId' must be present");
+
+    Optional<Member> memberOptional = route(walletId);
+    if (!memberOptional.isPresent()) {
+      return Optional.absent();
+    }
+
+    Member member = memberOptional.get();
+    member.load++;
+    totalLoad++;
+
+    return Optional.of(member.client);
+  }
+
+  /**
+   * @param client The member returned by {@link #acquire(String)}
+   */
+  public synchronized void release(BlockingTrezorClient client) {
+
+    Member member = getMember(client);
+    Preconditions.checkState(member.load > 0, "Member was not acquired");
+
+    member.load--;
+    totalLoad--;
+  }
+
+  /**
+   * <p>Sign the transaction on the member chosen for the wallet</p>
+   *
+   * @param walletId The wallet identifier
+   * @param tx       The transaction to sign
+   *
+   * @return The signed transaction (absent if signing failed or no member is healthy)
+   */
+  public Optional<Transaction> signTx(String walletId, Transaction tx) {
+
+    Optional<BlockingTrezorClient> clientOptional = acquire(walletId);
+    if (!clientOptional.isPresent()) {
+      return Optional.absent();
+    }
+
+    try {
+      return clientOptional.get().signTx(tx);
+    } finally {
+      release(clientOptional.get());
+    }
+  }
+
+  /**
+   * @param client The connected client of a device with this group's master public key
+   */
+  synchronized void add(BlockingTrezorClient client) {
+
+    for (Member member : members) {
+      Preconditions.checkState(member.client != client, "Client is already a member");
+    }
+
+    // Distinguish members that report the same device ID
+    String deviceId = client.getDeviceId();
+    int occurrence = 0;
+    for (Member member : members) {
+      if (member.client.getDeviceId().equals(deviceId)) {
+        occurrence++;
+      }
+    }
+    String key = occurrence == 0 ? deviceId : deviceId + "/" + occurrence;
+
+    Member member = new Member(client);
+    members.add(member);
+    for (int i = 0; i < VIRTUAL_NODES; i++) {
+      long point = hash(key + "#" + i);
+      // A point already taken stays with its owner
+      if (!ring.containsKey(point)) {
+        ring.put(point, member);
+      }
+    }
+  }
+
+  /**
+   * <p>Walk the ring from the wallet's hash to the first healthy member with spare capacity</p>
+   *
+   * @param walletId The wallet identifier
+   *
+   * @return The member (absent if none is healthy)
+   */
+  private Optional<Member> route(String walletId) {
+
+    int healthyCount = 0;
+    for (Member member : members) {
+      if (member.isHealthy) {
+        healthyCount++;
+      }
+    }
+    if (healthyCount == 0) {
+      return Optional.absent();
+    }
+
+    // The ceiling is always above the average so some member is below it
+    int capacity = (int) Math.ceil(LOAD_FACTOR * (totalLoad + 1) / healthyCount);
+
+    long walletHash = hash(walletId);
+    SortedMap<Long, Member> tail = ring.tailMap(walletHash);
+    for (Member member : tail.values()) {
+      if (member.isHealthy && member.load < capacity) {
+        return Optional.of(member);
+      }
+    }
+    for (Member member : ring.headMap(walletHash).values()) {
+      if (member.isHealthy && member.load < capacity) {
+        return Optional.of(member);
+      }
+    }
+
+    throw new IllegalStateException("No member below capacity " + capacity);
+  }
+
+  private Member getMember(BlockingTrezorClient client) {
+
+    for (Member member : members) {
+      if (member.client == client) {
+        return member;
+      }
+    }
+    throw new IllegalStateException("Client is not a member of group " + fingerprint);
+  }
+
+  private static long hash(String key) {
+    return RING_HASH.hashString(key, Charsets.UTF_8).asLong();
+  }
+
+  /**
+   * <p>A device in the group (guarded by the group)</p>
+   */
+  private static class Member {
+
+    private final BlockingTrezorClient client;
+    private int load = 0;
+    private boolean isHealthy = true;
+
+    private Member(BlockingTrezorClient client) {
+      this.client = client;
+    }
+  }
+
+}
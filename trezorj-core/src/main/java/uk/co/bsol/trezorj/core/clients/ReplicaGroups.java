@@ -0,0 +1,119 @@
+package uk.co.bsol.trezorj.core.clients;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Registry to provide the following to applications loading the same seed onto several devices:</p>
+ * <ul>
+ * <li>Discovery of interchangeable devices by the fingerprint of their master public key</li>
+ * <li>A {@link ReplicaGroup} per seed for routing wallet requests across its devices</li>
+ * </ul>
+ * <p>The fingerprint is the first 8 bytes of the SHA-256 hash of the master public key in hex. It identifies
+ * the seed without revealing the key itself.</p>
+ * <p>Example:</p>
+ * <pre>
+ * ReplicaGroups replicaGroups = new ReplicaGroups();
+ * String fingerprint = replicaGroups.connect(TrezorClients.newBlockingSocketInstance(host1, port1, sessionId1));
+ * replicaGroups.connect(TrezorClients.newBlockingSocketInstance(host2, port2, sessionId2));
+ * ReplicaGroup group = replicaGroups.getGroup(fingerprint).get();
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class ReplicaGroups {
+
+  private static final Logger log = LoggerFactory.getLogger(ReplicaGroups.class);
+
+  /**
+   * The number of hash bytes in a fingerprint
+   */
+  private static final int FINGERPRINT_SIZE = 8;
+
+  private final Map<String, ReplicaGroup> groups = Maps.newLinkedHashMap();
+
+  /**
+   * <p>Connect the client, read the master public key and add the device to the group for its seed</p>
+   *
+   * @param client The client (not yet connected)
+   *
+   * @return The fingerprint of the group the device joined
+   *
+   * @throws IllegalStateException If the device did not provide its master public key (the client is closed)
+   */
+  public String connect(BlockingTrezorClient client) {
+
+    Preconditions.checkNotNull(client, "'client' must be present");
+
+    client.connect();
+
+    String fingerprint;
+    try {
+      TrezorEvent event = client.getMasterPublicKey();
+      if (!event.protocolMessageType().isPresent() || !MessageType.MASTER_PUBLIC_KEY.equals(event.protocolMessageType().get())) {
+        throw new IllegalStateException("Device '" + client.getDeviceId() + "' did not provide a master public key: " + event.eventType());
+      }
+      fingerprint = newFingerprint(((TrezorMessage.MasterPublicKey) event.protocolMessage().get()).getKey());
+    } catch (RuntimeException e) {
+      // The device joins no group so nothing else will close it
+      client.close();
+      throw e;
+    }
+
+    ReplicaGroup group;
+    synchronized (this) {
+      group = groups.get(fingerprint);
+      if (group == null) {
+        group = new ReplicaGroup(fingerprint);
+        groups.put(fingerprint, group);
+      }
+    }
+    group.add(client);
+
+    log.info("Device '{}' joined replica group {}", client.getDeviceId(), fingerprint);
+
+    return fingerprint;
+  }
+
+  /**
+   * @param fingerprint The master public key fingerprint
+   *
+   * @return The group of devices holding that seed (absent if none has connected)
+   */
+  public synchronized Optional<ReplicaGroup> getGroup(String fingerprint) {
+    return Optional.fromNullable(groups.get(fingerprint));
+  }
+
+  /**
+   * @return The fingerprints of all groups in the order they were discovered
+   */
+  public synchronized Set<String> getFingerprints() {
+    return ImmutableSet.copyOf(groups.keySet());
+  }
+
+  /**
+   * @param masterPublicKey The master public key
+   *
+   * @return The fingerprint identifying the seed
+   */
+  public static String newFingerprint(ByteString masterPublicKey) {
+
+    // The hash code renders as lower case hex
+    String hash = Hashing.sha256().hashBytes(masterPublicKey.toByteArray()).toString();
+    return hash.substring(0, 2 * FINGERPRINT_SIZE);
+  }
+
+}
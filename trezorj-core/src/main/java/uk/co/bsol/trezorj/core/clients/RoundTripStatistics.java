@@ -0,0 +1,88 @@
+package uk.co.bsol.trezorj.core.clients;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Statistics to provide the following to clients and schedulers:</p>
+ * <ul>
+ * <li>An exponentially weighted moving average of the round trip time to a device</li>
+ * <li>Percentiles over the most recent samples</li>
+ * </ul>
+ * <p>Samples are held in a fixed size ring so recording does not allocate.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class RoundTripStatistics {
+
+  /**
+   * The number of recent samples retained for percentiles
+   */
+  public static final int SAMPLE_SIZE = 128;
+
+  /**
+   * The weight given to each new sample in the moving average
+   */
+  private static final double ALPHA = 0.2;
+
+  private final long[] samples = new long[SAMPLE_SIZE];
+  private long sampleCount = 0;
+  private double averageNanos = 0;
+
+  /**
+   * @param roundTripNanos The round trip time in nanoseconds
+   */
+  public synchronized void record(long roundTripNanos) {
+
+    Preconditions.checkState(roundTripNanos >= 0, "'roundTripNanos' must not be negative");
+
+    samples[(int) (sampleCount % SAMPLE_SIZE)] = roundTripNanos;
+    if (sampleCount == 0) {
+      averageNanos = roundTripNanos;
+    } else {
+      averageNanos += ALPHA * (roundTripNanos - averageNanos);
+    }
+    sampleCount++;
+
+  }
+
+  /**
+   * @return The total number of samples recorded
+   */
+  public synchronized long getSampleCount() {
+    return sampleCount;
+  }
+
+  /**
+   * @return The moving average round trip time in milliseconds (zero if no samples)
+   */
+  public synchronized double getAverageMillis() {
+    return averageNanos / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  /**
+   * @param percentile The percentile in the range 0 to 100 (e.g. 95)
+   *
+   * @return The round trip time in milliseconds at the percentile over the recent samples (zero if no samples)
+   */
+  public synchronized double getPercentileMillis(double percentile) {
+
+    Preconditions.checkState(percentile >= 0 && percentile <= 100, "'percentile' must be within range");
+
+    int size = (int) Math.min(sampleCount, SAMPLE_SIZE);
+    if (size == 0) {
+      return 0;
+    }
+
+    long[] sorted = Arrays.copyOf(samples, size);
+    Arrays.sort(sorted);
+
+    // Nearest rank
+    int rank = (int) Math.ceil(percentile / 100 * size);
+    return (double) sorted[Math.max(rank - 1, 0)] / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+}
@@ -1,5 +1,6 @@
 package uk.co.bsol.trezorj.core.clients;
 
+import com.codeminders.hidapi.HIDDevice;
 import com.google.common.base.Optional;
 import com.google.common.primitives.Longs;
 import com.google.protobuf.ByteString;
@@ -69,6 +70,26 @@ public class TrezorClients {
     return ByteString.copyFrom(Longs.toByteArray(UUID.randomUUID().getLeastSignificantBits()));
   }
 
+  /**
+   * <p>Convenience method to wrap an existing Trezor (e.g. one with a wire tap or other configuration)</p>
+   *
+   * @param trezor    The Trezor device (not yet connected)
+   * @param sessionId The session ID (typically from {@link TrezorClients#newSessionId()})
+   *
+   * @return A blocking Trezor client instance with a unique session ID
+   */
+  public static BlockingTrezorClient newBlockingInstance(Trezor trezor, ByteString sessionId) {
+
+    BlockingTrezorClient trezorClient = new BlockingTrezorClient(trezor, sessionId);
+
+    // Add this as the listener (sets the event queue)
+    trezor.addListener(trezorClient);
+
+    // Return the new client
+    return trezorClient;
+
+  }
+
   /**
    * <p>Convenience method to wrap a socket Trezor</p>
    *
@@ -147,6 +168,28 @@ public class TrezorClients {
     return trezorClient;
   }
 
+  /**
+   * <p>Convenience method to wrap a USB Trezor around an existing HID device (e.g. an emulated device)</p>
+   *
+   * @param device    The HID device
+   * @param sessionId The session ID (typically from {@link TrezorClients#newSessionId()})
+   *
+   * @return A blocking Trezor client instance with a unique session ID
+   */
+  public static BlockingTrezorClient newBlockingUsbInstance(HIDDevice device, ByteString sessionId) {
+
+    // Create a USB Trezor
+    Trezor trezor = TrezorFactory.newUsbTrezor(device);
+
+    BlockingTrezorClient trezorClient = new BlockingTrezorClient(trezor, sessionId);
+
+    // Add this as the listener (sets the event queue)
+    trezor.addListener(trezorClient);
+
+    // Return the new client
+    return trezorClient;
+  }
+
   /**
    * <p>Convenience method to wrap a socket Trezor</p>
    *
@@ -225,4 +268,26 @@ public class TrezorClients {
     return trezorClient;
   }
 
+  /**
+   * <p>Convenience method to wrap a USB Trezor around an existing HID device (e.g. an emulated device)</p>
+   *
+   * @param device    The HID device
+   * @param sessionId The session ID (typically from {@link #newSessionId()})
+   *
+   * @return A non-blocking Trezor client instance with a unique session ID
+   */
+  public static NonBlockingTrezorClient newNonBlockingUsbInstance(HIDDevice device, ByteString sessionId) {
+
+    // Create a USB Trezor
+    Trezor trezor = TrezorFactory.newUsbTrezor(device);
+
+    NonBlockingTrezorClient trezorClient = new NonBlockingTrezorClient(trezor, sessionId);
+
+    // Add this as the listener (sets the event queue)
+    trezor.addListener(trezorClient);
+
+    // Return the new client
+    return trezorClient;
+  }
+
 }
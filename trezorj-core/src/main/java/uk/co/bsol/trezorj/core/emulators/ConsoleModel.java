@@ -0,0 +1,118 @@
+package uk.co.bsol.trezorj.core.emulators;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * <p>In-memory model to provide the following to the headless emulator console:</p>
+ * <ul>
+ * <li>A bounded scrollback of the most recent lines written</li>
+ * <li>An output stream that feeds the scrollback</li>
+ * </ul>
+ * <p>Once the scrollback is full the oldest lines are discarded. The model is thread safe.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class ConsoleModel {
+
+  public static final int DEFAULT_MAX_LINES = 1000;
+
+  private final int maxLines;
+  private final LinkedList<String> lines = Lists.newLinkedList();
+  private long totalLineCount = 0;
+
+  /**
+   * @param maxLines The maximum number of lines held in the scrollback
+   *
+   * @return A new empty console model
+   */
+  public static ConsoleModel newInstance(int maxLines) {
+    Preconditions.checkArgument(maxLines > 0, "'maxLines' must be greater than zero");
+    return new ConsoleModel(maxLines);
+  }
+
+  /**
+   * @return A new empty console model with the default scrollback
+   */
+  public static ConsoleModel newInstance() {
+    return newInstance(DEFAULT_MAX_LINES);
+  }
+
+  /**
+   * Use the utility constructor
+   */
+  private ConsoleModel(int maxLines) {
+    this.maxLines = maxLines;
+  }
+
+  /**
+   * @param line The line to append (without terminator)
+   */
+  public synchronized void appendLine(String line) {
+
+    lines.add(line);
+    totalLineCount++;
+    if (lines.size() > maxLines) {
+      lines.removeFirst();
+    }
+  }
+
+  /**
+   * @return A copy of the lines in the scrollback, oldest first
+   */
+  public synchronized List<String> getLines() {
+    return Lists.newArrayList(lines);
+  }
+
+  /**
+   * @return The scrollback as newline terminated text
+   */
+  public synchronized String getText() {
+
+    StringBuilder sb = new StringBuilder();
+    for (String line : lines) {
+      sb.append(line).append('\n');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @return The number of lines written since creation (or the last clear), including those discarded
+   */
+  public synchronized long getTotalLineCount() {
+    return totalLineCount;
+  }
+
+  /**
+   * @return The maximum number of lines held in the scrollback
+   */
+  public int getMaxLines() {
+    return maxLines;
+  }
+
+  /**
+   * Clear the scrollback
+   */
+  public synchronized void clear() {
+    lines.clear();
+    totalLineCount = 0;
+  }
+
+  /**
+   * @return An output stream appending each completed line to this model
+   */
+  public OutputStream newOutputStream() {
+    return new LineOutputStream() {
+      @Override
+      protected void onLine(String line) {
+        appendLine(line);
+      }
+    };
+  }
+
+}
@@ -0,0 +1,522 @@
+package uk.co.bsol.trezorj.core.emulators;
+
+import com.codeminders.hidapi.HIDDevice;
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>HID device to provide the following to USB tests and benchmarks:</p>
+ * <ul>
+ * <li>An in-memory stand-in for a CP211x USB to UART bridge that needs no native library or hardware</li>
+ * <li>Interrupt reports of up to 64 bytes with the payload length in the first byte</li>
+ * <li>The reset (0x40), enable (0x41), status (0x42) and purge (0x43) feature reports</li>
+ * <li>Bounded transmit and receive FIFOs with hardware flow control (writers block while a FIFO is full)</li>
+ * </ul>
+ * <p>The host side is the usual {@link HIDDevice} API used by the {@link uk.co.bsol.trezorj.core.usb.CP211xBridge}.
+ * The device side is a pair of UART streams which can be handed to a {@link ReactiveTrezorEmulator} (see
+ * {@link ReactiveTrezorEmulator#newHIDEmulator(EmulatedHIDDevice)}). Data arriving from the UART while it is
+ * disabled is discarded, as it would be by the bridge.</p>
+ * <p>Example:</p>
+ * <pre>
+ * EmulatedHIDDevice device = EmulatedHIDDevice.newInstance("emulated-1");
+ * ReactiveTrezorEmulator.newHIDEmulator(device).start();
+ *
+ * BlockingTrezorClient client = TrezorClients.newBlockingUsbInstance(device, sessionId);
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class EmulatedHIDDevice extends HIDDevice {
+
+  private static final Logger log = LoggerFactory.getLogger(EmulatedHIDDevice.class);
+
+  /**
+   * The size of a HID report including the length byte
+   */
+  public static final int REPORT_SIZE = 64;
+
+  /**
+   * The size of each FIFO in the bridge
+   */
+  public static final int FIFO_SIZE = 480;
+
+  private static final byte RESET_REPORT = 0x40;
+  private static final byte ENABLE_REPORT = 0x41;
+  private static final byte STATUS_REPORT = 0x42;
+  private static final byte PURGE_REPORT = 0x43;
+
+  private static final int PURGE_TX = 1;
+  private static final int PURGE_RX = 2;
+
+  private final String serialNumber;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition fifoChanged = lock.newCondition();
+
+  // Host to UART (guarded by the lock)
+  private final ByteFifo txFifo = new ByteFifo(FIFO_SIZE);
+  // UART to host (guarded by the lock)
+  private final ByteFifo rxFifo = new ByteFifo(FIFO_SIZE);
+
+  private boolean isUartEnabled = false;
+  private boolean isClosed = false;
+  private int resetCount = 0;
+
+  // The longest a timed read waits for more data (a real bridge takes the reader's timeout)
+  private volatile int completionTimeoutMillis = Integer.MAX_VALUE;
+
+  private final InputStream uartInputStream = new UartInputStream();
+  private final OutputStream uartOutputStream = new UartOutputStream();
+
+  /**
+   * @param serialNumber The serial number reported to the host
+   *
+   * @return A new emulated device with the UART disabled
+   */
+  public static EmulatedHIDDevice newInstance(String serialNumber) {
+
+    Preconditions.checkNotNull(serialNumber, "'serialNumber' must be present");
+
+    return new EmulatedHIDDevice(serialNumber);
+  }
+
+  /**
+   * Use the utility constructor
+   */
+  private EmulatedHIDDevice(String serialNumber) {
+    // No native peer
+    super(0);
+    this.serialNumber = serialNumber;
+  }
+
+  /**
+   * @return The stream the emulated Trezor reads host data from (ends when the device is closed)
+   */
+  public InputStream getUartInputStream() {
+    return uartInputStream;
+  }
+
+  /**
+   * @return The stream the emulated Trezor writes responses to
+   */
+  public OutputStream getUartOutputStream() {
+    return uartOutputStream;
+  }
+
+  /**
+   * @return The number of reset feature reports received
+   */
+  public int getResetCount() {
+    lock.lock();
+    try {
+      return resetCount;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * <p>Shorten the wait a timed read makes for the next report. The host reads a message as reports until a timed
+   * read comes back empty so this wait is added to every response. The UART streams carry no message boundaries
+   * so a short wait at most splits a message over two reads, which the byte stream above does not notice.</p>
+   *
+   * @param completionTimeoutMillis The longest a timed read waits in milliseconds (at most the reader's timeout)
+   */
+  public void setCompletionTimeoutMillis(int completionTimeoutMillis) {
+
+    Preconditions.checkArgument(completionTimeoutMillis >= 0, "'completionTimeoutMillis' must not be negative");
+
+    this.completionTimeoutMillis = completionTimeoutMillis;
+  }
+
+  /**
+   * @return True if the UART has been enabled by the host
+   */
+  public boolean isUartEnabled() {
+    lock.lock();
+    try {
+      return isUartEnabled;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      isClosed = true;
+      fifoChanged.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int write(byte[] report) throws IOException {
+
+    Preconditions.checkNotNull(report, "'report' must be present");
+
+    int payloadLength = report.length == 0 ? 0 : report[0];
+    if (report.length > REPORT_SIZE || payloadLength < 1 || payloadLength > REPORT_SIZE - 1 || payloadLength >= report.length) {
+      throw new IOException("Report is not valid: length " + report.length + " payload " + payloadLength);
+    }
+
+    lock.lock();
+    try {
+      checkOpen();
+      if (!isUartEnabled) {
+        throw new IOException("UART is not enabled");
+      }
+
+      // Flow control holds the host until the UART has drained enough of the FIFO
+      int offset = 1;
+      while (offset <= payloadLength) {
+        while (txFifo.isFull()) {
+          fifoChanged.await();
+          checkOpen();
+        }
+        offset += txFifo.put(report, offset, payloadLength + 1 - offset);
+        fifoChanged.signalAll();
+      }
+    } catch (InterruptedException e) {
+      throw new IOException("Interrupted during write");
+    } finally {
+      lock.unlock();
+    }
+
+    return report.length;
+  }
+
+  @Override
+  public int read(byte[] buffer) throws IOException {
+
+    lock.lock();
+    try {
+      while (rxFifo.isEmpty()) {
+        checkOpen();
+        fifoChanged.await();
+      }
+      return takeReport(buffer);
+    } catch (InterruptedException e) {
+      throw new IOException("Interrupted during read");
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int readTimeout(byte[] buffer, int timeoutMillis) {
+
+    lock.lock();
+    try {
+      long remainingNanos = TimeUnit.MILLISECONDS.toNanos(Math.min(timeoutMillis, completionTimeoutMillis));
+      while (rxFifo.isEmpty()) {
+        if (isClosed) {
+          return -1;
+        }
+        if (remainingNanos <= 0) {
+          return 0;
+        }
+        remainingNanos = fifoChanged.awaitNanos(remainingNanos);
+      }
+      return takeReport(buffer);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return -1;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void enableBlocking() throws IOException {
+    // Reads are always blocking unless a timeout is given
+  }
+
+  @Override
+  public void disableBlocking() throws IOException {
+    throw new IOException("Non-blocking reads are not supported by the emulated device");
+  }
+
+  @Override
+  public int sendFeatureReport(byte[] report) throws IOException {
+
+    Preconditions.checkNotNull(report, "'report' must be present");
+    if (report.length < 2) {
+      throw new IOException("Feature report is too short");
+    }
+
+    lock.lock();
+    try {
+      checkOpen();
+      switch (report[0]) {
+        case RESET_REPORT:
+          // Equivalent to unplug then replug so all state is lost
+          log.debug("UART reset");
+          txFifo.clear();
+          rxFifo.clear();
+          isUartEnabled = false;
+          resetCount++;
+          break;
+        case ENABLE_REPORT:
+          isUartEnabled = report[1] != 0;
+          log.debug("UART enabled: {}", isUartEnabled);
+          break;
+        case PURGE_REPORT:
+          if ((report[1] & PURGE_TX) != 0) {
+            txFifo.clear();
+          }
+          if ((report[1] & PURGE_RX) != 0) {
+            rxFifo.clear();
+          }
+          log.debug("UART purged: {}", report[1]);
+          break;
+        default:
+          throw new IOException("Unsupported feature report: " + report[0]);
+      }
+      fifoChanged.signalAll();
+    } finally {
+      lock.unlock();
+    }
+
+    return report.length;
+  }
+
+  @Override
+  public int getFeatureReport(byte[] report) throws IOException {
+
+    Preconditions.checkNotNull(report, "'report' must be present");
+
+    lock.lock();
+    try {
+      checkOpen();
+      switch (report[0]) {
+        case ENABLE_REPORT:
+          checkReportLength(report, 2);
+          report[1] = (byte) (isUartEnabled ? 1 : 0);
+          return 2;
+        case STATUS_REPORT:
+          // See CP211xBridge.status() for the layout (no parity, overrun or line break errors are emulated)
+          checkReportLength(report, 7);
+          report[1] = (byte) (txFifo.size() >> 8);
+          report[2] = (byte) txFifo.size();
+          report[3] = (byte) (rxFifo.size() >> 8);
+          report[4] = (byte) rxFifo.size();
+          report[5] = 0;
+          report[6] = 0;
+          return 7;
+        default:
+          throw new IOException("Unsupported feature report: " + report[0]);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public String getManufacturerString() throws IOException {
+    return "Silicon Labs";
+  }
+
+  @Override
+  public String getProductString() throws IOException {
+    return "CP2110 HID USB-to-UART Bridge (emulated)";
+  }
+
+  @Override
+  public String getSerialNumberString() throws IOException {
+    return serialNumber;
+  }
+
+  @Override
+  public String getIndexedString(int index) throws IOException {
+    throw new IOException("Indexed strings are not supported by the emulated device");
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return this == o;
+  }
+
+  @Override
+  public int hashCode() {
+    return System.identityHashCode(this);
+  }
+
+  /**
+   * <p>Move up to one report worth of the receive FIFO into the buffer (the lock must be held)</p>
+   *
+   * @return The number of bytes in the report including the length byte
+   */
+  private int takeReport(byte[] buffer) {
+
+    int payloadLength = rxFifo.take(buffer, 1, Math.min(buffer.length, REPORT_SIZE) - 1);
+    buffer[0] = (byte) payloadLength;
+    fifoChanged.signalAll();
+
+    return payloadLength + 1;
+  }
+
+  private void checkOpen() throws IOException {
+    if (isClosed) {
+      throw new IOException("Device is closed");
+    }
+  }
+
+  private void checkReportLength(byte[] report, int length) throws IOException {
+    if (report.length < length) {
+      throw new IOException("Feature report buffer must be at least " + length + " bytes");
+    }
+  }
+
+  /**
+   * The emulated Trezor reads what the host has written
+   */
+  private class UartInputStream extends InputStream {
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+      if (len == 0) {
+        return 0;
+      }
+
+      lock.lock();
+      try {
+        while (txFifo.isEmpty()) {
+          if (isClosed) {
+            return -1;
+          }
+          fifoChanged.await();
+        }
+        int count = txFifo.take(b, off, len);
+        fifoChanged.signalAll();
+        return count;
+      } catch (InterruptedException e) {
+        throw new IOException("Interrupted during UART read");
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      EmulatedHIDDevice.this.close();
+    }
+  }
+
+  /**
+   * The emulated Trezor writes responses for the host
+   */
+  private class UartOutputStream extends OutputStream {
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+
+      lock.lock();
+      try {
+        int end = off + len;
+        while (off < end) {
+          checkOpen();
+          if (!isUartEnabled) {
+            log.debug("UART disabled so discarding {} bytes", end - off);
+            return;
+          }
+          if (rxFifo.isFull()) {
+            fifoChanged.await();
+            continue;
+          }
+          off += rxFifo.put(b, off, end - off);
+          fifoChanged.signalAll();
+        }
+      } catch (InterruptedException e) {
+        throw new IOException("Interrupted during UART write");
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      EmulatedHIDDevice.this.close();
+    }
+  }
+
+  /**
+   * A fixed capacity circular byte buffer (not thread safe)
+   */
+  private static class ByteFifo {
+
+    private final byte[] buffer;
+    private int head = 0;
+    private int size = 0;
+
+    private ByteFifo(int capacity) {
+      this.buffer = new byte[capacity];
+    }
+
+    private int size() {
+      return size;
+    }
+
+    private boolean isEmpty() {
+      return size == 0;
+    }
+
+    private boolean isFull() {
+      return size == buffer.length;
+    }
+
+    private void clear() {
+      head = 0;
+      size = 0;
+    }
+
+    /**
+     * @return The number of bytes accepted (limited by the free space)
+     */
+    private int put(byte[] source, int offset, int length) {
+      int count = Math.min(length, buffer.length - size);
+      for (int i = 0; i < count; i++) {
+        buffer[(head + size + i) % buffer.length] = source[offset + i];
+      }
+      size += count;
+      return count;
+    }
+
+    /**
+     * @return The number of bytes removed (limited by the available data)
+     */
+    private int take(byte[] target, int offset, int length) {
+      int count = Math.min(length, size);
+      for (int i = 0; i < count; i++) {
+        target[offset + i] = buffer[(head + i) % buffer.length];
+      }
+      head = (head + count) % buffer.length;
+      size -= count;
+      return count;
+    }
+  }
+
+}
@@ -0,0 +1,27 @@
+package uk.co.bsol.trezorj.core.emulators;
+
+import com.google.protobuf.Message;
+
+import java.util.List;
+
+/**
+ * <p>Interface to provide the following to the reactive emulator:</p>
+ * <ul>
+ * <li>Device-side behaviour for a single message type</li>
+ * </ul>
+ * <p>Handlers are shared across sessions so any device state must be kept in the {@link EmulatorSession}.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public interface EmulatorHandler {
+
+  /**
+   * @param session The emulator session holding the device state for this connection
+   * @param request The request message from the client
+   *
+   * @return The response messages in the order they should be sent (empty for no response)
+   */
+  List<Message> handle(EmulatorSession session, Message request);
+
+}
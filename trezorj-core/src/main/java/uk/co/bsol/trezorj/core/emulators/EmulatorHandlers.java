@@ -0,0 +1,294 @@
+package uk.co.bsol.trezorj.core.emulators;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Factory to provide the following to the reactive emulator:</p>
+ * <ul>
+ * <li>Default handlers answering each request type the way a device would</li>
+ * </ul>
+ * <p>Keys, addresses and entropy are fake but deterministic for a given session seed and have realistic sizes.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class EmulatorHandlers {
+
+  private static final char[] BASE58_ALPHABET = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz".toCharArray();
+
+  /**
+   * The largest Entropy block the emulator will provide
+   */
+  public static final int MAX_ENTROPY_SIZE = 1024;
+
+  /**
+   * Utilities have no public constructor
+   */
+  private EmulatorHandlers() {
+  }
+
+  /**
+   * @return A new mutable map of the default handlers for all supported request types
+   */
+  public static Map<MessageType, EmulatorHandler> newDefaultHandlers() {
+
+    Map<MessageType, EmulatorHandler> handlers = Maps.newEnumMap(MessageType.class);
+
+    handlers.put(MessageType.PING, newPingHandler());
+    handlers.put(MessageType.INITALIZE, newInitializeHandler());
+    handlers.put(MessageType.GET_UUID, newGetUUIDHandler());
+    handlers.put(MessageType.GET_ENTROPY, newGetEntropyHandler());
+    handlers.put(MessageType.GET_MASTER_PUBLIC_KEY, newGetMasterPublicKeyHandler());
+    handlers.put(MessageType.GET_ADDRESS, newGetAddressHandler());
+    handlers.put(MessageType.SET_MAX_FEE_KB, newSetMaxFeeKbHandler());
+    handlers.put(MessageType.LOAD_DEVICE, newLoadDeviceHandler());
+    handlers.put(MessageType.RESET_DEVICE, newResetDeviceHandler());
+
+    // Signing is a conversation so one handler covers all its messages
+    SignTxHandler signTxHandler = new SignTxHandler();
+    handlers.put(MessageType.SIGN_TX, signTxHandler);
+    handlers.put(MessageType.TX_INPUT, signTxHandler);
+    handlers.put(MessageType.TX_OUTPUT, signTxHandler);
+
+    // Acknowledgements and cancellations are accepted without further action
+    EmulatorHandler successHandler = newSuccessHandler();
+    handlers.put(MessageType.BUTTON_ACK, successHandler);
+    handlers.put(MessageType.BUTTON_CANCEL, successHandler);
+    handlers.put(MessageType.OTP_ACK, successHandler);
+    handlers.put(MessageType.OTP_CANCEL, successHandler);
+    handlers.put(MessageType.PIN_ACK, successHandler);
+    handlers.put(MessageType.PIN_CANCEL, successHandler);
+
+    return handlers;
+  }
+
+  /**
+   * @return A handler that echoes the Ping message in a Success
+   */
+  public static EmulatorHandler newPingHandler() {
+    return new EmulatorHandler() {
+      @Override
+      public List<Message> handle(EmulatorSession session, Message request) {
+        return newSuccess(((TrezorMessage.Ping) request).getMessage());
+      }
+    };
+  }
+
+  /**
+   * @return A handler that starts a session and describes the device in a Features
+   */
+  public static EmulatorHandler newInitializeHandler() {
+    return new EmulatorHandler() {
+      @Override
+      public List<Message> handle(EmulatorSession session, Message request) {
+
+        ByteString sessionId = ((TrezorMessage.Initialize) request).getSessionId();
+        session.setSessionId(sessionId);
+
+        return Collections.<Message>singletonList(TrezorMessage.Features
+          .newBuilder()
+          .setSessionId(sessionId)
+          .setVendor("trezorj-emulator")
+          .setMajorVersion(0)
+          .setMinorVersion(1)
+          .setHasOtp(session.hasOtp())
+          .setHasSpv(false)
+          .setPin(session.hasPin())
+          .setAlgo(session.getAlgorithm())
+          .addAlgoAvailable(TrezorMessage.Algorithm.BIP32)
+          .addAlgoAvailable(TrezorMessage.Algorithm.ELECTRUM)
+          .setMaxfeeKb(session.getMaxFeeKb())
+          .build());
+      }
+    };
+  }
+
+  /**
+   * @return A handler that provides the device UUID
+   */
+  public static EmulatorHandler newGetUUIDHandler() {
+    return new EmulatorHandler() {
+      @Override
+      public List<Message> handle(EmulatorSession session, Message request) {
+        return Collections.<Message>singletonList(TrezorMessage.UUID
+          .newBuilder()
+          .setUUID(session.getUuid())
+          .build());
+      }
+    };
+  }
+
+  /**
+   * @return A handler that provides the requested amount of (seeded) random data
+   */
+  public static EmulatorHandler newGetEntropyHandler() {
+    return new EmulatorHandler() {
+      @Override
+      public List<Message> handle(EmulatorSession session, Message request) {
+
+        int size = ((TrezorMessage.GetEntropy) request).getSize();
+        if (size < 0 || size > MAX_ENTROPY_SIZE) {
+          return EmulatorSession.newFailureResponse("Entropy size must be between 0 and " + MAX_ENTROPY_SIZE);
+        }
+
+        byte[] entropy = new byte[size];
+        session.getRandom().nextBytes(entropy);
+
+        return Collections.<Message>singletonList(TrezorMessage.Entropy
+          .newBuilder()
+          .setEntropy(ByteString.copyFrom(entropy))
+          .build());
+      }
+    };
+  }
+
+  /**
+   * @return A handler that provides an uncompressed (65 byte) master public key derived from the device UUID
+   */
+  public static EmulatorHandler newGetMasterPublicKeyHandler() {
+    return new EmulatorHandler() {
+      @Override
+      public List<Message> handle(EmulatorSession session, Message request) {
+
+        byte[] key = new byte[65];
+        key[0] = 0x04;
+        System.arraycopy(newDeviceHash(session, "x").asBytes(), 0, key, 1, 32);
+        System.arraycopy(newDeviceHash(session, "y").asBytes(), 0, key, 33, 32);
+
+        return Collections.<Message>singletonList(TrezorMessage.MasterPublicKey
+          .newBuilder()
+          .setKey(ByteString.copyFrom(key))
+          .build());
+      }
+    };
+  }
+
+  /**
+   * @return A handler that provides a fake base58 address derived from the device UUID and address path
+   */
+  public static EmulatorHandler newGetAddressHandler() {
+    return new EmulatorHandler() {
+      @Override
+      public List<Message> handle(EmulatorSession session, Message request) {
+
+        Hasher hasher = Hashing.sha256().newHasher().putBytes(session.getUuid().toByteArray());
+        for (Integer addressN : ((TrezorMessage.GetAddress) request).getAddressNList()) {
+          hasher.putInt(addressN);
+        }
+        byte[] hash = hasher.hash().asBytes();
+
+        // Same length as a pay to address (P2PKH) address but without a valid checksum
+        StringBuilder address = new StringBuilder("1");
+        for (int i = 0; i < 33; i++) {
+          address.append(BASE58_ALPHABET[(hash[i % hash.length] & 0xff) % BASE58_ALPHABET.length]);
+        }
+
+        return Collections.<Message>singletonList(TrezorMessage.Address
+          .newBuilder()
+          .setAddress(address.toString())
+          .build());
+      }
+    };
+  }
+
+  /**
+   * @return A handler that updates the maximum fee per Kb
+   */
+  public static EmulatorHandler newSetMaxFeeKbHandler() {
+    return new EmulatorHandler() {
+      @Override
+      public List<Message> handle(EmulatorSession session, Message request) {
+        session.setMaxFeeKb(((TrezorMessage.SetMaxFeeKb) request).getMaxfeeKb());
+        return newSuccess("");
+      }
+    };
+  }
+
+  /**
+   * @return A handler that replaces the seed and security settings
+   */
+  public static EmulatorHandler newLoadDeviceHandler() {
+    return new EmulatorHandler() {
+      @Override
+      public List<Message> handle(EmulatorSession session, Message request) {
+
+        TrezorMessage.LoadDevice loadDevice = (TrezorMessage.LoadDevice) request;
+        session.setSeed(Optional.of(loadDevice.getSeed()));
+        session.setAlgorithm(loadDevice.getAlgo());
+        session.setOtp(loadDevice.getOtp());
+        session.setPin(loadDevice.hasPin() && !loadDevice.getPin().isEmpty());
+
+        return newSuccess("");
+      }
+    };
+  }
+
+  /**
+   * @return A handler that clears the seed and security settings
+   */
+  public static EmulatorHandler newResetDeviceHandler() {
+    return new EmulatorHandler() {
+      @Override
+      public List<Message> handle(EmulatorSession session, Message request) {
+
+        session.setSeed(Optional.<String>absent());
+        session.setOtp(false);
+        session.setPin(false);
+
+        return newSuccess("");
+      }
+    };
+  }
+
+  /**
+   * @return A handler that always responds with an empty Success
+   */
+  public static EmulatorHandler newSuccessHandler() {
+    return new EmulatorHandler() {
+      @Override
+      public List<Message> handle(EmulatorSession session, Message request) {
+        return newSuccess("");
+      }
+    };
+  }
+
+  /**
+   * @param message The human readable message
+   *
+   * @return A single Success response
+   */
+  public static List<Message> newSuccess(String message) {
+    return Collections.<Message>singletonList(TrezorMessage.Success
+      .newBuilder()
+      .setMessage(message)
+      .build());
+  }
+
+  /**
+   * @param session The emulator session
+   * @param label   A label to distinguish different values
+   *
+   * @return A hash that is fixed for the emulated device
+   */
+  private static HashCode newDeviceHash(EmulatorSession session, String label) {
+    return Hashing.sha256()
+      .newHasher()
+      .putBytes(session.getUuid().toByteArray())
+      .putString(label, Charsets.UTF_8)
+      .hash();
+  }
+
+}
@@ -0,0 +1,370 @@
+package uk.co.bsol.trezorj.core.emulators;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.utils.Clock;
+import uk.co.bsol.trezorj.core.utils.TrezorMessageUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Session to provide the following to the reactive emulator:</p>
+ * <ul>
+ * <li>The emulated device state for a single connection</li>
+ * <li>A request/response loop that dispatches each decoded frame to its handler</li>
+ * </ul>
+ * <p>The device state is deterministic for a given seed so that tests and benchmarks are repeatable.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class EmulatorSession implements Runnable {
+
+  private static final Logger log = LoggerFactory.getLogger(EmulatorSession.class);
+
+  private final Map<MessageType, EmulatorHandler> handlers;
+  private final Map<MessageType, Long> latencyMillis;
+  private final FaultProfile faultProfile;
+  private final DataInputStream in;
+  private final DataOutputStream out;
+  private final Clock clock;
+
+  // Faults draw from their own generator so adding a fault does not change the device state
+  private final Random faultRandom;
+  private final Map<MessageType, Integer> typeMessageCounts = Maps.newEnumMap(MessageType.class);
+  private int messageCount = 0;
+
+  // The type of the request being handled (null if it could not be decoded)
+  private MessageType requestType = null;
+
+  // Device state
+  private final Random random;
+  private final ByteString uuid;
+  private Optional<ByteString> sessionIdOptional = Optional.absent();
+  private long maxFeeKb = 1000000L;
+  private TrezorMessage.Algorithm algorithm = TrezorMessage.Algorithm.BIP32;
+  private boolean hasOtp = false;
+  private boolean hasPin = false;
+  private Optional<String> seedOptional = Optional.absent();
+
+  // Conversation state owned by individual handlers (e.g. signing)
+  private final Map<String, Object> attributes = Maps.newHashMap();
+
+  /**
+   * @param handlers      The handlers for each message type (unhandled types receive a Failure)
+   * @param latencyMillis The delay before responding to each message type in milliseconds (absent for immediate)
+   * @param faultProfile  The transport faults to apply to the responses
+   * @param in            The stream carrying requests from the client
+   * @param out           The stream carrying responses to the client
+   * @param seed          The seed for the device state (e.g. UUID and entropy)
+   * @param clock         The clock for the response latency
+   */
+  public EmulatorSession(
+    Map<MessageType, EmulatorHandler> handlers,
+    Map<MessageType, Long> latencyMillis,
+    FaultProfile faultProfile,
+    DataInputStream in,
+    DataOutputStream out,
+    long seed,
+    Clock clock) {
+
+    Preconditions.checkNotNull(handlers, "'handlers' must be present");
+    Preconditions.checkNotNull(latencyMillis, "'latencyMillis' must be present");
+    Preconditions.checkNotNull(faultProfile, "'faultProfile' must be present");
+    Preconditions.checkNotNull(in, "'in' must be present");
+    Preconditions.checkNotNull(out, "'out' must be present");
+    Preconditions.checkNotNull(clock, "'clock' must be present");
+
+    this.handlers = ImmutableMap.copyOf(handlers);
+    this.latencyMillis = ImmutableMap.copyOf(latencyMillis);
+    this.faultProfile = faultProfile;
+    this.in = in;
+    this.out = out;
+    this.clock = clock;
+
+    this.random = new Random(seed);
+    this.faultRandom = new Random(~seed);
+    byte[] uuidBytes = new byte[12];
+    random.nextBytes(uuidBytes);
+    this.uuid = ByteString.copyFrom(uuidBytes);
+
+  }
+
+  @Override
+  public void run() {
+
+    log.debug("Emulator session started");
+
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+
+        List<Message> responses;
+        MessageType messageType = null;
+        requestType = null;
+        try {
+          Message request = TrezorMessageUtils.readMessage(in);
+          messageType = MessageType.getMessageType(request);
+          requestType = messageType;
+          responses = dispatch(messageType, request);
+        } catch (InvalidProtocolBufferException e) {
+          responses = newFailureResponse("Message could not be parsed");
+        } catch (RuntimeException e) {
+          // Includes missing required fields and unknown header codes
+          log.warn("Emulator rejected request: {}", e.getMessage());
+          responses = newFailureResponse(e.getMessage());
+        }
+
+        if (messageType != null) {
+          Long latency = latencyMillis.get(messageType);
+          if (latency != null && latency > 0) {
+            clock.sleep(latency, TimeUnit.MILLISECONDS);
+          }
+        }
+
+        for (Message response : responses) {
+          if (!write(messageType, response)) {
+            log.debug("Emulator session disconnected by fault profile");
+            out.close();
+            return;
+          }
+        }
+      }
+    } catch (EOFException e) {
+      log.debug("Client closed the emulator session");
+    } catch (IOException e) {
+      log.debug("Emulator session ended: {}", e.getMessage());
+    } catch (InterruptedException e) {
+      log.debug("Emulator session interrupted");
+    }
+
+  }
+
+  /**
+   * <p>Write a response straight away rather than returning it from the handler (e.g. to pace several responses).
+   * Only for use by a handler on the session thread. The fault profile applies as usual but the response latency
+   * does not.</p>
+   *
+   * @param response The response to write
+   *
+   * @throws IOException          If the client disconnects during IO or the fault profile drops the connection
+   * @throws InterruptedException If interrupted during a delay
+   */
+  public void send(Message response) throws IOException, InterruptedException {
+
+    Preconditions.checkNotNull(response, "'response' must be present");
+
+    if (!write(requestType, response)) {
+      out.close();
+      throw new EOFException("Emulator session disconnected by fault profile");
+    }
+  }
+
+  /**
+   * @param requestType The message type of the request (null if it could not be decoded)
+   * @param response    The response to write
+   *
+   * @return False if the connection should be dropped
+   *
+   * @throws IOException          If the client disconnects during IO
+   * @throws InterruptedException If interrupted during a delay
+   */
+  private boolean write(MessageType requestType, Message response) throws IOException, InterruptedException {
+
+    if (faultProfile.isEmpty()) {
+      TrezorMessageUtils.writeMessage(response, out);
+      return true;
+    }
+    return writeWithFaults(requestType, response);
+  }
+
+  /**
+   * @param requestType The message type of the request (null if it could not be decoded)
+   * @param response    The response to write
+   *
+   * @return False if the connection should be dropped
+   *
+   * @throws IOException          If the client disconnects during IO
+   * @throws InterruptedException If interrupted during a delay
+   */
+  private boolean writeWithFaults(MessageType requestType, Message response) throws IOException, InterruptedException {
+
+    ByteArrayOutputStream frame = new ByteArrayOutputStream(Faults.FRAME_HEADER_SIZE + response.getSerializedSize());
+    TrezorMessageUtils.writeMessage(response, new DataOutputStream(frame));
+
+    FaultContext context = new FaultContext(faultRandom, Optional.fromNullable(requestType), frame.toByteArray());
+
+    messageCount++;
+    int typeMessageCount = 0;
+    if (requestType != null) {
+      Integer count = typeMessageCounts.get(requestType);
+      typeMessageCount = count == null ? 1 : count + 1;
+      typeMessageCounts.put(requestType, typeMessageCount);
+    }
+    faultProfile.apply(context, messageCount, typeMessageCount);
+
+    if (context.getDelayMillis() > 0) {
+      clock.sleep(context.getDelayMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    byte[] bytes = context.getFrame();
+    int length = context.isDisconnect() ? context.getDisconnectAfterBytes() : bytes.length;
+    int maxChunkSize = context.getMaxChunkSize() > 0 ? context.getMaxChunkSize() : Math.max(length, 1);
+
+    int offset = 0;
+    while (offset < length) {
+      if (offset > 0 && context.getChunkPauseMillis() > 0) {
+        clock.sleep(context.getChunkPauseMillis(), TimeUnit.MILLISECONDS);
+      }
+      int chunkSize = Math.min(length - offset, 1 + faultRandom.nextInt(maxChunkSize));
+      out.write(bytes, offset, chunkSize);
+      out.flush();
+      offset += chunkSize;
+    }
+
+    return !context.isDisconnect();
+  }
+
+  /**
+   * @param messageType The message type of the request
+   * @param request     The request message
+   *
+   * @return The responses from the handler
+   */
+  private List<Message> dispatch(MessageType messageType, Message request) {
+
+    EmulatorHandler handler = handlers.get(messageType);
+    if (handler == null) {
+      return newFailureResponse("Unexpected message '" + messageType.name() + "'");
+    }
+
+    return handler.handle(this, request);
+  }
+
+  /**
+   * @param message The failure message
+   *
+   * @return A single Failure response
+   */
+  public static List<Message> newFailureResponse(String message) {
+    return Collections.<Message>singletonList(TrezorMessage.Failure
+      .newBuilder()
+      .setCode(1)
+      .setMessage(message == null ? "" : message)
+      .build());
+  }
+
+  /**
+   * @return The random number generator for the device state (seeded)
+   */
+  public Random getRandom() {
+    return random;
+  }
+
+  /**
+   * @return The clock for any delays a handler needs to add
+   */
+  public Clock getClock() {
+    return clock;
+  }
+
+  /**
+   * @return The unique identifier of the emulated device
+   */
+  public ByteString getUuid() {
+    return uuid;
+  }
+
+  /**
+   * @return The session ID from the last Initialize
+   */
+  public Optional<ByteString> getSessionId() {
+    return sessionIdOptional;
+  }
+
+  public void setSessionId(ByteString sessionId) {
+    this.sessionIdOptional = Optional.fromNullable(sessionId);
+  }
+
+  public long getMaxFeeKb() {
+    return maxFeeKb;
+  }
+
+  public void setMaxFeeKb(long maxFeeKb) {
+    this.maxFeeKb = maxFeeKb;
+  }
+
+  public TrezorMessage.Algorithm getAlgorithm() {
+    return algorithm;
+  }
+
+  public void setAlgorithm(TrezorMessage.Algorithm algorithm) {
+    this.algorithm = algorithm;
+  }
+
+  public boolean hasOtp() {
+    return hasOtp;
+  }
+
+  public void setOtp(boolean hasOtp) {
+    this.hasOtp = hasOtp;
+  }
+
+  public boolean hasPin() {
+    return hasPin;
+  }
+
+  public void setPin(boolean hasPin) {
+    this.hasPin = hasPin;
+  }
+
+  /**
+   * @return The seed from the last LoadDevice (absent if reset or never loaded)
+   */
+  public Optional<String> getSeed() {
+    return seedOptional;
+  }
+
+  public void setSeed(Optional<String> seedOptional) {
+    this.seedOptional = seedOptional;
+  }
+
+  /**
+   * @param key  The attribute key (normally the handler class name)
+   * @param type The expected type of the attribute
+   *
+   * @return The attribute if present
+   */
+  public <T> Optional<T> getAttribute(String key, Class<T> type) {
+    return Optional.fromNullable(type.cast(attributes.get(key)));
+  }
+
+  /**
+   * @param key   The attribute key (normally the handler class name)
+   * @param value The attribute value (null to remove)
+   */
+  public void setAttribute(String key, Object value) {
+    if (value == null) {
+      attributes.remove(key);
+    } else {
+      attributes.put(key, value);
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package uk.co.bsol.trezorj.core.emulators;
+
+/**
+ * <p>Interface to provide the following to the reactive emulator:</p>
+ * <ul>
+ * <li>A single transport fault applied to an outgoing frame (delay, fragmentation, corruption or disconnect)</li>
+ * </ul>
+ * <p>Faults are shared across sessions so they must be stateless. Any randomness must come from
+ * {@link FaultContext#getRandom()} so that a run is reproducible from the emulator seed.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public interface Fault {
+
+  /**
+   * @param context The context describing the frame about to be written (modified in place)
+   */
+  void apply(FaultContext context);
+
+}
@@ -0,0 +1,155 @@
+package uk.co.bsol.trezorj.core.emulators;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+
+import java.util.Random;
+
+/**
+ * <p>Mutable context to provide the following to faults:</p>
+ * <ul>
+ * <li>The framed bytes of a single response about to be written</li>
+ * <li>How the frame should be delayed, fragmented or followed by a disconnect</li>
+ * </ul>
+ * <p>A context is created by the {@link EmulatorSession} for each response and passed through every applicable
+ * {@link Fault} in turn so the effects compose (e.g. garbage followed by partial writes).</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class FaultContext {
+
+  private final Random random;
+  private final Optional<MessageType> requestTypeOptional;
+
+  private byte[] frame;
+  private int messageNumber = 1;
+  private long delayMillis = 0;
+  private int maxChunkSize = 0;
+  private long chunkPauseMillis = 0;
+  private boolean isDisconnect = false;
+  private int disconnectAfterBytes = 0;
+
+  /**
+   * @param random              The seeded fault random number generator for the session
+   * @param requestTypeOptional The type of the request being answered (absent if it could not be decoded)
+   * @param frame               The complete frame (alignment, header and detail)
+   */
+  public FaultContext(Random random, Optional<MessageType> requestTypeOptional, byte[] frame) {
+
+    Preconditions.checkNotNull(random, "'random' must be present");
+    Preconditions.checkNotNull(requestTypeOptional, "'requestTypeOptional' must be present");
+    Preconditions.checkNotNull(frame, "'frame' must be present");
+
+    this.random = random;
+    this.requestTypeOptional = requestTypeOptional;
+    this.frame = frame;
+  }
+
+  /**
+   * @return The seeded random number generator (the only source of randomness a fault should use)
+   */
+  public Random getRandom() {
+    return random;
+  }
+
+  /**
+   * @return The type of the request being answered
+   */
+  public Optional<MessageType> getRequestType() {
+    return requestTypeOptional;
+  }
+
+  /**
+   * @return The bytes that will be written
+   */
+  public byte[] getFrame() {
+    return frame;
+  }
+
+  public void setFrame(byte[] frame) {
+    Preconditions.checkNotNull(frame, "'frame' must be present");
+    this.frame = frame;
+  }
+
+  /**
+   * @return The number of this response (starting at 1) counted within the scope the fault was added for (all
+   *         responses in the session or only those for one request type)
+   */
+  public int getMessageNumber() {
+    return messageNumber;
+  }
+
+  void setMessageNumber(int messageNumber) {
+    this.messageNumber = messageNumber;
+  }
+
+  /**
+   * @return The delay before the first byte is written
+   */
+  public long getDelayMillis() {
+    return delayMillis;
+  }
+
+  /**
+   * @param delayMillis The additional delay before the first byte is written
+   */
+  public void addDelayMillis(long delayMillis) {
+    Preconditions.checkState(delayMillis >= 0, "'delayMillis' must not be negative");
+    this.delayMillis += delayMillis;
+  }
+
+  /**
+   * @return The largest number of bytes written (and flushed) at a time, 0 to write the frame at once
+   */
+  public int getMaxChunkSize() {
+    return maxChunkSize;
+  }
+
+  /**
+   * @return The pause between chunks
+   */
+  public long getChunkPauseMillis() {
+    return chunkPauseMillis;
+  }
+
+  /**
+   * @param maxChunkSize     The largest number of bytes written at a time
+   * @param chunkPauseMillis The pause between chunks
+   */
+  public void setPartialWrites(int maxChunkSize, long chunkPauseMillis) {
+
+    Preconditions.checkState(maxChunkSize > 0, "'maxChunkSize' must be greater than zero");
+    Preconditions.checkState(chunkPauseMillis >= 0, "'chunkPauseMillis' must not be negative");
+
+    this.maxChunkSize = maxChunkSize;
+    this.chunkPauseMillis = chunkPauseMillis;
+  }
+
+  /**
+   * @return True if the connection should be dropped at this frame
+   */
+  public boolean isDisconnect() {
+    return isDisconnect;
+  }
+
+  /**
+   * @return The number of bytes of the frame written before the connection is dropped
+   */
+  public int getDisconnectAfterBytes() {
+    return disconnectAfterBytes;
+  }
+
+  /**
+   * @param disconnectAfterBytes The number of bytes of the frame to write before dropping the connection
+   */
+  public void setDisconnect(int disconnectAfterBytes) {
+
+    Preconditions.checkState(disconnectAfterBytes >= 0, "'disconnectAfterBytes' must not be negative");
+
+    this.isDisconnect = true;
+    this.disconnectAfterBytes = Math.min(disconnectAfterBytes, frame.length);
+  }
+
+}
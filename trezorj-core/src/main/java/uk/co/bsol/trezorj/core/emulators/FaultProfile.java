@@ -0,0 +1,126 @@
+package uk.co.bsol.trezorj.core.emulators;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Profile to provide the following to the reactive emulator:</p>
+ * <ul>
+ * <li>A composable set of {@link Fault}s applied to every response or only to the responses for a request type</li>
+ * </ul>
+ * <p>Faults for all request types are applied first, then those for the request type being answered, each in the
+ * order they were added. Message numbers seen by a fault are counted within the scope it was added for.</p>
+ * <p>A profile must be fully configured before the emulator starts.</p>
+ * <p>Example:</p>
+ * <pre>
+ * FaultProfile profile = FaultProfile.newInstance();
+ * profile.add(Faults.logNormalLatency(20, 0.5, TimeUnit.MILLISECONDS));
+ * profile.add(Faults.partialWrites(8, 1, TimeUnit.MILLISECONDS));
+ * profile.add(MessageType.TX_INPUT, Faults.disconnectAt(3));
+ * emulator.setFaultProfile(profile);
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class FaultProfile {
+
+  private final List<Fault> faults = Lists.newArrayList();
+  private final Map<MessageType, List<Fault>> typeFaults = Maps.newEnumMap(MessageType.class);
+
+  /**
+   * @return A new empty profile (no faults)
+   */
+  public static FaultProfile newInstance() {
+    return new FaultProfile();
+  }
+
+  /**
+   * Use the utility constructor
+   */
+  private FaultProfile() {
+  }
+
+  /**
+   * @param fault The fault to apply to all responses
+   */
+  public void add(Fault fault) {
+
+    Preconditions.checkNotNull(fault, "'fault' must be present");
+
+    faults.add(fault);
+  }
+
+  /**
+   * @param requestType The request type whose responses are affected
+   * @param fault       The fault to apply
+   */
+  public void add(MessageType requestType, Fault fault) {
+
+    Preconditions.checkNotNull(requestType, "'requestType' must be present");
+    Preconditions.checkNotNull(fault, "'fault' must be present");
+
+    List<Fault> list = typeFaults.get(requestType);
+    if (list == null) {
+      list = Lists.newArrayList();
+      typeFaults.put(requestType, list);
+    }
+    list.add(fault);
+  }
+
+  /**
+   * <p>Compose another profile into this one (its faults are applied after the existing ones)</p>
+   *
+   * @param other The other profile
+   */
+  public void addAll(FaultProfile other) {
+
+    Preconditions.checkNotNull(other, "'other' must be present");
+
+    faults.addAll(other.faults);
+    for (Map.Entry<MessageType, List<Fault>> entry : other.typeFaults.entrySet()) {
+      for (Fault fault : entry.getValue()) {
+        add(entry.getKey(), fault);
+      }
+    }
+  }
+
+  /**
+   * @return True if no faults have been added
+   */
+  public boolean isEmpty() {
+    return faults.isEmpty() && typeFaults.isEmpty();
+  }
+
+  /**
+   * @param context           The context for the response about to be written
+   * @param messageNumber     The number of the response within the session (starting at 1)
+   * @param typeMessageNumber The number of the response within its request type (starting at 1)
+   */
+  void apply(FaultContext context, int messageNumber, int typeMessageNumber) {
+
+    context.setMessageNumber(messageNumber);
+    for (Fault fault : faults) {
+      fault.apply(context);
+    }
+
+    if (!context.getRequestType().isPresent()) {
+      return;
+    }
+    List<Fault> list = typeFaults.get(context.getRequestType().get());
+    if (list == null) {
+      return;
+    }
+
+    context.setMessageNumber(typeMessageNumber);
+    for (Fault fault : list) {
+      fault.apply(context);
+    }
+  }
+
+}
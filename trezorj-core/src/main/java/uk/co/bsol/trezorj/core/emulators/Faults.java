@@ -0,0 +1,291 @@
+package uk.co.bsol.trezorj.core.emulators;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Factory to provide the following to fault profiles:</p>
+ * <ul>
+ * <li>Latency distributions (fixed, uniform and log-normal for realistic tails) and jitter</li>
+ * <li>Partial writes that split a frame across several flushes</li>
+ * <li>Garbage injection, header corruption and truncation</li>
+ * <li>A disconnect at a chosen message (optionally part way through the frame)</li>
+ * </ul>
+ * <p>All randomness is drawn from the session fault random number generator so a run is reproducible from the
+ * emulator seed.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class Faults {
+
+  /**
+   * The size of the alignment string and header preceding the detail of a frame
+   */
+  public static final int FRAME_HEADER_SIZE = 8;
+
+  /**
+   * Utilities have no public constructor
+   */
+  private Faults() {
+  }
+
+  /**
+   * @param duration The delay added to every response
+   * @param timeUnit The time unit
+   *
+   * @return A fixed latency
+   */
+  public static Fault fixedLatency(long duration, TimeUnit timeUnit) {
+
+    Preconditions.checkState(duration >= 0, "'duration' must not be negative");
+    final long millis = timeUnit.toMillis(duration);
+
+    return new Fault() {
+      @Override
+      public void apply(FaultContext context) {
+        context.addDelayMillis(millis);
+      }
+    };
+  }
+
+  /**
+   * @param min      The smallest delay
+   * @param max      The largest delay
+   * @param timeUnit The time unit
+   *
+   * @return A latency drawn uniformly from the range
+   */
+  public static Fault uniformLatency(long min, long max, TimeUnit timeUnit) {
+
+    Preconditions.checkState(min >= 0 && max >= min, "'min' and 'max' must form a valid range");
+    final long minMillis = timeUnit.toMillis(min);
+    final long rangeMillis = timeUnit.toMillis(max) - minMillis;
+
+    return new Fault() {
+      @Override
+      public void apply(FaultContext context) {
+        context.addDelayMillis(minMillis + nextLong(context.getRandom(), rangeMillis + 1));
+      }
+    };
+  }
+
+  /**
+   * <p>A log-normal latency has most responses near the median and a long tail of slow ones, which is how a
+   * busy USB bridge tends to behave</p>
+   *
+   * @param median   The median delay
+   * @param sigma    The shape (0.5 gives a p99 around 3x the median, 1.0 around 10x)
+   * @param timeUnit The time unit
+   *
+   * @return A latency drawn from a log-normal distribution
+   */
+  public static Fault logNormalLatency(long median, final double sigma, TimeUnit timeUnit) {
+
+    Preconditions.checkState(median >= 0, "'median' must not be negative");
+    Preconditions.checkState(sigma >= 0, "'sigma' must not be negative");
+    final long medianMillis = timeUnit.toMillis(median);
+
+    return new Fault() {
+      @Override
+      public void apply(FaultContext context) {
+        context.addDelayMillis(Math.round(medianMillis * Math.exp(sigma * context.getRandom().nextGaussian())));
+      }
+    };
+  }
+
+  /**
+   * @param max      The largest additional delay
+   * @param timeUnit The time unit
+   *
+   * @return A jitter adding up to the given delay on top of any other latency
+   */
+  public static Fault jitter(long max, TimeUnit timeUnit) {
+    return uniformLatency(0, max, timeUnit);
+  }
+
+  /**
+   * @param maxChunkSize The largest number of bytes written at a time (each chunk size is drawn from 1 to this)
+   * @param pause        The pause between chunks
+   * @param timeUnit     The time unit
+   *
+   * @return A fault splitting each frame across several writes
+   */
+  public static Fault partialWrites(final int maxChunkSize, long pause, TimeUnit timeUnit) {
+
+    Preconditions.checkState(maxChunkSize > 0, "'maxChunkSize' must be greater than zero");
+    final long pauseMillis = timeUnit.toMillis(pause);
+
+    return new Fault() {
+      @Override
+      public void apply(FaultContext context) {
+        context.setPartialWrites(maxChunkSize, pauseMillis);
+      }
+    };
+  }
+
+  /**
+   * <p>Garbage never contains the alignment character so a client that resynchronizes on the alignment string
+   * can always recover</p>
+   *
+   * @param probability The probability of a frame being preceded by garbage
+   * @param maxBytes    The largest number of garbage bytes (the count is drawn from 1 to this)
+   *
+   * @return A fault injecting garbage before frames
+   */
+  public static Fault garbage(final double probability, final int maxBytes) {
+
+    checkProbability(probability);
+    Preconditions.checkState(maxBytes > 0, "'maxBytes' must be greater than zero");
+
+    return new Fault() {
+      @Override
+      public void apply(FaultContext context) {
+
+        Random random = context.getRandom();
+        if (random.nextDouble() >= probability) {
+          return;
+        }
+
+        byte[] garbage = new byte[1 + random.nextInt(maxBytes)];
+        random.nextBytes(garbage);
+        for (int i = 0; i < garbage.length; i++) {
+          if (garbage[i] == '#') {
+            garbage[i] = 0;
+          }
+        }
+
+        byte[] frame = context.getFrame();
+        byte[] corrupted = new byte[garbage.length + frame.length];
+        System.arraycopy(garbage, 0, corrupted, 0, garbage.length);
+        System.arraycopy(frame, 0, corrupted, garbage.length, frame.length);
+        context.setFrame(corrupted);
+      }
+    };
+  }
+
+  /**
+   * @param probability The probability of a frame having a single bit flipped in its header code or length
+   *
+   * @return A fault corrupting frame headers
+   */
+  public static Fault corruptHeader(final double probability) {
+
+    checkProbability(probability);
+
+    return new Fault() {
+      @Override
+      public void apply(FaultContext context) {
+
+        Random random = context.getRandom();
+        if (random.nextDouble() >= probability) {
+          return;
+        }
+
+        // Skip any garbage so the header itself is hit
+        byte[] frame = context.getFrame().clone();
+        int start = indexOfAlignment(frame);
+        if (start < 0 || start + FRAME_HEADER_SIZE > frame.length) {
+          return;
+        }
+        int index = start + 2 + random.nextInt(FRAME_HEADER_SIZE - 2);
+        frame[index] ^= (byte) (1 << random.nextInt(8));
+        context.setFrame(frame);
+      }
+    };
+  }
+
+  /**
+   * @param probability The probability of a frame being cut short (the client will misread the next frame)
+   *
+   * @return A fault truncating frames
+   */
+  public static Fault truncate(final double probability) {
+
+    checkProbability(probability);
+
+    return new Fault() {
+      @Override
+      public void apply(FaultContext context) {
+
+        Random random = context.getRandom();
+        byte[] frame = context.getFrame();
+        if (random.nextDouble() >= probability || frame.length < 2) {
+          return;
+        }
+
+        byte[] truncated = new byte[1 + random.nextInt(frame.length - 1)];
+        System.arraycopy(frame, 0, truncated, 0, truncated.length);
+        context.setFrame(truncated);
+      }
+    };
+  }
+
+  /**
+   * @param messageNumber The message (starting at 1) at which the connection is dropped without writing it
+   *
+   * @return A fault disconnecting once
+   */
+  public static Fault disconnectAt(final int messageNumber) {
+
+    Preconditions.checkState(messageNumber > 0, "'messageNumber' must be greater than zero");
+
+    return new Fault() {
+      @Override
+      public void apply(FaultContext context) {
+        if (context.getMessageNumber() == messageNumber) {
+          context.setDisconnect(0);
+        }
+      }
+    };
+  }
+
+  /**
+   * @param messageNumber The message (starting at 1) at which the connection is dropped part way through
+   *
+   * @return A fault disconnecting after writing a random portion of the frame
+   */
+  public static Fault disconnectMidFrameAt(final int messageNumber) {
+
+    Preconditions.checkState(messageNumber > 0, "'messageNumber' must be greater than zero");
+
+    return new Fault() {
+      @Override
+      public void apply(FaultContext context) {
+        if (context.getMessageNumber() == messageNumber) {
+          int length = context.getFrame().length;
+          context.setDisconnect(length < 2 ? 0 : 1 + context.getRandom().nextInt(length - 1));
+        }
+      }
+    };
+  }
+
+  /**
+   * @return The index of the alignment string or -1 if not present
+   */
+  private static int indexOfAlignment(byte[] frame) {
+    for (int i = 0; i < frame.length - 1; i++) {
+      if (frame[i] == '#' && frame[i + 1] == '#') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return A value drawn uniformly from 0 (inclusive) to bound (exclusive)
+   */
+  private static long nextLong(Random random, long bound) {
+    if (bound <= Integer.MAX_VALUE) {
+      return random.nextInt((int) bound);
+    }
+    return (long) (random.nextDouble() * bound);
+  }
+
+  private static void checkProbability(double probability) {
+    Preconditions.checkState(probability >= 0 && probability <= 1, "'probability' must be between 0 and 1");
+  }
+
+}
@@ -0,0 +1,79 @@
+package uk.co.bsol.trezorj.core.emulators;
+
+import java.io.OutputStream;
+
+/**
+ * <p>Console to provide the following to the emulator when no display is available:</p>
+ * <ul>
+ * <li>The same output and display streams as {@link TrezorEmulatorUI} backed by in-memory {@link ConsoleModel}s</li>
+ * </ul>
+ * <p>Suitable for build agents and load tests where a Swing frame cannot be created or would be a bottleneck.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class HeadlessEmulatorConsole {
+
+  private final ConsoleModel outputModel;
+  private final ConsoleModel displayModel;
+
+  private final OutputStream outputStream;
+  private final OutputStream displayStream;
+
+  /**
+   * @param maxLines The maximum number of output lines to keep
+   *
+   * @return A new headless console
+   */
+  public static HeadlessEmulatorConsole newInstance(int maxLines) {
+    return new HeadlessEmulatorConsole(maxLines);
+  }
+
+  /**
+   * @return A new headless console with the default scrollback
+   */
+  public static HeadlessEmulatorConsole newInstance() {
+    return newInstance(ConsoleModel.DEFAULT_MAX_LINES);
+  }
+
+  /**
+   * Use the utility constructor
+   */
+  private HeadlessEmulatorConsole(int maxLines) {
+
+    outputModel = ConsoleModel.newInstance(maxLines);
+    displayModel = ConsoleModel.newInstance(TrezorEmulatorUI.DISPLAY_TEXT_ROWS);
+
+    outputStream = outputModel.newOutputStream();
+    displayStream = displayModel.newOutputStream();
+  }
+
+  /**
+   * @return The model holding the emulator output
+   */
+  public ConsoleModel getOutputModel() {
+    return outputModel;
+  }
+
+  /**
+   * @return The model holding the Trezor display
+   */
+  public ConsoleModel getDisplayModel() {
+    return displayModel;
+  }
+
+  /**
+   * @return The stream feeding the output model
+   */
+  public OutputStream getOutputStream() {
+    return outputStream;
+  }
+
+  /**
+   * @return The stream feeding the display model
+   */
+  public OutputStream getDisplayStream() {
+    return displayStream;
+  }
+
+}
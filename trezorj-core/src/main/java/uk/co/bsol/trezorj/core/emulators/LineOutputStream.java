@@ -0,0 +1,55 @@
+package uk.co.bsol.trezorj.core.emulators;
+
+import java.io.OutputStream;
+
+/**
+ * <p>Output stream to provide the following to emulator consoles:</p>
+ * <ul>
+ * <li>Splitting of written bytes into lines (carriage returns are dropped)</li>
+ * </ul>
+ * <p>Each byte is treated as a single character. Incomplete lines are held until a newline arrives.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+abstract class LineOutputStream extends OutputStream {
+
+  private final StringBuilder line = new StringBuilder();
+
+  @Override
+  public synchronized void write(int b) {
+
+    if (b == '\r') {
+      return;
+    }
+
+    if (b == '\n') {
+      onLine(line.toString());
+      line.setLength(0);
+      return;
+    }
+
+    line.append((char) (b & 0xff));
+  }
+
+  @Override
+  public synchronized void write(byte[] b, int off, int len) {
+    for (int i = off; i < off + len; i++) {
+      write(b[i]);
+    }
+  }
+
+  @Override
+  public void flush() {
+  }
+
+  @Override
+  public void close() {
+  }
+
+  /**
+   * @param line A completed line without its terminator
+   */
+  protected abstract void onLine(String line);
+
+}
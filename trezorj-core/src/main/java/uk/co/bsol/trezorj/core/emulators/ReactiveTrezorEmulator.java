@@ -0,0 +1,425 @@
+package uk.co.bsol.trezorj.core.emulators;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.utils.Clock;
+import uk.co.bsol.trezorj.core.utils.SystemClock;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Trezor emulator to provide the following to applications:</p>
+ * <ul>
+ * <li>A request driven Trezor emulator that decodes each incoming message and answers it</li>
+ * <li>Pluggable handlers per message type (see {@link EmulatorHandlers} for the defaults)</li>
+ * <li>Configurable response latency per message type</li>
+ * <li>Seeded transport fault injection (see {@link Faults})</li>
+ * <li>A server mode accepting many simultaneous connections on an ephemeral port</li>
+ * <li>An in-process USB mode behind an {@link EmulatedHIDDevice}</li>
+ * </ul>
+ * <p>Unlike the {@link TrezorEmulator} nothing is sent until the client asks so real client flows can be run
+ * for as many cycles as required.</p>
+ * <p>In server mode each connection has its own {@link EmulatorSession} and so its own emulated device (the
+ * session seed is offset by the connection number).</p>
+ * <p>Example:</p>
+ * <pre>
+ * ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+ * emulator.setLatency(MessageType.GET_ADDRESS, 5, TimeUnit.MILLISECONDS);
+ * emulator.start();
+ *
+ * BlockingTrezorClient client = TrezorClients.newBlockingSocketInstance("localhost", emulator.getPort(), sessionId);
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class ReactiveTrezorEmulator {
+
+  private static final Logger log = LoggerFactory.getLogger(ReactiveTrezorEmulator.class);
+
+  // Bounds for the pause after a failed accept on an open server socket
+  private static final long MIN_ACCEPT_BACK_OFF_MILLIS = 10;
+  private static final long MAX_ACCEPT_BACK_OFF_MILLIS = 1000;
+
+  private final Map<MessageType, EmulatorHandler> handlers = EmulatorHandlers.newDefaultHandlers();
+  private final Map<MessageType, Long> latencyMillis = Maps.newEnumMap(MessageType.class);
+
+  private final Optional<DataOutputStream> outputStreamOptional;
+  private final Optional<DataInputStream> inputStreamOptional;
+  private final int port;
+  private final boolean isServer;
+
+  private long seed = 0L;
+  private Clock clock = SystemClock.getDefaultInstance();
+  private FaultProfile faultProfile = FaultProfile.newInstance();
+
+  // True if the emulator has been fully configured
+  private boolean isBuilt = false;
+  private ExecutorService executorService;
+  private Optional<ServerSocket> serverSocketOptional = Optional.absent();
+
+  // Server mode only
+  private final Set<Socket> connectedSockets = Sets.newSetFromMap(Maps.<Socket, Boolean>newConcurrentMap());
+  private final AtomicInteger connectionCount = new AtomicInteger(0);
+
+  /**
+   * <p>Utility method to provide an emulator that accepts a single socket connection</p>
+   *
+   * @param port The port to listen on (e.g. 3000)
+   *
+   * @return A reactive emulator with the default handlers
+   */
+  public static ReactiveTrezorEmulator newSocketEmulator(int port) {
+
+    return new ReactiveTrezorEmulator(
+      Optional.<DataOutputStream>absent(),
+      Optional.<DataInputStream>absent(),
+      port,
+      false
+    );
+
+  }
+
+  /**
+   * <p>Utility method to provide an emulator that accepts any number of simultaneous socket connections</p>
+   *
+   * @param port The port to listen on (0 for an ephemeral port, see {@link #getPort()})
+   *
+   * @return A reactive emulator with the default handlers
+   */
+  public static ReactiveTrezorEmulator newServerEmulator(int port) {
+
+    return new ReactiveTrezorEmulator(
+      Optional.<DataOutputStream>absent(),
+      Optional.<DataInputStream>absent(),
+      port,
+      true
+    );
+
+  }
+
+  /**
+   * <p>Utility method to provide an emulator that works over streams</p>
+   *
+   * @param transmitStream The stream the emulator will transmit replies to
+   * @param receiveStream  The stream the emulator will receive requests on
+   *
+   * @return A reactive emulator with the default handlers
+   */
+  public static ReactiveTrezorEmulator newStreamingEmulator(OutputStream transmitStream, InputStream receiveStream) {
+
+    Preconditions.checkNotNull(transmitStream, "'transmitStream' must be present");
+    Preconditions.checkNotNull(receiveStream, "'receiveStream' must be present");
+
+    return new ReactiveTrezorEmulator(
+      Optional.of(new DataOutputStream(transmitStream)),
+      Optional.of(new DataInputStream(receiveStream)),
+      0,
+      false
+    );
+
+  }
+
+  /**
+   * <p>Utility method to provide an emulator behind the UART of an emulated USB HID device</p>
+   *
+   * @param device The emulated HID device the client will connect to
+   *
+   * @return A reactive emulator with the default handlers
+   */
+  public static ReactiveTrezorEmulator newHIDEmulator(EmulatedHIDDevice device) {
+
+    Preconditions.checkNotNull(device, "'device' must be present");
+
+    return newStreamingEmulator(device.getUartOutputStream(), device.getUartInputStream());
+
+  }
+
+  /**
+   * Use the utility constructors
+   */
+  private ReactiveTrezorEmulator(
+    Optional<DataOutputStream> outputStreamOptional,
+    Optional<DataInputStream> inputStreamOptional,
+    int port,
+    boolean isServer) {
+
+    Preconditions.checkState(port >= 0 && port < 65535, "'port' must be within range");
+
+    this.outputStreamOptional = outputStreamOptional;
+    this.inputStreamOptional = inputStreamOptional;
+    this.port = port;
+    this.isServer = isServer;
+  }
+
+  /**
+   * <p>Replace the handler for a message type</p>
+   *
+   * @param messageType The request message type
+   * @param handler     The handler
+   */
+  public void addHandler(MessageType messageType, EmulatorHandler handler) {
+
+    validateState();
+    Preconditions.checkNotNull(handler, "'handler' must be present");
+
+    handlers.put(messageType, handler);
+  }
+
+  /**
+   * @param messageType The request message type
+   * @param duration    The delay before responding
+   * @param timeUnit    The time unit
+   */
+  public void setLatency(MessageType messageType, long duration, TimeUnit timeUnit) {
+
+    validateState();
+
+    latencyMillis.put(messageType, timeUnit.toMillis(duration));
+  }
+
+  /**
+   * @param duration The delay before responding to any message type
+   * @param timeUnit The time unit
+   */
+  public void setLatency(long duration, TimeUnit timeUnit) {
+    for (MessageType messageType : MessageType.values()) {
+      setLatency(messageType, duration, timeUnit);
+    }
+  }
+
+  /**
+   * @param seed The seed for the emulated device state (UUID, keys and entropy)
+   */
+  public void setSeed(long seed) {
+
+    validateState();
+
+    this.seed = seed;
+  }
+
+  /**
+   * <p>Provide a clock other than the system clock for the response latency (e.g. a VirtualClock in tests)</p>
+   *
+   * @param clock The clock
+   */
+  public void setClock(Clock clock) {
+
+    validateState();
+    Preconditions.checkNotNull(clock, "'clock' must be present");
+
+    this.clock = clock;
+  }
+
+  /**
+   * @param faultProfile The transport faults to apply to responses (reproducible from the seed)
+   */
+  public void setFaultProfile(FaultProfile faultProfile) {
+
+    validateState();
+    Preconditions.checkNotNull(faultProfile, "'faultProfile' must be present");
+
+    this.faultProfile = faultProfile;
+  }
+
+  /**
+   * <p>Start the emulation process</p>
+   *
+   * @throws IOException If the socket cannot be bound
+   */
+  public void start() throws IOException {
+
+    // Prevent further modifications
+    isBuilt = true;
+
+    log.debug("Starting reactive emulator");
+
+    if (!outputStreamOptional.isPresent()) {
+      // Bind now so that the port is known when start() returns
+      serverSocketOptional = Optional.of(new ServerSocket(port));
+    }
+
+    if (isServer) {
+      executorService = Executors.newCachedThreadPool();
+      executorService.submit(new Runnable() {
+        @Override
+        public void run() {
+          acceptConnections();
+        }
+      });
+      return;
+    }
+
+    executorService = Executors.newSingleThreadExecutor();
+    executorService.submit(new Runnable() {
+      @Override
+      public void run() {
+
+        try {
+
+          final DataInputStream in;
+          final DataOutputStream out;
+
+          if (serverSocketOptional.isPresent()) {
+
+            log.debug("Accepting a connection on port {}", serverSocketOptional.get().getLocalPort());
+
+            // Block until a connection is attempted
+            Socket socket = serverSocketOptional.get().accept();
+
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1024));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1024));
+          } else {
+            in = inputStreamOptional.get();
+            out = outputStreamOptional.get();
+          }
+
+          newSession(in, out, 0).run();
+
+        } catch (IOException e) {
+          log.debug("Reactive emulator stopped: {}", e.getMessage());
+        }
+      }
+    });
+
+  }
+
+  /**
+   * <p>Accept connections until the server socket is closed, starting a new session for each</p>
+   */
+  private void acceptConnections() {
+
+    ServerSocket serverSocket = serverSocketOptional.get();
+    log.debug("Accepting connections on port {}", serverSocket.getLocalPort());
+
+    long backOffMillis = 0;
+    while (!serverSocket.isClosed()) {
+      try {
+        final Socket socket = serverSocket.accept();
+        connectedSockets.add(socket);
+
+        final int connection = connectionCount.getAndIncrement();
+        log.debug("Accepted connection {}", connection);
+
+        executorService.submit(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1024));
+              DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1024));
+
+              newSession(in, out, connection).run();
+            } catch (IOException e) {
+              log.debug("Connection {} failed: {}", connection, e.getMessage());
+            } finally {
+              connectedSockets.remove(socket);
+              closeQuietly(socket);
+            }
+          }
+        });
+
+        // A successful accept ends any back off
+        backOffMillis = 0;
+      } catch (IOException e) {
+        if (serverSocket.isClosed()) {
+          // Expected when the server socket is closed
+          log.debug("Emulator server stopped accepting: {}", e.getMessage());
+          return;
+        }
+
+        // Still open so this is a resource problem (e.g. out of file descriptors) that will not clear at once
+        backOffMillis = Math.min(Math.max(backOffMillis * 2, MIN_ACCEPT_BACK_OFF_MILLIS), MAX_ACCEPT_BACK_OFF_MILLIS);
+        log.warn("Emulator server failed to accept. Retrying in {}ms: {}", backOffMillis, e.getMessage());
+        try {
+          Thread.sleep(backOffMillis);
+        } catch (InterruptedException ie) {
+          // Stopping
+          return;
+        }
+      }
+    }
+
+  }
+
+  /**
+   * @return The port the emulator is listening on (useful with an ephemeral port)
+   */
+  public int getPort() {
+
+    Preconditions.checkState(serverSocketOptional.isPresent(), "Emulator is not listening. Use a socket emulator and start() first.");
+
+    return serverSocketOptional.get().getLocalPort();
+  }
+
+  /**
+   * @return The number of connections accepted so far in server mode
+   */
+  public int getConnectionCount() {
+    return connectionCount.get();
+  }
+
+  /**
+   * Stop the emulator and clean up all threads
+   */
+  public void stop() {
+
+    log.debug("Stopping");
+
+    try {
+      if (serverSocketOptional.isPresent()) {
+        serverSocketOptional.get().close();
+      }
+    } catch (IOException e) {
+      log.error("Emulator socket failed to close", e);
+    }
+
+    // Server mode sessions are blocked reading so close their sockets
+    for (Socket socket : connectedSockets) {
+      closeQuietly(socket);
+    }
+
+    if (executorService != null) {
+      executorService.shutdownNow();
+    }
+
+  }
+
+  /**
+   * @param in         The request stream
+   * @param out        The response stream
+   * @param connection The connection number (offsets the seed so each connection is a different device)
+   *
+   * @return A new session using the current handlers, latency and faults
+   */
+  protected EmulatorSession newSession(DataInputStream in, DataOutputStream out, int connection) {
+    return new EmulatorSession(handlers, latencyMillis, faultProfile, in, out, seed + connection, clock);
+  }
+
+  private void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      log.debug("Emulator connection failed to close: {}", e.getMessage());
+    }
+  }
+
+  private void validateState() {
+    if (isBuilt) {
+      throw new IllegalStateException("Emulator is already built");
+    }
+  }
+
+}
@@ -0,0 +1,287 @@
+package uk.co.bsol.trezorj.core.emulators;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Handler to provide the following to the reactive emulator:</p>
+ * <ul>
+ * <li>The device side of the SignTx conversation for any number of inputs and outputs</li>
+ * <li>Deterministic fake signatures and serialized transaction chunks of realistic size</li>
+ * <li>Failure injection at a chosen input or output index</li>
+ * </ul>
+ * <p>The conversation follows three phases:</p>
+ * <ol>
+ * <li>Each input is requested in turn for confirmation</li>
+ * <li>Each output is requested in turn and its serialized form is returned in the next TxRequest</li>
+ * <li>Each input is requested again and its signature and serialized form are returned in the next TxRequest</li>
+ * </ol>
+ * <p>The final TxRequest has a request index of -1. The same handler must be registered for SIGN_TX, TX_INPUT and
+ * TX_OUTPUT (see {@link #addTo(ReactiveTrezorEmulator)}).</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class SignTxHandler implements EmulatorHandler {
+
+  private static final Logger log = LoggerFactory.getLogger(SignTxHandler.class);
+
+  private static final String CONVERSATION_KEY = SignTxHandler.class.getName();
+
+  /**
+   * Serialized size of a signed pay to address input (outpoint, script with signature and public key, sequence)
+   */
+  public static final int SERIALIZED_INPUT_SIZE = 148;
+
+  /**
+   * Serialized size of a pay to address output (value and script)
+   */
+  public static final int SERIALIZED_OUTPUT_SIZE = 34;
+
+  private volatile Optional<TrezorMessage.RequestType> failureTypeOptional = Optional.absent();
+  private volatile int failureIndex = -1;
+
+  /**
+   * <p>Register a new handler for all the signing message types</p>
+   *
+   * @param emulator The emulator
+   *
+   * @return The handler to allow failure injection
+   */
+  public static SignTxHandler addTo(ReactiveTrezorEmulator emulator) {
+
+    SignTxHandler handler = new SignTxHandler();
+    emulator.addHandler(MessageType.SIGN_TX, handler);
+    emulator.addHandler(MessageType.TX_INPUT, handler);
+    emulator.addHandler(MessageType.TX_OUTPUT, handler);
+
+    return handler;
+  }
+
+  /**
+   * <p>Respond with a Failure (and abandon the conversation) when the given input or output arrives</p>
+   *
+   * @param requestType The request type (TXINPUT or TXOUTPUT)
+   * @param index       The index of the input or output
+   */
+  public void setFailure(TrezorMessage.RequestType requestType, int index) {
+
+    Preconditions.checkNotNull(requestType, "'requestType' must be present");
+    Preconditions.checkState(index >= 0, "'index' must not be negative");
+
+    this.failureTypeOptional = Optional.of(requestType);
+    this.failureIndex = index;
+  }
+
+  @Override
+  public List<Message> handle(EmulatorSession session, Message request) {
+
+    if (request instanceof TrezorMessage.SignTx) {
+      return startConversation(session, (TrezorMessage.SignTx) request);
+    }
+
+    Optional<Conversation> conversationOptional = session.getAttribute(CONVERSATION_KEY, Conversation.class);
+    if (!conversationOptional.isPresent()) {
+      return EmulatorSession.newFailureResponse("Not in signing mode");
+    }
+    Conversation conversation = conversationOptional.get();
+
+    if (request instanceof TrezorMessage.TxInput) {
+      return handleTxInput(session, conversation, (TrezorMessage.TxInput) request);
+    }
+    if (request instanceof TrezorMessage.TxOutput) {
+      return handleTxOutput(session, conversation, (TrezorMessage.TxOutput) request);
+    }
+
+    return EmulatorSession.newFailureResponse("Unexpected message during signing");
+  }
+
+  /**
+   * @param session The emulator session
+   * @param signTx  The SignTx request
+   *
+   * @return A request for the first input
+   */
+  private List<Message> startConversation(EmulatorSession session, TrezorMessage.SignTx signTx) {
+
+    if (signTx.getInputsCount() == 0 || signTx.getOutputsCount() == 0) {
+      return EmulatorSession.newFailureResponse("Transaction must have inputs and outputs");
+    }
+
+    Conversation conversation = new Conversation(
+      signTx.getInputsCount(),
+      signTx.getOutputsCount(),
+      signTx.hasRandom() ? signTx.getRandom() : ByteString.EMPTY
+    );
+    session.setAttribute(CONVERSATION_KEY, conversation);
+
+    log.debug("Signing {} inputs and {} outputs", conversation.inputsCount, conversation.outputsCount);
+
+    return newTxRequest(TrezorMessage.TxRequest.newBuilder(), 0, TrezorMessage.RequestType.TXINPUT);
+  }
+
+  /**
+   * @return The next request (with the signature and serialized input during the signing phase)
+   */
+  private List<Message> handleTxInput(EmulatorSession session, Conversation conversation, TrezorMessage.TxInput txInput) {
+
+    int index = txInput.getIndex();
+    if (conversation.phase == Phase.OUTPUTS || index != conversation.nextIndex) {
+      return abandon(session, "Unexpected input index " + index);
+    }
+    if (isFailure(TrezorMessage.RequestType.TXINPUT, index)) {
+      return abandon(session, "Injected failure at input " + index);
+    }
+
+    TrezorMessage.TxRequest.Builder builder = TrezorMessage.TxRequest.newBuilder();
+
+    if (conversation.phase == Phase.SIGNING) {
+      byte[] signature = newSignature(session, conversation, txInput);
+      builder
+        .setSignedIndex(index)
+        .setSignature(ByteString.copyFrom(signature))
+        .setSerializedTx(ByteString.copyFrom(newSerializedChunk(signature, SERIALIZED_INPUT_SIZE)));
+    }
+
+    conversation.nextIndex++;
+    if (conversation.nextIndex < conversation.inputsCount) {
+      return newTxRequest(builder, conversation.nextIndex, TrezorMessage.RequestType.TXINPUT);
+    }
+
+    conversation.nextIndex = 0;
+    if (conversation.phase == Phase.CONFIRMING) {
+      conversation.phase = Phase.OUTPUTS;
+      return newTxRequest(builder, 0, TrezorMessage.RequestType.TXOUTPUT);
+    }
+
+    // Signing complete
+    session.setAttribute(CONVERSATION_KEY, null);
+    return newTxRequest(builder, -1, TrezorMessage.RequestType.TXINPUT);
+  }
+
+  /**
+   * @return The next request with the serialized output
+   */
+  private List<Message> handleTxOutput(EmulatorSession session, Conversation conversation, TrezorMessage.TxOutput txOutput) {
+
+    int index = txOutput.getIndex();
+    if (conversation.phase != Phase.OUTPUTS || index != conversation.nextIndex) {
+      return abandon(session, "Unexpected output index " + index);
+    }
+    if (isFailure(TrezorMessage.RequestType.TXOUTPUT, index)) {
+      return abandon(session, "Injected failure at output " + index);
+    }
+
+    byte[] seed = Hashing.sha256().hashBytes(txOutput.toByteArray()).asBytes();
+    TrezorMessage.TxRequest.Builder builder = TrezorMessage.TxRequest.newBuilder()
+      .setSerializedTx(ByteString.copyFrom(newSerializedChunk(seed, SERIALIZED_OUTPUT_SIZE)));
+
+    conversation.nextIndex++;
+    if (conversation.nextIndex < conversation.outputsCount) {
+      return newTxRequest(builder, conversation.nextIndex, TrezorMessage.RequestType.TXOUTPUT);
+    }
+
+    // Request the inputs again for signing
+    conversation.nextIndex = 0;
+    conversation.phase = Phase.SIGNING;
+    return newTxRequest(builder, 0, TrezorMessage.RequestType.TXINPUT);
+  }
+
+  private boolean isFailure(TrezorMessage.RequestType requestType, int index) {
+    return failureTypeOptional.isPresent() && failureTypeOptional.get() == requestType && failureIndex == index;
+  }
+
+  private List<Message> abandon(EmulatorSession session, String message) {
+    log.debug("Signing abandoned: {}", message);
+    session.setAttribute(CONVERSATION_KEY, null);
+    return EmulatorSession.newFailureResponse(message);
+  }
+
+  private List<Message> newTxRequest(TrezorMessage.TxRequest.Builder builder, int requestIndex, TrezorMessage.RequestType requestType) {
+    return Collections.<Message>singletonList(builder
+      .setRequestIndex(requestIndex)
+      .setRequestType(requestType)
+      .build());
+  }
+
+  /**
+   * @return A DER encoded signature shape (71 bytes including the hash type) derived from the device, the SignTx
+   * random data and the input
+   */
+  private byte[] newSignature(EmulatorSession session, Conversation conversation, TrezorMessage.TxInput txInput) {
+
+    byte[] r = Hashing.sha256().newHasher()
+      .putBytes(session.getUuid().toByteArray())
+      .putBytes(conversation.random.toByteArray())
+      .putBytes(txInput.getPrevHash().toByteArray())
+      .putInt(txInput.getPrevIndex())
+      .hash()
+      .asBytes();
+    byte[] s = Hashing.sha256().hashBytes(r).asBytes();
+
+    // Keep both integers positive so the encoding has a fixed length
+    r[0] &= 0x7f;
+    s[0] &= 0x7f;
+
+    byte[] signature = new byte[71];
+    signature[0] = 0x30;
+    signature[1] = 68;
+    signature[2] = 0x02;
+    signature[3] = 32;
+    System.arraycopy(r, 0, signature, 4, 32);
+    signature[36] = 0x02;
+    signature[37] = 32;
+    System.arraycopy(s, 0, signature, 38, 32);
+    // SIGHASH_ALL
+    signature[70] = 0x01;
+
+    return signature;
+  }
+
+  /**
+   * @return A chunk of the given size filled by repeating the seed
+   */
+  private byte[] newSerializedChunk(byte[] seed, int size) {
+    byte[] chunk = new byte[size];
+    for (int i = 0; i < size; i++) {
+      chunk[i] = seed[i % seed.length];
+    }
+    return chunk;
+  }
+
+  private enum Phase {
+    CONFIRMING,
+    OUTPUTS,
+    SIGNING
+  }
+
+  /**
+   * Mutable signing state held by the session
+   */
+  private static class Conversation {
+
+    private final int inputsCount;
+    private final int outputsCount;
+    private final ByteString random;
+
+    private Phase phase = Phase.CONFIRMING;
+    private int nextIndex = 0;
+
+    private Conversation(int inputsCount, int outputsCount, ByteString random) {
+      this.inputsCount = inputsCount;
+      this.outputsCount = outputsCount;
+      this.random = random;
+    }
+  }
+
+}
@@ -1,46 +1,113 @@
 package uk.co.bsol.trezorj.core.emulators;
 
-    import java.io.IOException;
-    import java.io.OutputStream;
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-    import javax.swing.JTextArea;
-    import javax.swing.SwingUtilities;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
 
-    public class TextAreaOutputStream extends OutputStream {
+/**
+ * <p>Output stream to provide the following to the emulator UI:</p>
+ * <ul>
+ * <li>Coalesced updates of a text area (at most one pending task on the Swing event thread)</li>
+ * <li>A bounded scrollback in the text area</li>
+ * </ul>
+ * <p>Completed lines are queued by the writing thread and appended in a single batch when the event thread
+ * next runs, so a fast writer cannot flood the event queue. If the event thread falls far behind, the oldest
+ * queued lines are discarded since they would be trimmed from the scrollback anyway.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class TextAreaOutputStream extends LineOutputStream {
 
-        private final JTextArea textArea;
-        private final StringBuilder sb = new StringBuilder();
+  private static final Logger log = LoggerFactory.getLogger(TextAreaOutputStream.class);
 
-        public TextAreaOutputStream(final JTextArea textArea) {
-            this.textArea = textArea;
-        }
+  public static final int DEFAULT_MAX_LINES = ConsoleModel.DEFAULT_MAX_LINES;
 
-        @Override
-        public void flush() {
-        }
+  private final JTextArea textArea;
+  private final int maxLines;
 
-        @Override
-        public void close() {
-        }
+  // Guarded by itself
+  private final StringBuilder pending = new StringBuilder();
+  private int pendingLineCount = 0;
+  private boolean updateScheduled = false;
 
-        @Override
-        public void write(int b) throws IOException {
+  private final Runnable updateTask = new Runnable() {
+    @Override
+    public void run() {
+      update();
+    }
+  };
+
+  /**
+   * @param textArea The text area to receive the output (default scrollback)
+   */
+  public TextAreaOutputStream(final JTextArea textArea) {
+    this(textArea, DEFAULT_MAX_LINES);
+  }
+
+  /**
+   * @param textArea The text area to receive the output
+   * @param maxLines The maximum number of lines kept in the text area
+   */
+  public TextAreaOutputStream(final JTextArea textArea, int maxLines) {
+
+    Preconditions.checkNotNull(textArea, "'textArea' must be present");
+    Preconditions.checkArgument(maxLines > 0, "'maxLines' must be greater than zero");
 
-            if (b == '\r')
-                return;
+    this.textArea = textArea;
+    this.maxLines = maxLines;
+  }
 
-            if (b == '\n') {
-                final String text = sb.toString() + "\n";
-                SwingUtilities.invokeLater(new Runnable() {
-                    public void run() {
-                        textArea.append(text);
-                    }
-                });
-                sb.setLength(0);
+  @Override
+  protected void onLine(String line) {
 
-                return;
-            }
+    synchronized (pending) {
+      pending.append(line).append('\n');
+      pendingLineCount++;
 
-            sb.append((char) b);
-        }
+      if (pendingLineCount > maxLines) {
+        // Drop the oldest queued line
+        pending.delete(0, pending.indexOf("\n") + 1);
+        pendingLineCount--;
+      }
+
+      if (updateScheduled) {
+        return;
+      }
+      updateScheduled = true;
     }
+
+    SwingUtilities.invokeLater(updateTask);
+  }
+
+  /**
+   * Append all queued lines and trim the scrollback (runs on the event thread)
+   */
+  private void update() {
+
+    final String text;
+    synchronized (pending) {
+      text = pending.toString();
+      pending.setLength(0);
+      pendingLineCount = 0;
+      updateScheduled = false;
+    }
+
+    textArea.append(text);
+
+    // The text always ends with a newline so the last line reported is empty
+    int excess = textArea.getLineCount() - 1 - maxLines;
+    if (excess > 0) {
+      try {
+        textArea.replaceRange("", 0, textArea.getLineEndOffset(excess - 1));
+      } catch (BadLocationException e) {
+        log.warn("Could not trim the scrollback", e);
+      }
+    }
+  }
+
+}
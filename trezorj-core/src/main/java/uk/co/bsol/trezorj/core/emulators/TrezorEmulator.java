@@ -7,6 +7,8 @@ import com.google.protobuf.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.utils.Clock;
+import uk.co.bsol.trezorj.core.utils.SystemClock;
 import uk.co.bsol.trezorj.core.utils.TrezorMessageUtils;
 
 import java.io.*;
@@ -44,7 +46,10 @@ public class TrezorEmulator {
   // True if the emulator has been fully configured
   private boolean isBuilt = false;
   private ExecutorService executorService;
-  private final ServerSocket serverSocket;
+  private Clock clock = SystemClock.getDefaultInstance();
+
+  // Only present when transmitting over a socket
+  private final Optional<ServerSocket> serverSocketOptional;
 
   /**
    * <p>Utility method to provide a common sequence</p>
@@ -56,7 +61,23 @@ public class TrezorEmulator {
    */
   public static TrezorEmulator newDefaultTrezorEmulator() throws IOException {
 
-    TrezorEmulator emulator = new TrezorEmulator(Optional.<DataOutputStream>absent(), Optional.<DataInputStream>absent());
+    return newSocketTrezorEmulator(DEFAULT_SOCKET_PORT);
+
+  }
+
+  /**
+   * <p>Utility method to provide a common sequence</p>
+   * This emulator transmits over a socket on the given port
+   *
+   * @param port The port to listen on (0 for an ephemeral port, see {@link #getPort()})
+   *
+   * @return A default Trezor emulator with simple timed responses
+   *
+   * @throws IOException If the socket cannot be bound
+   */
+  public static TrezorEmulator newSocketTrezorEmulator(int port) throws IOException {
+
+    TrezorEmulator emulator = new TrezorEmulator(Optional.<DataOutputStream>absent(), Optional.<DataInputStream>absent(), port);
     addSuccessMessage(emulator, 100, TimeUnit.MILLISECONDS);
 
     return emulator;
@@ -82,7 +103,8 @@ public class TrezorEmulator {
 
     TrezorEmulator emulator = new TrezorEmulator(
       Optional.of(new DataOutputStream(transmitStream)),
-      Optional.<DataInputStream>absent()
+      Optional.<DataInputStream>absent(),
+      0
     );
     addSuccessMessage(emulator, 1, TimeUnit.SECONDS);
 
@@ -104,12 +126,40 @@ public class TrezorEmulator {
   /**
    * Use the utility constructors
    */
-  private TrezorEmulator(Optional<DataOutputStream> outputStreamOptional, Optional<DataInputStream> inputStreamOptional) throws IOException {
+  private TrezorEmulator(Optional<DataOutputStream> outputStreamOptional, Optional<DataInputStream> inputStreamOptional, int port) throws IOException {
     this.outputStreamOptional = outputStreamOptional;
     this.inputStreamOptional = inputStreamOptional;
-    this.serverSocket = new ServerSocket(DEFAULT_SOCKET_PORT);
+
+    if (outputStreamOptional.isPresent()) {
+      this.serverSocketOptional = Optional.absent();
+    } else {
+      this.serverSocketOptional = Optional.of(new ServerSocket(port));
+    }
   }
 
+  /**
+   * @return The port the emulator is listening on (useful with an ephemeral port)
+   */
+  public int getPort() {
+
+    Preconditions.checkState(serverSocketOptional.isPresent(), "Emulator is not listening. Use a socket emulator.");
+
+    return serverSocketOptional.get().getLocalPort();
+  }
+
+
+  /**
+   * <p>Provide a clock other than the system clock for the message delays (e.g. a VirtualClock in tests)</p>
+   *
+   * @param clock The clock
+   */
+  public void setClock(Clock clock) {
+
+    validateState();
+    Preconditions.checkNotNull(clock, "'clock' must be present");
+
+    this.clock = clock;
+  }
 
   /**
    * <p>Add a new emulator message to the queue</p>
@@ -149,10 +199,10 @@ public class TrezorEmulator {
 
           if (!outputStreamOptional.isPresent()) {
 
-            log.debug("Accepting connections on socket configured on port {}",serverSocket.getLocalPort());
+            log.debug("Accepting connections on socket configured on port {}", serverSocketOptional.get().getLocalPort());
 
             // Block until a connection is attempted
-            Socket socket = serverSocket.accept();
+            Socket socket = serverSocketOptional.get().accept();
 
             log.debug("Connected. Starting message sequence.");
 
@@ -170,7 +220,7 @@ public class TrezorEmulator {
             log.debug("Sleeping {}ms", millis);
 
             // Wait for the required period of time
-            Thread.sleep(millis);
+            clock.sleep(millis, TimeUnit.MILLISECONDS);
 
             log.debug("Emulating '{}'", message.getTrezorMessage());
 
@@ -199,7 +249,9 @@ public class TrezorEmulator {
     log.debug("Stopping");
 
     try {
-      serverSocket.close();
+      if (serverSocketOptional.isPresent()) {
+        serverSocketOptional.get().close();
+      }
       executorService.shutdownNow();
 
       // Prevent collisions during shutdown
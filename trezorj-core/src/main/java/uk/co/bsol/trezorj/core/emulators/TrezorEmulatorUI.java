@@ -24,7 +24,7 @@ public class TrezorEmulatorUI extends JFrame {
   private final static int INPUT_TEXT_ROWS = 8;
   private final static int INPUT_TEXT_COLUMNS = 80;
 
-  private final static int DISPLAY_TEXT_ROWS = 4;
+  final static int DISPLAY_TEXT_ROWS = 4;
   private final static int DISPLAY_TEXT_COLUMNS = 40;
 
   private JTextArea outputTextArea;
@@ -34,6 +34,7 @@ public class TrezorEmulatorUI extends JFrame {
   private JScrollPane inputScrollPane;
 
   private JTextArea displayTextArea;
+  private OutputStream displayOutputStream;
 
   private JPanel topPanel;
   private JPanel centerPanel;
@@ -55,18 +56,49 @@ public class TrezorEmulatorUI extends JFrame {
     init();
     pack();
 
+    displayOutputStream = new TextAreaOutputStream(displayTextArea, DISPLAY_TEXT_ROWS);
+
     if (hookupEmulator) {
       // Create a TrezorEmulator and hooks the TrezorEmulator's output stream
-      OutputStream textAreaOutputStream = new TextAreaOutputStream(outputTextArea);
-      try {
-        trezorEmulator = TrezorEmulator.newStreamingTrezorEmulator(textAreaOutputStream, null);
-      } catch (IOException e) {
-        log.error("Emulator failed to start",e);
-      }
+      hookup(new TextAreaOutputStream(outputTextArea));
     }
     setVisible(true);
   }
 
+  /**
+   * Create the console without a frame (for build agents and load tests)
+   *
+   * @param hookupEmulator True if a TrezorEmulator should be created writing to the console output
+   *
+   * @return The headless console holding the output and display in memory
+   */
+  public static HeadlessEmulatorConsole newHeadlessConsole(boolean hookupEmulator) {
+
+    HeadlessEmulatorConsole console = HeadlessEmulatorConsole.newInstance();
+    if (hookupEmulator) {
+      hookup(console.getOutputStream());
+    }
+    return console;
+  }
+
+  /**
+   * @param outputStream The stream receiving the emulator output
+   */
+  private static void hookup(OutputStream outputStream) {
+    try {
+      trezorEmulator = TrezorEmulator.newStreamingTrezorEmulator(outputStream, null);
+    } catch (IOException e) {
+      log.error("Emulator failed to start", e);
+    }
+  }
+
+  /**
+   * @return The stream writing to the Trezor display area
+   */
+  public OutputStream getDisplayStream() {
+    return displayOutputStream;
+  }
+
   /**
    * Start the emulator (you should add any callback messages before you start it because it is
    * immutable after starting).
@@ -86,8 +118,15 @@ public class TrezorEmulatorUI extends JFrame {
     return trezorEmulator;
   }
 
+  /**
+   * @param args Use "--headless" to run without a frame (implied when no display is available)
+   */
   public static void main(String[] args) {
-    TrezorEmulatorUI trezorEmulatorUI = new TrezorEmulatorUI(true);
+    if (GraphicsEnvironment.isHeadless() || (args.length > 0 && "--headless".equals(args[0]))) {
+      newHeadlessConsole(true);
+    } else {
+      new TrezorEmulatorUI(true);
+    }
     startEmulator();
   }
 
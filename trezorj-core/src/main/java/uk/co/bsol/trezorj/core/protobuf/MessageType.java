@@ -75,8 +75,8 @@ public enum MessageType {
   private final short headerCode;
 
   /**
-   * @param message The protocol buffer message class
-   * @param headerCode      The header code
+   * @param message    The default instance of the protocol buffer message
+   * @param headerCode The header code
    */
   MessageType(Message message, short headerCode) {
 
@@ -99,6 +99,36 @@ public enum MessageType {
     return headerCode;
   }
 
+  /**
+   * @return True if the message can be sent again (e.g. after a reconnect) without changing the device state
+   */
+  public boolean isIdempotent() {
+
+    switch (this) {
+      case INITALIZE:
+      case PING:
+      case GET_UUID:
+      case GET_ENTROPY:
+      case GET_MASTER_PUBLIC_KEY:
+      case GET_ADDRESS:
+        return true;
+      default:
+        return false;
+    }
+
+  }
+
+  /**
+   * @param trezorMessage The protocol buffer message (e.g. "Message.Initialize")
+   *
+   * @return The matching message type
+   *
+   * @throws IllegalArgumentException If the message is not valid
+   */
+  public static MessageType getMessageType(Message trezorMessage) {
+    return getMessageTypeByHeaderCode(getHeaderCode(trezorMessage));
+  }
+
   /**
    * @param headerCode The header code (e.g. "0" for INITIALIZE)
    *
@@ -0,0 +1,431 @@
+package uk.co.bsol.trezorj.core.protobuf;
+
+import com.google.bitcoin.core.ScriptException;
+import com.google.bitcoin.core.Transaction;
+import com.google.bitcoin.core.TransactionInput;
+import com.google.bitcoin.core.TransactionOutput;
+import com.google.bitcoin.params.MainNetParams;
+import com.google.common.base.Preconditions;
+import uk.co.bsol.trezorj.core.utils.TrezorMessageUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * <p>Encoder to provide the following to the SignTx conversation:</p>
+ * <ul>
+ * <li>Framed TxInput and TxOutput messages written straight from a bitcoinj transaction into a reusable buffer</li>
+ * </ul>
+ * <p>The frames are byte for byte the same as {@link TrezorMessageUtils#writeMessage} applied to
+ * {@link TrezorMessageUtils#newTxInput} and {@link TrezorMessageUtils#newTxOutput} but no builder, message or
+ * ByteString is created. The buffer only grows, so once it has reached the size of the largest frame encoding
+ * allocates nothing beyond what bitcoinj does to provide the script and address text.</p>
+ * <p>An encoder is not thread safe and each call overwrites the previous frame.</p>
+ * <p>The clients send each TxInput and TxOutput as a message through {@link uk.co.bsol.trezorj.core.Trezor#sendMessage},
+ * which takes no pre-encoded frame, so the encoder is not on their path yet. It is measured against the builders
+ * by the signing codec benchmark.</p>
+ * <p>Example:</p>
+ * <pre>
+ * TxMessageEncoder encoder = TxMessageEncoder.newInstance();
+ * encoder.encodeTxInput(tx, 0);
+ * encoder.writeTo(out);
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class TxMessageEncoder {
+
+  /**
+   * The size of the "##", header code and detail length before the detail
+   */
+  public static final int FRAME_HEADER_SIZE = 8;
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  // Field tags (field number and wire type) in the order the generated code writes them
+  private static final int TX_INPUT_INDEX_TAG = (1 << 3);
+  private static final int TX_INPUT_ADDRESS_N_TAG = (2 << 3);
+  private static final int TX_INPUT_AMOUNT_TAG = (3 << 3);
+  private static final int TX_INPUT_PREV_HASH_TAG = (4 << 3) | 2;
+  private static final int TX_INPUT_PREV_INDEX_TAG = (5 << 3);
+  private static final int TX_INPUT_SCRIPT_SIG_TAG = (6 << 3) | 2;
+
+  private static final int TX_OUTPUT_INDEX_TAG = (1 << 3);
+  private static final int TX_OUTPUT_ADDRESS_TAG = (2 << 3) | 2;
+  private static final int TX_OUTPUT_ADDRESS_N_TAG = (3 << 3);
+  private static final int TX_OUTPUT_AMOUNT_TAG = (4 << 3);
+  private static final int TX_OUTPUT_SCRIPT_TYPE_TAG = (5 << 3);
+
+  // Largest encoded size of a tag and varint (a negative int32 is sign extended to 10 bytes)
+  private static final int MAX_FIELD_SIZE = 11;
+
+  private final int[] addressN = new int[2];
+
+  private byte[] buffer;
+  private int position = 0;
+  private int length = 0;
+
+  /**
+   * @return A new encoder with a small initial buffer
+   */
+  public static TxMessageEncoder newInstance() {
+    return new TxMessageEncoder(INITIAL_CAPACITY);
+  }
+
+  /**
+   * Use the utility constructor
+   */
+  private TxMessageEncoder(int initialCapacity) {
+    buffer = new byte[initialCapacity];
+  }
+
+  /**
+   * <p>Encode the same TxInput as {@link TrezorMessageUtils#newTxInput}</p>
+   *
+   * @param tx    The Bitcoinj transaction
+   * @param index The index of the input transaction to work with
+   *
+   * @return The length of the frame
+   */
+  public int encodeTxInput(Transaction tx, int index) {
+
+    Preconditions.checkNotNull(tx, "Transaction must be present");
+    Preconditions.checkElementIndex(index, tx.getInputs().size(), "TransactionInput not present at index " + index);
+
+    TransactionInput txInput = tx.getInput(index);
+
+    String scriptSig;
+    try {
+      scriptSig = txInput.getScriptSig().toString();
+    } catch (ScriptException e) {
+      throw new IllegalStateException(e);
+    }
+
+    addressN[0] = 0;
+    addressN[1] = index;
+
+    return encodeTxInput(
+      index,
+      addressN,
+      2,
+      txInput.getConnectedOutput().getValue().longValue(),
+      txInput.getOutpoint().getHash().getBytes(),
+      (int) txInput.getOutpoint().getIndex(),
+      scriptSig
+    );
+  }
+
+  /**
+   * <p>Encode the same TxOutput as {@link TrezorMessageUtils#newTxOutput}</p>
+   *
+   * @param tx    The Bitcoinj transaction
+   * @param index The index of the output transaction to work with
+   *
+   * @return The length of the frame
+   */
+  public int encodeTxOutput(Transaction tx, int index) {
+
+    Preconditions.checkNotNull(tx, "Transaction must be present");
+    Preconditions.checkElementIndex(index, tx.getOutputs().size(), "TransactionOutput not present at index " + index);
+
+    TransactionOutput txOutput = tx.getOutput(index);
+
+    String address;
+    try {
+      address = txOutput.getScriptPubKey().getToAddress(MainNetParams.get()).toString();
+    } catch (ScriptException e) {
+      throw new IllegalArgumentException("Transaction script pub key invalid", e);
+    }
+
+    // Only the change address is controlled by the Trezor (see TrezorMessageUtils)
+    int addressNCount = 0;
+    if (index == 1) {
+      addressN[0] = 0;
+      addressN[1] = 1;
+      addressNCount = 2;
+    }
+
+    return encodeTxOutput(
+      index,
+      address,
+      addressN,
+      addressNCount,
+      txOutput.getValue().longValue(),
+      TrezorMessage.ScriptType.PAYTOADDRESS
+    );
+  }
+
+  /**
+   * @param index         The position of the input in the transaction
+   * @param addressN      The address path (only the first addressNCount entries are used)
+   * @param addressNCount The length of the address path
+   * @param amount        The amount in satoshis
+   * @param prevHash      The hash of the previous transaction
+   * @param prevIndex     The index of the previous output
+   * @param scriptSig     The script signature text (null if absent)
+   *
+   * @return The length of the frame
+   */
+  public int encodeTxInput(
+    int index,
+    int[] addressN,
+    int addressNCount,
+    long amount,
+    byte[] prevHash,
+    int prevIndex,
+    CharSequence scriptSig
+  ) {
+
+    Preconditions.checkNotNull(prevHash, "'prevHash' must be present");
+    Preconditions.checkElementIndex(addressNCount, addressN.length + 1, "'addressNCount' must fit 'addressN'");
+
+    int scriptSigLength = scriptSig == null ? 0 : utf8Length(scriptSig);
+
+    beginFrame(
+      MessageType.TX_INPUT.getHeaderCode(),
+      MAX_FIELD_SIZE * (4 + addressNCount) + 2 * MAX_FIELD_SIZE + prevHash.length + scriptSigLength
+    );
+
+    writeTag(TX_INPUT_INDEX_TAG);
+    writeVarint32(index);
+
+    for (int i = 0; i < addressNCount; i++) {
+      writeTag(TX_INPUT_ADDRESS_N_TAG);
+      writeVarint32(addressN[i]);
+    }
+
+    writeTag(TX_INPUT_AMOUNT_TAG);
+    writeVarint64(amount);
+
+    writeTag(TX_INPUT_PREV_HASH_TAG);
+    writeVarint32(prevHash.length);
+    System.arraycopy(prevHash, 0, buffer, position, prevHash.length);
+    position += prevHash.length;
+
+    writeTag(TX_INPUT_PREV_INDEX_TAG);
+    writeVarint32(prevIndex);
+
+    if (scriptSig != null) {
+      // Script text is ASCII so the platform charset used by TrezorMessageUtils gives the same bytes
+      writeTag(TX_INPUT_SCRIPT_SIG_TAG);
+      writeVarint32(scriptSigLength);
+      writeUtf8(scriptSig);
+    }
+
+    return endFrame();
+  }
+
+  /**
+   * @param index         The position of the output in the transaction
+   * @param address       The target address in base58 encoding
+   * @param addressN      The address path (only the first addressNCount entries are used)
+   * @param addressNCount The length of the address path
+   * @param amount        The amount in satoshis
+   * @param scriptType    The output script type
+   *
+   * @return The length of the frame
+   */
+  public int encodeTxOutput(
+    int index,
+    CharSequence address,
+    int[] addressN,
+    int addressNCount,
+    long amount,
+    TrezorMessage.ScriptType scriptType
+  ) {
+
+    Preconditions.checkNotNull(address, "'address' must be present");
+    Preconditions.checkNotNull(scriptType, "'scriptType' must be present");
+    Preconditions.checkElementIndex(addressNCount, addressN.length + 1, "'addressNCount' must fit 'addressN'");
+
+    int addressLength = utf8Length(address);
+
+    beginFrame(
+      MessageType.TX_OUTPUT.getHeaderCode(),
+      MAX_FIELD_SIZE * (4 + addressNCount) + addressLength
+    );
+
+    writeTag(TX_OUTPUT_INDEX_TAG);
+    writeVarint32(index);
+
+    writeTag(TX_OUTPUT_ADDRESS_TAG);
+    writeVarint32(addressLength);
+    writeUtf8(address);
+
+    for (int i = 0; i < addressNCount; i++) {
+      writeTag(TX_OUTPUT_ADDRESS_N_TAG);
+      writeVarint32(addressN[i]);
+    }
+
+    writeTag(TX_OUTPUT_AMOUNT_TAG);
+    writeVarint64(amount);
+
+    // Enums are int32 so a negative value would be sign extended
+    writeTag(TX_OUTPUT_SCRIPT_TYPE_TAG);
+    writeVarint64(scriptType.getNumber());
+
+    return endFrame();
+  }
+
+  /**
+   * @return The buffer holding the current frame from position 0 (replaced if it grows)
+   */
+  public byte[] getBuffer() {
+    return buffer;
+  }
+
+  /**
+   * @return The length of the current frame
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * @return A copy of the current frame (for diagnostics and tests)
+   */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buffer, length);
+  }
+
+  /**
+   * <p>Write the current frame and flush (the equivalent of {@link TrezorMessageUtils#writeMessage})</p>
+   *
+   * @param out The output stream (must be open)
+   *
+   * @throws IOException If the device disconnects during IO
+   */
+  public void writeTo(OutputStream out) throws IOException {
+
+    Preconditions.checkState(length > 0, "No frame has been encoded");
+
+    out.write(buffer, 0, length);
+    out.flush();
+
+  }
+
+  /**
+   * @param headerCode The header code of the message
+   * @param maxDetail  An upper bound on the size of the detail
+   */
+  private void beginFrame(short headerCode, int maxDetail) {
+
+    int required = FRAME_HEADER_SIZE + maxDetail;
+    if (buffer.length < required) {
+      buffer = new byte[Math.max(required, buffer.length * 2)];
+    }
+
+    buffer[0] = '#';
+    buffer[1] = '#';
+    buffer[2] = (byte) (headerCode >>> 8);
+    buffer[3] = (byte) headerCode;
+    position = FRAME_HEADER_SIZE;
+    length = 0;
+
+  }
+
+  /**
+   * @return The length of the frame after filling in the detail length
+   */
+  private int endFrame() {
+
+    int detailLength = position - FRAME_HEADER_SIZE;
+    buffer[4] = (byte) (detailLength >>> 24);
+    buffer[5] = (byte) (detailLength >>> 16);
+    buffer[6] = (byte) (detailLength >>> 8);
+    buffer[7] = (byte) detailLength;
+
+    length = position;
+    return length;
+  }
+
+  private void writeTag(int tag) {
+    // All tags used here fit in a single byte
+    buffer[position++] = (byte) tag;
+  }
+
+  /**
+   * @param value The value treated as unsigned (uint32 and lengths)
+   */
+  private void writeVarint32(int value) {
+
+    while ((value & ~0x7f) != 0) {
+      buffer[position++] = (byte) ((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    buffer[position++] = (byte) value;
+
+  }
+
+  private void writeVarint64(long value) {
+
+    while ((value & ~0x7fL) != 0) {
+      buffer[position++] = (byte) ((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    buffer[position++] = (byte) value;
+
+  }
+
+  /**
+   * <p>Write the same bytes as String.getBytes("UTF-8") (an unpaired surrogate becomes '?')</p>
+   */
+  private void writeUtf8(CharSequence value) {
+
+    int count = value.length();
+    for (int i = 0; i < count; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        buffer[position++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[position++] = (byte) (0xc0 | (c >> 6));
+        buffer[position++] = (byte) (0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+      } else if (isSurrogate(c)) {
+        buffer[position++] = '?';
+      } else {
+        buffer[position++] = (byte) (0xe0 | (c >> 12));
+        buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        buffer[position++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+
+  }
+
+  /**
+   * @return The number of bytes {@link #writeUtf8} will write
+   */
+  private static int utf8Length(CharSequence value) {
+
+    int count = value.length();
+    int utf8Length = 0;
+    for (int i = 0; i < count; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        utf8Length++;
+      } else if (c < 0x800) {
+        utf8Length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(value.charAt(i + 1))) {
+        utf8Length += 4;
+        i++;
+      } else if (isSurrogate(c)) {
+        utf8Length++;
+      } else {
+        utf8Length += 3;
+      }
+    }
+    return utf8Length;
+  }
+
+  private static boolean isSurrogate(char c) {
+    return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+  }
+
+}
@@ -0,0 +1,346 @@
+package uk.co.bsol.trezorj.core.protobuf;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <p>Flyweight to provide the following to the SignTx conversation:</p>
+ * <ul>
+ * <li>The fields of a TxRequest read in place from the detail of a frame</li>
+ * </ul>
+ * <p>The getters follow {@link TrezorMessage.TxRequest} (including the defaults for absent fields and the
+ * handling of repeated and unknown fields) but nothing is copied: the signature and serialized transaction are
+ * left in the wrapped buffer as an offset and length. The flyweight is only valid until the buffer is reused and
+ * can be wrapped around the next detail without allocating.</p>
+ * <p>The clients receive each TxRequest already parsed in a {@link uk.co.bsol.trezorj.core.TrezorEvent}, so the
+ * flyweight is not on their path yet. It is measured against the generated parser by the signing codec
+ * benchmark.</p>
+ * <p>Example:</p>
+ * <pre>
+ * TxRequestFlyweight txRequest = new TxRequestFlyweight();
+ * txRequest.wrap(detail, 0, detailLength);
+ * if (txRequest.hasSerializedTx()) {
+ *   txRequest.writeSerializedTxTo(serializedTx);
+ * }
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class TxRequestFlyweight {
+
+  private static final int WIRETYPE_VARINT = 0;
+  private static final int WIRETYPE_FIXED64 = 1;
+  private static final int WIRETYPE_LENGTH_DELIMITED = 2;
+  private static final int WIRETYPE_START_GROUP = 3;
+  private static final int WIRETYPE_END_GROUP = 4;
+  private static final int WIRETYPE_FIXED32 = 5;
+
+  // Field tags (field number and wire type)
+  private static final int REQUEST_INDEX_TAG = (1 << 3) | WIRETYPE_VARINT;
+  private static final int REQUEST_TYPE_TAG = (2 << 3) | WIRETYPE_VARINT;
+  private static final int SIGNED_INDEX_TAG = (3 << 3) | WIRETYPE_VARINT;
+  private static final int SIGNATURE_TAG = (4 << 3) | WIRETYPE_LENGTH_DELIMITED;
+  private static final int SERIALIZED_TX_TAG = (5 << 3) | WIRETYPE_LENGTH_DELIMITED;
+
+  private byte[] buffer = null;
+  private int position = 0;
+  private int limit = 0;
+
+  private boolean hasRequestIndex;
+  private int requestIndex;
+  private TrezorMessage.RequestType requestType;
+  private boolean hasSignedIndex;
+  private int signedIndex;
+  private int signatureOffset;
+  private int signatureLength;
+  private int serializedTxOffset;
+  private int serializedTxLength;
+
+  /**
+   * <p>Read the fields of a TxRequest detail</p>
+   *
+   * @param buffer The buffer holding the detail
+   * @param offset The start of the detail
+   * @param length The length of the detail
+   *
+   * @return This flyweight
+   *
+   * @throws InvalidProtocolBufferException If the detail is not a valid message
+   */
+  public TxRequestFlyweight wrap(byte[] buffer, int offset, int length) throws InvalidProtocolBufferException {
+
+    Preconditions.checkNotNull(buffer, "'buffer' must be present");
+    Preconditions.checkPositionIndexes(offset, offset + length, buffer.length);
+
+    this.buffer = buffer;
+    this.position = offset;
+    this.limit = offset + length;
+
+    hasRequestIndex = false;
+    requestIndex = 0;
+    requestType = null;
+    hasSignedIndex = false;
+    signedIndex = 0;
+    signatureOffset = -1;
+    signatureLength = 0;
+    serializedTxOffset = -1;
+    serializedTxLength = 0;
+
+    // A repeated field replaces the earlier value as it would when merging
+    while (position < limit) {
+      int tag = readVarint32();
+      switch (tag) {
+        case REQUEST_INDEX_TAG:
+          requestIndex = readVarint32();
+          hasRequestIndex = true;
+          break;
+        case REQUEST_TYPE_TAG:
+          // An unknown enum value is treated as an unknown field
+          TrezorMessage.RequestType value = TrezorMessage.RequestType.valueOf(readVarint32());
+          if (value != null) {
+            requestType = value;
+          }
+          break;
+        case SIGNED_INDEX_TAG:
+          signedIndex = readVarint32();
+          hasSignedIndex = true;
+          break;
+        case SIGNATURE_TAG:
+          signatureLength = readLength();
+          signatureOffset = position;
+          position += signatureLength;
+          break;
+        case SERIALIZED_TX_TAG:
+          serializedTxLength = readLength();
+          serializedTxOffset = position;
+          position += serializedTxLength;
+          break;
+        default:
+          skipField(tag);
+      }
+    }
+
+    return this;
+  }
+
+  /**
+   * @return True if the device expects a TxInput or TxOutput
+   */
+  public boolean hasRequestIndex() {
+    return hasRequestIndex;
+  }
+
+  /**
+   * @return The index of the requested input or output (0 if absent)
+   */
+  public int getRequestIndex() {
+    return requestIndex;
+  }
+
+  /**
+   * @return True if the device stated the kind of information requested
+   */
+  public boolean hasRequestType() {
+    return requestType != null;
+  }
+
+  /**
+   * @return The kind of information requested (TXINPUT if absent)
+   */
+  public TrezorMessage.RequestType getRequestType() {
+    return requestType == null ? TrezorMessage.RequestType.TXINPUT : requestType;
+  }
+
+  /**
+   * @return True if the request carries the signature of an input
+   */
+  public boolean hasSignedIndex() {
+    return hasSignedIndex;
+  }
+
+  /**
+   * @return The index of the input the signature belongs to (0 if absent)
+   */
+  public int getSignedIndex() {
+    return signedIndex;
+  }
+
+  /**
+   * @return True if a signature is present in the wrapped buffer (possibly empty)
+   */
+  public boolean hasSignature() {
+    return signatureOffset >= 0;
+  }
+
+  /**
+   * @return The offset of the signature in the wrapped buffer (-1 if absent)
+   */
+  public int getSignatureOffset() {
+    return signatureOffset;
+  }
+
+  /**
+   * @return The length of the signature (0 if absent)
+   */
+  public int getSignatureLength() {
+    return signatureLength;
+  }
+
+  /**
+   * @return True if a part of the serialized transaction is present in the wrapped buffer (possibly empty)
+   */
+  public boolean hasSerializedTx() {
+    return serializedTxOffset >= 0;
+  }
+
+  /**
+   * @return The offset of the serialized transaction part in the wrapped buffer (-1 if absent)
+   */
+  public int getSerializedTxOffset() {
+    return serializedTxOffset;
+  }
+
+  /**
+   * @return The length of the serialized transaction part (0 if absent)
+   */
+  public int getSerializedTxLength() {
+    return serializedTxLength;
+  }
+
+  /**
+   * @return The wrapped buffer
+   */
+  public byte[] getBuffer() {
+    return buffer;
+  }
+
+  /**
+   * @param out The stream to receive the signature (nothing is written if absent)
+   *
+   * @throws IOException If the stream cannot be written
+   */
+  public void writeSignatureTo(OutputStream out) throws IOException {
+    if (signatureLength > 0) {
+      out.write(buffer, signatureOffset, signatureLength);
+    }
+  }
+
+  /**
+   * @param out The stream to receive the serialized transaction part (nothing is written if absent)
+   *
+   * @throws IOException If the stream cannot be written
+   */
+  public void writeSerializedTxTo(OutputStream out) throws IOException {
+    if (serializedTxLength > 0) {
+      out.write(buffer, serializedTxOffset, serializedTxLength);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "TxRequestFlyweight{" +
+      "requestIndex=" + (hasRequestIndex ? requestIndex : "absent") +
+      ", requestType=" + requestType +
+      ", signedIndex=" + (hasSignedIndex ? signedIndex : "absent") +
+      ", signatureLength=" + signatureLength +
+      ", serializedTxLength=" + serializedTxLength +
+      '}';
+  }
+
+  /**
+   * @param tag The tag of a field that is not part of the TxRequest
+   */
+  private void skipField(int tag) throws InvalidProtocolBufferException {
+
+    if ((tag >>> 3) == 0) {
+      throw new InvalidProtocolBufferException("Protocol message contained an invalid tag (zero).");
+    }
+
+    switch (tag & 0x7) {
+      case WIRETYPE_VARINT:
+        readVarint64();
+        break;
+      case WIRETYPE_FIXED64:
+        skipBytes(8);
+        break;
+      case WIRETYPE_LENGTH_DELIMITED:
+        skipBytes(readLength());
+        break;
+      case WIRETYPE_START_GROUP:
+        // Skip to the matching end group tag
+        int endTag = (tag & ~0x7) | WIRETYPE_END_GROUP;
+        while (true) {
+          if (position >= limit) {
+            throw truncated();
+          }
+          int groupTag = readVarint32();
+          if (groupTag == endTag) {
+            break;
+          }
+          skipField(groupTag);
+        }
+        break;
+      case WIRETYPE_FIXED32:
+        skipBytes(4);
+        break;
+      default:
+        // An end group without a start group
+        throw new InvalidProtocolBufferException("Protocol message end-group tag did not match expected tag.");
+    }
+
+  }
+
+  private void skipBytes(int count) throws InvalidProtocolBufferException {
+    if (count > limit - position) {
+      throw truncated();
+    }
+    position += count;
+  }
+
+  /**
+   * @return The length of a length delimited field after checking it is within the detail
+   */
+  private int readLength() throws InvalidProtocolBufferException {
+
+    int length = readVarint32();
+    if (length < 0) {
+      throw new InvalidProtocolBufferException("CodedInputStream encountered an embedded string or message which claimed to have negative size.");
+    }
+    if (length > limit - position) {
+      throw truncated();
+    }
+    return length;
+  }
+
+  /**
+   * @return The low 32 bits of a varint (an int32 is sign extended to 10 bytes on the wire)
+   */
+  private int readVarint32() throws InvalidProtocolBufferException {
+    return (int) readVarint64();
+  }
+
+  private long readVarint64() throws InvalidProtocolBufferException {
+
+    long result = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      if (position >= limit) {
+        throw truncated();
+      }
+      byte b = buffer[position++];
+      result |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+    }
+    throw new InvalidProtocolBufferException("CodedInputStream encountered a malformed varint.");
+  }
+
+  private static InvalidProtocolBufferException truncated() {
+    return new InvalidProtocolBufferException("While parsing a protocol message, the input ended unexpectedly in the middle of a field.");
+  }
+
+}
@@ -0,0 +1,163 @@
+package uk.co.bsol.trezorj.core.tracing;
+
+import com.google.common.base.Optional;
+
+/**
+ * <p>Span to provide the following to the tracer:</p>
+ * <ul>
+ * <li>A timed, named section of work on one thread (e.g. a client request or a frame read)</li>
+ * <li>A link to its parent so a whole conversation can be rebuilt across threads</li>
+ * </ul>
+ * <p>A span is started by {@link Tracer#startSpan(String)} and becomes the current span of the starting thread
+ * until {@link #end()} is called on that same thread. A span started without a parent (e.g. on a monitor thread
+ * waiting for the device) can be attached to a conversation later using {@link #setParent(Span)}.</p>
+ * <p>While tracing is disabled the tracer hands out {@link #NOOP} so that instrumented code allocates nothing.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class Span {
+
+  /**
+   * The span provided while tracing is disabled (every method does nothing)
+   */
+  public static final Span NOOP = new Span(null, 0, null, null, 0);
+
+  private final Tracer tracer;
+  private final long spanId;
+  private final String name;
+  private final String threadName;
+  private final long startNanos;
+
+  // The span that was current on this thread before this one started
+  private final Span previous;
+
+  private volatile long parentSpanId;
+  private volatile String detail;
+  private volatile long endNanos;
+  private volatile boolean isEnded;
+
+  /**
+   * @param tracer     The tracer that exports this span
+   * @param spanId     The span ID (unique within the tracer)
+   * @param name       The name (e.g. "client.request")
+   * @param previous   The span that was current on the starting thread (null if none)
+   * @param startNanos The start time
+   */
+  Span(Tracer tracer, long spanId, String name, Span previous, long startNanos) {
+
+    this.tracer = tracer;
+    this.spanId = spanId;
+    this.name = name;
+    this.previous = previous;
+    this.startNanos = startNanos;
+    this.threadName = Thread.currentThread().getName();
+    this.parentSpanId = previous == null ? 0 : previous.spanId;
+    this.isEnded = tracer == null;
+  }
+
+  /**
+   * @return True if this span will be exported (false for {@link #NOOP})
+   */
+  public boolean isRecording() {
+    return tracer != null;
+  }
+
+  /**
+   * <p>Attach this span to a span from another thread (e.g. the request that a response belongs to)</p>
+   * <p>This has no effect once the span has ended or if the parent is not recording.</p>
+   *
+   * @param parent The parent span
+   */
+  public void setParent(Span parent) {
+    if (!isEnded && parent != null && parent.isRecording() && parent != this) {
+      this.parentSpanId = parent.spanId;
+    }
+  }
+
+  /**
+   * @param detail A short description for this span (e.g. the message type)
+   */
+  public void setDetail(String detail) {
+    if (!isEnded) {
+      this.detail = detail;
+    }
+  }
+
+  /**
+   * <p>End this span, restore the previous current span and pass this span to the exporter</p>
+   * <p>Must be called on the thread that started the span. Subsequent calls have no effect.</p>
+   */
+  public void end() {
+
+    if (isEnded) {
+      return;
+    }
+    endNanos = System.nanoTime();
+    isEnded = true;
+
+    tracer.onEnd(this);
+  }
+
+  /**
+   * @return The span ID (unique within the tracer)
+   */
+  public long getSpanId() {
+    return spanId;
+  }
+
+  /**
+   * @return The parent span ID (zero if this span is a root)
+   */
+  public long getParentSpanId() {
+    return parentSpanId;
+  }
+
+  /**
+   * @return The name (e.g. "client.request")
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return The detail (e.g. the message type) if present
+   */
+  public Optional<String> getDetail() {
+    return Optional.fromNullable(detail);
+  }
+
+  /**
+   * @return The name of the thread that started this span
+   */
+  public String getThreadName() {
+    return threadName;
+  }
+
+  /**
+   * @return The start time in nanoseconds (only meaningful when compared with other spans)
+   */
+  public long getStartNanos() {
+    return startNanos;
+  }
+
+  /**
+   * @return The end time in nanoseconds (zero until ended)
+   */
+  public long getEndNanos() {
+    return endNanos;
+  }
+
+  /**
+   * @return The span that was current on the starting thread before this one (null if none)
+   */
+  Span getPrevious() {
+    return previous;
+  }
+
+  @Override
+  public String toString() {
+    return name + "#" + spanId + (parentSpanId == 0 ? "" : "<" + parentSpanId) + (detail == null ? "" : " " + detail);
+  }
+
+}
@@ -0,0 +1,21 @@
+package uk.co.bsol.trezorj.core.tracing;
+
+/**
+ * <p>Interface to provide the following to the tracer:</p>
+ * <ul>
+ * <li>A destination for each span as it ends (e.g. a {@link TraceFileExporter})</li>
+ * </ul>
+ * <p>Implementations are called on the instrumented threads (including the transport monitor threads) so
+ * they must be thread safe and should not block for long.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public interface SpanExporter {
+
+  /**
+   * @param span The span that has just ended
+   */
+  void export(Span span);
+
+}
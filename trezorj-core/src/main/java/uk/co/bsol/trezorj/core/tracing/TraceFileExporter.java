@@ -0,0 +1,148 @@
+package uk.co.bsol.trezorj.core.tracing;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.utils.BinaryLogWriter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * <p>Span exporter to provide the following to diagnostics:</p>
+ * <ul>
+ * <li>A compact local trace file of every span (see {@link TraceLog} for the format and a timeline conversion)</li>
+ * <li>Names, details and thread names written once and then referred to by a short ID</li>
+ * <li>Writes through a {@link BinaryLogWriter} so the traced threads rarely touch the file system</li>
+ * </ul>
+ * <p>The buffer is written out when full, on {@link #flush()} and on {@link #close()}. A span exported after the
+ * exporter is closed (or after a write failure) is dropped rather than disturbing the traced work.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class TraceFileExporter implements SpanExporter, Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(TraceFileExporter.class);
+
+  private final BinaryLogWriter writer;
+  private final long startNanos;
+
+  private final Map<String, Short> stringIds = Maps.newHashMap();
+
+  private long spanCount = 0;
+
+  /**
+   * @param file The file to create (an existing file is replaced)
+   *
+   * @return A new exporter
+   *
+   * @throws IOException If the file cannot be created
+   */
+  public static TraceFileExporter newInstance(File file) throws IOException {
+
+    Preconditions.checkNotNull(file, "'file' must be present");
+
+    return new TraceFileExporter(BinaryLogWriter.newInstance(file, TraceLog.MAGIC, TraceLog.VERSION));
+  }
+
+  /**
+   * Use the utility constructor
+   */
+  private TraceFileExporter(BinaryLogWriter writer) {
+
+    this.writer = writer;
+    this.startNanos = System.nanoTime();
+  }
+
+  @Override
+  public synchronized void export(Span span) {
+
+    if (!writer.isOpen()) {
+      return;
+    }
+
+    try {
+      short nameId = stringId(span.getName());
+      short detailId = span.getDetail().isPresent() ? stringId(span.getDetail().get()) : TraceLog.NO_STRING;
+      short threadId = stringId(span.getThreadName());
+
+      ByteBuffer buffer = writer.reserve(TraceLog.SPAN_RECORD_SIZE);
+      buffer.put(TraceLog.SPAN_RECORD);
+      buffer.putLong(span.getSpanId());
+      buffer.putLong(span.getParentSpanId());
+      buffer.putLong(span.getStartNanos() - startNanos);
+      buffer.putLong(span.getEndNanos() - span.getStartNanos());
+      buffer.putShort(nameId);
+      buffer.putShort(detailId);
+      buffer.putShort(threadId);
+
+      spanCount++;
+
+    } catch (IOException e) {
+      log.error("Trace export stopped", e);
+      writer.abandon();
+    }
+  }
+
+  /**
+   * @return The number of spans exported so far
+   */
+  public synchronized long getSpanCount() {
+    return spanCount;
+  }
+
+  /**
+   * <p>Write any buffered spans to the file</p>
+   *
+   * @throws IOException If the write fails
+   */
+  public synchronized void flush() throws IOException {
+    writer.flush();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    writer.close();
+  }
+
+  /**
+   * @return The ID for the string (writing a string record the first time it is seen)
+   */
+  private short stringId(String value) throws IOException {
+
+    if (value == null) {
+      return TraceLog.NO_STRING;
+    }
+
+    Short id = stringIds.get(value);
+    if (id != null) {
+      return id;
+    }
+
+    if (stringIds.size() >= Short.MAX_VALUE) {
+      // The table is full (unlikely since names and details come from a small set)
+      return TraceLog.NO_STRING;
+    }
+
+    byte[] bytes = value.getBytes(Charsets.UTF_8);
+    int length = Math.min(bytes.length, TraceLog.MAX_STRING_LENGTH);
+
+    short newId = (short) stringIds.size();
+    ByteBuffer buffer = writer.reserve(1 + 2 + 2 + length);
+    buffer.put(TraceLog.STRING_RECORD);
+    buffer.putShort(newId);
+    buffer.putShort((short) length);
+    buffer.put(bytes, 0, length);
+
+    stringIds.put(value, newId);
+
+    return newId;
+  }
+
+}
@@ -0,0 +1,263 @@
+package uk.co.bsol.trezorj.core.tracing;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import uk.co.bsol.trezorj.core.utils.BinaryLogReader;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Trace log to provide the following to offline analysis:</p>
+ * <ul>
+ * <li>The spans written by a {@link TraceFileExporter} in the order they ended</li>
+ * <li>Conversion to the Chrome trace event format for a flame/timeline view (chrome://tracing or Perfetto)</li>
+ * </ul>
+ * <p>The binary format is big endian throughout:</p>
+ * <ul>
+ * <li>File header: magic (int "TZTR"), version (short), start time (long, milliseconds since the epoch) as
+ * written by a {@link uk.co.bsol.trezorj.core.utils.BinaryLogWriter}</li>
+ * <li>String record: type (byte 1), ID (short), length (short), UTF-8 bytes</li>
+ * <li>Span record: type (byte 2), span ID (long), parent span ID (long, zero for a root), start offset (long,
+ * nanoseconds), duration (long, nanoseconds), name ID (short), detail ID (short, -1 if absent), thread name ID
+ * (short)</li>
+ * </ul>
+ * <p>A string record always precedes the first span that refers to it. A record cut short at the end of the
+ * file (e.g. after a crash) is ignored.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class TraceLog {
+
+  /**
+   * The magic number at the start of a trace ("TZTR")
+   */
+  public static final int MAGIC = 0x545a5452;
+
+  /**
+   * The current format version
+   */
+  public static final short VERSION = 1;
+
+  /**
+   * The record type for a string definition
+   */
+  public static final byte STRING_RECORD = 1;
+
+  /**
+   * The record type for a span
+   */
+  public static final byte SPAN_RECORD = 2;
+
+  /**
+   * The size of a span record including its type
+   */
+  public static final int SPAN_RECORD_SIZE = 1 + 8 + 8 + 8 + 8 + 2 + 2 + 2;
+
+  /**
+   * The string ID used when a string is absent
+   */
+  public static final short NO_STRING = -1;
+
+  /**
+   * The longest string written (in bytes)
+   */
+  public static final int MAX_STRING_LENGTH = 1024;
+
+  private final long startMillis;
+  private final List<TraceRecord> records;
+
+  /**
+   * @param file The trace file
+   *
+   * @return The log
+   *
+   * @throws IOException If the file cannot be read or is not a trace file
+   */
+  public static TraceLog read(File file) throws IOException {
+
+    Preconditions.checkNotNull(file, "'file' must be present");
+
+    BinaryLogReader reader = BinaryLogReader.open(file, MAGIC, VERSION, "trace file");
+    try {
+      final Map<Short, String> strings = Maps.newHashMap();
+      final List<TraceRecord> records = Lists.newArrayList();
+      reader.readRecords(new BinaryLogReader.RecordReader() {
+        @Override
+        public void read(DataInputStream in) throws IOException {
+          byte type = in.readByte();
+          switch (type) {
+            case STRING_RECORD:
+              short id = in.readShort();
+              byte[] bytes = new byte[in.readShort()];
+              in.readFully(bytes);
+              strings.put(id, new String(bytes, Charsets.UTF_8));
+              break;
+            case SPAN_RECORD:
+              long spanId = in.readLong();
+              long parentSpanId = in.readLong();
+              long startOffsetNanos = in.readLong();
+              long durationNanos = in.readLong();
+              String name = lookup(strings, in.readShort()).or("?");
+              Optional<String> detail = lookup(strings, in.readShort());
+              String threadName = lookup(strings, in.readShort()).or("?");
+              records.add(new TraceRecord(spanId, parentSpanId, name, detail, threadName, startOffsetNanos, durationNanos));
+              break;
+            default:
+              throw new IOException("Unknown trace record type: " + type);
+          }
+        }
+      });
+
+      return new TraceLog(reader.getStartMillis(), records);
+
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * @param startMillis The start of the trace
+   * @param records     The spans in the order they ended
+   */
+  public TraceLog(long startMillis, List<TraceRecord> records) {
+
+    Preconditions.checkNotNull(records, "'records' must be present");
+
+    this.startMillis = startMillis;
+    this.records = ImmutableList.copyOf(records);
+  }
+
+  /**
+   * @return The start of the trace in milliseconds since the epoch
+   */
+  public long getStartMillis() {
+    return startMillis;
+  }
+
+  /**
+   * @return The spans in the order they ended
+   */
+  public List<TraceRecord> getRecords() {
+    return records;
+  }
+
+  /**
+   * @param spanId The span ID
+   *
+   * @return The span and all its descendants (across threads) in the order they ended
+   */
+  public List<TraceRecord> getConversation(long spanId) {
+
+    List<TraceRecord> conversation = Lists.newArrayList();
+
+    // A child ends before its parent so repeat until nothing new is found
+    Set<Long> members = Sets.newHashSet();
+    members.add(spanId);
+    boolean isGrowing = true;
+    while (isGrowing) {
+      isGrowing = false;
+      for (TraceRecord record : records) {
+        if (!members.contains(record.getSpanId()) && members.contains(record.getParentSpanId())) {
+          members.add(record.getSpanId());
+          isGrowing = true;
+        }
+      }
+    }
+
+    for (TraceRecord record : records) {
+      if (members.contains(record.getSpanId())) {
+        conversation.add(record);
+      }
+    }
+
+    return conversation;
+  }
+
+  /**
+   * <p>Write the spans in the Chrome trace event format (one complete event per span with a row per thread)</p>
+   *
+   * @param out The destination for the JSON
+   *
+   * @throws IOException If the write fails
+   */
+  public void writeChromeTrace(Appendable out) throws IOException {
+
+    Map<String, Integer> threadIds = Maps.newLinkedHashMap();
+    for (TraceRecord record : records) {
+      if (!threadIds.containsKey(record.getThreadName())) {
+        threadIds.put(record.getThreadName(), threadIds.size() + 1);
+      }
+    }
+
+    out.append("{\"traceEvents\":[\n");
+    boolean isFirst = true;
+    for (Map.Entry<String, Integer> entry : threadIds.entrySet()) {
+      isFirst = appendSeparator(out, isFirst);
+      out.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":").append(String.valueOf(entry.getValue()))
+        .append(",\"args\":{\"name\":").append(quote(entry.getKey())).append("}}");
+    }
+    for (TraceRecord record : records) {
+      isFirst = appendSeparator(out, isFirst);
+      out.append("{\"name\":").append(quote(record.getName()))
+        .append(",\"cat\":\"trezorj\",\"ph\":\"X\",\"pid\":1,\"tid\":").append(String.valueOf(threadIds.get(record.getThreadName())))
+        .append(",\"ts\":").append(String.format(Locale.ENGLISH, "%.3f", record.getStartOffsetNanos() / 1000.0))
+        .append(",\"dur\":").append(String.format(Locale.ENGLISH, "%.3f", record.getDurationNanos() / 1000.0))
+        .append(",\"args\":{\"span\":").append(String.valueOf(record.getSpanId()))
+        .append(",\"parent\":").append(String.valueOf(record.getParentSpanId()));
+      if (record.getDetail().isPresent()) {
+        out.append(",\"detail\":").append(quote(record.getDetail().get()));
+      }
+      out.append("}}");
+    }
+    out.append("\n]}\n");
+  }
+
+  private static Optional<String> lookup(Map<Short, String> strings, short id) throws IOException {
+
+    if (id == NO_STRING) {
+      return Optional.absent();
+    }
+    String value = strings.get(id);
+    if (value == null) {
+      throw new IOException("Trace refers to an unknown string: " + id);
+    }
+    return Optional.of(value);
+  }
+
+  private static boolean appendSeparator(Appendable out, boolean isFirst) throws IOException {
+    if (!isFirst) {
+      out.append(",\n");
+    }
+    return false;
+  }
+
+  private static String quote(String value) {
+
+    StringBuilder sb = new StringBuilder(value.length() + 2);
+    sb.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < 0x20) {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+
+}
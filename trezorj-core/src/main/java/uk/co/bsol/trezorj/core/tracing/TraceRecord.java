@@ -0,0 +1,96 @@
+package uk.co.bsol.trezorj.core.tracing;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>Value object to provide the following to trace analysis:</p>
+ * <ul>
+ * <li>A single span read back from a trace file</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ *
+ */
+public class TraceRecord {
+
+  private final long spanId;
+  private final long parentSpanId;
+  private final String name;
+  private final Optional<String> detail;
+  private final String threadName;
+  private final long startOffsetNanos;
+  private final long durationNanos;
+
+  /**
+   * @param spanId           The span ID
+   * @param parentSpanId     The parent span ID (zero for a root)
+   * @param name             The name
+   * @param detail           The detail (if present)
+   * @param threadName       The name of the thread that ran the span
+   * @param startOffsetNanos The start relative to the start of the trace
+   * @param durationNanos    The duration
+   */
+  public TraceRecord(long spanId, long parentSpanId, String name, Optional<String> detail, String threadName, long startOffsetNanos, long durationNanos) {
+
+    Preconditions.checkNotNull(name, "'name' must be present");
+    Preconditions.checkNotNull(detail, "'detail' must be present");
+    Preconditions.checkNotNull(threadName, "'threadName' must be present");
+
+    this.spanId = spanId;
+    this.parentSpanId = parentSpanId;
+    this.name = name;
+    this.detail = detail;
+    this.threadName = threadName;
+    this.startOffsetNanos = startOffsetNanos;
+    this.durationNanos = durationNanos;
+  }
+
+  public long getSpanId() {
+    return spanId;
+  }
+
+  /**
+   * @return The parent span ID (zero for a root)
+   */
+  public long getParentSpanId() {
+    return parentSpanId;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Optional<String> getDetail() {
+    return detail;
+  }
+
+  public String getThreadName() {
+    return threadName;
+  }
+
+  /**
+   * @return The start relative to the start of the trace in nanoseconds
+   */
+  public long getStartOffsetNanos() {
+    return startOffsetNanos;
+  }
+
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%12.3fms %10.3fms %-20s %-16s [%s] #%d<%d",
+      startOffsetNanos / 1000000.0,
+      durationNanos / 1000000.0,
+      name,
+      detail.or(""),
+      threadName,
+      spanId,
+      parentSpanId
+    );
+  }
+
+}
@@ -0,0 +1,122 @@
+package uk.co.bsol.trezorj.core.tracing;
+
+import com.google.common.base.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Tracer to provide the following to clients and transports:</p>
+ * <ul>
+ * <li>Spans around client calls, message sends, frame reads and writes, HID transfers and event dispatch</li>
+ * <li>A current span per thread so nested work is parented automatically</li>
+ * <li>A pluggable {@link SpanExporter} with nothing at all done while none is set (the default)</li>
+ * </ul>
+ * <p>Work on the transport monitor threads is attached to the conversation that caused it using
+ * {@link Span#setParent(Span)}, so a signing conversation can be followed from the client call through each frame
+ * and back to the listener queue.</p>
+ * <p>Example:</p>
+ * <pre>
+ * TraceFileExporter exporter = TraceFileExporter.newInstance(new File("signing.trace"));
+ * Tracer.getDefaultInstance().setExporter(exporter);
+ * ...
+ * Tracer.getDefaultInstance().setExporter(null);
+ * exporter.close();
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class Tracer {
+
+  private static final Logger log = LoggerFactory.getLogger(Tracer.class);
+
+  private static final Tracer defaultInstance = new Tracer();
+
+  private final AtomicLong nextSpanId = new AtomicLong(1);
+  private final ThreadLocal<Span> currentSpan = new ThreadLocal<Span>();
+
+  // Absent while tracing is disabled
+  private volatile Optional<SpanExporter> exporterOptional = Optional.absent();
+
+  /**
+   * @return The shared tracer used by the clients and transports
+   */
+  public static Tracer getDefaultInstance() {
+    return defaultInstance;
+  }
+
+  /**
+   * @return True if spans are being exported
+   */
+  public boolean isEnabled() {
+    return exporterOptional.isPresent();
+  }
+
+  /**
+   * @param exporter The exporter to receive each span as it ends (null to disable tracing)
+   */
+  public void setExporter(SpanExporter exporter) {
+    this.exporterOptional = Optional.fromNullable(exporter);
+  }
+
+  /**
+   * <p>Start a span as a child of the current span on this thread (if any) and make it current</p>
+   *
+   * @param name The name (e.g. "client.request")
+   *
+   * @return The span ({@link Span#NOOP} if tracing is disabled)
+   */
+  public Span startSpan(String name) {
+
+    if (!exporterOptional.isPresent()) {
+      return Span.NOOP;
+    }
+
+    Span span = new Span(this, nextSpanId.getAndIncrement(), name, currentSpan.get(), System.nanoTime());
+    currentSpan.set(span);
+
+    return span;
+  }
+
+  /**
+   * @return The current span on this thread ({@link Span#NOOP} if none)
+   */
+  public Span currentSpan() {
+    Span span = currentSpan.get();
+    return span == null ? Span.NOOP : span;
+  }
+
+  /**
+   * <p>Restore the previous span on this thread and export the span</p>
+   *
+   * @param span The span that has ended
+   */
+  void onEnd(Span span) {
+
+    // Restore the previous span (also discarding any descendants that were never ended)
+    for (Span current = currentSpan.get(); current != null; current = current.getPrevious()) {
+      if (current == span) {
+        Span previous = span.getPrevious();
+        if (previous == null) {
+          currentSpan.remove();
+        } else {
+          currentSpan.set(previous);
+        }
+        break;
+      }
+    }
+
+    Optional<SpanExporter> exporter = exporterOptional;
+    if (exporter.isPresent()) {
+      try {
+        exporter.get().export(span);
+      } catch (RuntimeException e) {
+        // Tracing must never disturb the work being traced
+        log.warn("Span export failed: {}", e.getMessage());
+      }
+    }
+  }
+
+}
@@ -1,8 +1,10 @@
 package uk.co.bsol.trezorj.core.trezors;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Queues;
 import com.google.common.collect.Sets;
+import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,14 +15,27 @@ import uk.co.bsol.trezorj.core.TrezorListener;
 import uk.co.bsol.trezorj.core.events.TrezorEvents;
 import uk.co.bsol.trezorj.core.protobuf.MessageType;
 import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.tracing.Span;
+import uk.co.bsol.trezorj.core.tracing.Tracer;
+import uk.co.bsol.trezorj.core.utils.Clock;
+import uk.co.bsol.trezorj.core.utils.FrameInputStream;
+import uk.co.bsol.trezorj.core.utils.SystemClock;
+import uk.co.bsol.trezorj.core.utils.TrezorMessageUtils;
+import uk.co.bsol.trezorj.core.wire.WireDirection;
+import uk.co.bsol.trezorj.core.wire.WireTrace;
+import uk.co.bsol.trezorj.core.wire.WireTraceType;
+import uk.co.bsol.trezorj.core.wire.WireTap;
 
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p>Abstract base class to provide the following to Trezor devices:</p>
@@ -37,10 +52,45 @@ public abstract class AbstractTrezor implements Trezor {
 
   public static final int MAX_QUEUE_SIZE = 32;
 
+  private static final AtomicLong instanceCount = new AtomicLong(0);
+
+  // Distinguishes instances sharing the same communication link (stable across a reconnect)
+  protected final long instanceNumber = instanceCount.incrementAndGet();
+
   protected final Set<TrezorListener> listeners = Sets.newLinkedHashSet();
 
-  // Provide a few threads for monitoring for specialised cases
-  protected final ExecutorService trezorMonitorService = Executors.newFixedThreadPool(5);
+  // Provide a few threads for monitoring for specialised cases (replaced on close to allow a reconnect)
+  protected volatile ExecutorService trezorMonitorService = Executors.newFixedThreadPool(5);
+
+  // Shared with the monitor threads for their pauses
+  protected volatile Clock clock = SystemClock.getDefaultInstance();
+
+  // Receives a copy of every frame (absent for no overhead)
+  private volatile Optional<WireTap> wireTapOptional = Optional.absent();
+
+  // The span of the most recent sender so the monitor thread can attach responses to its conversation
+  private volatile Span senderSpan = Span.NOOP;
+
+  /**
+   * <p>Provide a clock other than the system clock for the monitor pauses (e.g. a VirtualClock in tests)</p>
+   *
+   * @param clock The clock
+   */
+  public void setClock(Clock clock) {
+    Preconditions.checkNotNull(clock, "'clock' must be present");
+    this.clock = clock;
+  }
+
+  /**
+   * <p>Implementations should override this with an identifier based on their communication link. The default is
+   * unique to this instance so that a device without one never shares cached state with another.</p>
+   *
+   * @return The device ID
+   */
+  @Override
+  public String getDeviceId() {
+    return getClass().getSimpleName() + "#" + instanceNumber;
+  }
 
   @Override
   public synchronized void addListener(TrezorListener trezorListener) {
@@ -61,33 +111,94 @@ public abstract class AbstractTrezor implements Trezor {
     trezorListener.setTrezorEventQueue(null);
   }
 
+  /**
+   * @param wireTap The tap to receive every frame read or written (null to remove)
+   */
+  public void setWireTap(WireTap wireTap) {
+    this.wireTapOptional = Optional.fromNullable(wireTap);
+  }
+
+  /**
+   * <p>Write a message to the device, passing a copy to any wire tap</p>
+   *
+   * @param message The protocol buffer message
+   * @param out     The data output stream (must be open)
+   *
+   * @throws IOException If the device disconnects during IO
+   */
+  protected void writeMessage(Message message, DataOutputStream out) throws IOException {
+
+    Span callerSpan = Tracer.getDefaultInstance().currentSpan();
+    Span span = Tracer.getDefaultInstance().startSpan("frame.write");
+    if (span.isRecording()) {
+      span.setDetail(MessageType.getMessageType(message).name());
+      senderSpan = callerSpan.isRecording() ? callerSpan : span;
+    }
+
+    try {
+      short headerCode = MessageType.getHeaderCode(message);
+
+      Optional<WireTap> tapOptional = wireTapOptional;
+      if (tapOptional.isPresent()) {
+        tapOptional.get().onFrame(WireDirection.TO_DEVICE, headerCode, message.toByteArray());
+      }
+
+      // Traced here rather than in the utilities so that an emulator in the same JVM is not traced as well
+      // (the detail is captured at the HID layer if present)
+      WireTrace.getDefaultInstance().record(WireTraceType.FRAME_OUT, headerCode, null, 0, message.getSerializedSize());
+
+      TrezorMessageUtils.writeMessage(message, out);
+    } finally {
+      span.end();
+    }
+  }
+
   /**
    * <p>Create an executor service to monitor the data input stream and raise events</p>
    */
-  protected void monitorDataInputStream(final DataInputStream in) {
+  protected void monitorDataInputStream(DataInputStream dataInputStream) {
+
+    // Allow an invalid frame to be returned and scanned again for the frames behind it
+    final FrameInputStream in = new FrameInputStream(dataInputStream);
 
     // Monitor the data input stream
     trezorMonitorService.submit(new Runnable() {
       @Override
       public void run() {
 
+        Tracer tracer = Tracer.getDefaultInstance();
+
         while (true) {
+
+          // Covers the wait for the device (the frame spans within it show when data arrived)
+          Span receiveSpan = tracer.startSpan("trezor.receive");
           try {
             // Read a message (blocking)
             final TrezorEvent trezorEvent = readMessage(in);
 
-            emitTrezorEvent(trezorEvent);
+            // Attach to the conversation that is most likely to have caused this message
+            receiveSpan.setParent(senderSpan);
+
+            Span dispatchSpan = tracer.startSpan("listener.dispatch");
+            try {
+              emitTrezorEvent(trezorEvent);
+            } finally {
+              dispatchSpan.end();
+            }
 
             if (TrezorEventType.DEVICE_DISCONNECTED.equals(trezorEvent.eventType())) {
-              // A shutdown is imminent so best to sleep to void multiple messages
-              Thread.sleep(2000);
-            } else {
-              // Provide a small break
-              Thread.sleep(100);
+              // Nothing more can arrive on this stream (a reconnect starts a new monitor)
+              break;
+            } else if (!TrezorEventType.PROTOCOL_MESSAGE.equals(trezorEvent.eventType())) {
+              // Provide a small break to avoid spinning on a failing stream
+              // (protocol messages are read back to back to allow pipelining)
+              monitorSleep(tracer, 100);
             }
 
           } catch (InterruptedException e) {
             break;
+          } finally {
+            receiveSpan.end();
           }
         }
 
@@ -96,6 +207,19 @@ public abstract class AbstractTrezor implements Trezor {
 
   }
 
+  /**
+   * <p>Pause the monitor thread within a span so the pause shows up in a trace</p>
+   */
+  private void monitorSleep(Tracer tracer, long millis) throws InterruptedException {
+
+    Span span = tracer.startSpan("monitor.sleep");
+    try {
+      clock.sleep(millis, TimeUnit.MILLISECONDS);
+    } finally {
+      span.end();
+    }
+  }
+
   /**
    * <p>Broadcast a Trezor event to all the listeners</p>
    *
@@ -105,6 +229,12 @@ public abstract class AbstractTrezor implements Trezor {
    */
   protected synchronized void emitTrezorEvent(TrezorEvent trezorEvent) throws InterruptedException {
     log.debug("Firing event: {} ", trezorEvent.eventType().name());
+
+    // Provide post-mortem visibility of the transfers leading up to a failure
+    if (TrezorEventType.DEVICE_FAILURE.equals(trezorEvent.eventType()) && WireTrace.getDefaultInstance().isEnabled()) {
+      WireTrace.getDefaultInstance().dumpToLog(trezorEvent.eventType().name());
+    }
+
     for (TrezorListener listener : listeners) {
       listener.getTrezorEventQueue().put(trezorEvent);
     }
@@ -112,46 +242,80 @@ public abstract class AbstractTrezor implements Trezor {
 
   /**
    * <p>Blocking method to read from the data input stream</p>
+   * <p>Only the monitor thread reads so no lock is held (a blocked read must not prevent a close)</p>
+   * <p>A frame with a corrupted header or a detail that cannot be parsed (e.g. truncated) is returned to the
+   * stream after its alignment string and scanned again, so the frames behind it are not lost.</p>
    *
-   * @param in The data input stream (must be open)
+   * @param in The frame input stream (must be open)
    *
    * @return The expected protocol buffer message for the detail
    */
-  private synchronized TrezorEvent readMessage(DataInputStream in) {
+  private TrezorEvent readMessage(FrameInputStream in) {
+
+    Span span = Span.NOOP;
 
     // Very broad try-catch because a lot of things can go wrong here and need to be reported
     try {
 
-      // Read and throw away the magic header markers
-      in.readByte();
-      in.readByte();
+      // Read and throw away the magic header markers (resynchronizing if anything precedes them)
+      skipToFrame(in);
 
-      // Read the header code and select a suitable parser
-      final Short headerCode = in.readShort();
-      final MessageType messageType = MessageType.getMessageTypeByHeaderCode(headerCode);
+      // The frame has started to arrive
+      span = Tracer.getDefaultInstance().startSpan("frame.read");
 
-      // Read the detail length
-      final int detailLength = in.readInt();
+      while (true) {
 
-      // Read the remaining bytes
-      final byte[] detail = new byte[detailLength];
-      final int actualLength = in.read(detail, 0, detailLength);
+        // Read the header code and the detail length
+        final short headerCode = in.readShort();
+        final int detailLength = in.readInt();
+        if (!TrezorMessageUtils.isValidHeader(headerCode, detailLength)) {
+          log.warn("Discarded a frame with a corrupted header (code {}, length {})", headerCode, detailLength);
+          TrezorMessageUtils.unreadHeader(in, headerCode, detailLength);
+          skipToFrame(in);
+          continue;
+        }
 
-      // Verify the read
-      Preconditions.checkState(actualLength == detailLength, "Detail not read fully. Expected=" + detailLength + " Actual=" + actualLength);
+        final MessageType messageType = MessageType.getMessageTypeByHeaderCode(headerCode);
+        span.setDetail(messageType.name());
+
+        // Read the remaining bytes (a frame may arrive across several reads)
+        final byte[] detail = new byte[detailLength];
+        in.readFully(detail);
+
+        // Parse the detail into a message
+        final Message message;
+        try {
+          message = MessageType.parse(headerCode, detail);
+        } catch (InvalidProtocolBufferException e) {
+          // The length may have taken in part of the next frame so scan everything after the alignment again
+          log.warn("Discarded a '{}' frame that could not be parsed: {}", messageType.name(), e.getMessage());
+          in.unread(detail, 0, detailLength);
+          TrezorMessageUtils.unreadHeader(in, headerCode, detailLength);
+          skipToFrame(in);
+          continue;
+        }
 
-      // Parse the detail into a message
-      final Message message = MessageType.parse(headerCode, detail);
-      log.debug("< {}", message.getClass().getName());
+        Optional<WireTap> tapOptional = wireTapOptional;
+        if (tapOptional.isPresent()) {
+          tapOptional.get().onFrame(WireDirection.FROM_DEVICE, headerCode, detail);
+        }
 
-      if (MessageType.FAILURE.equals(messageType)) {
-        log.error("FAILED: {}", ((TrezorMessage.Failure) message).getMessage());
-      }
+        WireTrace.getDefaultInstance().record(WireTraceType.FRAME_IN, headerCode, detail, 0, detailLength);
 
-      // Build the event from the given information
-      return TrezorEvents.newProtocolEvent(messageType, message);
+        if (MessageType.FAILURE.equals(messageType)) {
+          log.error("FAILED: {}", ((TrezorMessage.Failure) message).getMessage());
+        }
+
+        // Build the event from the given information
+        return TrezorEvents.newProtocolEvent(messageType, message);
+      }
 
     } catch (EOFException e) {
+      if (isEndOfStreamDisconnect()) {
+        // The other end has closed the connection so this is a loss rather than a read timeout
+        log.warn("Device closed the connection");
+        return TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_DISCONNECTED);
+      }
       // Device has reached an unexpected EOF
       log.warn("Unexpected EOF from device");
       return TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_EOF);
@@ -163,15 +327,44 @@ public abstract class AbstractTrezor implements Trezor {
       // System error
       log.error("Unexpected error during read.", e);
       return TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_FAILURE);
+    } finally {
+      span.end();
+    }
+
+  }
+
+  /**
+   * <p>Discard anything ahead of the next alignment string</p>
+   */
+  private void skipToFrame(FrameInputStream in) throws IOException {
+
+    int skipped = TrezorMessageUtils.skipToAlignment(in);
+    if (skipped > 0) {
+      log.warn("Discarded {} bytes before the frame", skipped);
     }
+  }
 
+  /**
+   * <p>Implementations whose input stream only ends when the other side closes it (e.g. a socket) should return
+   * true so that the end of the stream is reported as DEVICE_DISCONNECTED rather than DEVICE_EOF</p>
+   *
+   * @return True if the end of the input stream means the connection has been lost
+   */
+  protected boolean isEndOfStreamDisconnect() {
+    return false;
   }
 
   @Override
   public synchronized void close() {
 
-    internalClose();
-    trezorMonitorService.shutdownNow();
+    try {
+      internalClose();
+    } finally {
+      trezorMonitorService.shutdownNow();
+
+      // Allow the device to be connected again
+      trezorMonitorService = Executors.newFixedThreadPool(5);
+    }
 
   }
 
@@ -0,0 +1,95 @@
+package uk.co.bsol.trezorj.core.trezors;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>Policy to provide the following to circuit breakers:</p>
+ * <ul>
+ * <li>The failure rate over recent requests that trips the breaker</li>
+ * <li>The number of consecutive timeouts that trips the breaker regardless of the rate</li>
+ * <li>How long a response may take and how long the breaker stays open before probing</li>
+ * </ul>
+ * <p>A Failure response, a timeout, an EOF, a disconnect or a device failure all count as failed requests.</p>
+ * <p>Example:</p>
+ * <pre>
+ * // Trip when half of the last 20 requests failed (once 10 are known) or after 3 timeouts in a row
+ * CircuitBreakerPolicy policy = new CircuitBreakerPolicy(20, 10, 0.5, 3, 2000, 5000);
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class CircuitBreakerPolicy {
+
+  private final int windowSize;
+  private final int minimumRequests;
+  private final double failureRateThreshold;
+  private final int maxConsecutiveTimeouts;
+  private final long responseTimeoutMillis;
+  private final long openMillis;
+
+  /**
+   * @param windowSize             The number of most recent requests used for the failure rate
+   * @param minimumRequests        The number of requests in the window before the rate is considered
+   * @param failureRateThreshold   The failure rate (0 to 1) at or above which the breaker trips
+   * @param maxConsecutiveTimeouts The number of consecutive timeouts at which the breaker trips
+   * @param responseTimeoutMillis  The time in milliseconds after which an unanswered request has timed out
+   * @param openMillis             The time in milliseconds the breaker stays open before probing
+   */
+  public CircuitBreakerPolicy(
+    int windowSize,
+    int minimumRequests,
+    double failureRateThreshold,
+    int maxConsecutiveTimeouts,
+    long responseTimeoutMillis,
+    long openMillis
+  ) {
+
+    Preconditions.checkState(windowSize > 0, "'windowSize' must be greater than zero");
+    Preconditions.checkState(minimumRequests > 0 && minimumRequests <= windowSize, "'minimumRequests' must be within the window");
+    Preconditions.checkState(failureRateThreshold > 0 && failureRateThreshold <= 1, "'failureRateThreshold' must be within (0, 1]");
+    Preconditions.checkState(maxConsecutiveTimeouts > 0, "'maxConsecutiveTimeouts' must be greater than zero");
+    Preconditions.checkState(responseTimeoutMillis > 0, "'responseTimeoutMillis' must be greater than zero");
+    Preconditions.checkState(openMillis > 0, "'openMillis' must be greater than zero");
+
+    this.windowSize = windowSize;
+    this.minimumRequests = minimumRequests;
+    this.failureRateThreshold = failureRateThreshold;
+    this.maxConsecutiveTimeouts = maxConsecutiveTimeouts;
+    this.responseTimeoutMillis = responseTimeoutMillis;
+    this.openMillis = openMillis;
+
+  }
+
+  /**
+   * @return A policy suitable for most devices (half of 20 requests failing or 3 timeouts in a row)
+   */
+  public static CircuitBreakerPolicy newDefaultPolicy() {
+    return new CircuitBreakerPolicy(20, 10, 0.5, 3, 2000, 5000);
+  }
+
+  public int getWindowSize() {
+    return windowSize;
+  }
+
+  public int getMinimumRequests() {
+    return minimumRequests;
+  }
+
+  public double getFailureRateThreshold() {
+    return failureRateThreshold;
+  }
+
+  public int getMaxConsecutiveTimeouts() {
+    return maxConsecutiveTimeouts;
+  }
+
+  public long getResponseTimeoutMillis() {
+    return responseTimeoutMillis;
+  }
+
+  public long getOpenMillis() {
+    return openMillis;
+  }
+
+}
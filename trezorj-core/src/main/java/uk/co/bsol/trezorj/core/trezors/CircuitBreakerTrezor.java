@@ -0,0 +1,678 @@
+package uk.co.bsol.trezorj.core.trezors;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
+import com.google.protobuf.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.Trezor;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.TrezorListener;
+import uk.co.bsol.trezorj.core.events.TrezorEvents;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.utils.Clock;
+import uk.co.bsol.trezorj.core.utils.SystemClock;
+
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Trezor implementation to provide the following to applications:</p>
+ * <ul>
+ * <li>A circuit breaker around a single device that stops callers waiting on a device that keeps failing</li>
+ * <li>Instant rejection of requests while the breaker is open</li>
+ * <li>Recovery through a Ping probe once the open period has passed</li>
+ * </ul>
+ * <p>Every request is passed to the device while the breaker is closed. A Failure response, an EOF, a
+ * disconnect or a device failure counts against the device, as does a request that never waits for the user
+ * (e.g. Ping or GetAddress) going unanswered for the response timeout. The breaker trips when the failure rate
+ * over the recent window or the run of consecutive timeouts reaches the limits of the {@link CircuitBreakerPolicy}.</p>
+ * <p>The device answers in order so each response is matched to the oldest outstanding request. A request that
+ * times out is answered at once with a Failure in its place and the device's late response is dropped when it
+ * arrives (or forgotten after the late response window). Requests still outstanding when the breaker trips are
+ * answered the same way and then forgotten, since their responses may never come.</p>
+ * <p>While the breaker is open each request is answered at once with a DEVICE_CIRCUIT_OPEN event in place of a
+ * response, so a client returns in milliseconds rather than waiting out its timeout. After the open period a
+ * single Ping is sent. Only a Success echoing the probe closes the breaker, so a late response to an earlier request
+ * is never taken for it. A Failure or a timeout trips the breaker again.</p>
+ * <p>The timeouts and the open period run on the {@link Clock} (see {@link #setClock(Clock)}).</p>
+ * <p>State changes are published to the state listeners as DEVICE_CIRCUIT_OPEN, DEVICE_CIRCUIT_HALF_OPEN and
+ * DEVICE_CIRCUIT_CLOSED events so that pools and schedulers can steer traffic elsewhere.</p>
+ * <p>Example:</p>
+ * <pre>
+ * CircuitBreakerTrezor trezor = CircuitBreakerTrezor.newInstance(
+ *   TrezorFactory.newSocketTrezor(host, port),
+ *   CircuitBreakerPolicy.newDefaultPolicy()
+ * );
+ * trezor.addStateListener(scheduler);
+ * BlockingTrezorClient client = TrezorClients.newBlockingInstance(trezor, sessionId);
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class CircuitBreakerTrezor implements Trezor, TrezorListener {
+
+  private static final Logger log = LoggerFactory.getLogger(CircuitBreakerTrezor.class);
+
+  /**
+   * How long a response to a request that was answered in its place is still expected before it is assumed lost
+   */
+  public static final long LATE_RESPONSE_WINDOW_MILLIS = 60000;
+
+  private final Trezor trezor;
+  private final CircuitBreakerPolicy policy;
+
+  private final Set<TrezorListener> listeners = Sets.newLinkedHashSet();
+  private final Set<TrezorListener> stateListeners = Sets.newLinkedHashSet();
+
+  private volatile BlockingQueue<TrezorEvent> trezorEventQueue;
+  private ExecutorService dispatcherService;
+  private ExecutorService timerService;
+  private Clock clock = SystemClock.getDefaultInstance();
+
+  // Wakes the timer thread when an earlier timer is scheduled
+  private final BlockingQueue<Boolean> timerWakeups = Queues.newLinkedBlockingQueue();
+
+  // Guarded by this
+  private CircuitState state = CircuitState.CLOSED;
+  private boolean isConnected = false;
+  private final boolean[] failures;
+  private int outcomeCount = 0;
+  private int nextOutcome = 0;
+  private int failureCount = 0;
+  private int consecutiveTimeouts = 0;
+  private final Deque<PendingRequest> pendingRequests = Queues.newArrayDeque();
+  private final PriorityQueue<Timer> timers = new PriorityQueue<Timer>();
+  private long nextRequestId = 0;
+  private long nextTimerId = 0;
+  private long generation = 0;
+  private long rejectedCount = 0;
+  private String probeMessage = null;
+
+  /**
+   * @param trezor The device (not yet connected and not shared with anything else)
+   * @param policy The policy for tripping and probing
+   *
+   * @return A new circuit breaker
+   */
+  public static CircuitBreakerTrezor newInstance(Trezor trezor, CircuitBreakerPolicy policy) {
+
+    Preconditions.checkNotNull(trezor, "'trezor' must be present");
+    Preconditions.checkNotNull(policy, "'policy' must be present");
+
+    return new CircuitBreakerTrezor(trezor, policy);
+  }
+
+  /**
+   * Use the utility constructor
+   */
+  private CircuitBreakerTrezor(Trezor trezor, CircuitBreakerPolicy policy) {
+    this.trezor = trezor;
+    this.policy = policy;
+    this.failures = new boolean[policy.getWindowSize()];
+  }
+
+  /**
+   * <p>Provide a clock other than the system clock for the timeouts and the open period (e.g. a VirtualClock in
+   * tests). Set it before connecting.</p>
+   *
+   * @param clock The clock
+   */
+  public synchronized void setClock(Clock clock) {
+
+    Preconditions.checkNotNull(clock, "'clock' must be present");
+    Preconditions.checkState(!isConnected, "Circuit breaker is already connected");
+
+    this.clock = clock;
+  }
+
+  /**
+   * @return The current state of the breaker
+   */
+  public synchronized CircuitState getState() {
+    return state;
+  }
+
+  /**
+   * @return The number of requests rejected while the breaker was not closed
+   */
+  public synchronized long getRejectedCount() {
+    return rejectedCount;
+  }
+
+  @Override
+  public void connect() {
+
+    synchronized (this) {
+      Preconditions.checkState(!isConnected, "Circuit breaker is already connected");
+      isConnected = true;
+    }
+
+    trezor.addListener(this);
+
+    dispatcherService = Executors.newSingleThreadExecutor();
+    timerService = Executors.newSingleThreadExecutor();
+    dispatcherService.submit(new Runnable() {
+      @Override
+      public void run() {
+        dispatch();
+      }
+    });
+    timerService.submit(new Runnable() {
+      @Override
+      public void run() {
+        runTimers();
+      }
+    });
+
+    // Start dispatching first so the connect event is relayed
+    trezor.connect();
+  }
+
+  @Override
+  public void close() {
+
+    synchronized (this) {
+      if (!isConnected) {
+        return;
+      }
+      // The disconnect that follows is not a failure
+      isConnected = false;
+      pendingRequests.clear();
+      timers.clear();
+      generation++;
+    }
+
+    // Stop relaying first so that the disconnect is only reported once
+    dispatcherService.shutdownNow();
+    timerService.shutdownNow();
+    trezor.close();
+    trezor.removeListener(this);
+
+    synchronized (this) {
+      emit(listeners, TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_DISCONNECTED));
+    }
+  }
+
+  @Override
+  public void sendMessage(Message message) {
+
+    Preconditions.checkNotNull(message, "Message must be present");
+
+    synchronized (this) {
+
+      Preconditions.checkState(isConnected, "Circuit breaker is not connected. Use connect() first.");
+
+      if (state != CircuitState.CLOSED) {
+        // Fail fast in place of a response
+        rejectedCount++;
+        emit(listeners, TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_CIRCUIT_OPEN));
+        return;
+      }
+
+      // Account for the request before it is sent so its response cannot arrive first
+      final long requestId = nextRequestId++;
+      pendingRequests.addLast(new PendingRequest(requestId));
+      if (MessageType.getMessageType(message).isIdempotent()) {
+        // Other requests may legitimately wait for the user
+        schedule(new Runnable() {
+          @Override
+          public void run() {
+            onResponseTimeout(requestId);
+          }
+        }, policy.getResponseTimeoutMillis());
+      }
+    }
+
+    trezor.sendMessage(message);
+  }
+
+  @Override
+  public String getDeviceId() {
+    return trezor.getDeviceId();
+  }
+
+  @Override
+  public synchronized void addListener(TrezorListener trezorListener) {
+
+    Preconditions.checkState(listeners.add(trezorListener), "Listener is already present");
+
+    // Create a new queue for events
+    BlockingQueue<TrezorEvent> listenerQueue = Queues.newArrayBlockingQueue(AbstractTrezor.MAX_QUEUE_SIZE);
+    trezorListener.setTrezorEventQueue(listenerQueue);
+  }
+
+  @Override
+  public synchronized void removeListener(TrezorListener trezorListener) {
+
+    Preconditions.checkState(listeners.remove(trezorListener), "Listener was not present");
+
+    // Remove the queue
+    trezorListener.setTrezorEventQueue(null);
+  }
+
+  /**
+   * @param trezorListener The listener to receive state change events (a new queue is provided)
+   */
+  public synchronized void addStateListener(TrezorListener trezorListener) {
+
+    Preconditions.checkState(stateListeners.add(trezorListener), "Listener is already present");
+
+    BlockingQueue<TrezorEvent> listenerQueue = Queues.newArrayBlockingQueue(AbstractTrezor.MAX_QUEUE_SIZE);
+    trezorListener.setTrezorEventQueue(listenerQueue);
+  }
+
+  /**
+   * @param trezorListener The state listener to remove
+   */
+  public synchronized void removeStateListener(TrezorListener trezorListener) {
+
+    Preconditions.checkState(stateListeners.remove(trezorListener), "Listener was not present");
+
+    trezorListener.setTrezorEventQueue(null);
+  }
+
+  @Override
+  public BlockingQueue<TrezorEvent> getTrezorEventQueue() {
+    return trezorEventQueue;
+  }
+
+  @Override
+  public void setTrezorEventQueue(BlockingQueue<TrezorEvent> trezorEventQueue) {
+    this.trezorEventQueue = trezorEventQueue;
+  }
+
+  /**
+   * <p>Account for events from the device and relay them until interrupted</p>
+   */
+  private void dispatch() {
+
+    while (true) {
+      TrezorEvent event;
+      try {
+        event = trezorEventQueue.take();
+      } catch (InterruptedException e) {
+        break;
+      }
+
+      synchronized (this) {
+        if (TrezorEventType.PROTOCOL_MESSAGE.equals(event.eventType())) {
+          if (state == CircuitState.HALF_OPEN) {
+            // Nobody else is waiting so the probe response is not relayed (it is matched by its echo)
+            onProbeResponse(event);
+            continue;
+          }
+          if (state == CircuitState.OPEN) {
+            log.debug("Dropped {} while open", event.protocolMessageType().get());
+            continue;
+          }
+          PendingRequest pendingRequest = nextPendingRequest();
+          if (pendingRequest != null && pendingRequest.isAnsweredInPlace) {
+            // The caller has already been answered and may have sent another request since
+            log.debug("Dropped late {}", event.protocolMessageType().get());
+            continue;
+          }
+          if (pendingRequest != null) {
+            consecutiveTimeouts = 0;
+            recordOutcome(MessageType.FAILURE.equals(event.protocolMessageType().get()));
+          }
+        } else if (isConnected && isDeviceFailure(event)) {
+          if (state == CircuitState.CLOSED) {
+            // Nothing outstanding will be answered
+            pendingRequests.clear();
+            recordOutcome(true);
+          } else if (state == CircuitState.HALF_OPEN) {
+            log.debug("Probe failed with {}", event.eventType());
+            open();
+          }
+        }
+
+        emit(listeners, event);
+      }
+    }
+  }
+
+  /**
+   * <p>Count a request that was not answered in time and answer it in place of the device</p>
+   *
+   * @param requestId The request
+   */
+  private synchronized void onResponseTimeout(long requestId) {
+
+    if (state != CircuitState.CLOSED) {
+      // Already accounted for by the trip
+      return;
+    }
+
+    for (PendingRequest pendingRequest : pendingRequests) {
+      if (pendingRequest.requestId == requestId) {
+        if (pendingRequest.isAnsweredInPlace) {
+          return;
+        }
+        answerInPlace(pendingRequest, "No response from the device");
+        consecutiveTimeouts++;
+        log.debug("Request timed out ({} in a row)", consecutiveTimeouts);
+        recordOutcome(true);
+        return;
+      }
+    }
+
+    // Answered
+  }
+
+  /**
+   * @return The oldest outstanding request (removed) or null if none (the caller must hold the lock)
+   */
+  private PendingRequest nextPendingRequest() {
+
+    long nowNanos = clock.nanoTime();
+    PendingRequest pendingRequest = pendingRequests.pollFirst();
+    while (pendingRequest != null && pendingRequest.isAnsweredInPlace && nowNanos - pendingRequest.lateDeadlineNanos > 0) {
+      // The device has dropped it so the response belongs to a later request
+      log.warn("Late response did not arrive");
+      pendingRequest = pendingRequests.pollFirst();
+    }
+    return pendingRequest;
+  }
+
+  /**
+   * <p>Give the caller a Failure in place of the response and expect the device's response late (the caller must
+   * hold the lock)</p>
+   *
+   * @param pendingRequest The outstanding request
+   * @param message        The Failure message
+   */
+  private void answerInPlace(PendingRequest pendingRequest, String message) {
+
+    pendingRequest.isAnsweredInPlace = true;
+    pendingRequest.lateDeadlineNanos = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LATE_RESPONSE_WINDOW_MILLIS);
+
+    emit(listeners, TrezorEvents.newProtocolEvent(MessageType.FAILURE, TrezorMessage.Failure
+      .newBuilder()
+      .setCode(1)
+      .setMessage(message)
+      .build()));
+  }
+
+  /**
+   * <p>Close the breaker on a matching Success or trip it again on a Failure (the caller must hold the lock)</p>
+   *
+   * @param event The protocol event received while half open
+   */
+  private void onProbeResponse(TrezorEvent event) {
+
+    MessageType messageType = event.protocolMessageType().get();
+    if (MessageType.SUCCESS.equals(messageType)
+      && probeMessage.equals(((TrezorMessage.Success) event.protocolMessage().get()).getMessage())) {
+      closeCircuit();
+    } else if (MessageType.FAILURE.equals(messageType)) {
+      // Either the probe or a late request failed so the device is still failing
+      log.debug("Probe failed with a Failure response");
+      open();
+    } else {
+      // A late response to a request made before the breaker tripped
+      log.debug("Dropped {} while probing", messageType);
+    }
+  }
+
+  /**
+   * <p>Add an outcome to the window and trip the breaker if a limit is reached (the caller must hold the lock)</p>
+   *
+   * @param isFailure True if the request failed
+   */
+  private void recordOutcome(boolean isFailure) {
+
+    if (outcomeCount == failures.length) {
+      // Forget the oldest outcome
+      if (failures[nextOutcome]) {
+        failureCount--;
+      }
+    } else {
+      outcomeCount++;
+    }
+    failures[nextOutcome] = isFailure;
+    if (isFailure) {
+      failureCount++;
+    }
+    nextOutcome = (nextOutcome + 1) % failures.length;
+
+    if (consecutiveTimeouts >= policy.getMaxConsecutiveTimeouts()) {
+      log.warn("Circuit breaker for '{}' tripped after {} consecutive timeouts", getDeviceId(), consecutiveTimeouts);
+      open();
+      return;
+    }
+
+    if (outcomeCount >= policy.getMinimumRequests()
+      && failureCount >= policy.getFailureRateThreshold() * outcomeCount) {
+      log.warn("Circuit breaker for '{}' tripped after {} of {} requests failed", getDeviceId(), failureCount, outcomeCount);
+      open();
+    }
+  }
+
+  /**
+   * <p>Trip the breaker and schedule the probe (the caller must hold the lock)</p>
+   */
+  private void open() {
+
+    state = CircuitState.OPEN;
+    probeMessage = null;
+    final long openGeneration = ++generation;
+
+    // Callers still waiting are answered now
+    for (PendingRequest pendingRequest : pendingRequests) {
+      if (!pendingRequest.isAnsweredInPlace) {
+        answerInPlace(pendingRequest, "Circuit breaker is open");
+      }
+    }
+    // Their responses are dropped while open and cannot match the probe's echo, so an entry left here could only
+    // pair the probe's response with a request whose response the device has lost
+    pendingRequests.clear();
+
+    // Scheduled before the state is published so the open period starts no later than listeners are told
+    schedule(new Runnable() {
+      @Override
+      public void run() {
+        probe(openGeneration);
+      }
+    }, policy.getOpenMillis());
+
+    emit(stateListeners, TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_CIRCUIT_OPEN));
+  }
+
+  /**
+   * <p>Move to half open and send a Ping to the device</p>
+   *
+   * @param openGeneration The generation in which the breaker tripped (stale timers are ignored)
+   */
+  private void probe(final long openGeneration) {
+
+    Message ping;
+    synchronized (this) {
+      if (!isConnected || state != CircuitState.OPEN || generation != openGeneration) {
+        return;
+      }
+
+      state = CircuitState.HALF_OPEN;
+      probeMessage = "circuit-probe-" + openGeneration;
+      ping = TrezorMessage.Ping.newBuilder().setMessage(probeMessage).build();
+      emit(stateListeners, TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_CIRCUIT_HALF_OPEN));
+
+      schedule(new Runnable() {
+        @Override
+        public void run() {
+          onProbeTimeout(openGeneration);
+        }
+      }, policy.getResponseTimeoutMillis());
+    }
+
+    try {
+      trezor.sendMessage(ping);
+    } catch (RuntimeException e) {
+      log.warn("Probe could not be sent: {}", e.getMessage());
+      synchronized (this) {
+        if (state == CircuitState.HALF_OPEN && generation == openGeneration) {
+          open();
+        }
+      }
+    }
+  }
+
+  /**
+   * @param openGeneration The generation of the probe
+   */
+  private synchronized void onProbeTimeout(long openGeneration) {
+
+    if (state == CircuitState.HALF_OPEN && generation == openGeneration) {
+      log.debug("Probe timed out");
+      open();
+    }
+  }
+
+  /**
+   * <p>Accept requests again with a clean window (the caller must hold the lock)</p>
+   */
+  private void closeCircuit() {
+
+    log.info("Circuit breaker for '{}' closed after a successful probe", getDeviceId());
+
+    state = CircuitState.CLOSED;
+    generation++;
+    probeMessage = null;
+    // The device answers in order so every earlier response has arrived or been lost
+    pendingRequests.clear();
+    outcomeCount = 0;
+    nextOutcome = 0;
+    failureCount = 0;
+    consecutiveTimeouts = 0;
+    emit(stateListeners, TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_CIRCUIT_CLOSED));
+  }
+
+  /**
+   * <p>Run a task on the timer thread after a delay on the clock (the caller must hold the lock)</p>
+   *
+   * @param task        The task
+   * @param delayMillis The delay in milliseconds
+   */
+  private void schedule(Runnable task, long delayMillis) {
+
+    timers.add(new Timer(clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis), nextTimerId++, task));
+    timerWakeups.offer(Boolean.TRUE);
+  }
+
+  /**
+   * <p>Run the timers as they fall due until interrupted</p>
+   */
+  private void runTimers() {
+
+    List<Runnable> dueTasks = Lists.newArrayList();
+    while (true) {
+
+      // Absent if there is nothing to wait for until the next timer is scheduled
+      Long waitNanos = null;
+      synchronized (this) {
+        long nowNanos = clock.nanoTime();
+        while (!timers.isEmpty() && timers.peek().deadlineNanos - nowNanos <= 0) {
+          dueTasks.add(timers.poll().task);
+        }
+        if (!timers.isEmpty()) {
+          waitNanos = timers.peek().deadlineNanos - nowNanos;
+        }
+      }
+
+      // Run outside the lock since a probe sends to the device
+      for (Runnable task : dueTasks) {
+        task.run();
+      }
+      dueTasks.clear();
+
+      try {
+        if (waitNanos == null) {
+          timerWakeups.take();
+        } else {
+          clock.poll(timerWakeups, waitNanos, TimeUnit.NANOSECONDS);
+        }
+      } catch (InterruptedException e) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * @param event The event from the device
+   *
+   * @return True if the event shows the device could not answer
+   */
+  private static boolean isDeviceFailure(TrezorEvent event) {
+    return TrezorEventType.DEVICE_EOF.equals(event.eventType()) ||
+      TrezorEventType.DEVICE_DISCONNECTED.equals(event.eventType()) ||
+      TrezorEventType.DEVICE_FAILURE.equals(event.eventType());
+  }
+
+  /**
+   * <p>Pass an event to listeners without blocking (the caller must hold the lock)</p>
+   *
+   * @param targets     The listeners
+   * @param trezorEvent The event
+   */
+  private void emit(Set<TrezorListener> targets, TrezorEvent trezorEvent) {
+
+    for (TrezorListener listener : targets) {
+      if (!listener.getTrezorEventQueue().offer(trezorEvent)) {
+        log.warn("Dropped event {} (listener queue is full)", trezorEvent.eventType());
+      }
+    }
+  }
+
+  /**
+   * <p>A request awaiting its response from the device</p>
+   */
+  private static class PendingRequest {
+
+    private final long requestId;
+
+    // Set once the caller has been given a Failure so the device's response is dropped
+    private boolean isAnsweredInPlace = false;
+    private long lateDeadlineNanos = 0;
+
+    private PendingRequest(long requestId) {
+      this.requestId = requestId;
+    }
+  }
+
+  /**
+   * <p>A task due at a time on the clock (ties are run in the order scheduled)</p>
+   */
+  private static class Timer implements Comparable<Timer> {
+
+    private final long deadlineNanos;
+    private final long timerId;
+    private final Runnable task;
+
+    private Timer(long deadlineNanos, long timerId, Runnable task) {
+      this.deadlineNanos = deadlineNanos;
+      this.timerId = timerId;
+      this.task = task;
+    }
+
+    @Override
+    public int compareTo(Timer other) {
+      long difference = deadlineNanos - other.deadlineNanos;
+      if (difference != 0) {
+        return difference < 0 ? -1 : 1;
+      }
+      return timerId < other.timerId ? -1 : (timerId == other.timerId ? 0 : 1);
+    }
+  }
+
+}
@@ -0,0 +1,32 @@
+package uk.co.bsol.trezorj.core.trezors;
+
+/**
+ * <p>Enum to provide the following to circuit breakers:</p>
+ * <ul>
+ * <li>The states of a {@link CircuitBreakerTrezor}</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ *
+ */
+public enum CircuitState {
+
+  /**
+   * Requests are passed to the device and their outcomes recorded
+   */
+  CLOSED,
+
+  /**
+   * Requests are rejected immediately until the open period has passed
+   */
+  OPEN,
+
+  /**
+   * A Ping is probing the device and requests are still rejected
+   */
+  HALF_OPEN,
+
+  // End of enum
+  ;
+
+}
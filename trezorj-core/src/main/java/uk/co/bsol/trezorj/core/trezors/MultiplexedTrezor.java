@@ -0,0 +1,149 @@
+package uk.co.bsol.trezorj.core.trezors;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
+import com.google.protobuf.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.Trezor;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.TrezorListener;
+import uk.co.bsol.trezorj.core.events.TrezorEvents;
+
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * <p>Trezor implementation to provide the following to applications sharing a device:</p>
+ * <ul>
+ * <li>A lightweight logical session on a physical device owned by a {@link TrezorMultiplexer}</li>
+ * <li>Only the responses to this session's own conversations (device connection events are shared)</li>
+ * </ul>
+ * <p>Any client can use a session in place of a physical device (e.g.
+ * {@link uk.co.bsol.trezorj.core.clients.TrezorClients#newBlockingInstance}). A call to {@link #sendMessage(Message)}
+ * waits until the multiplexer schedules this session onto the device, so a client timeout only starts once the
+ * request has really been sent.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class MultiplexedTrezor implements Trezor {
+
+  private static final Logger log = LoggerFactory.getLogger(MultiplexedTrezor.class);
+
+  private final TrezorMultiplexer multiplexer;
+  private final String name;
+  private final int weight;
+
+  private final Set<TrezorListener> listeners = Sets.newLinkedHashSet();
+
+  // Wakes this session while it waits for the device (a pending wakeup is never lost)
+  final BlockingQueue<Boolean> wakeups = Queues.newArrayBlockingQueue(1);
+
+  // Guarded by the multiplexer
+  int outstandingCount = 0;
+  int currentWeight = 0;
+  long lastActivityNanos = 0;
+  long conversationCount = 0;
+  boolean isWaiting = false;
+  boolean isConnected = false;
+
+  /**
+   * @param multiplexer The multiplexer owning the physical device
+   * @param name        The session name (unique within the multiplexer)
+   * @param weight      The share of conversations relative to other sessions (1 for round robin)
+   */
+  MultiplexedTrezor(TrezorMultiplexer multiplexer, String name, int weight) {
+
+    this.multiplexer = multiplexer;
+    this.name = name;
+    this.weight = weight;
+  }
+
+  /**
+   * @return The session name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return The share of conversations relative to other sessions
+   */
+  public int getWeight() {
+    return weight;
+  }
+
+  /**
+   * @return The number of conversations completed by this session
+   */
+  public long getConversationCount() {
+    return multiplexer.getConversationCount(this);
+  }
+
+  @Override
+  public void connect() {
+    multiplexer.connectSession(this);
+    emit(TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_CONNECTED));
+  }
+
+  @Override
+  public void close() {
+    multiplexer.closeSession(this);
+    emit(TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_DISCONNECTED));
+  }
+
+  @Override
+  public void sendMessage(Message message) {
+
+    Preconditions.checkNotNull(message, "Message must be present");
+
+    multiplexer.send(this, message);
+  }
+
+  @Override
+  public String getDeviceId() {
+    return multiplexer.getDeviceId() + "/" + name;
+  }
+
+  @Override
+  public synchronized void addListener(TrezorListener trezorListener) {
+
+    Preconditions.checkState(listeners.add(trezorListener), "Listener is already present");
+
+    // Create a new queue for events
+    BlockingQueue<TrezorEvent> listenerQueue = Queues.newArrayBlockingQueue(AbstractTrezor.MAX_QUEUE_SIZE);
+    trezorListener.setTrezorEventQueue(listenerQueue);
+  }
+
+  @Override
+  public synchronized void removeListener(TrezorListener trezorListener) {
+
+    Preconditions.checkState(listeners.remove(trezorListener), "Listener was not present");
+
+    // Remove the queue
+    trezorListener.setTrezorEventQueue(null);
+  }
+
+  /**
+   * <p>Pass an event to the listeners of this session (dropped for a listener that has stopped reading)</p>
+   *
+   * @param trezorEvent The event
+   */
+  synchronized void emit(TrezorEvent trezorEvent) {
+
+    for (TrezorListener listener : listeners) {
+      if (!listener.getTrezorEventQueue().offer(trezorEvent)) {
+        log.warn("Session '{}' dropped event {} (listener queue is full)", name, trezorEvent.eventType());
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+}
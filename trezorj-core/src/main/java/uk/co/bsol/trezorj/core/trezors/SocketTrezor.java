@@ -7,7 +7,6 @@ import org.slf4j.LoggerFactory;
 import uk.co.bsol.trezorj.core.Trezor;
 import uk.co.bsol.trezorj.core.TrezorEventType;
 import uk.co.bsol.trezorj.core.events.TrezorEvents;
-import uk.co.bsol.trezorj.core.utils.TrezorMessageUtils;
 
 import java.io.*;
 import java.net.Socket;
@@ -82,6 +81,8 @@ public class SocketTrezor extends AbstractTrezor implements Trezor {
     // Attempt to close the socket (also closes the in/out streams)
     try {
       socket.close();
+      socket = null;
+      out = null;
       log.info("Disconnected from Trezor");
       // Let everyone know
       emitTrezorEvent(TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_DISCONNECTED));
@@ -92,6 +93,23 @@ public class SocketTrezor extends AbstractTrezor implements Trezor {
     }
   }
 
+  /**
+   * <p>The instance number distinguishes connections to an emulator that serves each connection as a separate
+   * device (e.g. "socket:localhost:3000#2")</p>
+   *
+   * @return The device ID
+   */
+  @Override
+  public String getDeviceId() {
+    return "socket:" + host + ":" + port + "#" + instanceNumber;
+  }
+
+  @Override
+  protected boolean isEndOfStreamDisconnect() {
+    // A socket read only reaches the end of the stream when the device closes the connection
+    return true;
+  }
+
   @Override
   public void sendMessage(Message message) {
 
@@ -100,7 +118,7 @@ public class SocketTrezor extends AbstractTrezor implements Trezor {
 
     try {
       // Apply the message to the data output stream
-      TrezorMessageUtils.writeMessage(message, out);
+      writeMessage(message, out);
     } catch (IOException e) {
       log.warn("I/O error during write. Closing socket.", e);
       try {
@@ -0,0 +1,566 @@
+package uk.co.bsol.trezorj.core.trezors;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.protobuf.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.Trezor;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.TrezorListener;
+import uk.co.bsol.trezorj.core.events.TrezorEvents;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.utils.Clock;
+import uk.co.bsol.trezorj.core.utils.SystemClock;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Multiplexer to provide the following to applications sharing a device:</p>
+ * <ul>
+ * <li>Sole ownership of a physical Trezor with any number of logical sessions (see {@link MultiplexedTrezor})</li>
+ * <li>One conversation on the device at a time, with each response routed only to the session that owns it</li>
+ * <li>Weighted round robin scheduling of waiting sessions (equal weights give plain round robin)</li>
+ * </ul>
+ * <p>A session holds the device from its first request until the device sends a response that needs no
+ * follow-up and no further requests are outstanding. A ButtonRequest, PinRequest, OtpRequest or a TxRequest
+ * asking for another input or output keeps the conversation open, so signing is never interleaved with another
+ * session. A session that stops talking mid-conversation loses the device after the conversation timeout. So
+ * does a session whose requests the device has not answered within it: the session receives a Failure in place
+ * of each missing response and the late responses are dropped rather than passed to the next session. A session
+ * that cannot get the device within the send timeout gives up with an IllegalStateException.</p>
+ * <p>A disconnect or failure of the device is passed to every connected session and ends any conversation. A
+ * protocol message that arrives with no conversation in progress is dropped.</p>
+ * <p>Example:</p>
+ * <pre>
+ * TrezorMultiplexer multiplexer = TrezorMultiplexer.newInstance(TrezorFactory.newSocketTrezor(host, port));
+ * multiplexer.connect();
+ *
+ * BlockingTrezorClient signer = TrezorClients.newBlockingInstance(multiplexer.newSession("signer", 3), sessionId);
+ * BlockingTrezorClient monitor = TrezorClients.newBlockingInstance(multiplexer.newSession("monitor"), otherSessionId);
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class TrezorMultiplexer implements TrezorListener {
+
+  private static final Logger log = LoggerFactory.getLogger(TrezorMultiplexer.class);
+
+  /**
+   * The default time a session may hold the device without sending while others are waiting
+   */
+  public static final long DEFAULT_CONVERSATION_TIMEOUT_MILLIS = 30000;
+
+  /**
+   * The default time a session waits for the device before giving up
+   */
+  public static final long DEFAULT_SEND_TIMEOUT_MILLIS = 60000;
+
+  private final Trezor trezor;
+  private final Map<String, MultiplexedTrezor> sessions = Maps.newLinkedHashMap();
+
+  private volatile BlockingQueue<TrezorEvent> trezorEventQueue;
+  private ExecutorService dispatcherService;
+
+  // Guarded by this
+  private Clock clock = SystemClock.getDefaultInstance();
+  private MultiplexedTrezor activeSession = null;
+  private boolean isConnected = false;
+  private long conversationTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_CONVERSATION_TIMEOUT_MILLIS);
+  private long sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SEND_TIMEOUT_MILLIS);
+
+  // Responses still owed for requests that were expired (dropped if they arrive within the conversation timeout)
+  private int lateResponseCount = 0;
+  private long lateResponseDeadlineNanos = 0;
+
+  /**
+   * @param trezor The physical device (not yet connected and not shared with anything else)
+   *
+   * @return A new multiplexer
+   */
+  public static TrezorMultiplexer newInstance(Trezor trezor) {
+
+    Preconditions.checkNotNull(trezor, "'trezor' must be present");
+
+    return new TrezorMultiplexer(trezor);
+  }
+
+  /**
+   * Use the utility constructor
+   */
+  private TrezorMultiplexer(Trezor trezor) {
+    this.trezor = trezor;
+  }
+
+  /**
+   * <p>Provide a clock other than the system clock for the conversation and send timeouts (e.g. a VirtualClock in
+   * tests)</p>
+   *
+   * @param clock The clock
+   */
+  public synchronized void setClock(Clock clock) {
+
+    Preconditions.checkNotNull(clock, "'clock' must be present");
+
+    this.clock = clock;
+  }
+
+  /**
+   * @param timeout  The time a session may hold the device without sending while others are waiting
+   * @param timeUnit The time unit
+   */
+  public synchronized void setConversationTimeout(long timeout, TimeUnit timeUnit) {
+
+    Preconditions.checkArgument(timeout > 0, "'timeout' must be greater than zero");
+
+    this.conversationTimeoutNanos = timeUnit.toNanos(timeout);
+  }
+
+  /**
+   * @param timeout  The time a session waits for the device before giving up
+   * @param timeUnit The time unit
+   */
+  public synchronized void setSendTimeout(long timeout, TimeUnit timeUnit) {
+
+    Preconditions.checkArgument(timeout > 0, "'timeout' must be greater than zero");
+
+    this.sendTimeoutNanos = timeUnit.toNanos(timeout);
+  }
+
+  /**
+   * @param name The session name (must be unique)
+   *
+   * @return A new session with a weight of 1
+   */
+  public MultiplexedTrezor newSession(String name) {
+    return newSession(name, 1);
+  }
+
+  /**
+   * @param name   The session name (must be unique)
+   * @param weight The share of conversations relative to other sessions when several are waiting
+   *
+   * @return A new session (connect it before use)
+   */
+  public synchronized MultiplexedTrezor newSession(String name, int weight) {
+
+    Preconditions.checkNotNull(name, "'name' must be present");
+    Preconditions.checkArgument(weight > 0, "'weight' must be greater than zero");
+    Preconditions.checkState(!sessions.containsKey(name), "Session '" + name + "' is already present");
+
+    MultiplexedTrezor session = new MultiplexedTrezor(this, name, weight);
+    sessions.put(name, session);
+
+    return session;
+  }
+
+  /**
+   * <p>Connect the physical device and start routing its events</p>
+   */
+  public void connect() {
+
+    synchronized (this) {
+      Preconditions.checkState(!isConnected, "Multiplexer is already connected");
+      isConnected = true;
+    }
+
+    trezor.addListener(this);
+    trezor.connect();
+
+    dispatcherService = Executors.newSingleThreadExecutor();
+    dispatcherService.submit(new Runnable() {
+      @Override
+      public void run() {
+        dispatch();
+      }
+    });
+  }
+
+  /**
+   * <p>Close the physical device (every session sees it disconnect)</p>
+   */
+  public void close() {
+
+    synchronized (this) {
+      if (!isConnected) {
+        return;
+      }
+      isConnected = false;
+    }
+
+    // Stop routing first so that the disconnect is only reported once
+    dispatcherService.shutdownNow();
+    trezor.close();
+    trezor.removeListener(this);
+
+    broadcast(TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_DISCONNECTED));
+  }
+
+  /**
+   * @return The identifier of the physical device
+   */
+  public String getDeviceId() {
+    return trezor.getDeviceId();
+  }
+
+  @Override
+  public BlockingQueue<TrezorEvent> getTrezorEventQueue() {
+    return trezorEventQueue;
+  }
+
+  @Override
+  public void setTrezorEventQueue(BlockingQueue<TrezorEvent> trezorEventQueue) {
+    this.trezorEventQueue = trezorEventQueue;
+  }
+
+  synchronized void connectSession(MultiplexedTrezor session) {
+
+    Preconditions.checkState(isConnected, "Multiplexer is not connected. Use connect() first.");
+
+    session.isConnected = true;
+  }
+
+  synchronized void closeSession(MultiplexedTrezor session) {
+
+    session.isConnected = false;
+    session.isWaiting = false;
+    session.wakeups.offer(Boolean.TRUE);
+    if (activeSession == session) {
+      endConversation();
+    }
+  }
+
+  synchronized long getConversationCount(MultiplexedTrezor session) {
+    return session.conversationCount;
+  }
+
+  /**
+   * <p>Wait until the session holds the device and then send the message</p>
+   *
+   * @param session The session
+   * @param message The message
+   *
+   * @throws IllegalStateException If the session is closed or cannot get the device within the send timeout
+   */
+  void send(MultiplexedTrezor session, Message message) {
+
+    // Sessions whose requests went unanswered (told outside the lock)
+    List<MultiplexedTrezor> expiredSessions = Lists.newArrayList();
+    try {
+      acquire(session, expiredSessions);
+    } finally {
+      for (MultiplexedTrezor expiredSession : expiredSessions) {
+        expiredSession.emit(TrezorEvents.newProtocolEvent(MessageType.FAILURE, TrezorMessage.Failure
+          .newBuilder()
+          .setCode(1)
+          .setMessage("No response from the device")
+          .build()));
+      }
+    }
+
+    trezor.sendMessage(message);
+  }
+
+  /**
+   * <p>Wait until the session holds the device and account for the request about to be sent</p>
+   *
+   * @param session         The session
+   * @param expiredSessions Receives a session once for each of its requests that expired while waiting
+   */
+  private void acquire(MultiplexedTrezor session, List<MultiplexedTrezor> expiredSessions) {
+
+    Clock clock;
+    long deadlineNanos;
+    synchronized (this) {
+
+      Preconditions.checkState(session.isConnected, "Session is not connected. Use connect() first.");
+
+      clock = this.clock;
+      deadlineNanos = clock.nanoTime() + sendTimeoutNanos;
+      session.isWaiting = true;
+      session.wakeups.clear();
+    }
+
+    try {
+      while (true) {
+
+        long waitNanos;
+        synchronized (this) {
+          waitNanos = nextWaitNanos(session, deadlineNanos, expiredSessions);
+          if (waitNanos == 0) {
+
+            if (!isConnected) {
+              endConversation();
+              throw new IllegalStateException("Multiplexer was closed while waiting");
+            }
+
+            // Account for the request before it is sent so its response cannot arrive first
+            session.outstandingCount++;
+            session.lastActivityNanos = clock.nanoTime();
+            return;
+          }
+        }
+
+        // Woken early when the device changes hands
+        clock.poll(session.wakeups, waitNanos, TimeUnit.NANOSECONDS);
+      }
+    } catch (InterruptedException e) {
+      synchronized (this) {
+        session.isWaiting = false;
+        if (activeSession == session) {
+          // Granted just as the wait was interrupted so pass the device on
+          endConversation();
+        }
+      }
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } finally {
+      synchronized (this) {
+        session.isWaiting = false;
+      }
+    }
+  }
+
+  /**
+   * <p>Schedule the device and expire a stalled conversation on behalf of a waiting session (the caller must hold
+   * the lock)</p>
+   *
+   * @param session         The waiting session
+   * @param deadlineNanos   The time on the clock at which the session gives up
+   * @param expiredSessions Receives a session once for each of its requests that expired
+   *
+   * @return The time to wait before checking again or zero once the session holds the device
+   *
+   * @throws IllegalStateException If the session is closed or the send timeout has passed
+   */
+  private long nextWaitNanos(MultiplexedTrezor session, long deadlineNanos, List<MultiplexedTrezor> expiredSessions) {
+
+    while (activeSession != session) {
+
+      if (!isConnected || !session.isConnected) {
+        throw new IllegalStateException("Session '" + session.getName() + "' was closed while waiting");
+      }
+
+      if (activeSession == null) {
+        grantNext();
+        continue;
+      }
+
+      // Take the device from a session that has stopped talking or is waiting on a device that has stopped
+      long nowNanos = clock.nanoTime();
+      long idleNanos = nowNanos - activeSession.lastActivityNanos;
+      if (idleNanos >= conversationTimeoutNanos) {
+        if (activeSession.outstandingCount > 0) {
+          log.warn("Session '{}' had no response from the device", activeSession.getName());
+          expireOutstanding(expiredSessions);
+        } else {
+          log.warn("Session '{}' timed out mid-conversation", activeSession.getName());
+        }
+        endConversation();
+        continue;
+      }
+
+      long remainingNanos = deadlineNanos - nowNanos;
+      if (remainingNanos <= 0) {
+        throw new IllegalStateException("Session '" + session.getName() + "' timed out waiting for the device");
+      }
+
+      return Math.max(1, Math.min(conversationTimeoutNanos - idleNanos, remainingNanos));
+    }
+
+    return 0;
+  }
+
+  /**
+   * <p>Route events from the physical device until interrupted</p>
+   */
+  private void dispatch() {
+
+    while (true) {
+      TrezorEvent event;
+      try {
+        event = trezorEventQueue.take();
+      } catch (InterruptedException e) {
+        break;
+      }
+
+      if (TrezorEventType.PROTOCOL_MESSAGE.equals(event.eventType())) {
+        route(event);
+      } else if (!TrezorEventType.DEVICE_CONNECTED.equals(event.eventType())) {
+        // Each session reports its own connection
+        broadcast(event);
+      }
+    }
+  }
+
+  /**
+   * <p>Pass a response to the session holding the device and release the device if the conversation is over</p>
+   */
+  private void route(TrezorEvent event) {
+
+    MultiplexedTrezor session;
+    synchronized (this) {
+      if (isLateResponse()) {
+        log.warn("Dropped late {} for an expired request", event.protocolMessageType().get());
+        return;
+      }
+
+      session = activeSession;
+      if (session == null) {
+        log.warn("Dropped unsolicited {}", event.protocolMessageType().get());
+        return;
+      }
+
+      session.outstandingCount = Math.max(0, session.outstandingCount - 1);
+      session.lastActivityNanos = clock.nanoTime();
+      if (session.outstandingCount == 0 && isConversationComplete(event)) {
+        session.conversationCount++;
+        endConversation();
+      }
+    }
+
+    session.emit(event);
+  }
+
+  /**
+   * <p>Pass a device event (e.g. a disconnect) to every connected session</p>
+   */
+  private void broadcast(TrezorEvent event) {
+
+    List<MultiplexedTrezor> connected = Lists.newArrayList();
+    synchronized (this) {
+      // The conversation cannot continue
+      endConversation();
+      for (MultiplexedTrezor session : sessions.values()) {
+        if (session.isConnected) {
+          connected.add(session);
+        }
+      }
+    }
+
+    for (MultiplexedTrezor session : connected) {
+      session.emit(event);
+    }
+  }
+
+  /**
+   * <p>Give up on the responses owed to the active session (the caller must hold the lock)</p>
+   *
+   * @param expiredSessions Receives the active session once for each outstanding request
+   */
+  private void expireOutstanding(List<MultiplexedTrezor> expiredSessions) {
+
+    for (int i = 0; i < activeSession.outstandingCount; i++) {
+      expiredSessions.add(activeSession);
+    }
+
+    // The device answers in order so the next responses belong to the expired requests
+    lateResponseCount += activeSession.outstandingCount;
+    lateResponseDeadlineNanos = clock.nanoTime() + conversationTimeoutNanos;
+  }
+
+  /**
+   * @return True if the next response belongs to an expired request and must be dropped (the caller must hold
+   * the lock)
+   */
+  private boolean isLateResponse() {
+
+    if (lateResponseCount == 0) {
+      return false;
+    }
+
+    if (clock.nanoTime() - lateResponseDeadlineNanos > 0) {
+      // The device has dropped them so this is a genuine response
+      log.warn("{} late response(s) did not arrive", lateResponseCount);
+      lateResponseCount = 0;
+      return false;
+    }
+
+    lateResponseCount--;
+    return true;
+  }
+
+  /**
+   * <p>Release the device and wake the waiting sessions (the caller must hold the lock)</p>
+   */
+  private void endConversation() {
+    if (activeSession != null) {
+      activeSession.outstandingCount = 0;
+    }
+    activeSession = null;
+    grantNext();
+    wakeWaiting();
+  }
+
+  /**
+   * <p>Give the device to the waiting session with the greatest current weight (smooth weighted round robin)</p>
+   */
+  private void grantNext() {
+
+    MultiplexedTrezor best = null;
+    int totalWeight = 0;
+    for (MultiplexedTrezor session : sessions.values()) {
+      if (session.isWaiting) {
+        session.currentWeight += session.getWeight();
+        totalWeight += session.getWeight();
+        if (best == null || session.currentWeight > best.currentWeight) {
+          best = session;
+        }
+      }
+    }
+
+    if (best != null) {
+      best.currentWeight -= totalWeight;
+      best.lastActivityNanos = clock.nanoTime();
+      activeSession = best;
+      wakeWaiting();
+    }
+  }
+
+  /**
+   * <p>Wake every waiting session to check whether it now holds the device (the caller must hold the lock)</p>
+   */
+  private void wakeWaiting() {
+    for (MultiplexedTrezor session : sessions.values()) {
+      if (session.isWaiting) {
+        session.wakeups.offer(Boolean.TRUE);
+      }
+    }
+  }
+
+  /**
+   * @param event The protocol event from the device
+   *
+   * @return True if the device expects nothing more from the session that received it
+   */
+  static boolean isConversationComplete(TrezorEvent event) {
+
+    if (!event.protocolMessageType().isPresent()) {
+      return true;
+    }
+
+    switch (event.protocolMessageType().get()) {
+      case BUTTON_REQUEST:
+      case PIN_REQUEST:
+      case OTP_REQUEST:
+        // The device is waiting for an acknowledgement
+        return false;
+      case TX_REQUEST:
+        // Signing continues while the device requests inputs and outputs
+        TrezorMessage.TxRequest txRequest = (TrezorMessage.TxRequest) event.protocolMessage().get();
+        return !txRequest.hasRequestIndex() || txRequest.getRequestIndex() < 0;
+      default:
+        return true;
+    }
+  }
+
+}
@@ -1,6 +1,5 @@
 package uk.co.bsol.trezorj.core.trezors;
 
-import com.codeminders.hidapi.ClassPathLibraryLoader;
 import com.codeminders.hidapi.HIDDevice;
 import com.codeminders.hidapi.HIDDeviceInfo;
 import com.codeminders.hidapi.HIDManager;
@@ -13,12 +12,13 @@ import uk.co.bsol.trezorj.core.Trezor;
 import uk.co.bsol.trezorj.core.TrezorEventType;
 import uk.co.bsol.trezorj.core.events.TrezorEvents;
 import uk.co.bsol.trezorj.core.usb.CP211xBridge;
-import uk.co.bsol.trezorj.core.utils.TrezorMessageUtils;
+import uk.co.bsol.trezorj.core.usb.NativeHIDLibrary;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>Trezor implementation to provide the following to applications:</p>
@@ -44,6 +44,12 @@ public class UsbTrezor extends AbstractTrezor implements Trezor {
 
   private Optional<HIDDevice> deviceOptional = Optional.absent();
 
+  // A device provided by the caller (e.g. an emulated device) which bypasses the HID manager
+  private final Optional<HIDDevice> presetDeviceOptional;
+
+  // The serial number of the device selected during connect (used when any serial number is acceptable)
+  private Optional<String> connectedSerialNumberOptional = Optional.absent();
+
   /**
    * <p>Create a new instance of a USB-based Trezor device (standard)</p>
    *
@@ -55,8 +61,8 @@ public class UsbTrezor extends AbstractTrezor implements Trezor {
                    Optional<Integer> productIdOptional,
                    Optional<String> serialNumberOptional) {
 
-    // Initialise the HID library
-    if (!ClassPathLibraryLoader.loadNativeHIDLibrary()) {
+    // Initialise the HID library (only the first device in the JVM pays for this)
+    if (!NativeHIDLibrary.load()) {
       throw new IllegalStateException(
         "Unable to load native USB library. Check class loader permissions/JAR integrity.");
     }
@@ -64,35 +70,58 @@ public class UsbTrezor extends AbstractTrezor implements Trezor {
     this.vendorIdOptional = vendorIdOptional;
     this.productIdOptional = productIdOptional;
     this.serialNumberOptional = serialNumberOptional;
+    this.presetDeviceOptional = Optional.absent();
+
+  }
+
+  /**
+   * <p>Create a new instance of a USB-based Trezor device using an existing HID device</p>
+   * <p>The native HID library is not used so an emulated device can be attached without USB hardware. The
+   * device is closed along with this Trezor so only a single connection is supported.</p>
+   *
+   * @param device The HID device (e.g. an EmulatedHIDDevice)
+   */
+  public UsbTrezor(HIDDevice device) {
+
+    Preconditions.checkNotNull(device, "'device' must be present");
+
+    this.presetDeviceOptional = Optional.of(device);
 
   }
 
   @Override
   public synchronized void connect() {
 
-    Preconditions.checkState(isDeviceConnected(), "Device is already connected");
+    Preconditions.checkState(!isDeviceConnected(), "Device is already connected");
 
     try {
 
-      // Attempt to locate an attached Trezor device
-      final Optional<HIDDeviceInfo> hidDeviceInfoOptional = locateTrezor();
-
-      if (!hidDeviceInfoOptional.isPresent()) {
-        emitTrezorEvent(TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_DISCONNECTED));
-        return;
-      }
-      HIDDeviceInfo hidDeviceInfo = hidDeviceInfoOptional.get();
+      if (presetDeviceOptional.isPresent()) {
+        deviceOptional = presetDeviceOptional;
+        connectedSerialNumberOptional = Optional.fromNullable(presetDeviceOptional.get().getSerialNumberString());
+      } else {
 
-      // Get the HID manager
-      HIDManager hidManager = HIDManager.getInstance();
+        // Attempt to locate an attached Trezor device
+        final Optional<HIDDeviceInfo> hidDeviceInfoOptional = locateTrezor();
 
-      // Attempt to open a serial connection to the USB device
-      // Open the device
-      deviceOptional = Optional.fromNullable(hidManager.openById(
-        hidDeviceInfo.getVendor_id(),
-        hidDeviceInfo.getProduct_id(),
-        hidDeviceInfo.getSerial_number()
-      ));
+        if (!hidDeviceInfoOptional.isPresent()) {
+          emitTrezorEvent(TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_DISCONNECTED));
+          return;
+        }
+        HIDDeviceInfo hidDeviceInfo = hidDeviceInfoOptional.get();
+        connectedSerialNumberOptional = Optional.fromNullable(hidDeviceInfo.getSerial_number());
+
+        // Get the HID manager
+        HIDManager hidManager = HIDManager.getInstance();
+
+        // Attempt to open a serial connection to the USB device
+        // Open the device
+        deviceOptional = Optional.fromNullable(hidManager.openById(
+          hidDeviceInfo.getVendor_id(),
+          hidDeviceInfo.getProduct_id(),
+          hidDeviceInfo.getSerial_number()
+        ));
+      }
 
       Preconditions.checkState(deviceOptional.isPresent(), "Unable to open device");
 
@@ -131,7 +160,7 @@ public class UsbTrezor extends AbstractTrezor implements Trezor {
    * @return True if device is connected (the HID device is present)
    */
   private boolean isDeviceConnected() {
-    return deviceOptional != null;
+    return deviceOptional.isPresent();
   }
 
   @Override
@@ -140,6 +169,11 @@ public class UsbTrezor extends AbstractTrezor implements Trezor {
     // Configure the default behaviour
     super.monitorDataInputStream(in);
 
+    if (presetDeviceOptional.isPresent()) {
+      // The HID manager knows nothing of a preset device
+      return;
+    }
+
     // Monitor the USB as well
     trezorMonitorService.submit(new Runnable() {
       @Override
@@ -155,7 +189,7 @@ public class UsbTrezor extends AbstractTrezor implements Trezor {
               close();
             }
 
-            Thread.sleep(1000);
+            clock.sleep(1000, TimeUnit.MILLISECONDS);
 
           } catch (EOFException e) {
             // Do nothing
@@ -185,6 +219,7 @@ public class UsbTrezor extends AbstractTrezor implements Trezor {
     // Attempt to close the connection (also closes the in/out streams)
     try {
       deviceOptional.get().close();
+      deviceOptional = Optional.absent();
 
       log.info("Disconnected from Trezor");
 
@@ -234,6 +269,25 @@ public class UsbTrezor extends AbstractTrezor implements Trezor {
 
   }
 
+  @Override
+  public String getDeviceId() {
+
+    Integer vendorId = vendorIdOptional.isPresent() ? vendorIdOptional.get() : DEFAULT_USB_VENDOR_ID;
+    Integer productId = productIdOptional.isPresent() ? productIdOptional.get() : DEFAULT_USB_PRODUCT_ID;
+
+    // Prefer the configured serial number then the one found on connection
+    final String serialNumber;
+    if (serialNumberOptional.isPresent()) {
+      serialNumber = serialNumberOptional.get();
+    } else if (connectedSerialNumberOptional.isPresent()) {
+      serialNumber = connectedSerialNumberOptional.get();
+    } else {
+      serialNumber = "*";
+    }
+
+    return String.format("usb:%04x:%04x:%s", vendorId, productId, serialNumber);
+  }
+
   @Override
   public void sendMessage(Message message) {
 
@@ -242,7 +296,7 @@ public class UsbTrezor extends AbstractTrezor implements Trezor {
 
     try {
       // Apply the message to the data output stream
-      TrezorMessageUtils.writeMessage(message, out);
+      writeMessage(message, out);
     } catch (IOException e) {
       log.warn("I/O error during write. Closing device.", e);
       try {
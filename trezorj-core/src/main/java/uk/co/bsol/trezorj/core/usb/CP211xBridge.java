@@ -4,6 +4,8 @@ import com.codeminders.hidapi.HIDDevice;
 import com.google.common.base.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.wire.WireTrace;
+import uk.co.bsol.trezorj.core.wire.WireTraceType;
 
 import java.io.IOException;
 
@@ -74,7 +76,8 @@ public class CP211xBridge {
     featureReport = new byte[]{0x040, 0x00};
 
     int bytesSent = device.sendFeatureReport(featureReport);
-    log.info("> UART Reset: {} '{}'", bytesSent, featureReport);
+    WireTrace.getDefaultInstance().record(WireTraceType.FEATURE_OUT, -1, featureReport, 0, featureReport.length);
+    log.debug("> UART Reset: {}", bytesSent);
 
     return bytesSent;
   }
@@ -98,7 +101,8 @@ public class CP211xBridge {
 
     }
     int bytesSent = device.sendFeatureReport(featureReport);
-    log.info("> UART Enable: {} '{}'", bytesSent, featureReport);
+    WireTrace.getDefaultInstance().record(WireTraceType.FEATURE_OUT, -1, featureReport, 0, featureReport.length);
+    log.debug("> UART Enable: {}", bytesSent);
 
     return bytesSent;
   }
@@ -125,7 +129,8 @@ public class CP211xBridge {
     byte[] featureReport = new byte[10];
     featureReport[0] = 0x42;
     int bytesReceived = device.getFeatureReport(featureReport);
-    log.info("< UART Status: {} '{}'", bytesReceived, featureReport);
+    WireTrace.getDefaultInstance().record(WireTraceType.FEATURE_IN, -1, featureReport, 0, Math.max(bytesReceived, 0));
+    log.debug("< UART Status: {}", bytesReceived);
 
     return featureReport;
   }
@@ -143,7 +148,8 @@ public class CP211xBridge {
 
     byte[] enableRxTx = new byte[]{0x043, (byte) purgeType};
     int bytesSent = device.sendFeatureReport(enableRxTx);
-    log.info("> Purge RxTx: {} '{}'", bytesSent, enableRxTx);
+    WireTrace.getDefaultInstance().record(WireTraceType.FEATURE_OUT, -1, enableRxTx, 0, enableRxTx.length);
+    log.debug("> Purge RxTx: {}", bytesSent);
 
     return bytesSent;
   }
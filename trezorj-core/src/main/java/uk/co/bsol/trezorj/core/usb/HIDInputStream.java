@@ -5,6 +5,10 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.tracing.Span;
+import uk.co.bsol.trezorj.core.tracing.Tracer;
+import uk.co.bsol.trezorj.core.wire.WireTrace;
+import uk.co.bsol.trezorj.core.wire.WireTraceType;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -60,8 +64,6 @@ public class HIDInputStream extends InputStream {
 
     }
 
-    log.trace("Reading {} of {}",messageIndex, messageBuffer.length-1);
-
     if (messageBuffer.length==0) {
       log.debug("No data so return EOF");
       return -1;
@@ -75,12 +77,10 @@ public class HIDInputStream extends InputStream {
     messageIndex++;
 
     if (messageIndex >= messageBuffer.length) {
-      log.trace("Message buffer reset");
       messageIndex = 0;
       messageBuffer = new byte[64];
     }
 
-    log.trace("Frame byte is {}",frameByte);
     return frameByte;
 
   }
@@ -120,53 +120,62 @@ public class HIDInputStream extends InputStream {
    */
   private void bufferAllFrames() throws IOException {
 
-    log.debug("Buffering all HID frames");
-
     // The insert position for any new HID payload
     int messageBufferFrameIndex = 0;
 
-    boolean finished = false;
-    while (!finished) {
-      // Create a fresh HID message buffer
-      byte[] hidBuffer = new byte[64];
-
-      // Attempt to read the next 64-byte message (timeout on fail)
-      int bytesRead;
-      if (messageBufferFrameIndex==0) {
-        // First read is blocking (we want to hold here)
-        bytesRead = readFromDevice(hidBuffer, Optional.<Integer>absent());
-      } else {
-        // Subsequent reads are to cover multiple frames building to an overall message
-        bytesRead = readFromDevice(hidBuffer, Optional.of(500));
-      }
+    // Started once the first report arrives (includes the timeout that ends the message)
+    Span span = Span.NOOP;
+
+    try {
+      boolean finished = false;
+      while (!finished) {
+        // Create a fresh HID message buffer
+        byte[] hidBuffer = new byte[64];
+
+        // Attempt to read the next 64-byte message (timeout on fail)
+        int bytesRead;
+        if (messageBufferFrameIndex==0) {
+          // First read is blocking (we want to hold here)
+          bytesRead = readFromDevice(hidBuffer, Optional.<Integer>absent());
+        } else {
+          // Subsequent reads are to cover multiple frames building to an overall message
+          bytesRead = readFromDevice(hidBuffer, Optional.of(500));
+        }
 
-      if (bytesRead > 0) {
+        if (bytesRead > 0) {
 
-        log.debug("< {} '{}'", bytesRead, hidBuffer);
+          if (messageBufferFrameIndex == 0) {
+            span = Tracer.getDefaultInstance().startSpan("hid.read");
+          }
 
-        // Check for data error
-        int frameLength = hidBuffer[0];
+          WireTrace.getDefaultInstance().record(WireTraceType.HID_IN, -1, hidBuffer, 0, bytesRead);
 
-        if (frameLength > 63) {
-          throw new IOException("Frame length cannot be > 63: " + frameLength);
-        }
+          // Check for data error
+          int frameLength = hidBuffer[0];
 
-        // Check for a message buffer resize
-        if (messageBufferFrameIndex + frameLength > messageBuffer.length) {
-          messageBuffer = fitToLength(messageBuffer, messageBufferFrameIndex + frameLength + 64);
-        }
+          if (frameLength > 63) {
+            throw new IOException("Frame length cannot be > 63: " + frameLength);
+          }
+
+          // Check for a message buffer resize
+          if (messageBufferFrameIndex + frameLength > messageBuffer.length) {
+            messageBuffer = fitToLength(messageBuffer, messageBufferFrameIndex + frameLength + 64);
+          }
 
-        // Copy from the HID buffer into the overall message buffer
-        // ignoring the first byte since it is for HID only
-        System.arraycopy(hidBuffer, 1, messageBuffer, messageBufferFrameIndex, frameLength);
+          // Copy from the HID buffer into the overall message buffer
+          // ignoring the first byte since it is for HID only
+          System.arraycopy(hidBuffer, 1, messageBuffer, messageBufferFrameIndex, frameLength);
 
-        // Keep track of the next insertion position
-        messageBufferFrameIndex += frameLength;
+          // Keep track of the next insertion position
+          messageBufferFrameIndex += frameLength;
 
-      } else {
-        log.debug("HID timeout - all data received.");
-        finished = true;
+        } else {
+          log.debug("HID timeout - all data received.");
+          finished = true;
+        }
       }
+    } finally {
+      span.end();
     }
 
     // Truncate the message buffer to the exact required size
@@ -180,8 +189,6 @@ public class HIDInputStream extends InputStream {
 
     System.arraycopy(oldBuffer, 0, newBuffer, 0, newLength > oldBuffer.length ? oldBuffer.length : newLength);
 
-    log.debug("Re-sized message buffer: {} '{}'", newBuffer.length, newBuffer);
-
     return newBuffer;
 
   }
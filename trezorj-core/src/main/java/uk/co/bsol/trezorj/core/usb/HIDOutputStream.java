@@ -2,8 +2,10 @@ package uk.co.bsol.trezorj.core.usb;
 
 import com.codeminders.hidapi.HIDDevice;
 import com.google.common.base.Preconditions;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.tracing.Span;
+import uk.co.bsol.trezorj.core.tracing.Tracer;
+import uk.co.bsol.trezorj.core.wire.WireTrace;
+import uk.co.bsol.trezorj.core.wire.WireTraceType;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -19,11 +21,6 @@ import java.io.OutputStream;
  */
 public class HIDOutputStream extends OutputStream {
 
-  /**
-   * Provides logging for this class
-   */
-  private static final Logger log = LoggerFactory.getLogger(HIDOutputStream.class);
-
   private final HIDDevice device;
 
   private ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -58,33 +55,35 @@ public class HIDOutputStream extends OutputStream {
     byte[] messageBuffer = baos.toByteArray();
     baos.reset();
 
-    log.debug("> Message buffer: {} '{}'", messageBuffer.length, messageBuffer);
+    Span span = Tracer.getDefaultInstance().startSpan("hid.write");
+    try {
+      int messageBufferFrameIndex = 0;
 
-    int messageBufferFrameIndex = 0;
+      while (messageBufferFrameIndex < messageBuffer.length) {
 
-    while (messageBufferFrameIndex < messageBuffer.length) {
+        // A frame has a maximum 63 bytes for payload
+        int hidBufferLength = messageBuffer.length - messageBufferFrameIndex > 63 ? 63 : messageBuffer.length - messageBufferFrameIndex;
 
-      // A frame has a maximum 63 bytes for payload
-      int hidBufferLength = messageBuffer.length - messageBufferFrameIndex > 63 ? 63 : messageBuffer.length - messageBufferFrameIndex;
+        // Allow an extra byte for the HID message content length
+        byte[] hidBuffer = new byte[hidBufferLength + 1];
+        hidBuffer[0] = (byte) hidBufferLength;
 
-      // Allow an extra byte for the HID message content length
-      byte[] hidBuffer = new byte[hidBufferLength + 1];
-      hidBuffer[0] = (byte) hidBufferLength;
+        // Copy the relevant part of the overall message into a 64 byte (or less) chunk
+        System.arraycopy(messageBuffer, messageBufferFrameIndex, hidBuffer, 1, hidBufferLength);
 
-      // Copy the relevant part of the overall message into a 64 byte (or less) chunk
-      System.arraycopy(messageBuffer, messageBufferFrameIndex, hidBuffer, 1, hidBufferLength);
+        int hidBytesSent = writeToDevice(hidBuffer);
+        if (hidBytesSent != hidBuffer.length) {
+          throw new IOException("Unable to send bytes to device. Expected: " + hidBuffer.length + " Actual: " + hidBytesSent);
+        }
 
-      int hidBytesSent = writeToDevice(hidBuffer);
-      if (hidBytesSent != hidBuffer.length) {
-        throw new IOException("Unable to send bytes to device. Expected: " + hidBuffer.length + " Actual: " + hidBytesSent);
-      }
-
-      // Adjust the frame index by the number of bytes sent (less 1 for the length)
-      messageBufferFrameIndex += (hidBytesSent - 1);
+        // Adjust the frame index by the number of bytes sent (less 1 for the length)
+        messageBufferFrameIndex += (hidBytesSent - 1);
 
+      }
+    } finally {
+      span.end();
     }
 
-
   }
 
   @Override
@@ -104,7 +103,7 @@ public class HIDOutputStream extends OutputStream {
    */
   /* package */ int writeToDevice(byte[] hidBuffer) throws IOException {
 
-    log.debug("> {} '{}' ", hidBuffer.length, hidBuffer);
+    WireTrace.getDefaultInstance().record(WireTraceType.HID_OUT, -1, hidBuffer, 0, hidBuffer.length);
     return device.write(hidBuffer);
 
   }
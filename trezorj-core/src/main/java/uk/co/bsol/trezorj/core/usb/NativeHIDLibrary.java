@@ -0,0 +1,54 @@
+package uk.co.bsol.trezorj.core.usb;
+
+import com.codeminders.hidapi.ClassPathLibraryLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Utility to provide the following to USB devices:</p>
+ * <ul>
+ * <li>A single load of the native HID library per class loader regardless of how many devices are created</li>
+ * </ul>
+ * <p>Loading the library extracts it from the classpath to a temporary file and links it which is slow on small
+ * hardware (e.g. a Raspberry Pi). The outcome of the first attempt is kept so later callers return immediately.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class NativeHIDLibrary {
+
+  private static final Logger log = LoggerFactory.getLogger(NativeHIDLibrary.class);
+
+  // Null until the first attempt completes
+  private static Boolean loaded = null;
+
+  /**
+   * Utilities do not require a public constructor
+   */
+  private NativeHIDLibrary() {
+  }
+
+  /**
+   * <p>Load the native HID library if no previous attempt has been made (blocks while another thread loads it)</p>
+   *
+   * @return True if the library is available
+   */
+  public static synchronized boolean load() {
+
+    if (loaded == null) {
+      long start = System.nanoTime();
+      loaded = ClassPathLibraryLoader.loadNativeHIDLibrary();
+      log.debug("Native HID library loaded: {} ({} ms)", loaded, (System.nanoTime() - start) / 1000000);
+    }
+
+    return loaded;
+  }
+
+  /**
+   * @return True if an attempt to load the library has completed
+   */
+  public static synchronized boolean isAttempted() {
+    return loaded != null;
+  }
+
+}
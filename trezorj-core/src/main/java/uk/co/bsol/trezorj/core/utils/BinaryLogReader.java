@@ -0,0 +1,122 @@
+package uk.co.bsol.trezorj.core.utils;
+
+import com.google.common.base.Preconditions;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * <p>Reader to provide the following to the diagnostic logs:</p>
+ * <ul>
+ * <li>A check of the file header written by a {@link BinaryLogWriter}</li>
+ * <li>Each record in turn until the end of the file</li>
+ * </ul>
+ * <p>A record cut short at the end of the file (e.g. after a crash) is ignored.</p>
+ * <p>Example:</p>
+ * <pre>
+ * BinaryLogReader reader = BinaryLogReader.open(file, MAGIC, VERSION, "wire log");
+ * try {
+ *   reader.readRecords(recordReader);
+ * } finally {
+ *   reader.close();
+ * }
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class BinaryLogReader implements Closeable {
+
+  private final DataInputStream in;
+  private final long startMillis;
+
+  /**
+   * @param file       The log file
+   * @param magic      The expected magic number
+   * @param version    The supported format version
+   * @param formatName The name of the format for error messages (e.g. "wire log")
+   *
+   * @return A reader positioned at the first record
+   *
+   * @throws IOException If the file cannot be read or is not in the expected format
+   */
+  public static BinaryLogReader open(File file, int magic, short version, String formatName) throws IOException {
+
+    Preconditions.checkNotNull(file, "'file' must be present");
+
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      if (in.readInt() != magic) {
+        throw new IOException("Not a " + formatName + ": " + file.getName());
+      }
+      short fileVersion = in.readShort();
+      if (fileVersion != version) {
+        throw new IOException("Unsupported " + formatName + " version: " + fileVersion);
+      }
+      return new BinaryLogReader(in, in.readLong());
+    } catch (IOException e) {
+      in.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Use the utility constructor
+   */
+  private BinaryLogReader(DataInputStream in, long startMillis) {
+    this.in = in;
+    this.startMillis = startMillis;
+  }
+
+  /**
+   * @return The start time from the file header in milliseconds since the epoch
+   */
+  public long getStartMillis() {
+    return startMillis;
+  }
+
+  /**
+   * @param recordReader The reader called for each record until the end of the file
+   *
+   * @throws IOException If a record is not valid
+   */
+  public void readRecords(RecordReader recordReader) throws IOException {
+
+    while (true) {
+      try {
+        recordReader.read(in);
+      } catch (EOFException e) {
+        break;
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * <p>Interface to provide the following to a binary log:</p>
+   * <ul>
+   * <li>The parsing of one record in the log's format</li>
+   * </ul>
+   */
+  public interface RecordReader {
+
+    /**
+     * @param in The stream positioned at the start of a record
+     *
+     * @throws EOFException If the file ends before or within the record
+     * @throws IOException  If the record is not valid
+     */
+    void read(DataInputStream in) throws IOException;
+
+  }
+
+}
@@ -0,0 +1,159 @@
+package uk.co.bsol.trezorj.core.utils;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>Writer to provide the following to the diagnostic recorders:</p>
+ * <ul>
+ * <li>A binary log file with a header of magic (int), version (short) and start time (long, milliseconds since
+ * the epoch) followed by records in the caller's format (see {@link BinaryLogReader})</li>
+ * <li>Writes through a direct buffer so the recording threads rarely touch the file system</li>
+ * </ul>
+ * <p>The buffer is written out when full, on {@link #flush()} and on {@link #close()}. After a write failure the
+ * owner calls {@link #abandon()} and checks {@link #isOpen()} so later records are dropped. Not thread safe: the
+ * owner serialises access.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class BinaryLogWriter implements Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(BinaryLogWriter.class);
+
+  /**
+   * The size of the write buffer (bytes larger than this are written directly)
+   */
+  public static final int BUFFER_SIZE = 64 * 1024;
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+  private boolean isOpen = true;
+
+  /**
+   * @param file    The file to create (an existing file is replaced)
+   * @param magic   The magic number identifying the format
+   * @param version The format version
+   *
+   * @return A new writer with the file header buffered
+   *
+   * @throws IOException If the file cannot be created
+   */
+  public static BinaryLogWriter newInstance(File file, int magic, short version) throws IOException {
+
+    Preconditions.checkNotNull(file, "'file' must be present");
+
+    return new BinaryLogWriter(new FileOutputStream(file).getChannel(), magic, version);
+  }
+
+  /**
+   * Use the utility constructor
+   */
+  private BinaryLogWriter(FileChannel channel, int magic, short version) {
+
+    this.channel = channel;
+
+    buffer.putInt(magic);
+    buffer.putShort(version);
+    buffer.putLong(System.currentTimeMillis());
+  }
+
+  /**
+   * @return True until the writer is closed or abandoned
+   */
+  public boolean isOpen() {
+    return isOpen;
+  }
+
+  /**
+   * @param size The number of bytes about to be put (at most the buffer size)
+   *
+   * @return The buffer with at least the size remaining
+   *
+   * @throws IOException If the buffer had to be written out and the write failed
+   */
+  public ByteBuffer reserve(int size) throws IOException {
+
+    Preconditions.checkArgument(size <= BUFFER_SIZE, "'size' must not exceed the buffer");
+
+    if (buffer.remaining() < size) {
+      drain();
+    }
+    return buffer;
+  }
+
+  /**
+   * @param bytes The bytes to write after anything already buffered (bypassing the buffer if too large)
+   *
+   * @throws IOException If the write fails
+   */
+  public void put(byte[] bytes) throws IOException {
+
+    if (buffer.remaining() >= bytes.length) {
+      buffer.put(bytes);
+      return;
+    }
+
+    drain();
+    if (bytes.length <= BUFFER_SIZE) {
+      buffer.put(bytes);
+      return;
+    }
+
+    ByteBuffer large = ByteBuffer.wrap(bytes);
+    while (large.hasRemaining()) {
+      channel.write(large);
+    }
+  }
+
+  /**
+   * <p>Write any buffered records to the file and force them to the device</p>
+   *
+   * @throws IOException If the write fails
+   */
+  public void flush() throws IOException {
+    if (isOpen) {
+      drain();
+      channel.force(false);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (isOpen) {
+      drain();
+      isOpen = false;
+      channel.close();
+    }
+  }
+
+  /**
+   * <p>Close without writing the buffer (after a write failure)</p>
+   */
+  public void abandon() {
+    isOpen = false;
+    try {
+      channel.close();
+    } catch (IOException e) {
+      log.debug("Binary log failed to close: {}", e.getMessage());
+    }
+  }
+
+  private void drain() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+}
@@ -0,0 +1,43 @@
+package uk.co.bsol.trezorj.core.utils;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Interface to provide the following to emulators, clients and monitors:</p>
+ * <ul>
+ * <li>A shared time source for delays and timeouts</li>
+ * </ul>
+ * <p>Production code uses the {@link SystemClock}. Tests can share a {@link VirtualClock} so that scripted
+ * scenarios keep their ordering and timeout behaviour without waiting in real time.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public interface Clock {
+
+  /**
+   * @return The current time in nanoseconds (only meaningful when compared with another value from this clock)
+   */
+  long nanoTime();
+
+  /**
+   * @param duration The duration to sleep
+   * @param timeUnit The time unit
+   *
+   * @throws InterruptedException If interrupted while sleeping
+   */
+  void sleep(long duration, TimeUnit timeUnit) throws InterruptedException;
+
+  /**
+   * @param queue    The queue to take the next element from
+   * @param duration The maximum time to wait
+   * @param timeUnit The time unit
+   *
+   * @return The next element or null if the timeout expired
+   *
+   * @throws InterruptedException If interrupted while waiting
+   */
+  <E> E poll(BlockingQueue<E> queue, long duration, TimeUnit timeUnit) throws InterruptedException;
+
+}
@@ -0,0 +1,147 @@
+package uk.co.bsol.trezorj.core.utils;
+
+import com.google.common.base.Preconditions;
+
+import java.io.DataInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <p>Data input stream to provide the following to frame readers:</p>
+ * <ul>
+ * <li>Bytes that have been read can be returned to the front of the stream and read again</li>
+ * </ul>
+ * <p>A reader that finds a frame to be invalid (e.g. a corrupted length or a truncated detail) returns its bytes
+ * so that they are scanned for the next alignment string. The frames behind a bad one are then recovered rather
+ * than swallowed. Normal reads pass straight through and a returned byte or header needs no allocation.</p>
+ * <p>Like the other data streams this is intended for a single reading thread.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class FrameInputStream extends DataInputStream {
+
+  private final ReplayInputStream replayInputStream;
+
+  /**
+   * @param in The underlying stream (must be open)
+   */
+  public FrameInputStream(InputStream in) {
+    this(new ReplayInputStream(in));
+  }
+
+  private FrameInputStream(ReplayInputStream replayInputStream) {
+    super(replayInputStream);
+    this.replayInputStream = replayInputStream;
+  }
+
+  /**
+   * <p>Return bytes to the front of the stream (ahead of any bytes returned earlier)</p>
+   *
+   * @param bytes  The bytes that were read
+   * @param offset The offset of the first byte to return
+   * @param length The number of bytes to return
+   */
+  public void unread(byte[] bytes, int offset, int length) {
+
+    Preconditions.checkNotNull(bytes, "'bytes' must be present");
+    Preconditions.checkPositionIndexes(offset, offset + length, bytes.length);
+
+    replayInputStream.unread(bytes, offset, length);
+  }
+
+  /**
+   * @param b The byte that was read
+   */
+  public void unread(int b) {
+    replayInputStream.unread((byte) b);
+  }
+
+  /**
+   * <p>Serves returned bytes before those of the underlying stream</p>
+   */
+  private static class ReplayInputStream extends FilterInputStream {
+
+    // Returned bytes occupy the end of the buffer from the position onwards (grown only if a frame is returned)
+    private byte[] buffer = new byte[16];
+    private int position = buffer.length;
+
+    private ReplayInputStream(InputStream in) {
+      super(in);
+    }
+
+    private void unread(byte b) {
+
+      if (position == 0) {
+        unread(new byte[]{b}, 0, 1);
+        return;
+      }
+
+      buffer[--position] = b;
+    }
+
+    private void unread(byte[] bytes, int offset, int length) {
+
+      if (length > position) {
+        int remaining = buffer.length - position;
+        byte[] grown = new byte[Math.max(buffer.length * 2, remaining + length)];
+        System.arraycopy(buffer, position, grown, grown.length - remaining, remaining);
+        position = grown.length - remaining;
+        buffer = grown;
+      }
+
+      position -= length;
+      System.arraycopy(bytes, offset, buffer, position, length);
+    }
+
+    @Override
+    public int read() throws IOException {
+
+      if (position == buffer.length) {
+        return in.read();
+      }
+
+      return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+      if (position == buffer.length) {
+        return in.read(b, off, len);
+      }
+
+      // Serve only the returned bytes so that the read cannot block
+      int count = Math.min(len, buffer.length - position);
+      System.arraycopy(buffer, position, b, off, count);
+      position += count;
+
+      return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+
+      if (position == buffer.length) {
+        return in.skip(n);
+      }
+
+      int count = (int) Math.min(n, buffer.length - position);
+      position += count;
+
+      return count;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return buffer.length - position + in.available();
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
+
+}
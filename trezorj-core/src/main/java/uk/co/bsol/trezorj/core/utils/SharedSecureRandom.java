@@ -0,0 +1,57 @@
+package uk.co.bsol.trezorj.core.utils;
+
+import java.security.SecureRandom;
+
+/**
+ * <p>Utility to provide the following to clients:</p>
+ * <ul>
+ * <li>A single SecureRandom shared by every client in the JVM</li>
+ * <li>Seeding ahead of first use so the first request for random data does not wait on the platform entropy
+ * source</li>
+ * </ul>
+ * <p>SecureRandom is thread safe. A shared instance is seeded once rather than once per client, which can take
+ * seconds on hardware with little entropy available at boot.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class SharedSecureRandom {
+
+  private static final SecureRandom secureRandom = new SecureRandom();
+
+  private static volatile boolean seeded = false;
+
+  /**
+   * Utilities do not require a public constructor
+   */
+  private SharedSecureRandom() {
+  }
+
+  /**
+   * @return The shared instance (seeded on first use if {@link #seed()} has not been called)
+   */
+  public static SecureRandom getInstance() {
+    return secureRandom;
+  }
+
+  /**
+   * <p>Force the shared instance to seed itself (blocks until the platform entropy source provides the seed)</p>
+   */
+  public static void seed() {
+
+    if (!seeded) {
+      // The first request for output triggers self-seeding
+      secureRandom.nextBytes(new byte[1]);
+      seeded = true;
+    }
+
+  }
+
+  /**
+   * @return True if the shared instance has been seeded by {@link #seed()}
+   */
+  public static boolean isSeeded() {
+    return seeded;
+  }
+
+}
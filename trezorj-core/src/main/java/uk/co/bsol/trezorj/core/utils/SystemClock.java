@@ -0,0 +1,41 @@
+package uk.co.bsol.trezorj.core.utils;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Clock to provide the following to emulators, clients and monitors:</p>
+ * <ul>
+ * <li>Real time delays and timeouts (the default)</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ *
+ */
+public class SystemClock implements Clock {
+
+  private static final SystemClock defaultInstance = new SystemClock();
+
+  /**
+   * @return The shared instance
+   */
+  public static SystemClock getDefaultInstance() {
+    return defaultInstance;
+  }
+
+  @Override
+  public long nanoTime() {
+    return System.nanoTime();
+  }
+
+  @Override
+  public void sleep(long duration, TimeUnit timeUnit) throws InterruptedException {
+    timeUnit.sleep(duration);
+  }
+
+  @Override
+  public <E> E poll(BlockingQueue<E> queue, long duration, TimeUnit timeUnit) throws InterruptedException {
+    return queue.poll(duration, timeUnit);
+  }
+
+}
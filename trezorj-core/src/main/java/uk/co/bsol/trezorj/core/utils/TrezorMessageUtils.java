@@ -8,11 +8,10 @@ import com.google.bitcoin.params.MainNetParams;
 import com.google.common.base.Preconditions;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Message;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import uk.co.bsol.trezorj.core.protobuf.MessageType;
 import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
 
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 
@@ -27,7 +26,10 @@ import java.io.IOException;
  */
 public final class TrezorMessageUtils {
 
-  private static final Logger log = LoggerFactory.getLogger(TrezorMessageUtils.class);
+  /**
+   * The largest detail length accepted when reading (a corrupted header must not cause a huge allocation)
+   */
+  public static final int MAX_DETAIL_LENGTH = 1024 * 1024;
 
   /**
    * Utilities should not have public constructors
@@ -48,10 +50,6 @@ public final class TrezorMessageUtils {
     // Require the header code
     short headerCode = MessageType.getHeaderCode(message);
 
-    // Provide some debugging
-    MessageType messageType = MessageType.getMessageTypeByHeaderCode(headerCode);
-    log.debug("> {}", messageType.name());
-
     // Write magic alignment string (avoiding immediate flush)
     out.writeBytes("##");
 
@@ -74,6 +72,117 @@ public final class TrezorMessageUtils {
 
   }
 
+  /**
+   * <p>Read a Trezor protocol buffer message from an InputStream (the reverse of {@link #writeMessage})</p>
+   *
+   * @param in The data input stream (must be open)
+   *
+   * @return The protocol buffer message
+   *
+   * @throws java.io.EOFException If the stream ends before a complete message is read
+   * @throws IOException          If the device disconnects during IO or the framing is not valid
+   */
+  public static Message readMessage(DataInputStream in) throws IOException {
+
+    // Read the magic alignment string
+    byte first = in.readByte();
+    byte second = in.readByte();
+    if (first != '#' || second != '#') {
+      throw new IOException("Frame does not start with the magic alignment string");
+    }
+
+    // Read the header (see writeMessage)
+    short headerCode = in.readShort();
+    int detailLength = in.readInt();
+    if (detailLength < 0 || detailLength > MAX_DETAIL_LENGTH) {
+      throw new IOException("Frame has an invalid detail length: " + detailLength);
+    }
+
+    // Read the detail portion completely
+    byte[] detail = new byte[detailLength];
+    in.readFully(detail);
+
+    Message message = MessageType.parse(headerCode, detail);
+
+    return message;
+
+  }
+
+  /**
+   * <p>Read and discard bytes up to and including the next magic alignment string</p>
+   * <p>This allows a reader to recover from line noise or the remains of a truncated frame. A header code never
+   * starts with '#' so in a longer run of '#' only the last two are taken as the alignment string.</p>
+   *
+   * @param in The frame input stream (must be open)
+   *
+   * @return The number of bytes discarded before the alignment string
+   *
+   * @throws java.io.EOFException If the stream ends before an alignment string is found
+   * @throws IOException          If the device disconnects during IO
+   */
+  public static int skipToAlignment(FrameInputStream in) throws IOException {
+
+    int skipped = 0;
+    byte previous = in.readByte();
+    byte current = in.readByte();
+    while (true) {
+      if (previous == '#' && current == '#') {
+        byte next = in.readByte();
+        if (next != '#') {
+          // The start of the header
+          in.unread(next);
+          return skipped;
+        }
+        current = next;
+      } else {
+        previous = current;
+        current = in.readByte();
+      }
+      skipped++;
+    }
+
+  }
+
+  /**
+   * @param headerCode   The header code read from a frame
+   * @param detailLength The detail length read from a frame
+   *
+   * @return True if the header could belong to a valid frame
+   */
+  public static boolean isValidHeader(short headerCode, int detailLength) {
+
+    if (detailLength < 0 || detailLength > MAX_DETAIL_LENGTH) {
+      return false;
+    }
+
+    for (MessageType messageType : MessageType.values()) {
+      if (messageType.getHeaderCode() == headerCode) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * <p>Return a header that has been read to the front of the stream (so that a frame found to be invalid can be
+   * scanned again for the next alignment string)</p>
+   *
+   * @param in           The frame input stream
+   * @param headerCode   The header code that was read
+   * @param detailLength The detail length that was read
+   */
+  public static void unreadHeader(FrameInputStream in, short headerCode, int detailLength) {
+
+    // Each byte goes to the front so the header is returned last byte first
+    for (int shift = 0; shift < 32; shift += 8) {
+      in.unread(detailLength >>> shift);
+    }
+    in.unread(headerCode);
+    in.unread(headerCode >>> 8);
+
+  }
+
   /**
    * <p>Construct a TxInput message based on the given transaction </p>
    *
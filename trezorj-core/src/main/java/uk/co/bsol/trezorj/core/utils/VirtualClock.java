@@ -0,0 +1,207 @@
+package uk.co.bsol.trezorj.core.utils;
+
+import com.google.common.base.Preconditions;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Clock to provide the following to tests and benchmarks:</p>
+ * <ul>
+ * <li>Virtual time that only moves when advanced</li>
+ * <li>Optional automatic advance to the next pending deadline once the system has settled</li>
+ * </ul>
+ * <p>Every sleep and timed poll registers its deadline. With automatic advance enabled, a waiter that sees
+ * no progress for the (real time) settle window moves the clock forward to the earliest pending sleep, so
+ * a scenario that would take seconds completes in milliseconds while the deadlines still expire in order.
+ * The settle window must be longer than the real processing time of a single step.</p>
+ * <p>A timed poll is a timeout waiting for a response that may arrive in real time (e.g. over a socket), so
+ * by default its deadline is only reached through {@link #advance(long, TimeUnit)} or a pending sleep.
+ * Automatic advance of timeouts is for fully virtual setups where every response is produced against this
+ * clock (see {@link #setAutoAdvanceTimeouts(boolean)}).</p>
+ * <p>Example:</p>
+ * <pre>
+ * // Scripted delays complete at once while the client waits in real time for the socket
+ * VirtualClock clock = new VirtualClock(5, TimeUnit.MILLISECONDS);
+ * emulator.setClock(clock);
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class VirtualClock implements Clock {
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition timeChanged = lock.newCondition();
+
+  // Pending deadlines of sleeping and polling waiters (guarded by the lock)
+  private final PriorityQueue<Long> sleepDeadlines = new PriorityQueue<Long>();
+  private final PriorityQueue<Long> timeoutDeadlines = new PriorityQueue<Long>();
+
+  private final long settleNanos;
+  private volatile boolean isAutoAdvance;
+  private volatile boolean isAutoAdvanceTimeouts = false;
+  private long nowNanos = 0;
+
+  /**
+   * <p>Create a clock that advances automatically after a settle window of 5ms</p>
+   */
+  public VirtualClock() {
+    this(5, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @param settleDuration The real time without progress after which the clock advances to the next deadline
+   * @param timeUnit       The time unit
+   */
+  public VirtualClock(long settleDuration, TimeUnit timeUnit) {
+
+    Preconditions.checkState(settleDuration > 0, "'settleDuration' must be greater than zero");
+
+    this.settleNanos = timeUnit.toNanos(settleDuration);
+    this.isAutoAdvance = true;
+  }
+
+  /**
+   * @param isAutoAdvance False if the clock should only move through {@link #advance(long, TimeUnit)}
+   */
+  public void setAutoAdvance(boolean isAutoAdvance) {
+    this.isAutoAdvance = isAutoAdvance;
+  }
+
+  /**
+   * @param isAutoAdvanceTimeouts True if timed polls should also be advanced automatically (only safe when no
+   *                              response can arrive in real time, e.g. a scripted device on this clock)
+   */
+  public void setAutoAdvanceTimeouts(boolean isAutoAdvanceTimeouts) {
+    this.isAutoAdvanceTimeouts = isAutoAdvanceTimeouts;
+  }
+
+  /**
+   * <p>Move the clock forward and wake any waiters whose deadline has passed</p>
+   *
+   * @param duration The duration to advance
+   * @param timeUnit The time unit
+   */
+  public void advance(long duration, TimeUnit timeUnit) {
+
+    Preconditions.checkState(duration >= 0, "'duration' must not be negative");
+
+    lock.lock();
+    try {
+      nowNanos += timeUnit.toNanos(duration);
+      timeChanged.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public long nanoTime() {
+    lock.lock();
+    try {
+      return nowNanos;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void sleep(long duration, TimeUnit timeUnit) throws InterruptedException {
+
+    lock.lock();
+    try {
+      long deadline = nowNanos + timeUnit.toNanos(duration);
+      sleepDeadlines.add(deadline);
+      try {
+        while (nowNanos < deadline) {
+          long before = nowNanos;
+          if (!timeChanged.await(settleNanos, TimeUnit.NANOSECONDS)) {
+            advanceIfSettled(before);
+          }
+        }
+      } finally {
+        sleepDeadlines.remove(deadline);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public <E> E poll(BlockingQueue<E> queue, long duration, TimeUnit timeUnit) throws InterruptedException {
+
+    E element = queue.poll();
+    if (element != null) {
+      return element;
+    }
+
+    long deadline;
+    lock.lock();
+    try {
+      deadline = nowNanos + timeUnit.toNanos(duration);
+      timeoutDeadlines.add(deadline);
+    } finally {
+      lock.unlock();
+    }
+
+    try {
+      while (true) {
+
+        // The element may arrive in real time from another thread so the lock is not held
+        long before = nanoTime();
+        element = queue.poll(settleNanos, TimeUnit.NANOSECONDS);
+        if (element != null) {
+          return element;
+        }
+
+        lock.lock();
+        try {
+          if (nowNanos >= deadline) {
+            return queue.poll();
+          }
+          advanceIfSettled(before);
+        } finally {
+          lock.unlock();
+        }
+      }
+    } finally {
+      lock.lock();
+      try {
+        timeoutDeadlines.remove(deadline);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * <p>Advance to the earliest pending sleep (or timeout if enabled) if nothing has moved the clock during the
+   * settle window (the lock must be held)</p>
+   *
+   * @param before The time at the start of the settle window
+   */
+  private void advanceIfSettled(long before) {
+
+    if (!isAutoAdvance || nowNanos != before) {
+      return;
+    }
+
+    long next = Long.MAX_VALUE;
+    if (!sleepDeadlines.isEmpty()) {
+      next = sleepDeadlines.peek();
+    }
+    if (isAutoAdvanceTimeouts && !timeoutDeadlines.isEmpty()) {
+      next = Math.min(next, timeoutDeadlines.peek());
+    }
+
+    if (next != Long.MAX_VALUE && next > nowNanos) {
+      nowNanos = next;
+      timeChanged.signalAll();
+    }
+  }
+
+}
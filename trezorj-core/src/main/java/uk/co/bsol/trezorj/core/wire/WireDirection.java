@@ -0,0 +1,58 @@
+package uk.co.bsol.trezorj.core.wire;
+
+/**
+ * <p>Enum to provide the following to wire recording:</p>
+ * <ul>
+ * <li>The direction of a frame relative to the host</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ *
+ */
+public enum WireDirection {
+
+  /**
+   * A request written by the host
+   */
+  TO_DEVICE((byte) 0),
+
+  /**
+   * A response or unsolicited message read by the host
+   */
+  FROM_DEVICE((byte) 1),
+
+  // End of enum
+  ;
+
+  private final byte code;
+
+  WireDirection(byte code) {
+    this.code = code;
+  }
+
+  /**
+   * @return The code used in the binary log
+   */
+  public byte getCode() {
+    return code;
+  }
+
+  /**
+   * @param code The code from the binary log
+   *
+   * @return The matching direction
+   *
+   * @throws IllegalArgumentException If the code is not valid
+   */
+  public static WireDirection getWireDirectionByCode(byte code) {
+
+    for (WireDirection direction : WireDirection.values()) {
+      if (direction.code == code) {
+        return direction;
+      }
+    }
+
+    throw new IllegalArgumentException("Direction code '" + code + "' is not valid");
+  }
+
+}
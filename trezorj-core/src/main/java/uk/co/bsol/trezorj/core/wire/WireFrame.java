@@ -0,0 +1,87 @@
+package uk.co.bsol.trezorj.core.wire;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+
+/**
+ * <p>Value object to provide the following to wire logs:</p>
+ * <ul>
+ * <li>A single recorded frame with its time offset from the start of the recording</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ *
+ */
+public class WireFrame {
+
+  private final long offsetNanos;
+  private final WireDirection direction;
+  private final short headerCode;
+  private final byte[] detail;
+
+  /**
+   * @param offsetNanos The time since the start of the recording
+   * @param direction   The direction
+   * @param headerCode  The header code
+   * @param detail      The protocol buffer detail
+   */
+  public WireFrame(long offsetNanos, WireDirection direction, short headerCode, byte[] detail) {
+
+    Preconditions.checkNotNull(direction, "'direction' must be present");
+    Preconditions.checkNotNull(detail, "'detail' must be present");
+
+    this.offsetNanos = offsetNanos;
+    this.direction = direction;
+    this.headerCode = headerCode;
+    this.detail = detail;
+  }
+
+  public long getOffsetNanos() {
+    return offsetNanos;
+  }
+
+  public WireDirection getDirection() {
+    return direction;
+  }
+
+  public short getHeaderCode() {
+    return headerCode;
+  }
+
+  /**
+   * @return The message type for the header code
+   *
+   * @throws IllegalArgumentException If the header code is not valid
+   */
+  public MessageType getMessageType() {
+    return MessageType.getMessageTypeByHeaderCode(headerCode);
+  }
+
+  /**
+   * @return The protocol buffer detail (must not be modified)
+   */
+  public byte[] getDetail() {
+    return detail;
+  }
+
+  /**
+   * @return The parsed message
+   *
+   * @throws InvalidProtocolBufferException If the detail is not valid for the header code
+   */
+  public Message getMessage() throws InvalidProtocolBufferException {
+    return MessageType.parse(headerCode, detail);
+  }
+
+  @Override
+  public String toString() {
+    return "WireFrame{" +
+      "offsetNanos=" + offsetNanos +
+      ", direction=" + direction +
+      ", headerCode=" + headerCode +
+      ", length=" + detail.length +
+      '}';
+  }
+}
@@ -0,0 +1,113 @@
+package uk.co.bsol.trezorj.core.wire;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import uk.co.bsol.trezorj.core.utils.BinaryLogReader;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * <p>Wire log to provide the following to diagnostics and replay:</p>
+ * <ul>
+ * <li>The frames of a recording made by a {@link WireRecorder} in their original order</li>
+ * </ul>
+ * <p>The binary format is big endian throughout:</p>
+ * <ul>
+ * <li>File header: magic (int "TZWL"), version (short), start time (long, milliseconds since the epoch) as
+ * written by a {@link uk.co.bsol.trezorj.core.utils.BinaryLogWriter}</li>
+ * <li>Each record: time offset (long, nanoseconds), direction (byte), header code (short), detail length (int),
+ * detail (bytes)</li>
+ * </ul>
+ * <p>A record cut short at the end of the file (e.g. after a crash) is ignored.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class WireLog {
+
+  /**
+   * The magic number at the start of a log ("TZWL")
+   */
+  public static final int MAGIC = 0x545a574c;
+
+  /**
+   * The current format version
+   */
+  public static final short VERSION = 1;
+
+  /**
+   * The size of the fixed part of each record
+   */
+  public static final int RECORD_HEADER_SIZE = 8 + 1 + 2 + 4;
+
+  private final long startMillis;
+  private final List<WireFrame> frames;
+
+  /**
+   * @param file The log file
+   *
+   * @return The log
+   *
+   * @throws IOException If the file cannot be read or is not a wire log
+   */
+  public static WireLog read(File file) throws IOException {
+
+    Preconditions.checkNotNull(file, "'file' must be present");
+
+    BinaryLogReader reader = BinaryLogReader.open(file, MAGIC, VERSION, "wire log");
+    try {
+      final List<WireFrame> frames = Lists.newArrayList();
+      reader.readRecords(new BinaryLogReader.RecordReader() {
+        @Override
+        public void read(DataInputStream in) throws IOException {
+          long offsetNanos = in.readLong();
+          WireDirection direction = WireDirection.getWireDirectionByCode(in.readByte());
+          short headerCode = in.readShort();
+          int length = in.readInt();
+          if (length < 0) {
+            throw new IOException("Wire log record has a negative length");
+          }
+          byte[] detail = new byte[length];
+          in.readFully(detail);
+          frames.add(new WireFrame(offsetNanos, direction, headerCode, detail));
+        }
+      });
+
+      return new WireLog(reader.getStartMillis(), frames);
+
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * @param startMillis The start of the recording
+   * @param frames      The frames in order
+   */
+  public WireLog(long startMillis, List<WireFrame> frames) {
+
+    Preconditions.checkNotNull(frames, "'frames' must be present");
+
+    this.startMillis = startMillis;
+    this.frames = ImmutableList.copyOf(frames);
+  }
+
+  /**
+   * @return The start of the recording in milliseconds since the epoch
+   */
+  public long getStartMillis() {
+    return startMillis;
+  }
+
+  /**
+   * @return The frames in their original order
+   */
+  public List<WireFrame> getFrames() {
+    return frames;
+  }
+
+}
@@ -0,0 +1,126 @@
+package uk.co.bsol.trezorj.core.wire;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.utils.BinaryLogWriter;
+import uk.co.bsol.trezorj.core.utils.Clock;
+import uk.co.bsol.trezorj.core.utils.SystemClock;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Wire tap to provide the following to diagnostics:</p>
+ * <ul>
+ * <li>A compact binary log of every frame with its direction and time offset (see {@link WireLog} for the format)</li>
+ * <li>Writes through a {@link BinaryLogWriter} so the transport threads rarely touch the file system</li>
+ * </ul>
+ * <p>The buffer is written out when full, on {@link #flush()} and on {@link #close()}. A frame offered after the
+ * recorder is closed (or after a write failure) is dropped rather than disturbing the transport.</p>
+ * <p>Example:</p>
+ * <pre>
+ * WireRecorder recorder = WireRecorder.newInstance(new File("session.wire"));
+ * trezor.setWireTap(recorder);
+ * ...
+ * recorder.close();
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class WireRecorder implements WireTap, Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(WireRecorder.class);
+
+  private final BinaryLogWriter writer;
+  private final Clock clock;
+  private final long startNanos;
+
+  private long frameCount = 0;
+
+  /**
+   * @param file The file to create (an existing file is replaced)
+   *
+   * @return A new recorder using the system clock
+   *
+   * @throws IOException If the file cannot be created
+   */
+  public static WireRecorder newInstance(File file) throws IOException {
+    return newInstance(file, SystemClock.getDefaultInstance());
+  }
+
+  /**
+   * @param file  The file to create (an existing file is replaced)
+   * @param clock The clock for the frame time offsets
+   *
+   * @return A new recorder
+   *
+   * @throws IOException If the file cannot be created
+   */
+  public static WireRecorder newInstance(File file, Clock clock) throws IOException {
+
+    Preconditions.checkNotNull(file, "'file' must be present");
+    Preconditions.checkNotNull(clock, "'clock' must be present");
+
+    return new WireRecorder(BinaryLogWriter.newInstance(file, WireLog.MAGIC, WireLog.VERSION), clock);
+  }
+
+  /**
+   * Use the utility constructors
+   */
+  private WireRecorder(BinaryLogWriter writer, Clock clock) {
+
+    this.writer = writer;
+    this.clock = clock;
+    this.startNanos = clock.nanoTime();
+  }
+
+  @Override
+  public synchronized void onFrame(WireDirection direction, short headerCode, byte[] detail) {
+
+    if (!writer.isOpen()) {
+      return;
+    }
+
+    try {
+      ByteBuffer buffer = writer.reserve(WireLog.RECORD_HEADER_SIZE);
+      buffer.putLong(clock.nanoTime() - startNanos);
+      buffer.put(direction.getCode());
+      buffer.putShort(headerCode);
+      buffer.putInt(detail.length);
+
+      writer.put(detail);
+
+      frameCount++;
+
+    } catch (IOException e) {
+      log.error("Wire recording stopped", e);
+      writer.abandon();
+    }
+  }
+
+  /**
+   * @return The number of frames recorded so far
+   */
+  public synchronized long getFrameCount() {
+    return frameCount;
+  }
+
+  /**
+   * <p>Write any buffered frames to the file</p>
+   *
+   * @throws IOException If the write fails
+   */
+  public synchronized void flush() throws IOException {
+    writer.flush();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    writer.close();
+  }
+
+}
@@ -0,0 +1,195 @@
+package uk.co.bsol.trezorj.core.wire;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.emulators.EmulatorHandler;
+import uk.co.bsol.trezorj.core.emulators.EmulatorSession;
+import uk.co.bsol.trezorj.core.emulators.ReactiveTrezorEmulator;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Emulator handler to provide the following to regression tests and benchmarks:</p>
+ * <ul>
+ * <li>Replay of a recorded device session through the reactive emulator</li>
+ * <li>Responses at the original pace or as fast as possible</li>
+ * <li>Detection of a client diverging from the recording</li>
+ * </ul>
+ * <p>Each incoming request is matched by message type against the next recorded request (the content is not
+ * compared since it includes session identifiers and random data). The recorded responses up to the following
+ * request are then returned. Unsolicited frames before a request are skipped. A request that does not match
+ * receives a Failure and leaves the position unchanged.</p>
+ * <p>Each emulator session replays the log from the beginning.</p>
+ * <p>Example:</p>
+ * <pre>
+ * ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+ * WireReplayer replayer = WireReplayer.addTo(emulator, WireLog.read(file), WireReplayer.Speed.MAXIMUM);
+ * emulator.start();
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class WireReplayer implements EmulatorHandler {
+
+  private static final Logger log = LoggerFactory.getLogger(WireReplayer.class);
+
+  private static final String POSITION_KEY = WireReplayer.class.getName();
+
+  /**
+   * The pace of the replay
+   */
+  public enum Speed {
+
+    /**
+     * Each response is sent at its recorded offset from the request (keeping the spacing between responses)
+     */
+    ORIGINAL,
+
+    /**
+     * Responses are returned immediately
+     */
+    MAXIMUM,
+
+    // End of enum
+    ;
+  }
+
+  private final List<WireFrame> frames;
+  private final Speed speed;
+
+  private final AtomicInteger replayedCount = new AtomicInteger(0);
+  private final AtomicInteger divergedCount = new AtomicInteger(0);
+
+  /**
+   * <p>Register a new replayer for all message types</p>
+   *
+   * @param emulator The emulator (not yet started)
+   * @param wireLog  The recording to replay
+   * @param speed    The pace of the replay
+   *
+   * @return The replayer to allow progress to be checked
+   */
+  public static WireReplayer addTo(ReactiveTrezorEmulator emulator, WireLog wireLog, Speed speed) {
+
+    Preconditions.checkNotNull(emulator, "'emulator' must be present");
+
+    WireReplayer replayer = new WireReplayer(wireLog, speed);
+    for (MessageType messageType : MessageType.values()) {
+      emulator.addHandler(messageType, replayer);
+    }
+
+    return replayer;
+  }
+
+  /**
+   * @param wireLog The recording to replay
+   * @param speed   The pace of the replay
+   */
+  public WireReplayer(WireLog wireLog, Speed speed) {
+
+    Preconditions.checkNotNull(wireLog, "'wireLog' must be present");
+    Preconditions.checkNotNull(speed, "'speed' must be present");
+
+    this.frames = wireLog.getFrames();
+    this.speed = speed;
+  }
+
+  @Override
+  public List<Message> handle(EmulatorSession session, Message request) {
+
+    Optional<Integer> positionOptional = session.getAttribute(POSITION_KEY, Integer.class);
+    int position = positionOptional.isPresent() ? positionOptional.get() : 0;
+
+    // Skip unsolicited frames
+    while (position < frames.size() && frames.get(position).getDirection() == WireDirection.FROM_DEVICE) {
+      position++;
+    }
+    if (position >= frames.size()) {
+      divergedCount.incrementAndGet();
+      return EmulatorSession.newFailureResponse("Replay complete");
+    }
+
+    WireFrame expected = frames.get(position);
+    MessageType actualType = MessageType.getMessageType(request);
+    if (expected.getHeaderCode() != actualType.getHeaderCode()) {
+      divergedCount.incrementAndGet();
+      log.warn("Replay diverged at frame {}: expected {} but received {}", position, expected.getMessageType(), actualType);
+      return EmulatorSession.newFailureResponse("Replay diverged at frame " + position + ": expected " + expected.getMessageType().name());
+    }
+
+    // Gather the recorded responses with their offsets
+    List<Message> responses = Lists.newArrayList();
+    List<Long> offsetNanos = Lists.newArrayList();
+    position++;
+    while (position < frames.size() && frames.get(position).getDirection() == WireDirection.FROM_DEVICE) {
+      WireFrame response = frames.get(position);
+      try {
+        responses.add(response.getMessage());
+        offsetNanos.add(response.getOffsetNanos());
+      } catch (InvalidProtocolBufferException e) {
+        log.warn("Recorded frame {} could not be parsed so is skipped", position);
+      }
+      position++;
+    }
+    session.setAttribute(POSITION_KEY, position);
+
+    replayedCount.incrementAndGet();
+
+    if (speed == Speed.ORIGINAL) {
+      sendAtRecordedOffsets(session, expected.getOffsetNanos(), responses, offsetNanos);
+      return Lists.newArrayList();
+    }
+
+    return responses;
+  }
+
+  /**
+   * <p>Send each response once its recorded offset from the request has passed</p>
+   *
+   * @param session      The emulator session
+   * @param requestNanos The recorded offset of the request
+   * @param responses    The responses in order
+   * @param offsetNanos  The recorded offset of each response
+   */
+  private void sendAtRecordedOffsets(EmulatorSession session, long requestNanos, List<Message> responses, List<Long> offsetNanos) {
+
+    long previousNanos = requestNanos;
+    try {
+      for (int i = 0; i < responses.size(); i++) {
+        session.getClock().sleep(offsetNanos.get(i) - previousNanos, TimeUnit.NANOSECONDS);
+        previousNanos = offsetNanos.get(i);
+        session.send(responses.get(i));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      // The session ends when it next reads from the client
+      log.debug("Replay stopped: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * @return The number of requests answered from the recording (across all sessions)
+   */
+  public int getReplayedCount() {
+    return replayedCount.get();
+  }
+
+  /**
+   * @return The number of requests that did not match the recording (across all sessions)
+   */
+  public int getDivergedCount() {
+    return divergedCount.get();
+  }
+
+}
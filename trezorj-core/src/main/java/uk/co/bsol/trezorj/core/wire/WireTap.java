@@ -0,0 +1,22 @@
+package uk.co.bsol.trezorj.core.wire;
+
+/**
+ * <p>Interface to provide the following to Trezor devices:</p>
+ * <ul>
+ * <li>A hook receiving every complete frame crossing the transport (see {@link uk.co.bsol.trezorj.core.trezors.AbstractTrezor#setWireTap(WireTap)})</li>
+ * </ul>
+ * <p>Taps are called on the reading and writing threads so they must be thread safe and quick.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public interface WireTap {
+
+  /**
+   * @param direction  The direction of the frame
+   * @param headerCode The header code from the frame
+   * @param detail     The protocol buffer detail (must not be modified)
+   */
+  void onFrame(WireDirection direction, short headerCode, byte[] detail);
+
+}
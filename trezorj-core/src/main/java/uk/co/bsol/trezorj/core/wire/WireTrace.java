@@ -0,0 +1,217 @@
+package uk.co.bsol.trezorj.core.wire;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Ring buffer to provide the following to the transport layers:</p>
+ * <ul>
+ * <li>A cheap, always available record of the most recent frames and HID reports</li>
+ * <li>A runtime switch so nothing at all is done while disabled (the default)</li>
+ * <li>Dumps on demand and automatically when a device fails (see {@link #dumpToLog(String)})</li>
+ * </ul>
+ * <p>Recording is lock-free and allocation-free: a writer takes the next sequence with a single atomic increment,
+ * claims the slot with a compare-and-set and copies up to {@link #CAPTURE_SIZE} bytes into storage allocated up
+ * front. If another writer still holds the slot (the ring has lapped) the entry is dropped rather than waiting.
+ * Each slot publishes its sequence number last so a reader can detect and skip a slot overwritten while it was
+ * being read (the second check is a compare-and-set so that it acts as a full fence). Once the ring is full the
+ * oldest entries are overwritten.</p>
+ * <p>This replaces formatting whole byte arrays into the debug log for every transfer, which made I/O collapse
+ * whenever debug logging was enabled.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class WireTrace {
+
+  private static final Logger log = LoggerFactory.getLogger(WireTrace.class);
+
+  /**
+   * The number of leading bytes captured for each transfer (a full HID report)
+   */
+  public static final int CAPTURE_SIZE = 64;
+
+  /**
+   * The default number of entries kept
+   */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private static final WireTrace defaultInstance = new WireTrace(DEFAULT_CAPACITY);
+
+  private static final long IN_PROGRESS = -1;
+
+  private final Slot[] slots;
+  // The sequence held by each slot (written last to publish the slot contents)
+  private final AtomicLongArray slotSequences;
+  private final int mask;
+  private final AtomicLong nextSequence = new AtomicLong(0);
+  private final AtomicLong droppedCount = new AtomicLong(0);
+
+  private volatile boolean isEnabled = false;
+
+  /**
+   * @return The shared trace used by the transport layers
+   */
+  public static WireTrace getDefaultInstance() {
+    return defaultInstance;
+  }
+
+  /**
+   * @param capacity The number of entries kept (must be a power of two)
+   */
+  public WireTrace(int capacity) {
+
+    Preconditions.checkState(capacity > 0 && Integer.bitCount(capacity) == 1, "'capacity' must be a power of two");
+
+    this.slots = new Slot[capacity];
+    this.slotSequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      slots[i] = new Slot();
+      slotSequences.set(i, IN_PROGRESS - 1);
+    }
+    this.mask = capacity - 1;
+  }
+
+  /**
+   * @return True if transfers are being recorded
+   */
+  public boolean isEnabled() {
+    return isEnabled;
+  }
+
+  /**
+   * @param isEnabled True to start recording transfers (existing entries are kept)
+   */
+  public void setEnabled(boolean isEnabled) {
+    this.isEnabled = isEnabled;
+  }
+
+  /**
+   * @param type       The type of transfer
+   * @param headerCode The protocol header code (-1 if not known at this layer)
+   * @param bytes      The bytes transferred (may be null if only the length is known)
+   * @param offset     The offset of the first byte
+   * @param length     The full length of the transfer
+   */
+  public void record(WireTraceType type, int headerCode, byte[] bytes, int offset, int length) {
+
+    if (!isEnabled) {
+      return;
+    }
+
+    long sequence = nextSequence.getAndIncrement();
+    int index = (int) sequence & mask;
+
+    // Claim the slot so neither a reader nor another writer will trust a partial write
+    long previous = slotSequences.get(index);
+    if (previous == IN_PROGRESS || !slotSequences.compareAndSet(index, previous, IN_PROGRESS)) {
+      droppedCount.incrementAndGet();
+      return;
+    }
+
+    Slot slot = slots[index];
+    int capturedLength = bytes == null ? 0 : Math.min(length, CAPTURE_SIZE);
+    slot.nanos = System.nanoTime();
+    slot.type = type;
+    slot.headerCode = headerCode;
+    slot.length = length;
+    slot.capturedLength = capturedLength;
+    if (capturedLength > 0) {
+      System.arraycopy(bytes, offset, slot.captured, 0, capturedLength);
+    }
+
+    // Publish
+    slotSequences.set(index, sequence);
+  }
+
+  /**
+   * @return The number of entries dropped because their slot was still being written
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * @return The entries currently held in the order they were recorded (any being overwritten are skipped)
+   */
+  public List<WireTraceEntry> snapshot() {
+
+    long end = nextSequence.get();
+    long start = Math.max(0, end - slots.length);
+
+    List<WireTraceEntry> entries = Lists.newArrayListWithCapacity((int) (end - start));
+    for (long sequence = start; sequence < end; sequence++) {
+      int index = (int) sequence & mask;
+      if (slotSequences.get(index) != sequence) {
+        continue;
+      }
+
+      Slot slot = slots[index];
+
+      long nanos = slot.nanos;
+      WireTraceType type = slot.type;
+      int headerCode = slot.headerCode;
+      int length = slot.length;
+      int capturedLength = slot.capturedLength;
+      byte[] captured = new byte[capturedLength];
+      System.arraycopy(slot.captured, 0, captured, 0, capturedLength);
+
+      // Check that the slot was not reused while reading (a compare-and-set rather than a plain get so that the
+      // reads above cannot be reordered after the check)
+      if (!slotSequences.compareAndSet(index, sequence, sequence)) {
+        continue;
+      }
+
+      entries.add(new WireTraceEntry(sequence, nanos, type, headerCode, length, captured));
+    }
+
+    return entries;
+  }
+
+  /**
+   * <p>Write the current entries to the log at warn level</p>
+   *
+   * @param reason The reason for the dump (e.g. "DEVICE_FAILURE")
+   */
+  public void dumpToLog(String reason) {
+
+    List<WireTraceEntry> entries = snapshot();
+    log.warn("Wire trace ({}): {} entries", reason, entries.size());
+    for (WireTraceEntry entry : entries) {
+      log.warn("{}", entry);
+    }
+  }
+
+  /**
+   * <p>Discard all entries</p>
+   */
+  public void clear() {
+    for (int i = 0; i < slots.length; i++) {
+      long current = slotSequences.get(i);
+      if (current != IN_PROGRESS) {
+        // A slot being written will be published after the clear
+        slotSequences.compareAndSet(i, current, IN_PROGRESS - 1);
+      }
+    }
+  }
+
+  /**
+   * Preallocated storage for one entry
+   */
+  private static class Slot {
+
+    private long nanos;
+    private WireTraceType type;
+    private int headerCode;
+    private int length;
+    private int capturedLength;
+    private final byte[] captured = new byte[CAPTURE_SIZE];
+  }
+
+}
@@ -0,0 +1,85 @@
+package uk.co.bsol.trezorj.core.wire;
+
+/**
+ * <p>Value object to provide the following to wire trace dumps:</p>
+ * <ul>
+ * <li>A single traced transfer with its metadata and the captured leading bytes</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ *
+ */
+public class WireTraceEntry {
+
+  private final long sequence;
+  private final long nanos;
+  private final WireTraceType type;
+  private final int headerCode;
+  private final int length;
+  private final byte[] captured;
+
+  /**
+   * @param sequence   The position of the entry in the trace (starting at 0)
+   * @param nanos      The system nano time of the transfer
+   * @param type       The type
+   * @param headerCode The protocol header code (-1 if not known at this layer)
+   * @param length     The full length of the transfer
+   * @param captured   The leading bytes (at most {@link WireTrace#CAPTURE_SIZE})
+   */
+  public WireTraceEntry(long sequence, long nanos, WireTraceType type, int headerCode, int length, byte[] captured) {
+    this.sequence = sequence;
+    this.nanos = nanos;
+    this.type = type;
+    this.headerCode = headerCode;
+    this.length = length;
+    this.captured = captured;
+  }
+
+  public long getSequence() {
+    return sequence;
+  }
+
+  public long getNanos() {
+    return nanos;
+  }
+
+  public WireTraceType getType() {
+    return type;
+  }
+
+  public int getHeaderCode() {
+    return headerCode;
+  }
+
+  /**
+   * @return The full length of the transfer (may be more than the captured bytes)
+   */
+  public int getLength() {
+    return length;
+  }
+
+  public byte[] getCaptured() {
+    return captured;
+  }
+
+  @Override
+  public String toString() {
+
+    StringBuilder builder = new StringBuilder(64 + captured.length * 2)
+      .append('#').append(sequence)
+      .append(' ').append(type.name())
+      .append(" header=").append(headerCode)
+      .append(" length=").append(length)
+      .append(' ');
+
+    for (byte b : captured) {
+      builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+      builder.append(Character.forDigit(b & 0xf, 16));
+    }
+    if (captured.length < length) {
+      builder.append("...");
+    }
+
+    return builder.toString();
+  }
+}
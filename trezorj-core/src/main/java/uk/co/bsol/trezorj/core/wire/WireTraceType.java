@@ -0,0 +1,47 @@
+package uk.co.bsol.trezorj.core.wire;
+
+/**
+ * <p>Enum to provide the following to the wire trace:</p>
+ * <ul>
+ * <li>The layer and direction of a traced transfer</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ *
+ */
+public enum WireTraceType {
+
+  /**
+   * A complete protocol frame written by the host (header code and length only)
+   */
+  FRAME_OUT,
+
+  /**
+   * A complete protocol frame read by the host (with its detail)
+   */
+  FRAME_IN,
+
+  /**
+   * A HID report written to the device
+   */
+  HID_OUT,
+
+  /**
+   * A HID report read from the device
+   */
+  HID_IN,
+
+  /**
+   * A HID feature report sent to the device
+   */
+  FEATURE_OUT,
+
+  /**
+   * A HID feature report received from the device
+   */
+  FEATURE_IN,
+
+  // End of enum
+  ;
+
+}
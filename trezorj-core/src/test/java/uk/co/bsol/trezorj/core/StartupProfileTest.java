@@ -0,0 +1,22 @@
+package uk.co.bsol.trezorj.core;
+
+import org.junit.Test;
+import uk.co.bsol.trezorj.core.utils.SharedSecureRandom;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class StartupProfileTest {
+
+  @Test
+  public void testPrewarmWithoutNativeHID() throws Exception {
+
+    // Act
+    boolean isAvailable = StartupProfile.prewarm(false).get();
+
+    // Assert
+    assertThat(isAvailable).isTrue();
+    assertThat(SharedSecureRandom.isSeeded()).isTrue();
+
+  }
+
+}
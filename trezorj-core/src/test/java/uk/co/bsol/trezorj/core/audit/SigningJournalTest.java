@@ -0,0 +1,263 @@
+package uk.co.bsol.trezorj.core.audit;
+
+import com.google.bitcoin.core.Transaction;
+import com.google.common.collect.Lists;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.co.bsol.trezorj.core.clients.BlockingTrezorClient;
+import uk.co.bsol.trezorj.core.clients.TrezorClients;
+import uk.co.bsol.trezorj.core.emulators.ReactiveTrezorEmulator;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.trezors.ScriptedTrezor;
+import uk.co.bsol.trezorj.core.utils.FakeTransactions;
+import uk.co.bsol.trezorj.core.utils.VirtualClock;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class SigningJournalTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testAppendRolloverAndRead() throws Exception {
+
+    // Arrange
+    File directory = temporaryFolder.newFolder("journal");
+    SigningJournal testObject = SigningJournal.newInstance(directory, 4096, 1000);
+
+    // Act
+    for (int i = 0; i < 50; i++) {
+      assertThat(testObject.append(newRecord(i))).isEqualTo(i);
+    }
+    testObject.close();
+
+    // Reopening continues the sequence
+    testObject = SigningJournal.newInstance(directory, 4096, 1000);
+    assertThat(testObject.append(newRecord(50))).isEqualTo(50);
+    testObject.close();
+
+    List<SigningRecord> records = readAll(directory);
+
+    // Assert
+    assertThat(SigningJournalReader.listSegments(directory).size()).isGreaterThan(1);
+    assertThat(records).hasSize(51);
+    for (int i = 0; i < records.size(); i++) {
+      SigningRecord record = records.get(i);
+      assertThat(record.getSequence()).isEqualTo(i);
+      assertThat(record.getDeviceId()).isEqualTo("device-" + i);
+      assertThat(record.isSigned()).isEqualTo(i % 2 == 0);
+      assertThat(record.getInputs()).hasSize(1);
+      assertThat(record.getInputs().get(0).getAmount()).isEqualTo(1000 + i);
+      assertThat(record.getInputs().get(0).getAddressNList()).containsExactly(0, i);
+      assertThat(record.getOutputs().get(0).getAddress()).isEqualTo("1MKw8vWxvBnaBcrL2yXvZceqyRMoeG2kRn");
+      assertThat(record.getSignatures()).hasSize(1);
+      assertThat(record.getSerializedTx().toStringUtf8()).isEqualTo("tx-" + i);
+    }
+
+  }
+
+  @Test
+  public void testFlushWaitsForBackgroundForce() throws Exception {
+
+    // Arrange (the background force runs almost continuously)
+    File directory = temporaryFolder.newFolder("flushed");
+    SigningJournal testObject = SigningJournal.newInstance(directory, 64 * 1024, 1);
+
+    // Act and Assert (a flush never returns before its records are on disk)
+    for (int i = 0; i < 200; i++) {
+      long sequence = testObject.append(newRecord(i));
+      testObject.flush();
+      assertThat(testObject.getForcedSequence()).isGreaterThan(sequence);
+    }
+    testObject.close();
+
+  }
+
+  @Test
+  public void testTornRecordIsDiscardedOnRecovery() throws Exception {
+
+    // Arrange
+    File directory = temporaryFolder.newFolder("journal");
+    SigningJournal testObject = SigningJournal.newInstance(directory, 64 * 1024, 1000);
+    for (int i = 0; i < 3; i++) {
+      testObject.append(newRecord(i));
+    }
+    testObject.close();
+
+    // Simulate a crash part way through a fourth record (length written but the body is incomplete)
+    File segmentFile = SigningJournalReader.listSegments(directory).get(0);
+    int end = findEnd(directory);
+    RandomAccessFile file = new RandomAccessFile(segmentFile, "rw");
+    file.seek(end);
+    file.writeInt(200);
+    file.writeInt(12345);
+    file.writeLong(3);
+    file.close();
+
+    // Act
+    testObject = SigningJournal.newInstance(directory, 64 * 1024, 1000);
+    long sequence = testObject.append(newRecord(3));
+    testObject.close();
+
+    // Assert
+    assertThat(sequence).isEqualTo(3);
+    List<SigningRecord> records = readAll(directory);
+    assertThat(records).hasSize(4);
+    assertThat(records.get(3).getDeviceId()).isEqualTo("device-3");
+
+  }
+
+  @Test
+  public void testSignTxIsJournaled() throws Exception {
+
+    // Arrange
+    File directory = temporaryFolder.newFolder("journal");
+    SigningJournal journal = SigningJournal.newInstance(directory);
+
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.start();
+
+    BlockingTrezorClient client = TrezorClients.newBlockingSocketInstance("localhost", emulator.getPort(), TrezorClients.newSessionId());
+    client.setSigningJournal(journal);
+    client.connect();
+
+    Transaction tx = FakeTransactions.newMainNetFakeTx(
+      FakeTransactions.getElectrumAddressN(new int[]{0, 0}),
+      FakeTransactions.getElectrumAddressN(new int[]{0, 1}),
+      FakeTransactions.asMainNetAddress("1MKw8vWxvBnaBcrL2yXvZceqyRMoeG2kRn"),
+      BigInteger.TEN,
+      BigInteger.ONE
+    );
+
+    // Act
+    assertThat(client.signTx(tx).isPresent()).isTrue();
+    journal.close();
+
+    client.close();
+    emulator.stop();
+
+    // Assert
+    List<SigningRecord> records = readAll(directory);
+    assertThat(records).hasSize(1);
+
+    SigningRecord record = records.get(0);
+    assertThat(record.isSigned()).isTrue();
+    assertThat(record.getDeviceId()).isEqualTo(client.getDeviceId());
+    assertThat(record.getDeviceUuid().isEmpty()).isFalse();
+    assertThat(record.getInputs()).hasSize(tx.getInputs().size());
+    assertThat(record.getOutputs()).hasSize(tx.getOutputs().size());
+    assertThat(record.getSignatures()).hasSize(tx.getInputs().size());
+    assertThat(record.getSerializedTx().isEmpty()).isFalse();
+    assertThat(record.getDurationNanos()).isGreaterThan(0);
+
+  }
+
+  @Test
+  public void testDeviceUuidIsOnlyAskedOnce() throws Exception {
+
+    // Arrange (a device that never answers, on a clock that runs its timeouts at once)
+    File directory = temporaryFolder.newFolder("journal");
+    SigningJournal journal = SigningJournal.newInstance(directory);
+
+    VirtualClock clock = new VirtualClock();
+    clock.setAutoAdvanceTimeouts(true);
+    ScriptedTrezor device = new ScriptedTrezor();
+
+    BlockingTrezorClient client = TrezorClients.newBlockingInstance(device, TrezorClients.newSessionId());
+    client.setClock(clock);
+    client.setSigningJournal(journal);
+    client.connect();
+
+    Transaction tx = FakeTransactions.newMainNetFakeTx(
+      FakeTransactions.getElectrumAddressN(new int[]{0, 0}),
+      FakeTransactions.getElectrumAddressN(new int[]{0, 1}),
+      FakeTransactions.asMainNetAddress("1MKw8vWxvBnaBcrL2yXvZceqyRMoeG2kRn"),
+      BigInteger.TEN,
+      BigInteger.ONE
+    );
+
+    // Act
+    assertThat(client.signTx(tx).isPresent()).isFalse();
+    assertThat(client.signTx(tx).isPresent()).isFalse();
+    journal.close();
+    client.close();
+
+    // Assert (the missing UUID is remembered rather than asked for again)
+    int uuidRequests = 0;
+    for (Message message : device.getReceived()) {
+      if (message instanceof TrezorMessage.GetUUID) {
+        uuidRequests++;
+      }
+    }
+    assertThat(uuidRequests).isEqualTo(1);
+
+    List<SigningRecord> records = readAll(directory);
+    assertThat(records).hasSize(2);
+    assertThat(records.get(1).getDeviceUuid().isEmpty()).isTrue();
+
+  }
+
+  private static SigningRecord newRecord(int i) {
+
+    return SigningRecord.newBuilder()
+      .setDeviceId("device-" + i)
+      .setDeviceUuid(ByteString.copyFromUtf8("uuid"))
+      .addInput(TrezorMessage.TxInput.newBuilder()
+        .setIndex(0)
+        .setAmount(1000 + i)
+        .setPrevHash(ByteString.copyFrom(new byte[32]))
+        .setPrevIndex(1)
+        .addAddressN(0)
+        .addAddressN(i)
+        .build())
+      .addOutput(TrezorMessage.TxOutput.newBuilder()
+        .setIndex(0)
+        .setAmount(900 + i)
+        .setAddress("1MKw8vWxvBnaBcrL2yXvZceqyRMoeG2kRn")
+        .setScriptType(TrezorMessage.ScriptType.PAYTOADDRESS)
+        .build())
+      .setSignature(0, ByteString.copyFrom(new byte[71]))
+      .appendSerializedTx(ByteString.copyFromUtf8("tx-"))
+      .appendSerializedTx(ByteString.copyFromUtf8(String.valueOf(i)))
+      .build(i % 2 == 0);
+  }
+
+  private static List<SigningRecord> readAll(File directory) throws Exception {
+
+    List<SigningRecord> records = Lists.newArrayList();
+    SigningJournalReader reader = SigningJournalReader.newInstance(directory);
+    while (reader.hasNext()) {
+      records.add(reader.next());
+    }
+    reader.close();
+    return records;
+  }
+
+  /**
+   * @return The offset after the last record in the first segment
+   */
+  private static int findEnd(File directory) throws Exception {
+
+    RandomAccessFile file = new RandomAccessFile(SigningJournalReader.listSegments(directory).get(0), "r");
+    int position = SigningJournalReader.HEADER_SIZE;
+    file.seek(position);
+    int length = file.readInt();
+    while (length != 0) {
+      position += SigningJournalReader.RECORD_HEADER_SIZE + length;
+      file.seek(position);
+      length = file.readInt();
+    }
+    file.close();
+    return position;
+  }
+
+}
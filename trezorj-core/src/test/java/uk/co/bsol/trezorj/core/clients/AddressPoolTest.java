@@ -0,0 +1,150 @@
+package uk.co.bsol.trezorj.core.clients;
+
+import com.google.common.collect.Lists;
+import com.google.protobuf.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.bsol.trezorj.core.emulators.EmulatorHandler;
+import uk.co.bsol.trezorj.core.emulators.EmulatorHandlers;
+import uk.co.bsol.trezorj.core.emulators.EmulatorSession;
+import uk.co.bsol.trezorj.core.emulators.ReactiveTrezorEmulator;
+import uk.co.bsol.trezorj.core.events.TrezorEvents;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.trezors.ScriptedTrezor;
+import uk.co.bsol.trezorj.core.utils.VirtualClock;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class AddressPoolTest {
+
+  private ReactiveTrezorEmulator emulator;
+  private BlockingTrezorClient client;
+
+  @Before
+  public void setUp() throws Exception {
+
+    final EmulatorHandler addressHandler = EmulatorHandlers.newGetAddressHandler();
+    final AtomicBoolean hasRefused = new AtomicBoolean(false);
+
+    emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.addHandler(MessageType.GET_ADDRESS, new EmulatorHandler() {
+      @Override
+      public List<Message> handle(EmulatorSession session, Message request) {
+        // Refuse key pair number 6 the first time it is requested
+        if (((TrezorMessage.GetAddress) request).getAddressN(1) == 6 && hasRefused.compareAndSet(false, true)) {
+          return EmulatorSession.newFailureResponse("Busy");
+        }
+        return addressHandler.handle(session, request);
+      }
+    });
+    emulator.start();
+
+    client = TrezorClients.newBlockingSocketInstance("localhost", emulator.getPort(), TrezorClients.newSessionId());
+    client.connect();
+  }
+
+  @After
+  public void tearDown() {
+    client.close();
+    emulator.stop();
+  }
+
+  @Test
+  public void testPartialRefillLeavesNoGaps() throws Exception {
+
+    // Arrange
+    AddressPool testObject = new AddressPool(client, 0, 0, 1, 10);
+
+    // Act
+    testObject.start();
+    awaitRefill(testObject);
+
+    // Assert (the Failure is not counted and the addresses after it are dropped)
+    assertThat(testObject.size()).isEqualTo(6);
+    assertThat(testObject.getNextValue()).isEqualTo(6);
+
+    List<String> taken = Lists.newArrayList();
+    for (int i = 0; i < 7; i++) {
+      taken.add(testObject.take(5, TimeUnit.SECONDS).get());
+    }
+    awaitRefill(testObject);
+
+    // The second refill resumes from the refused key pair number
+    assertThat(testObject.size()).isEqualTo(9);
+    assertThat(testObject.getNextValue()).isEqualTo(16);
+
+    testObject.close();
+
+    for (int i = 0; i < taken.size(); i++) {
+      TrezorMessage.Address expected = (TrezorMessage.Address) client.getAddress(0, i).protocolMessage().get();
+      assertThat(taken.get(i)).isEqualTo(expected.getAddress());
+    }
+
+  }
+
+  @Test
+  public void testFailedRefillBacksOff() throws Exception {
+
+    // Arrange (a device that refuses every request)
+    VirtualClock clock = new VirtualClock();
+    ScriptedTrezor device = new ScriptedTrezor() {
+      @Override
+      protected void respond(Message message) {
+        emit(TrezorEvents.newProtocolEvent(MessageType.FAILURE, TrezorMessage.Failure.getDefaultInstance()));
+      }
+    };
+    BlockingTrezorClient refusingClient = TrezorClients.newBlockingInstance(device, TrezorClients.newSessionId());
+    refusingClient.connect();
+
+    AddressPool testObject = new AddressPool(refusingClient, 0, 0, 1, 1);
+    testObject.setClock(clock);
+
+    // Act
+    testObject.start();
+    awaitIdle(testObject);
+    int requestCount = device.getReceived().size();
+
+    // Assert (callers within the backoff do not trigger another refill)
+    assertThat(requestCount).isEqualTo(1);
+    for (int i = 0; i < 5; i++) {
+      assertThat(testObject.take(0, TimeUnit.SECONDS).isPresent()).isFalse();
+      awaitIdle(testObject);
+    }
+    assertThat(device.getReceived().size()).isEqualTo(1);
+
+    // Once the backoff has passed the next caller retries
+    clock.advance(AddressPool.INITIAL_BACKOFF_MILLIS, TimeUnit.MILLISECONDS);
+    testObject.take(0, TimeUnit.SECONDS);
+    awaitIdle(testObject);
+    assertThat(device.getReceived().size()).isEqualTo(2);
+
+    // And the backoff doubles
+    clock.advance(AddressPool.INITIAL_BACKOFF_MILLIS, TimeUnit.MILLISECONDS);
+    testObject.take(0, TimeUnit.SECONDS);
+    awaitIdle(testObject);
+    assertThat(device.getReceived().size()).isEqualTo(2);
+
+    testObject.close();
+    refusingClient.close();
+
+  }
+
+  private static void awaitIdle(AddressPool pool) throws InterruptedException {
+    for (int i = 0; i < 500 && pool.isRefilling(); i++) {
+      Thread.sleep(10);
+    }
+  }
+
+  private static void awaitRefill(AddressPool pool) throws InterruptedException {
+    for (int i = 0; i < 500 && (pool.isRefilling() || pool.size() == 0); i++) {
+      Thread.sleep(10);
+    }
+  }
+
+}
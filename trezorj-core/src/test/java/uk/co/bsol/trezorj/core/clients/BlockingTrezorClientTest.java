@@ -1,15 +1,39 @@
 package uk.co.bsol.trezorj.core.clients;
 
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.Transaction;
+import com.google.common.base.Optional;
+import com.google.common.collect.Queues;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
 import org.junit.Test;
 import uk.co.bsol.trezorj.core.TrezorEvent;
 import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.emulators.EmulatorHandler;
+import uk.co.bsol.trezorj.core.emulators.EmulatorHandlers;
+import uk.co.bsol.trezorj.core.emulators.EmulatorSession;
+import uk.co.bsol.trezorj.core.emulators.ReactiveTrezorEmulator;
+import uk.co.bsol.trezorj.core.emulators.SignTxHandler;
 import uk.co.bsol.trezorj.core.emulators.TrezorEmulator;
 import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.utils.FakeTransactions;
+import uk.co.bsol.trezorj.core.utils.VirtualClock;
 
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
 
 public class BlockingTrezorClientTest {
 
@@ -19,13 +43,16 @@ public class BlockingTrezorClientTest {
     // Arrange
     ByteString sessionId = TrezorClients.newSessionId();
 
+    // Scripted delays pass in virtual time
+    TrezorEmulator emulator = TrezorEmulator.newSocketTrezorEmulator(0);
+    emulator.setClock(new VirtualClock());
+
     BlockingTrezorClient testObject = TrezorClients.newBlockingSocketInstance(
       "localhost",
-      3000,
+      emulator.getPort(),
       sessionId
     );
 
-    TrezorEmulator emulator = TrezorEmulator.newDefaultTrezorEmulator();
     emulator.start();
 
     // Act
@@ -49,4 +76,199 @@ public class BlockingTrezorClientTest {
     testObject.close();
 
   }
+
+  @Test
+  public void testGetAddresses() throws Exception {
+
+    // Arrange (the addresses are answered per request so the pipeline needs no scripted delays)
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.addHandler(MessageType.GET_ADDRESS, new EmulatorHandler() {
+      @Override
+      public List<Message> handle(EmulatorSession session, Message request) {
+        return Collections.<Message>singletonList(TrezorMessage.Address
+          .newBuilder()
+          .setAddress("address" + ((TrezorMessage.GetAddress) request).getAddressN(1))
+          .build());
+      }
+    });
+    emulator.start();
+
+    BlockingTrezorClient testObject = TrezorClients.newBlockingSocketInstance(
+      "localhost",
+      emulator.getPort(),
+      TrezorClients.newSessionId()
+    );
+    testObject.connect();
+
+    // Verify that the device connected
+    TrezorEvent event1 = testObject.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
+    assertThat(event1.eventType()).isEqualTo(TrezorEventType.DEVICE_CONNECTED);
+
+    BlockingQueue<TrezorEvent> sink = Queues.newLinkedBlockingQueue();
+
+    // Act
+    int addressCount = testObject.getAddresses(0, 0, 3, sink);
+
+    // Assert
+    assertThat(addressCount).isEqualTo(3);
+    assertThat(sink.size()).isEqualTo(3);
+
+    // Verify the responses are in request order
+    for (int i = 0; i < 3; i++) {
+      TrezorEvent event = sink.take();
+      assertThat(event.protocolMessageType().get()).isEqualTo(MessageType.ADDRESS);
+      assertThat(((TrezorMessage.Address) event.protocolMessage().get()).getAddress()).isEqualTo("address" + i);
+    }
+
+    testObject.close();
+    emulator.stop();
+
+  }
+
+  @Test
+  public void testSignTx() throws Exception {
+
+    // Arrange
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.start();
+
+    BlockingTrezorClient testObject = TrezorClients.newBlockingSocketInstance(
+      "localhost",
+      emulator.getPort(),
+      TrezorClients.newSessionId()
+    );
+    testObject.connect();
+    testObject.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
+
+    Address ourReceivingAddress = FakeTransactions.getElectrumAddressN(new int[]{0, 0});
+    Address ourChangeAddress = FakeTransactions.getElectrumAddressN(new int[]{0, 1});
+    Address random2Address = FakeTransactions.asMainNetAddress("1MKw8vWxvBnaBcrL2yXvZceqyRMoeG2kRn");
+
+    Transaction tx = FakeTransactions.newMainNetFakeTx(
+      ourReceivingAddress,
+      ourChangeAddress,
+      random2Address,
+      BigInteger.TEN,
+      BigInteger.ONE
+    );
+
+    // Act
+    Optional<Transaction> signedTx = testObject.signTx(tx);
+
+    // Assert
+    assertThat(signedTx.isPresent()).isTrue();
+
+    // The client remains usable after the conversation
+    assertThat(testObject.ping().protocolMessageType().get()).isEqualTo(MessageType.SUCCESS);
+
+    testObject.close();
+    emulator.stop();
+
+  }
+
+  @Test
+  public void testSignTxFailure() throws Exception {
+
+    // Arrange
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    SignTxHandler.addTo(emulator).setFailure(TrezorMessage.RequestType.TXOUTPUT, 1);
+    emulator.start();
+
+    BlockingTrezorClient testObject = TrezorClients.newBlockingSocketInstance(
+      "localhost",
+      emulator.getPort(),
+      TrezorClients.newSessionId()
+    );
+    testObject.connect();
+    testObject.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
+
+    Transaction tx = FakeTransactions.newMainNetFakeTx(
+      FakeTransactions.getElectrumAddressN(new int[]{0, 0}),
+      FakeTransactions.getElectrumAddressN(new int[]{0, 1}),
+      FakeTransactions.asMainNetAddress("1MKw8vWxvBnaBcrL2yXvZceqyRMoeG2kRn"),
+      BigInteger.TEN,
+      BigInteger.ONE
+    );
+
+    // Act
+    Optional<Transaction> signedTx = testObject.signTx(tx);
+
+    // Assert
+    assertThat(signedTx.isPresent()).isFalse();
+
+    testObject.close();
+    emulator.stop();
+
+  }
+
+  @Test
+  public void testReconnectReplaysIdempotentRequest() throws Exception {
+
+    // Arrange (the first emulator never answers a Ping)
+    final CountDownLatch pingReceived = new CountDownLatch(1);
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.addHandler(MessageType.PING, new EmulatorHandler() {
+      @Override
+      public List<Message> handle(EmulatorSession session, Message request) {
+        pingReceived.countDown();
+        return Collections.emptyList();
+      }
+    });
+    emulator.start();
+    int port = emulator.getPort();
+
+    final BlockingTrezorClient testObject = TrezorClients.newBlockingSocketInstance(
+      "localhost",
+      port,
+      TrezorClients.newSessionId()
+    );
+    testObject.setReconnectPolicy(new ReconnectPolicy(20, 50, 20));
+    testObject.connect();
+    testObject.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
+
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    Future<TrezorEvent> pinged = executorService.submit(new Callable<TrezorEvent>() {
+      @Override
+      public TrezorEvent call() throws Exception {
+        return testObject.ping();
+      }
+    });
+
+    // Act (kill the emulator mid-request and bring up a replacement on the same port)
+    assertThat(pingReceived.await(5, TimeUnit.SECONDS)).isTrue();
+    emulator.stop();
+
+    final EmulatorHandler pingHandler = EmulatorHandlers.newPingHandler();
+    final AtomicInteger replacementPingCount = new AtomicInteger();
+    ReactiveTrezorEmulator replacement = ReactiveTrezorEmulator.newServerEmulator(port);
+    replacement.addHandler(MessageType.PING, new EmulatorHandler() {
+      @Override
+      public List<Message> handle(EmulatorSession session, Message request) {
+        replacementPingCount.incrementAndGet();
+        return pingHandler.handle(session, request);
+      }
+    });
+    replacement.start();
+
+    // Assert (the session is resumed and the Ping replayed on the new connection)
+    assertThat(pinged.get(10, TimeUnit.SECONDS).protocolMessageType().get()).isEqualTo(MessageType.SUCCESS);
+    assertThat(replacementPingCount.get()).isEqualTo(1);
+    assertThat(replacement.getConnectionCount()).isEqualTo(1);
+    assertThat(testObject.ping().protocolMessageType().get()).isEqualTo(MessageType.SUCCESS);
+
+    // A failed reconnect leaves the client fully closed
+    testObject.setReconnectPolicy(new ReconnectPolicy(10, 10, 2));
+    replacement.stop();
+    try {
+      testObject.ping();
+      fail("Expected the client to be closed");
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+    testObject.close();
+
+    executorService.shutdownNow();
+
+  }
+
 }
@@ -0,0 +1,138 @@
+package uk.co.bsol.trezorj.core.clients;
+
+import com.google.common.base.Optional;
+import com.google.protobuf.Message;
+import org.junit.After;
+import org.junit.Test;
+import uk.co.bsol.trezorj.core.emulators.EmulatorHandler;
+import uk.co.bsol.trezorj.core.emulators.EmulatorSession;
+import uk.co.bsol.trezorj.core.emulators.ReactiveTrezorEmulator;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.utils.SharedSecureRandom;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class EntropyPoolTest {
+
+  private ReactiveTrezorEmulator emulator;
+  private BlockingTrezorClient client;
+  private EntropyPool testObject;
+
+  @After
+  public void tearDown() {
+    if (testObject != null) {
+      testObject.close();
+    }
+    if (client != null) {
+      client.close();
+    }
+    if (emulator != null) {
+      emulator.stop();
+    }
+  }
+
+  @Test
+  public void testRefillFromDevice() throws Exception {
+
+    // Arrange
+    startEmulator(false);
+    testObject = new EntropyPool(Optional.of(client), 256, 4);
+
+    // Act
+    testObject.start();
+    awaitAvailable(testObject, 256);
+
+    byte[] bytes = new byte[40];
+    testObject.nextBytes(bytes);
+
+    // Assert (a partly used chunk is discarded and the pool stays above the low water mark)
+    assertThat(SharedSecureRandom.isSeeded()).isTrue();
+    assertThat(testObject.available()).isEqualTo(256 - 2 * EntropyPool.CHUNK_SIZE);
+    assertThat(isZero(bytes)).isFalse();
+
+  }
+
+  @Test
+  public void testDeviceFailureUsesSecureRandomOnly() throws Exception {
+
+    // Arrange
+    final AtomicInteger requestCount = startEmulator(true);
+    testObject = new EntropyPool(Optional.of(client), 128, 2);
+
+    // Act
+    testObject.start();
+    awaitAvailable(testObject, 128);
+
+    byte[] bytes = new byte[32];
+    testObject.nextBytes(bytes);
+
+    // Assert (the block is still added to the pool)
+    assertThat(requestCount.get()).isEqualTo(1);
+    assertThat(testObject.available()).isEqualTo(128 - EntropyPool.CHUNK_SIZE);
+    assertThat(isZero(bytes)).isFalse();
+
+  }
+
+  @Test
+  public void testExhaustedPoolFallsBack() throws Exception {
+
+    // Arrange (not started so the pool is empty)
+    testObject = new EntropyPool(Optional.<BlockingTrezorClient>absent(), 64, 2);
+    byte[] bytes = new byte[100];
+
+    // Act
+    testObject.nextBytes(bytes);
+
+    // Assert (the caller is served and a refill is triggered)
+    assertThat(isZero(bytes)).isFalse();
+    awaitAvailable(testObject, 64);
+
+  }
+
+  /**
+   * @param isFailing True if the device should refuse every GetEntropy
+   *
+   * @return The number of GetEntropy requests seen by the emulator
+   */
+  private AtomicInteger startEmulator(final boolean isFailing) throws Exception {
+
+    final AtomicInteger requestCount = new AtomicInteger();
+
+    emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    if (isFailing) {
+      emulator.addHandler(MessageType.GET_ENTROPY, new EmulatorHandler() {
+        @Override
+        public List<Message> handle(EmulatorSession session, Message request) {
+          requestCount.incrementAndGet();
+          return EmulatorSession.newFailureResponse("Entropy unavailable");
+        }
+      });
+    }
+    emulator.start();
+
+    client = TrezorClients.newBlockingSocketInstance("localhost", emulator.getPort(), TrezorClients.newSessionId());
+    client.connect();
+
+    return requestCount;
+  }
+
+  private static void awaitAvailable(EntropyPool pool, int available) throws InterruptedException {
+    for (int i = 0; i < 500 && pool.available() != available; i++) {
+      Thread.sleep(10);
+    }
+    assertThat(pool.available()).isEqualTo(available);
+  }
+
+  private static boolean isZero(byte[] bytes) {
+    for (byte b : bytes) {
+      if (b != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
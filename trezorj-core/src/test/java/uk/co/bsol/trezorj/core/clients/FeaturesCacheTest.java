@@ -0,0 +1,100 @@
+package uk.co.bsol.trezorj.core.clients;
+
+import com.google.common.base.Predicate;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import org.junit.Test;
+import uk.co.bsol.trezorj.core.emulators.EmulatorHandler;
+import uk.co.bsol.trezorj.core.emulators.EmulatorHandlers;
+import uk.co.bsol.trezorj.core.emulators.EmulatorSession;
+import uk.co.bsol.trezorj.core.emulators.ReactiveTrezorEmulator;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class FeaturesCacheTest {
+
+  @Test
+  public void testEntriesAreScopedBySession() throws Exception {
+
+    // Arrange
+    FeaturesCache testObject = new FeaturesCache();
+    ByteString sessionId = TrezorClients.newSessionId();
+
+    // Act
+    testObject.put("device-1", newFeatures(sessionId, false));
+    testObject.put("device-2", newFeatures(sessionId, true));
+
+    // Assert
+    assertThat(testObject.get("device-1", sessionId).isPresent()).isTrue();
+    assertThat(testObject.get("device-1", TrezorClients.newSessionId()).isPresent()).isFalse();
+    assertThat(testObject.get("device-3", sessionId).isPresent()).isFalse();
+
+    assertThat(testObject.findDeviceIds(new Predicate<TrezorMessage.Features>() {
+      @Override
+      public boolean apply(TrezorMessage.Features features) {
+        return !features.getHasOtp();
+      }
+    })).containsExactly("device-1");
+
+    testObject.invalidate("device-1");
+    assertThat(testObject.get("device-1", sessionId).isPresent()).isFalse();
+    assertThat(testObject.get("device-2", sessionId).isPresent()).isTrue();
+
+  }
+
+  @Test
+  public void testConnectionsToOneEmulatorAreSeparateDevices() throws Exception {
+
+    // Arrange
+    final EmulatorHandler initializeHandler = EmulatorHandlers.newInitializeHandler();
+    final AtomicInteger initializeCount = new AtomicInteger();
+
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.addHandler(MessageType.INITALIZE, new EmulatorHandler() {
+      @Override
+      public List<Message> handle(EmulatorSession session, Message request) {
+        initializeCount.incrementAndGet();
+        return initializeHandler.handle(session, request);
+      }
+    });
+    emulator.start();
+
+    // The same session ID on both connections
+    FeaturesCache featuresCache = new FeaturesCache();
+    ByteString sessionId = TrezorClients.newSessionId();
+    BlockingTrezorClient client1 = TrezorClients.newBlockingSocketInstance("localhost", emulator.getPort(), sessionId);
+    BlockingTrezorClient client2 = TrezorClients.newBlockingSocketInstance("localhost", emulator.getPort(), sessionId);
+    client1.setFeaturesCache(featuresCache);
+    client2.setFeaturesCache(featuresCache);
+    client1.connect();
+    client2.connect();
+
+    // Act
+    assertThat(client1.getFeatures().isPresent()).isTrue();
+    assertThat(client1.getFeatures().isPresent()).isTrue();
+    assertThat(client2.getFeatures().isPresent()).isTrue();
+
+    // Assert (the repeat on the first connection is local but the second connection asks its own device)
+    assertThat(client1.getDeviceId()).isNotEqualTo(client2.getDeviceId());
+    assertThat(initializeCount.get()).isEqualTo(2);
+
+    client1.close();
+    client2.close();
+    emulator.stop();
+
+  }
+
+  private static TrezorMessage.Features newFeatures(ByteString sessionId, boolean hasOtp) {
+    return TrezorMessage.Features
+      .newBuilder()
+      .setSessionId(sessionId)
+      .setHasOtp(hasOtp)
+      .build();
+  }
+
+}
@@ -0,0 +1,237 @@
+package uk.co.bsol.trezorj.core.clients;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.events.TrezorEvents;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.trezors.QueueListener;
+import uk.co.bsol.trezorj.core.trezors.ScriptedTrezor;
+import uk.co.bsol.trezorj.core.utils.VirtualClock;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class HeartbeatTest {
+
+  private VirtualClock clock;
+  private DelayingTrezor trezor;
+  private BlockingTrezorClient client;
+  private QueueListener listener;
+
+  @Before
+  public void setUp() {
+
+    // Fully virtual (the scripted device answers on this clock) so timeouts can advance too
+    clock = new VirtualClock();
+    clock.setAutoAdvanceTimeouts(true);
+    trezor = new DelayingTrezor(clock);
+    client = TrezorClients.newBlockingInstance(trezor, TrezorClients.newSessionId());
+    client.setClock(clock);
+    client.connect();
+
+    listener = new QueueListener();
+  }
+
+  @After
+  public void tearDown() {
+    client.close();
+  }
+
+  @Test
+  public void testSlowDeviceIsDegraded() throws Exception {
+
+    // Arrange
+    trezor.responseDelayMillis = 300;
+    Heartbeat testObject = new Heartbeat(client, 1000, 250, 3);
+    testObject.addListener(listener);
+
+    // Act
+    clock.advance(1, TimeUnit.SECONDS);
+    testObject.beat();
+    clock.advance(1, TimeUnit.SECONDS);
+    testObject.beat();
+
+    // Assert (raised once for the transition)
+    assertThat(testObject.isDegraded()).isTrue();
+    assertThat(testObject.isUnresponsive()).isFalse();
+    assertThat(trezor.pingCount).isEqualTo(2);
+    assertThat(listener.getTrezorEventQueue().poll().eventType()).isEqualTo(TrezorEventType.DEVICE_DEGRADED);
+    assertThat(listener.getTrezorEventQueue().poll()).isNull();
+
+  }
+
+  @Test
+  public void testSilentDeviceIsUnresponsive() throws Exception {
+
+    // Arrange
+    trezor.isSilent = true;
+    Heartbeat testObject = new Heartbeat(client, 1000, 250, 2);
+    testObject.addListener(listener);
+
+    // Act
+    clock.advance(1, TimeUnit.SECONDS);
+    testObject.beat();
+    assertThat(testObject.isUnresponsive()).isFalse();
+    testObject.beat();
+
+    // Assert (the client treats the dead link as lost and closes)
+    assertThat(testObject.isUnresponsive()).isTrue();
+    assertThat(listener.getTrezorEventQueue().poll().eventType()).isEqualTo(TrezorEventType.DEVICE_UNRESPONSIVE);
+    assertThat(client.pingIfIdle().get().eventType()).isEqualTo(TrezorEventType.DEVICE_DISCONNECTED);
+
+    // No further events once unresponsive
+    testObject.beat();
+    assertThat(listener.getTrezorEventQueue().poll()).isNull();
+    assertThat(trezor.pingCount).isEqualTo(2);
+
+  }
+
+  @Test
+  public void testClosedClientIsUnresponsive() throws Exception {
+
+    // Arrange
+    Heartbeat testObject = new Heartbeat(client, 1000, 250, 3);
+    testObject.addListener(listener);
+    client.close();
+
+    // Act
+    clock.advance(1, TimeUnit.SECONDS);
+    testObject.beat();
+
+    // Assert (no need to wait for three missed pings)
+    assertThat(testObject.isUnresponsive()).isTrue();
+    assertThat(listener.getTrezorEventQueue().poll().eventType()).isEqualTo(TrezorEventType.DEVICE_UNRESPONSIVE);
+    assertThat(trezor.pingCount).isEqualTo(0);
+
+  }
+
+  @Test
+  public void testBusyClientIsSkipped() throws Exception {
+
+    // Arrange (a conversation is held open by a device that has not answered yet)
+    clock.setAutoAdvance(false);
+    trezor.isSilent = true;
+    Heartbeat testObject = new Heartbeat(client, 1, 250, 1);
+    testObject.addListener(listener);
+
+    Thread conversation = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        client.getUUID();
+      }
+    });
+    conversation.start();
+    while (trezor.getReceived().isEmpty()) {
+      clock.advance(10, TimeUnit.MILLISECONDS);
+      Thread.sleep(1);
+    }
+
+    // Act
+    testObject.beat();
+
+    // Assert (no Ping is sent and nothing is counted as missed)
+    assertThat(trezor.pingCount).isEqualTo(0);
+    assertThat(testObject.isUnresponsive()).isFalse();
+    assertThat(listener.getTrezorEventQueue().poll()).isNull();
+
+    clock.advance(1, TimeUnit.SECONDS);
+    conversation.join(5000);
+    assertThat(conversation.isAlive()).isFalse();
+
+  }
+
+  @Test
+  public void testLatePingResponseIsDiscarded() throws Exception {
+
+    // Arrange (the Success for the heartbeat Ping arrives ahead of the next response)
+    trezor.isLate = true;
+    Heartbeat testObject = new Heartbeat(client, 1000, 250, 3);
+
+    // Act
+    clock.advance(1, TimeUnit.SECONDS);
+    testObject.beat();
+    TrezorEvent event = client.getUUID();
+
+    // Assert
+    assertThat(event.protocolMessageType().get()).isEqualTo(MessageType.UUID);
+
+  }
+
+  /**
+   * A device that answers Ping and GetUUID after a virtual delay, late or not at all
+   */
+  private static class DelayingTrezor extends ScriptedTrezor {
+
+    private final VirtualClock clock;
+
+    private volatile long responseDelayMillis = 0;
+    private volatile boolean isSilent = false;
+    private volatile boolean isLate = false;
+    private volatile int pingCount = 0;
+
+    // A response held back until the next request
+    private TrezorEvent lateEvent = null;
+
+    private DelayingTrezor(VirtualClock clock) {
+      this.clock = clock;
+    }
+
+    @Override
+    protected void respond(Message message) {
+
+      if (isSilent) {
+        if (message instanceof TrezorMessage.Ping) {
+          pingCount++;
+        }
+        return;
+      }
+
+      if (lateEvent != null) {
+        emit(lateEvent);
+        lateEvent = null;
+      }
+
+      final TrezorEvent event;
+      if (message instanceof TrezorMessage.Ping) {
+        pingCount++;
+        event = TrezorEvents.newProtocolEvent(MessageType.SUCCESS, TrezorMessage.Success.getDefaultInstance());
+        if (isLate) {
+          lateEvent = event;
+          isLate = false;
+          return;
+        }
+      } else {
+        event = TrezorEvents.newProtocolEvent(MessageType.UUID, TrezorMessage.UUID
+          .newBuilder()
+          .setUUID(ByteString.copyFromUtf8("scripted"))
+          .build());
+      }
+
+      if (responseDelayMillis == 0) {
+        emit(event);
+        return;
+      }
+
+      // Answer after a virtual delay while the client waits
+      new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            clock.sleep(responseDelayMillis, TimeUnit.MILLISECONDS);
+            emit(event);
+          } catch (InterruptedException e) {
+            // Test is over
+          }
+        }
+      }).start();
+    }
+  }
+
+}
@@ -0,0 +1,111 @@
+package uk.co.bsol.trezorj.core.clients;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.emulators.ReactiveTrezorEmulator;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class HedgedReaderTest {
+
+  @Test
+  public void testSlowReplicaIsHedged() throws Exception {
+
+    // Arrange
+    ReactiveTrezorEmulator slowEmulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    slowEmulator.setLatency(MessageType.PING, 600, TimeUnit.MILLISECONDS);
+    slowEmulator.start();
+    ReactiveTrezorEmulator fastEmulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    fastEmulator.start();
+
+    BlockingTrezorClient slowClient = TrezorClients.newBlockingSocketInstance("localhost", slowEmulator.getPort(), TrezorClients.newSessionId());
+    BlockingTrezorClient fastClient = TrezorClients.newBlockingSocketInstance("localhost", fastEmulator.getPort(), TrezorClients.newSessionId());
+    slowClient.connect();
+    fastClient.connect();
+
+    HedgedReader testObject = new HedgedReader(Lists.newArrayList(slowClient, fastClient), new HedgeBudget(0.1, 1), 50);
+
+    // Act
+    long startNanos = System.nanoTime();
+    TrezorEvent event = testObject.ping();
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+    // Assert
+    assertThat(event.protocolMessageType().get()).isEqualTo(MessageType.SUCCESS);
+    assertThat(elapsedMillis).isLessThan(400);
+    assertThat(testObject.getHedgeCount()).isEqualTo(1);
+    assertThat(testObject.getHedgeWinCount()).isEqualTo(1);
+    assertThat(testObject.getRoundTripStatistics(MessageType.PING).getSampleCount()).isEqualTo(1);
+
+    testObject.close();
+    slowClient.close();
+    fastClient.close();
+    slowEmulator.stop();
+    fastEmulator.stop();
+
+  }
+
+  @Test
+  public void testLosingReplicaTakesItsOwnResponse() throws Exception {
+
+    // Arrange
+    ReactiveTrezorEmulator slowEmulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    slowEmulator.setLatency(MessageType.PING, 300, TimeUnit.MILLISECONDS);
+    slowEmulator.start();
+    ReactiveTrezorEmulator fastEmulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    fastEmulator.start();
+
+    BlockingTrezorClient slowClient = TrezorClients.newBlockingSocketInstance("localhost", slowEmulator.getPort(), TrezorClients.newSessionId());
+    BlockingTrezorClient fastClient = TrezorClients.newBlockingSocketInstance("localhost", fastEmulator.getPort(), TrezorClients.newSessionId());
+    slowClient.connect();
+    fastClient.connect();
+
+    HedgedReader testObject = new HedgedReader(Lists.newArrayList(slowClient, fastClient), new HedgeBudget(0.1, 1), 50);
+
+    // Act (the slow replica loses the hedge then is asked something else)
+    TrezorEvent hedged = testObject.ping();
+    TrezorEvent next = slowClient.getUUID();
+
+    // Assert (the late Success is not taken as the answer to GetUUID)
+    assertThat(testObject.getHedgeWinCount()).isEqualTo(1);
+    assertThat(hedged.protocolMessageType().get()).isEqualTo(MessageType.SUCCESS);
+    assertThat(next.protocolMessageType().get()).isEqualTo(MessageType.UUID);
+
+    testObject.close();
+    slowClient.close();
+    fastClient.close();
+    slowEmulator.stop();
+    fastEmulator.stop();
+
+  }
+
+  @Test
+  public void testHedgeBudget() {
+
+    // Arrange
+    HedgeBudget testObject = new HedgeBudget(0.5, 2);
+
+    // Act
+    assertThat(testObject.tryAcquire()).isTrue();
+    assertThat(testObject.tryAcquire()).isTrue();
+    assertThat(testObject.tryAcquire()).isFalse();
+
+    testObject.deposit();
+    assertThat(testObject.tryAcquire()).isFalse();
+    testObject.deposit();
+
+    // Assert
+    assertThat(testObject.tryAcquire()).isTrue();
+
+    for (int i = 0; i < 10; i++) {
+      testObject.deposit();
+    }
+    assertThat(testObject.getAvailable()).isEqualTo(2);
+
+  }
+
+}
@@ -4,8 +4,10 @@ import com.google.protobuf.ByteString;
 import org.junit.Test;
 import uk.co.bsol.trezorj.core.TrezorEvent;
 import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.emulators.ReactiveTrezorEmulator;
 import uk.co.bsol.trezorj.core.emulators.TrezorEmulator;
 import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.utils.VirtualClock;
 
 import java.util.concurrent.TimeUnit;
 
@@ -19,13 +21,16 @@ public class NonBlockingTrezorClientTest {
     // Arrange
     ByteString sessionId = TrezorClients.newSessionId();
 
+    // Scripted delays pass in virtual time
+    TrezorEmulator emulator = TrezorEmulator.newSocketTrezorEmulator(0);
+    emulator.setClock(new VirtualClock());
+
     NonBlockingTrezorClient testObject = TrezorClients.newNonBlockingSocketInstance(
       "localhost",
-      3000,
+      emulator.getPort(),
       sessionId
     );
 
-    TrezorEmulator emulator = TrezorEmulator.newDefaultTrezorEmulator();
     emulator.start();
 
     // Act
@@ -56,21 +61,19 @@ public class NonBlockingTrezorClientTest {
     // Arrange
     ByteString sessionId = TrezorClients.newSessionId();
 
+    // The Ping is answered when it arrives so there is nothing to wait for
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.start();
+
     NonBlockingTrezorClient testObject = TrezorClients.newNonBlockingSocketInstance(
       "localhost",
-      3000,
+      emulator.getPort(),
       sessionId
     );
 
-    TrezorEmulator emulator = TrezorEmulator.newDefaultTrezorEmulator();
-    emulator.start();
-
     // Act
     testObject.connect();
 
-    // Allow time for asynchronous events
-    Thread.sleep(50);
-
     // Assert
     // Expect a result within a short time
 
@@ -82,9 +85,6 @@ public class NonBlockingTrezorClientTest {
 
     testObject.ping();
 
-    // Allow time for asynchronous events
-    Thread.sleep(50);
-
     // Verify that the data was read in correctly
     TrezorEvent event2 = testObject.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
     assertThat(event2).isNotNull();
@@ -92,6 +92,7 @@ public class NonBlockingTrezorClientTest {
     assertThat(event2.protocolMessageType().get()).isEqualTo(MessageType.SUCCESS);
 
     testObject.close();
+    emulator.stop();
 
   }
 
@@ -0,0 +1,35 @@
+package uk.co.bsol.trezorj.core.clients;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ReconnectPolicyTest {
+
+  @Test
+  public void testDelayIsJitteredWithinCeiling() throws Exception {
+
+    // Arrange
+    ReconnectPolicy testObject = new ReconnectPolicy(100, 1000, 10);
+
+    // Act and Assert
+    for (int i = 0; i < 100; i++) {
+      assertThat(testObject.getDelayMillis(0)).isGreaterThanOrEqualTo(50).isLessThanOrEqualTo(100);
+      assertThat(testObject.getDelayMillis(2)).isGreaterThanOrEqualTo(200).isLessThanOrEqualTo(400);
+    }
+
+  }
+
+  @Test
+  public void testDelayIsCappedAtMaximum() throws Exception {
+
+    // Arrange
+    ReconnectPolicy testObject = new ReconnectPolicy(100, 1000, 100);
+
+    // Act and Assert
+    assertThat(testObject.getDelayMillis(5)).isGreaterThanOrEqualTo(500).isLessThanOrEqualTo(1000);
+    assertThat(testObject.getDelayMillis(99)).isGreaterThanOrEqualTo(500).isLessThanOrEqualTo(1000);
+
+  }
+
+}
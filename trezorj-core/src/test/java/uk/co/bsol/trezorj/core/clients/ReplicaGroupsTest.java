@@ -0,0 +1,136 @@
+package uk.co.bsol.trezorj.core.clients;
+
+import com.google.common.collect.Lists;
+import com.google.protobuf.Message;
+import org.junit.Test;
+import uk.co.bsol.trezorj.core.emulators.ReactiveTrezorEmulator;
+import uk.co.bsol.trezorj.core.events.TrezorEvents;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.trezors.ScriptedTrezor;
+
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+
+public class ReplicaGroupsTest {
+
+  @Test
+  public void testDevicesAreGroupedAndRoutedByWallet() throws Exception {
+
+    // Arrange
+    List<ReactiveTrezorEmulator> emulators = Lists.newArrayList();
+    List<BlockingTrezorClient> clients = Lists.newArrayList();
+    for (long seed : new long[]{7, 7, 8}) {
+      ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+      emulator.setSeed(seed);
+      emulator.start();
+      emulators.add(emulator);
+      clients.add(TrezorClients.newBlockingSocketInstance("localhost", emulator.getPort(), TrezorClients.newSessionId()));
+    }
+
+    ReplicaGroups testObject = new ReplicaGroups();
+
+    // Act
+    String fingerprint1 = testObject.connect(clients.get(0));
+    String fingerprint2 = testObject.connect(clients.get(1));
+    String fingerprint3 = testObject.connect(clients.get(2));
+
+    // Assert
+    assertThat(fingerprint1).hasSize(16).isEqualTo(fingerprint2);
+    assertThat(fingerprint3).isNotEqualTo(fingerprint1);
+    assertThat(testObject.getFingerprints()).containsExactly(fingerprint1, fingerprint3);
+
+    ReplicaGroup group = testObject.getGroup(fingerprint1).get();
+    assertThat(group.getMembers()).containsExactly(clients.get(0), clients.get(1));
+
+    // A wallet stays on one member while the load is light
+    BlockingTrezorClient home = group.acquire("wallet").get();
+    group.release(home);
+    assertThat(group.acquire("wallet").get()).isSameAs(home);
+    assertThat(group.acquire("wallet").get()).isSameAs(home);
+
+    // Then spills to the other member
+    BlockingTrezorClient other = group.acquire("wallet").get();
+    assertThat(other).isNotSameAs(home);
+    assertThat(group.getLoad(home)).isEqualTo(2);
+    assertThat(group.getLoad(other)).isEqualTo(1);
+
+    // An unhealthy member is skipped
+    group.release(home);
+    group.release(home);
+    group.release(other);
+    group.setHealthy(home, false);
+    assertThat(group.acquire("wallet").get()).isSameAs(other);
+
+    for (BlockingTrezorClient client : clients) {
+      client.close();
+    }
+    for (ReactiveTrezorEmulator emulator : emulators) {
+      emulator.stop();
+    }
+
+  }
+
+  @Test
+  public void testMembersWithTheSameDeviceIdKeepTheirOwnPoints() throws Exception {
+
+    // Arrange (e.g. two USB devices of the same model)
+    BlockingTrezorClient client1 = TrezorClients.newBlockingInstance(new FailingTrezor(), TrezorClients.newSessionId());
+    BlockingTrezorClient client2 = TrezorClients.newBlockingInstance(new FailingTrezor(), TrezorClients.newSessionId());
+    assertThat(client1.getDeviceId()).isEqualTo(client2.getDeviceId());
+
+    ReplicaGroup testObject = new ReplicaGroup("fingerprint");
+    testObject.add(client1);
+    testObject.add(client2);
+
+    // Act (the work spills from the wallet's member to the other one)
+    testObject.acquire("wallet");
+    testObject.acquire("wallet");
+    testObject.acquire("wallet");
+
+    // Assert
+    assertThat(testObject.getLoad(client1) + testObject.getLoad(client2)).isEqualTo(3);
+    assertThat(testObject.getLoad(client1)).isGreaterThan(0);
+    assertThat(testObject.getLoad(client2)).isGreaterThan(0);
+
+    client1.close();
+    client2.close();
+
+  }
+
+  @Test
+  public void testDeviceWithoutMasterPublicKeyIsClosed() throws Exception {
+
+    // Arrange
+    FailingTrezor trezor = new FailingTrezor();
+    BlockingTrezorClient client = TrezorClients.newBlockingInstance(trezor, TrezorClients.newSessionId());
+
+    ReplicaGroups testObject = new ReplicaGroups();
+
+    // Act
+    try {
+      testObject.connect(client);
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      // Assert
+      assertThat(e.getMessage()).startsWith("Device 'scripted' did not provide a master public key");
+    }
+    assertThat(trezor.isClosed()).isTrue();
+    assertThat(testObject.getFingerprints()).isEmpty();
+
+  }
+
+  /**
+   * A device that answers every request with a Failure
+   */
+  private static class FailingTrezor extends ScriptedTrezor {
+
+    @Override
+    protected void respond(Message message) {
+      emit(TrezorEvents.newProtocolEvent(MessageType.FAILURE, TrezorMessage.Failure.getDefaultInstance()));
+    }
+  }
+
+}
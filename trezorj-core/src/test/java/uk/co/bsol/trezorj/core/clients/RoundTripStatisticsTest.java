@@ -0,0 +1,79 @@
+package uk.co.bsol.trezorj.core.clients;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class RoundTripStatisticsTest {
+
+  @Test
+  public void testEmpty() throws Exception {
+
+    // Arrange
+    RoundTripStatistics testObject = new RoundTripStatistics();
+
+    // Act and Assert
+    assertThat(testObject.getSampleCount()).isEqualTo(0);
+    assertThat(testObject.getAverageMillis()).isEqualTo(0.0);
+    assertThat(testObject.getPercentileMillis(95)).isEqualTo(0.0);
+
+  }
+
+  @Test
+  public void testPercentiles() throws Exception {
+
+    // Arrange
+    RoundTripStatistics testObject = new RoundTripStatistics();
+
+    // Act
+    for (int i = 1; i <= 100; i++) {
+      testObject.record(TimeUnit.MILLISECONDS.toNanos(i));
+    }
+
+    // Assert
+    assertThat(testObject.getSampleCount()).isEqualTo(100);
+    assertThat(testObject.getPercentileMillis(50)).isEqualTo(50.0);
+    assertThat(testObject.getPercentileMillis(95)).isEqualTo(95.0);
+    assertThat(testObject.getPercentileMillis(100)).isEqualTo(100.0);
+
+  }
+
+  @Test
+  public void testMovingAverageFollowsRecentSamples() throws Exception {
+
+    // Arrange
+    RoundTripStatistics testObject = new RoundTripStatistics();
+    testObject.record(TimeUnit.MILLISECONDS.toNanos(10));
+
+    // Act
+    for (int i = 0; i < 50; i++) {
+      testObject.record(TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    // Assert
+    assertThat(testObject.getAverageMillis()).isGreaterThan(499.0).isLessThanOrEqualTo(500.0);
+
+  }
+
+  @Test
+  public void testRingKeepsOnlyRecentSamples() throws Exception {
+
+    // Arrange
+    RoundTripStatistics testObject = new RoundTripStatistics();
+    for (int i = 0; i < RoundTripStatistics.SAMPLE_SIZE; i++) {
+      testObject.record(TimeUnit.MILLISECONDS.toNanos(1000));
+    }
+
+    // Act
+    for (int i = 0; i < RoundTripStatistics.SAMPLE_SIZE; i++) {
+      testObject.record(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    // Assert
+    assertThat(testObject.getPercentileMillis(100)).isEqualTo(1.0);
+
+  }
+
+}
@@ -0,0 +1,77 @@
+package uk.co.bsol.trezorj.core.emulators;
+
+import org.junit.Test;
+
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import java.io.OutputStream;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ConsoleModelTest {
+
+  @Test
+  public void testBoundedScrollback() throws Exception {
+
+    // Arrange
+    ConsoleModel testObject = ConsoleModel.newInstance(3);
+    OutputStream out = testObject.newOutputStream();
+
+    // Act
+    for (int i = 0; i < 10; i++) {
+      out.write(("line " + i + "\r\n").getBytes("ISO-8859-1"));
+    }
+    out.write("partial".getBytes("ISO-8859-1"));
+
+    // Assert
+    assertThat(testObject.getTotalLineCount()).isEqualTo(10);
+    assertThat(testObject.getLines()).containsExactly("line 7", "line 8", "line 9");
+    assertThat(testObject.getText()).isEqualTo("line 7\nline 8\nline 9\n");
+
+    testObject.clear();
+    assertThat(testObject.getLines()).isEmpty();
+
+  }
+
+  @Test
+  public void testTextAreaCoalescesAndTrims() throws Exception {
+
+    // Arrange
+    final JTextArea textArea = new JTextArea();
+    TextAreaOutputStream testObject = new TextAreaOutputStream(textArea, 5);
+
+    // Act
+    for (int i = 0; i < 100; i++) {
+      testObject.write(("line " + i + "\n").getBytes("ISO-8859-1"));
+    }
+
+    // Wait for the queued update to run
+    final String[] text = new String[1];
+    SwingUtilities.invokeAndWait(new Runnable() {
+      @Override
+      public void run() {
+        text[0] = textArea.getText();
+      }
+    });
+
+    // Assert
+    assertThat(text[0]).isEqualTo("line 95\nline 96\nline 97\nline 98\nline 99\n");
+
+  }
+
+  @Test
+  public void testHeadlessConsole() throws Exception {
+
+    // Arrange
+    HeadlessEmulatorConsole testObject = TrezorEmulatorUI.newHeadlessConsole(false);
+
+    // Act
+    testObject.getDisplayStream().write("Confirm\nsend\n0.1 BTC\nto\n1Abc\n".getBytes("ISO-8859-1"));
+
+    // Assert
+    assertThat(testObject.getDisplayModel().getLines()).containsExactly("send", "0.1 BTC", "to", "1Abc");
+    assertThat(testObject.getOutputModel().getLines()).isEmpty();
+
+  }
+
+}
@@ -0,0 +1,103 @@
+package uk.co.bsol.trezorj.core.emulators;
+
+import org.junit.Test;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.clients.BlockingTrezorClient;
+import uk.co.bsol.trezorj.core.clients.TrezorClients;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.usb.CP211xBridge;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+
+public class EmulatedHIDDeviceTest {
+
+  @Test
+  public void testFeatureReportsAndFifos() throws Exception {
+
+    // Arrange
+    EmulatedHIDDevice testObject = EmulatedHIDDevice.newInstance("test");
+    CP211xBridge bridge = new CP211xBridge(testObject);
+
+    // Act
+    try {
+      testObject.write(new byte[]{3, 1, 2, 3});
+      fail("Expected the write to fail with the UART disabled");
+    } catch (IOException e) {
+      // Expected
+    }
+
+    bridge.enable(true);
+    testObject.write(new byte[]{3, 1, 2, 3});
+    byte[] status = bridge.status();
+
+    byte[] uart = new byte[8];
+    int uartCount = testObject.getUartInputStream().read(uart, 0, uart.length);
+
+    testObject.getUartOutputStream().write(new byte[70]);
+    byte[] first = new byte[64];
+    int firstCount = testObject.read(first);
+    byte[] second = new byte[64];
+    int secondCount = testObject.readTimeout(second, 50);
+    int emptyCount = testObject.readTimeout(new byte[64], 50);
+
+    testObject.getUartOutputStream().write(new byte[10]);
+    bridge.purge(3);
+    byte[] purgedStatus = bridge.status();
+
+    // Assert
+    assertThat(status[2]).isEqualTo((byte) 3);
+    assertThat(status[4]).isEqualTo((byte) 0);
+    assertThat(uartCount).isEqualTo(3);
+    assertThat(uart[2]).isEqualTo((byte) 3);
+
+    assertThat(firstCount).isEqualTo(64);
+    assertThat(first[0]).isEqualTo((byte) 63);
+    assertThat(secondCount).isEqualTo(8);
+    assertThat(second[0]).isEqualTo((byte) 7);
+    assertThat(emptyCount).isEqualTo(0);
+
+    assertThat(purgedStatus[4]).isEqualTo((byte) 0);
+
+    testObject.close();
+    assertThat(testObject.getUartInputStream().read()).isEqualTo(-1);
+
+  }
+
+  @Test
+  public void testUsbPathEndToEnd() throws Exception {
+
+    // Arrange
+    EmulatedHIDDevice device = EmulatedHIDDevice.newInstance("emulated-1");
+
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newHIDEmulator(device);
+    emulator.start();
+
+    BlockingTrezorClient testObject = TrezorClients.newBlockingUsbInstance(device, TrezorClients.newSessionId());
+    testObject.connect();
+
+    TrezorEvent connected = testObject.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
+    assertThat(connected.eventType()).isEqualTo(TrezorEventType.DEVICE_CONNECTED);
+
+    // Act
+    TrezorEvent features = testObject.initialize();
+    TrezorEvent masterPublicKey = testObject.getMasterPublicKey();
+
+    // Assert
+    assertThat(device.isUartEnabled()).isTrue();
+    assertThat(features.protocolMessageType().get()).isEqualTo(MessageType.FEATURES);
+
+    // Responses longer than a single report are reassembled
+    assertThat(((TrezorMessage.MasterPublicKey) masterPublicKey.protocolMessage().get()).getKey().size()).isEqualTo(65);
+
+    testObject.close();
+    emulator.stop();
+
+  }
+
+}
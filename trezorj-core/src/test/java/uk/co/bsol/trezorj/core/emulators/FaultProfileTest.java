@@ -0,0 +1,236 @@
+package uk.co.bsol.trezorj.core.emulators;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.TrezorFactory;
+import uk.co.bsol.trezorj.core.clients.BlockingTrezorClient;
+import uk.co.bsol.trezorj.core.clients.TrezorClients;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.trezors.QueueListener;
+import uk.co.bsol.trezorj.core.trezors.SocketTrezor;
+import uk.co.bsol.trezorj.core.utils.TrezorMessageUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+
+public class FaultProfileTest {
+
+  @Test
+  public void testReproducibleFromSeed() throws Exception {
+
+    // Arrange
+    FaultProfile testObject = FaultProfile.newInstance();
+    testObject.add(Faults.logNormalLatency(20, 0.5, TimeUnit.MILLISECONDS));
+    testObject.add(Faults.jitter(5, TimeUnit.MILLISECONDS));
+
+    FaultProfile corruption = FaultProfile.newInstance();
+    corruption.add(MessageType.PING, Faults.garbage(0.5, 16));
+    corruption.add(MessageType.PING, Faults.corruptHeader(0.5));
+    testObject.addAll(corruption);
+
+    byte[] frame = new byte[]{'#', '#', 0, 2, 0, 0, 0, 2, 10, 0};
+
+    // Act
+    Random first = new Random(42);
+    Random second = new Random(42);
+    for (int i = 1; i <= 20; i++) {
+      FaultContext firstContext = new FaultContext(first, Optional.of(MessageType.PING), frame);
+      FaultContext secondContext = new FaultContext(second, Optional.of(MessageType.PING), frame);
+      testObject.apply(firstContext, i, i);
+      testObject.apply(secondContext, i, i);
+
+      // Assert
+      assertThat(firstContext.getDelayMillis()).isEqualTo(secondContext.getDelayMillis());
+      assertThat(firstContext.getFrame()).isEqualTo(secondContext.getFrame());
+    }
+
+    // The original frame is never modified
+    assertThat(frame).isEqualTo(new byte[]{'#', '#', 0, 2, 0, 0, 0, 2, 10, 0});
+
+  }
+
+  @Test
+  public void testClientRecoversFromGarbageAndPartialWrites() throws Exception {
+
+    // Arrange
+    FaultProfile faultProfile = FaultProfile.newInstance();
+    faultProfile.add(Faults.garbage(1.0, 16));
+    faultProfile.add(Faults.partialWrites(5, 0, TimeUnit.MILLISECONDS));
+
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.setFaultProfile(faultProfile);
+    emulator.start();
+
+    BlockingTrezorClient testObject = TrezorClients.newBlockingSocketInstance(
+      "localhost",
+      emulator.getPort(),
+      TrezorClients.newSessionId()
+    );
+    testObject.connect();
+    TrezorEvent connected = testObject.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
+    assertThat(connected.eventType()).isEqualTo(TrezorEventType.DEVICE_CONNECTED);
+
+    // Act
+    for (int i = 0; i < 50; i++) {
+
+      TrezorEvent event = testObject.ping();
+
+      // Assert
+      assertThat(event.protocolMessageType().get()).isEqualTo(MessageType.SUCCESS);
+    }
+
+    testObject.close();
+    emulator.stop();
+
+  }
+
+  @Test
+  public void testReaderRecoversFromCorruptedHeaders() throws Exception {
+
+    assertFramesBehindFaultAreRecovered(Faults.corruptHeader(1.0));
+
+  }
+
+  @Test
+  public void testReaderRecoversFromTruncatedFrames() throws Exception {
+
+    assertFramesBehindFaultAreRecovered(Faults.truncate(1.0));
+
+  }
+
+  /**
+   * <p>Damage every UUID response and check that the Ping answered behind each one still arrives in order</p>
+   *
+   * @param fault The fault to apply to the UUID responses
+   */
+  private void assertFramesBehindFaultAreRecovered(Fault fault) throws Exception {
+
+    // Arrange
+    FaultProfile faultProfile = FaultProfile.newInstance();
+    faultProfile.add(MessageType.UUID, fault);
+
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.setFaultProfile(faultProfile);
+    emulator.start();
+
+    SocketTrezor trezor = TrezorFactory.newSocketTrezor("localhost", emulator.getPort());
+    QueueListener listener = new QueueListener();
+    trezor.addListener(listener);
+    trezor.connect();
+    assertThat(listener.getTrezorEventQueue().poll(1, TimeUnit.SECONDS).eventType()).isEqualTo(TrezorEventType.DEVICE_CONNECTED);
+
+    List<String> expected = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      expected.add("round-" + i);
+    }
+
+    // Act
+    for (String round : expected) {
+      trezor.sendMessage(TrezorMessage.GetUUID.getDefaultInstance());
+      trezor.sendMessage(TrezorMessage.Ping.newBuilder().setMessage(round).build());
+    }
+
+    // A corrupted length holds back the frames behind it until that many bytes have arrived
+    List<String> recovered = Lists.newArrayList();
+    String filler = Strings.repeat("x", 1024);
+    long deadline = System.currentTimeMillis() + 30000;
+    while (recovered.size() < expected.size() && System.currentTimeMillis() < deadline) {
+      for (int i = 0; i < 8; i++) {
+        trezor.sendMessage(TrezorMessage.Ping.newBuilder().setMessage(filler).build());
+      }
+      // Wait for the answers so a slow machine still sees them
+      TrezorEvent event;
+      while ((event = listener.getTrezorEventQueue().poll(5, TimeUnit.MILLISECONDS)) != null) {
+        if (event.protocolMessage().isPresent() && event.protocolMessage().get() instanceof TrezorMessage.Success) {
+          String message = ((TrezorMessage.Success) event.protocolMessage().get()).getMessage();
+          if (message.startsWith("round-")) {
+            recovered.add(message);
+          }
+        }
+      }
+    }
+
+    // Assert
+    assertThat(recovered).isEqualTo(expected);
+
+    // Let the remaining responses through so the device is not blocked on a full queue
+    while (listener.getTrezorEventQueue().poll(200, TimeUnit.MILLISECONDS) != null) {
+      // Discard
+    }
+    trezor.close();
+    emulator.stop();
+
+  }
+
+  @Test
+  public void testDisconnectMidSignTx() throws Exception {
+
+    // Arrange
+    PipedInputStream emulatorIn = new PipedInputStream();
+    DataOutputStream requests = new DataOutputStream(new PipedOutputStream(emulatorIn));
+
+    PipedOutputStream emulatorOut = new PipedOutputStream();
+    DataInputStream responses = new DataInputStream(new PipedInputStream(emulatorOut));
+
+    FaultProfile faultProfile = FaultProfile.newInstance();
+    faultProfile.add(MessageType.TX_INPUT, Faults.disconnectMidFrameAt(2));
+
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newStreamingEmulator(emulatorOut, emulatorIn);
+    SignTxHandler.addTo(emulator);
+    emulator.setFaultProfile(faultProfile);
+    emulator.start();
+
+    // Act
+    TrezorMessageUtils.writeMessage(TrezorMessage.SignTx
+      .newBuilder()
+      .setInputsCount(2)
+      .setOutputsCount(1)
+      .setRandom(ByteString.copyFrom(new byte[256]))
+      .build(), requests);
+    TrezorMessage.TxRequest txRequest = (TrezorMessage.TxRequest) TrezorMessageUtils.readMessage(responses);
+
+    TrezorMessageUtils.writeMessage(newTxInput(0), requests);
+    txRequest = (TrezorMessage.TxRequest) TrezorMessageUtils.readMessage(responses);
+
+    // Assert
+    assertThat(txRequest.getRequestIndex()).isEqualTo(1);
+
+    TrezorMessageUtils.writeMessage(newTxInput(1), requests);
+    try {
+      TrezorMessageUtils.readMessage(responses);
+      fail("Expected the connection to drop part way through the frame");
+    } catch (EOFException e) {
+      // Expected
+    }
+
+    emulator.stop();
+
+  }
+
+  private TrezorMessage.TxInput newTxInput(int index) {
+    return TrezorMessage.TxInput
+      .newBuilder()
+      .setIndex(index)
+      .addAddressN(0)
+      .setAmount(100000L)
+      .setPrevHash(ByteString.copyFrom(new byte[]{(byte) index, 1, 2, 3}))
+      .setPrevIndex(index)
+      .build();
+  }
+
+}
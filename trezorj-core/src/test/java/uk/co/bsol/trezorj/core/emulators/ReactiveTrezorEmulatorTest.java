@@ -0,0 +1,161 @@
+package uk.co.bsol.trezorj.core.emulators;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.clients.BlockingTrezorClient;
+import uk.co.bsol.trezorj.core.clients.TrezorClients;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.utils.VirtualClock;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ReactiveTrezorEmulatorTest {
+
+  @Test
+  public void testRequestResponseCycles() throws Exception {
+
+    // Arrange
+    ByteString sessionId = TrezorClients.newSessionId();
+
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.start();
+
+    BlockingTrezorClient testObject = TrezorClients.newBlockingSocketInstance(
+      "localhost",
+      emulator.getPort(),
+      sessionId
+    );
+    testObject.connect();
+
+    TrezorEvent connected = testObject.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
+    assertThat(connected.eventType()).isEqualTo(TrezorEventType.DEVICE_CONNECTED);
+
+    // Act
+    TrezorEvent features = testObject.initialize();
+    TrezorEvent address1 = testObject.getAddress(0, 1);
+    TrezorEvent address2 = testObject.getAddress(0, 1);
+    TrezorEvent address3 = testObject.getAddress(0, 2);
+
+    // Assert
+    assertThat(features.protocolMessageType().get()).isEqualTo(MessageType.FEATURES);
+    assertThat(((TrezorMessage.Features) features.protocolMessage().get()).getSessionId()).isEqualTo(sessionId);
+
+    // Addresses are deterministic for the path
+    String address = ((TrezorMessage.Address) address1.protocolMessage().get()).getAddress();
+    assertThat(address).hasSize(34);
+    assertThat(((TrezorMessage.Address) address2.protocolMessage().get()).getAddress()).isEqualTo(address);
+    assertThat(((TrezorMessage.Address) address3.protocolMessage().get()).getAddress()).isNotEqualTo(address);
+
+    // Many cycles without a script
+    for (int i = 0; i < 100; i++) {
+      TrezorEvent event = testObject.ping();
+      assertThat(event.protocolMessageType().get()).isEqualTo(MessageType.SUCCESS);
+    }
+
+    testObject.close();
+    emulator.stop();
+
+  }
+
+  @Test
+  public void testLatencyAndUnhandledMessage() throws Exception {
+
+    // Arrange
+    // The latency passes in virtual time
+    VirtualClock clock = new VirtualClock();
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.setLatency(MessageType.PING, 200, TimeUnit.MILLISECONDS);
+    emulator.setClock(clock);
+    emulator.start();
+
+    BlockingTrezorClient testObject = TrezorClients.newBlockingSocketInstance(
+      "localhost",
+      emulator.getPort(),
+      TrezorClients.newSessionId()
+    );
+    testObject.connect();
+    testObject.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
+
+    // Act
+    long start = clock.nanoTime();
+    TrezorEvent ping = testObject.ping();
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(clock.nanoTime() - start);
+
+    // GetEntropy without a size is missing a required field
+    TrezorEvent entropy = testObject.getEntropy();
+
+    // Assert
+    assertThat(ping.protocolMessageType().get()).isEqualTo(MessageType.SUCCESS);
+    assertThat(elapsed).isGreaterThanOrEqualTo(200);
+    assertThat(entropy.protocolMessageType().get()).isEqualTo(MessageType.FAILURE);
+
+    testObject.close();
+    emulator.stop();
+
+  }
+
+  @Test
+  public void testServerWithConcurrentClients() throws Exception {
+
+    // Arrange
+    final ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.start();
+
+    int clientCount = 5;
+    ExecutorService clientExecutorService = Executors.newFixedThreadPool(clientCount);
+    List<Future<ByteString>> uuids = Lists.newArrayList();
+
+    // Act
+    for (int i = 0; i < clientCount; i++) {
+      uuids.add(clientExecutorService.submit(new Callable<ByteString>() {
+        @Override
+        public ByteString call() throws Exception {
+
+          BlockingTrezorClient client = TrezorClients.newBlockingSocketInstance(
+            "localhost",
+            emulator.getPort(),
+            TrezorClients.newSessionId()
+          );
+          client.connect();
+          client.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
+
+          for (int j = 0; j < 20; j++) {
+            assertThat(client.ping().protocolMessageType().get()).isEqualTo(MessageType.SUCCESS);
+          }
+          TrezorEvent uuid = client.getUUID();
+          client.close();
+
+          return ((TrezorMessage.UUID) uuid.protocolMessage().get()).getUUID();
+        }
+      }));
+    }
+
+    // Assert
+    Set<ByteString> distinctUuids = Sets.newHashSet();
+    for (Future<ByteString> uuid : uuids) {
+      distinctUuids.add(uuid.get(10, TimeUnit.SECONDS));
+    }
+
+    // Each connection is a separate device
+    assertThat(distinctUuids).hasSize(clientCount);
+    assertThat(emulator.getConnectionCount()).isEqualTo(clientCount);
+
+    clientExecutorService.shutdownNow();
+    emulator.stop();
+
+  }
+
+}
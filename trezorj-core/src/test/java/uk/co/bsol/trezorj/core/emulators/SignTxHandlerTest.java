@@ -0,0 +1,156 @@
+package uk.co.bsol.trezorj.core.emulators;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.utils.TrezorMessageUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class SignTxHandlerTest {
+
+  private ReactiveTrezorEmulator emulator;
+  private SignTxHandler signTxHandler;
+
+  private DataOutputStream requests;
+  private DataInputStream responses;
+
+  @Before
+  public void setUp() throws Exception {
+
+    PipedInputStream emulatorIn = new PipedInputStream();
+    requests = new DataOutputStream(new PipedOutputStream(emulatorIn));
+
+    PipedOutputStream emulatorOut = new PipedOutputStream();
+    responses = new DataInputStream(new PipedInputStream(emulatorOut));
+
+    emulator = ReactiveTrezorEmulator.newStreamingEmulator(emulatorOut, emulatorIn);
+    signTxHandler = SignTxHandler.addTo(emulator);
+
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    emulator.stop();
+  }
+
+  @Test
+  public void testSignTxConversation() throws Exception {
+
+    // Arrange
+    emulator.start();
+
+    // Act
+    TrezorMessage.TxRequest txRequest = (TrezorMessage.TxRequest) send(newSignTx(2, 3));
+
+    // Assert
+    // Confirm inputs
+    assertRequest(txRequest, 0, TrezorMessage.RequestType.TXINPUT);
+    txRequest = (TrezorMessage.TxRequest) send(newTxInput(0));
+    assertRequest(txRequest, 1, TrezorMessage.RequestType.TXINPUT);
+    assertThat(txRequest.hasSignature()).isFalse();
+    txRequest = (TrezorMessage.TxRequest) send(newTxInput(1));
+    assertRequest(txRequest, 0, TrezorMessage.RequestType.TXOUTPUT);
+
+    // Outputs are serialized
+    for (int i = 0; i < 3; i++) {
+      txRequest = (TrezorMessage.TxRequest) send(newTxOutput(i));
+      assertThat(txRequest.getSerializedTx().size()).isEqualTo(SignTxHandler.SERIALIZED_OUTPUT_SIZE);
+    }
+    assertRequest(txRequest, 0, TrezorMessage.RequestType.TXINPUT);
+
+    // Inputs are signed
+    txRequest = (TrezorMessage.TxRequest) send(newTxInput(0));
+    assertRequest(txRequest, 1, TrezorMessage.RequestType.TXINPUT);
+    assertThat(txRequest.getSignedIndex()).isEqualTo(0);
+    assertThat(txRequest.getSignature().size()).isEqualTo(71);
+    assertThat(txRequest.getSerializedTx().size()).isEqualTo(SignTxHandler.SERIALIZED_INPUT_SIZE);
+    ByteString firstSignature = txRequest.getSignature();
+
+    txRequest = (TrezorMessage.TxRequest) send(newTxInput(1));
+    assertThat(txRequest.getRequestIndex()).isEqualTo(-1);
+    assertThat(txRequest.getSignedIndex()).isEqualTo(1);
+    assertThat(txRequest.getSignature()).isNotEqualTo(firstSignature);
+
+    // Signatures are deterministic
+    send(newSignTx(2, 3));
+    send(newTxInput(0));
+    send(newTxInput(1));
+    for (int i = 0; i < 3; i++) {
+      send(newTxOutput(i));
+    }
+    txRequest = (TrezorMessage.TxRequest) send(newTxInput(0));
+    assertThat(txRequest.getSignature()).isEqualTo(firstSignature);
+
+  }
+
+  @Test
+  public void testInjectedFailure() throws Exception {
+
+    // Arrange
+    signTxHandler.setFailure(TrezorMessage.RequestType.TXOUTPUT, 1);
+    emulator.start();
+
+    // Act
+    send(newSignTx(1, 2));
+    send(newTxInput(0));
+    send(newTxOutput(0));
+    Message failure = send(newTxOutput(1));
+    Message outOfConversation = send(newTxInput(0));
+
+    // Assert
+    assertThat(failure).isInstanceOf(TrezorMessage.Failure.class);
+    assertThat(outOfConversation).isInstanceOf(TrezorMessage.Failure.class);
+
+  }
+
+  private Message send(Message request) throws Exception {
+    TrezorMessageUtils.writeMessage(request, requests);
+    return TrezorMessageUtils.readMessage(responses);
+  }
+
+  private void assertRequest(TrezorMessage.TxRequest txRequest, int requestIndex, TrezorMessage.RequestType requestType) {
+    assertThat(txRequest.getRequestIndex()).isEqualTo(requestIndex);
+    assertThat(txRequest.getRequestType()).isEqualTo(requestType);
+  }
+
+  private TrezorMessage.SignTx newSignTx(int inputsCount, int outputsCount) {
+    return TrezorMessage.SignTx
+      .newBuilder()
+      .setInputsCount(inputsCount)
+      .setOutputsCount(outputsCount)
+      .setRandom(ByteString.copyFrom(new byte[256]))
+      .build();
+  }
+
+  private TrezorMessage.TxInput newTxInput(int index) {
+    return TrezorMessage.TxInput
+      .newBuilder()
+      .setIndex(index)
+      .addAddressN(0)
+      .addAddressN(index)
+      .setAmount(100000L)
+      .setPrevHash(ByteString.copyFrom(new byte[]{(byte) index, 1, 2, 3}))
+      .setPrevIndex(index)
+      .build();
+  }
+
+  private TrezorMessage.TxOutput newTxOutput(int index) {
+    return TrezorMessage.TxOutput
+      .newBuilder()
+      .setIndex(index)
+      .setAddress("1BitcoinEaterAddressDontSendf59kuE")
+      .setAmount(50000L + index)
+      .setScriptType(TrezorMessage.ScriptType.PAYTOADDRESS)
+      .build();
+  }
+
+}
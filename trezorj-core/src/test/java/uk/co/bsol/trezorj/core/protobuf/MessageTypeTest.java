@@ -0,0 +1,35 @@
+package uk.co.bsol.trezorj.core.protobuf;
+
+import com.google.protobuf.Message;
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class MessageTypeTest {
+
+  @Test
+  public void testParseAndHeaderCodes() throws Exception {
+
+    // Arrange
+    TrezorMessage.Features features = TrezorMessage.Features.newBuilder()
+      .setVendor("bitcointrezor.com")
+      .setMajorVersion(0)
+      .setMinorVersion(1)
+      .build();
+    TrezorMessage.Ping ping = TrezorMessage.Ping.newBuilder()
+      .setMessage("hello")
+      .build();
+
+    // Act
+    Message parsedFeatures = MessageType.parse(MessageType.FEATURES.getHeaderCode(), features.toByteArray());
+    Message parsedPing = MessageType.parse(MessageType.PING.getHeaderCode(), ping.toByteArray());
+
+    // Assert
+    assertThat(parsedFeatures).isEqualTo(features);
+    assertThat(parsedPing).isEqualTo(ping);
+    assertThat(MessageType.getMessageType(parsedFeatures)).isEqualTo(MessageType.FEATURES);
+    assertThat(MessageType.getHeaderCode(TrezorMessage.TxInput.getDefaultInstance())).isEqualTo((short) 23);
+
+  }
+
+}
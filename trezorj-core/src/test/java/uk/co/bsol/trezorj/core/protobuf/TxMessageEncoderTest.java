@@ -0,0 +1,144 @@
+package uk.co.bsol.trezorj.core.protobuf;
+
+import com.google.bitcoin.core.Transaction;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import org.junit.Test;
+import uk.co.bsol.trezorj.core.utils.FakeTransactions;
+import uk.co.bsol.trezorj.core.utils.TrezorMessageUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TxMessageEncoderTest {
+
+  @Test
+  public void testTransactionFramesMatchGeneratedCode() throws Exception {
+
+    // Arrange
+    Transaction tx = FakeTransactions.newMainNetFakeTx(
+      FakeTransactions.getElectrumAddressN(new int[]{0, 0}),
+      FakeTransactions.getElectrumAddressN(new int[]{0, 1}),
+      FakeTransactions.asMainNetAddress("1MKw8vWxvBnaBcrL2yXvZceqyRMoeG2kRn"),
+      BigInteger.TEN,
+      BigInteger.ONE
+    );
+    TxMessageEncoder testObject = TxMessageEncoder.newInstance();
+
+    // Act and assert
+    for (int i = 0; i < tx.getInputs().size(); i++) {
+      testObject.encodeTxInput(tx, i);
+      assertThat(testObject.toByteArray()).isEqualTo(frame(TrezorMessageUtils.newTxInput(tx, i)));
+    }
+    for (int i = 0; i < tx.getOutputs().size(); i++) {
+      testObject.encodeTxOutput(tx, i);
+      assertThat(testObject.toByteArray()).isEqualTo(frame(TrezorMessageUtils.newTxOutput(tx, i)));
+    }
+
+    ByteArrayOutputStream written = new ByteArrayOutputStream();
+    testObject.writeTo(written);
+    assertThat(written.toByteArray()).isEqualTo(testObject.toByteArray());
+
+  }
+
+  @Test
+  public void testRandomFieldsMatchGeneratedCode() throws Exception {
+
+    // Arrange
+    Random random = new Random(49);
+    TxMessageEncoder testObject = TxMessageEncoder.newInstance();
+    int[] addressN = new int[8];
+
+    for (int n = 0; n < 2000; n++) {
+
+      int index = randomInt(random);
+      int addressNCount = random.nextInt(addressN.length + 1);
+      for (int i = 0; i < addressNCount; i++) {
+        addressN[i] = randomInt(random);
+      }
+      long amount = random.nextBoolean() ? random.nextLong() : random.nextInt(100000);
+      byte[] prevHash = new byte[random.nextInt(200)];
+      random.nextBytes(prevHash);
+      int prevIndex = randomInt(random);
+      String text = randomText(random);
+
+      TrezorMessage.TxInput.Builder inputBuilder = TrezorMessage.TxInput.newBuilder()
+        .setIndex(index)
+        .setAmount(amount)
+        .setPrevHash(ByteString.copyFrom(prevHash))
+        .setPrevIndex(prevIndex);
+      TrezorMessage.TxOutput.Builder outputBuilder = TrezorMessage.TxOutput.newBuilder()
+        .setIndex(index)
+        .setAddress(text)
+        .setAmount(amount)
+        .setScriptType(random.nextBoolean() ? TrezorMessage.ScriptType.PAYTOADDRESS : TrezorMessage.ScriptType.PAYTOSCRIPTHASH);
+      for (int i = 0; i < addressNCount; i++) {
+        inputBuilder.addAddressN(addressN[i]);
+        outputBuilder.addAddressN(addressN[i]);
+      }
+      boolean hasScriptSig = random.nextBoolean();
+      if (hasScriptSig) {
+        inputBuilder.setScriptSig(ByteString.copyFromUtf8(text));
+      }
+      TrezorMessage.TxOutput output = outputBuilder.build();
+
+      // Act
+      testObject.encodeTxInput(index, addressN, addressNCount, amount, prevHash, prevIndex, hasScriptSig ? text : null);
+      byte[] inputFrame = testObject.toByteArray();
+      testObject.encodeTxOutput(index, text, addressN, addressNCount, amount, output.getScriptType());
+      byte[] outputFrame = testObject.toByteArray();
+
+      // Assert
+      assertThat(inputFrame).isEqualTo(frame(inputBuilder.build()));
+      assertThat(outputFrame).isEqualTo(frame(output));
+    }
+
+  }
+
+  /**
+   * @return The frame written by the generated code
+   */
+  private static byte[] frame(Message message) throws Exception {
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    TrezorMessageUtils.writeMessage(message, new DataOutputStream(baos));
+    return baos.toByteArray();
+  }
+
+  /**
+   * @return Small values most of the time with the occasional value needing 5 bytes as a varint
+   */
+  private static int randomInt(Random random) {
+    return random.nextInt(4) == 0 ? random.nextInt() : random.nextInt(300);
+  }
+
+  /**
+   * @return Text covering 1, 2, 3 and 4 byte UTF-8 sequences
+   */
+  private static String randomText(Random random) {
+
+    StringBuilder builder = new StringBuilder();
+    int length = random.nextInt(40);
+    for (int i = 0; i < length; i++) {
+      switch (random.nextInt(4)) {
+        case 0:
+          builder.append((char) (0x80 + random.nextInt(0x780)));
+          break;
+        case 1:
+          builder.append((char) (0x800 + random.nextInt(0xd000)));
+          break;
+        case 2:
+          builder.appendCodePoint(0x10000 + random.nextInt(0x100000));
+          break;
+        default:
+          builder.append((char) random.nextInt(0x80));
+      }
+    }
+    return builder.toString();
+  }
+
+}
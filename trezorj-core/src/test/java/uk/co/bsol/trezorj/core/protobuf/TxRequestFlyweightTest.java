@@ -0,0 +1,148 @@
+package uk.co.bsol.trezorj.core.protobuf;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnknownFieldSet;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+
+public class TxRequestFlyweightTest {
+
+  @Test
+  public void testRandomRequestsMatchGeneratedCode() throws Exception {
+
+    // Arrange
+    Random random = new Random(50);
+    TxRequestFlyweight testObject = new TxRequestFlyweight();
+
+    for (int n = 0; n < 2000; n++) {
+
+      TrezorMessage.TxRequest.Builder builder = TrezorMessage.TxRequest.newBuilder();
+      if (random.nextBoolean()) {
+        builder.setRequestIndex(random.nextInt(4) == 0 ? random.nextInt() : random.nextInt(10) - 1);
+      }
+      if (random.nextBoolean()) {
+        builder.setRequestType(random.nextBoolean() ? TrezorMessage.RequestType.TXINPUT : TrezorMessage.RequestType.TXOUTPUT);
+      }
+      if (random.nextBoolean()) {
+        builder.setSignedIndex(random.nextInt(10) - 1);
+      }
+      if (random.nextBoolean()) {
+        builder.setSignature(randomBytes(random, 80));
+      }
+      if (random.nextBoolean()) {
+        builder.setSerializedTx(randomBytes(random, 300));
+      }
+      if (random.nextInt(4) == 0) {
+        // Fields from a newer protocol are skipped
+        builder.setUnknownFields(UnknownFieldSet.newBuilder()
+          .mergeField(9, UnknownFieldSet.Field.newBuilder()
+            .addVarint(random.nextLong())
+            .addFixed32(random.nextInt())
+            .addFixed64(random.nextLong())
+            .addLengthDelimited(randomBytes(random, 20))
+            .addGroup(UnknownFieldSet.newBuilder()
+              .mergeField(1, UnknownFieldSet.Field.newBuilder().addVarint(1).build())
+              .build())
+            .build())
+          .build());
+      }
+
+      // Place the detail part way into a larger buffer as it would be in a frame
+      byte[] detail = builder.build().toByteArray();
+      byte[] buffer = new byte[detail.length + 10];
+      System.arraycopy(detail, 0, buffer, 8, detail.length);
+
+      // Act
+      TrezorMessage.TxRequest expected = TrezorMessage.TxRequest.parseFrom(detail);
+      testObject.wrap(buffer, 8, detail.length);
+
+      // Assert
+      assertThat(testObject.hasRequestIndex()).isEqualTo(expected.hasRequestIndex());
+      assertThat(testObject.getRequestIndex()).isEqualTo(expected.getRequestIndex());
+      assertThat(testObject.hasRequestType()).isEqualTo(expected.hasRequestType());
+      assertThat(testObject.getRequestType()).isEqualTo(expected.getRequestType());
+      assertThat(testObject.hasSignedIndex()).isEqualTo(expected.hasSignedIndex());
+      assertThat(testObject.getSignedIndex()).isEqualTo(expected.getSignedIndex());
+      assertThat(testObject.hasSignature()).isEqualTo(expected.hasSignature());
+      assertThat(testObject.hasSerializedTx()).isEqualTo(expected.hasSerializedTx());
+
+      ByteArrayOutputStream signature = new ByteArrayOutputStream();
+      testObject.writeSignatureTo(signature);
+      assertThat(signature.toByteArray()).isEqualTo(expected.getSignature().toByteArray());
+
+      ByteArrayOutputStream serializedTx = new ByteArrayOutputStream();
+      testObject.writeSerializedTxTo(serializedTx);
+      assertThat(serializedTx.toByteArray()).isEqualTo(expected.getSerializedTx().toByteArray());
+    }
+
+  }
+
+  @Test
+  public void testRepeatedAndUnknownEnumFieldsMatchGeneratedCode() throws Exception {
+
+    // Arrange (request type 1, request index 3, request type 7 (unknown), request index 4)
+    byte[] detail = new byte[]{0x10, 0x01, 0x08, 0x03, 0x10, 0x07, 0x08, 0x04};
+
+    // Act
+    TrezorMessage.TxRequest expected = TrezorMessage.TxRequest.parseFrom(detail);
+    TxRequestFlyweight testObject = new TxRequestFlyweight().wrap(detail, 0, detail.length);
+
+    // Assert
+    assertThat(testObject.getRequestIndex()).isEqualTo(expected.getRequestIndex()).isEqualTo(4);
+    assertThat(testObject.getRequestType()).isEqualTo(expected.getRequestType()).isEqualTo(TrezorMessage.RequestType.TXOUTPUT);
+
+  }
+
+  @Test
+  public void testMalformedDetailIsRejectedLikeGeneratedCode() throws Exception {
+
+    // Arrange
+    byte[] detail = TrezorMessage.TxRequest.newBuilder()
+      .setRequestIndex(-1)
+      .setSerializedTx(ByteString.copyFrom(new byte[40]))
+      .build()
+      .toByteArray();
+
+    TxRequestFlyweight testObject = new TxRequestFlyweight();
+
+    // Act and assert (every truncation is either valid for both or rejected by both)
+    for (int length = 0; length < detail.length; length++) {
+      byte[] truncated = Arrays.copyOf(detail, length);
+      boolean isValid = true;
+      try {
+        TrezorMessage.TxRequest.parseFrom(truncated);
+      } catch (InvalidProtocolBufferException e) {
+        isValid = false;
+      }
+      try {
+        testObject.wrap(truncated, 0, truncated.length);
+        assertThat(isValid).isTrue();
+      } catch (InvalidProtocolBufferException e) {
+        assertThat(isValid).isFalse();
+      }
+    }
+
+    // A zero tag
+    try {
+      testObject.wrap(new byte[]{0x00}, 0, 1);
+      fail("Expected an invalid tag");
+    } catch (InvalidProtocolBufferException e) {
+      // Expected
+    }
+
+  }
+
+  private static ByteString randomBytes(Random random, int maxLength) {
+    byte[] bytes = new byte[random.nextInt(maxLength)];
+    random.nextBytes(bytes);
+    return ByteString.copyFrom(bytes);
+  }
+
+}
@@ -0,0 +1,69 @@
+package uk.co.bsol.trezorj.core.tracing;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TraceFileExporterTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testExportAndRead() throws Exception {
+
+    // Arrange
+    File file = temporaryFolder.newFile("session.trace");
+
+    Tracer tracer = new Tracer();
+    TraceFileExporter testObject = TraceFileExporter.newInstance(file);
+    tracer.setExporter(testObject);
+
+    // Act
+    Span conversation = tracer.startSpan("client.signTx");
+    for (int i = 0; i < 3; i++) {
+      Span request = tracer.startSpan("client.request");
+      request.setDetail(i == 0 ? "SIGN_TX" : "TX_INPUT");
+      tracer.startSpan("frame.write").end();
+      request.end();
+    }
+    conversation.end();
+    tracer.startSpan("unrelated").end();
+
+    tracer.setExporter(null);
+    testObject.close();
+
+    TraceLog traceLog = TraceLog.read(file);
+
+    StringBuilder json = new StringBuilder();
+    traceLog.writeChromeTrace(json);
+
+    // Assert
+    assertThat(testObject.getSpanCount()).isEqualTo(8);
+
+    List<TraceRecord> records = traceLog.getRecords();
+    assertThat(records).hasSize(8);
+    assertThat(records.get(0).getName()).isEqualTo("frame.write");
+    assertThat(records.get(0).getDetail().isPresent()).isFalse();
+    assertThat(records.get(1).getName()).isEqualTo("client.request");
+    assertThat(records.get(1).getDetail().get()).isEqualTo("SIGN_TX");
+    assertThat(records.get(0).getParentSpanId()).isEqualTo(records.get(1).getSpanId());
+    assertThat(records.get(1).getThreadName()).isEqualTo(Thread.currentThread().getName());
+
+    TraceRecord root = records.get(6);
+    assertThat(root.getName()).isEqualTo("client.signTx");
+    assertThat(root.getParentSpanId()).isEqualTo(0);
+    assertThat(traceLog.getConversation(root.getSpanId())).hasSize(7);
+
+    assertThat(json.toString()).startsWith("{\"traceEvents\":[");
+    assertThat(json.toString()).contains("\"name\":\"client.request\"");
+    assertThat(json.toString()).contains("\"detail\":\"TX_INPUT\"");
+
+  }
+
+}
@@ -0,0 +1,144 @@
+package uk.co.bsol.trezorj.core.tracing;
+
+import com.google.common.collect.Lists;
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.clients.BlockingTrezorClient;
+import uk.co.bsol.trezorj.core.clients.TrezorClients;
+import uk.co.bsol.trezorj.core.emulators.ReactiveTrezorEmulator;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TracerTest {
+
+  @Test
+  public void testNestingAndAdoption() throws Exception {
+
+    // Arrange
+    Tracer testObject = new Tracer();
+    ListExporter exporter = new ListExporter();
+
+    // Act
+    Span disabled = testObject.startSpan("disabled");
+    testObject.setExporter(exporter);
+
+    Span outer = testObject.startSpan("outer");
+    Span inner = testObject.startSpan("inner");
+    Span currentDuringInner = testObject.currentSpan();
+    inner.end();
+    Span currentAfterInner = testObject.currentSpan();
+    outer.end();
+
+    Span adopted = testObject.startSpan("adopted");
+    adopted.setParent(outer);
+    adopted.end();
+
+    // Assert
+    assertThat(disabled).isSameAs(Span.NOOP);
+    assertThat(currentDuringInner).isSameAs(inner);
+    assertThat(currentAfterInner).isSameAs(outer);
+    assertThat(testObject.currentSpan()).isSameAs(Span.NOOP);
+
+    List<Span> spans = exporter.getSpans();
+    assertThat(spans).hasSize(3);
+    assertThat(spans.get(0).getParentSpanId()).isEqualTo(outer.getSpanId());
+    assertThat(spans.get(1).getParentSpanId()).isEqualTo(0);
+    assertThat(spans.get(2).getParentSpanId()).isEqualTo(outer.getSpanId());
+    assertThat(spans.get(1).getEndNanos()).isGreaterThanOrEqualTo(spans.get(0).getEndNanos());
+
+  }
+
+  @Test
+  public void testPingConversationAcrossThreads() throws Exception {
+
+    // Arrange
+    ByteString sessionId = TrezorClients.newSessionId();
+
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.start();
+
+    BlockingTrezorClient client = TrezorClients.newBlockingSocketInstance("localhost", emulator.getPort(), sessionId);
+    client.connect();
+    client.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
+
+    ListExporter exporter = new ListExporter();
+    Tracer.getDefaultInstance().setExporter(exporter);
+
+    // Act
+    TrezorEvent event;
+    Span request = null;
+    Span receive = null;
+    try {
+      // The monitor thread was already waiting when tracing started so only the second response is traced
+      client.ping();
+      event = client.ping();
+
+      // The monitor thread ends its span just after the event reaches the queue
+      for (int i = 0; i < 100 && receive == null; i++) {
+        request = exporter.findLast("client.request");
+        receive = exporter.findLast("trezor.receive");
+        if (receive == null) {
+          Thread.sleep(10);
+        }
+      }
+    } finally {
+      Tracer.getDefaultInstance().setExporter(null);
+      client.close();
+      emulator.stop();
+    }
+
+    // Assert
+    assertThat(event.protocolMessageType().get()).isEqualTo(MessageType.SUCCESS);
+
+    assertThat(request).isNotNull();
+    assertThat(request.getDetail().get()).isEqualTo("PING");
+
+    Span write = exporter.findLast("frame.write");
+    assertThat(write.getParentSpanId()).isEqualTo(request.getSpanId());
+    assertThat(write.getThreadName()).isEqualTo(request.getThreadName());
+
+    // The response is attached to the request from the monitor thread
+    assertThat(receive).isNotNull();
+    assertThat(receive.getParentSpanId()).isEqualTo(request.getSpanId());
+    assertThat(receive.getThreadName()).isNotEqualTo(request.getThreadName());
+
+    Span read = exporter.findLast("frame.read");
+    assertThat(read.getParentSpanId()).isEqualTo(receive.getSpanId());
+    assertThat(read.getDetail().get()).isEqualTo("SUCCESS");
+    assertThat(exporter.findLast("listener.dispatch").getParentSpanId()).isEqualTo(receive.getSpanId());
+    assertThat(exporter.findLast("client.wait").getParentSpanId()).isEqualTo(request.getSpanId());
+
+  }
+
+  /**
+   * Collects spans in memory
+   */
+  private static class ListExporter implements SpanExporter {
+
+    private final List<Span> spans = Lists.newArrayList();
+
+    @Override
+    public synchronized void export(Span span) {
+      spans.add(span);
+    }
+
+    private synchronized List<Span> getSpans() {
+      return Lists.newArrayList(spans);
+    }
+
+    private synchronized Span findLast(String name) {
+      for (Span span : Lists.reverse(spans)) {
+        if (span.getName().equals(name)) {
+          return span;
+        }
+      }
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,154 @@
+package uk.co.bsol.trezorj.core.trezors;
+
+import com.google.protobuf.Message;
+import org.junit.Assume;
+import org.junit.Test;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorFactory;
+import uk.co.bsol.trezorj.core.emulators.EmulatedHIDDevice;
+import uk.co.bsol.trezorj.core.emulators.ReactiveTrezorEmulator;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.wire.WireDirection;
+import uk.co.bsol.trezorj.core.wire.WireTap;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * <p>Guards the steady-state allocation of a ping round trip (writeMessage, readMessage, TrezorEvents and the
+ * listener queue) on the caller and the Trezor monitor thread. The emulator threads are not measured. The
+ * {@link uk.co.bsol.trezorj.core.utils.FrameInputStream} in the read path only allocates when an invalid frame is
+ * returned to it so it adds nothing here. The HID path allocates more because the HID streams copy each report.</p>
+ * <p>If a change legitimately needs more, raise the budget in the same commit and say why.</p>
+ */
+public class AllocationBudgetTest {
+
+  // Bytes per ping round trip (measured with headroom for JVM and JIT variation)
+  private static final long SOCKET_BUDGET = 3072;
+  private static final long HID_BUDGET = 3584;
+
+  private static final int SOCKET_WARMUP_COUNT = 5000;
+  private static final int SOCKET_MEASURED_COUNT = 2000;
+
+  // The emulated device cuts short the wait for more reports that ends each HID message
+  private static final int HID_COMPLETION_TIMEOUT_MILLIS = 1;
+  private static final int HID_WARMUP_COUNT = 2000;
+  private static final int HID_MEASURED_COUNT = 500;
+
+  @Test
+  public void testSocketPingWithinBudget() throws Exception {
+
+    // Arrange
+    Assume.assumeTrue(isAllocationMeasurable());
+
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.start();
+
+    SocketTrezor trezor = TrezorFactory.newSocketTrezor("localhost", emulator.getPort());
+
+    // Act
+    long bytesPerPing = measureBytesPerPing(trezor, SOCKET_WARMUP_COUNT, SOCKET_MEASURED_COUNT);
+
+    trezor.close();
+    emulator.stop();
+
+    // Assert
+    assertThat(bytesPerPing).isLessThanOrEqualTo(SOCKET_BUDGET);
+
+  }
+
+  @Test
+  public void testHIDPingWithinBudget() throws Exception {
+
+    // Arrange
+    Assume.assumeTrue(isAllocationMeasurable());
+
+    EmulatedHIDDevice device = EmulatedHIDDevice.newInstance("allocation");
+    device.setCompletionTimeoutMillis(HID_COMPLETION_TIMEOUT_MILLIS);
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newHIDEmulator(device);
+    emulator.start();
+
+    UsbTrezor trezor = TrezorFactory.newUsbTrezor(device);
+
+    // Act
+    long bytesPerPing = measureBytesPerPing(trezor, HID_WARMUP_COUNT, HID_MEASURED_COUNT);
+
+    trezor.close();
+    emulator.stop();
+
+    // Assert
+    assertThat(bytesPerPing).isLessThanOrEqualTo(HID_BUDGET);
+
+  }
+
+  /**
+   * @param trezor        The unconnected Trezor
+   * @param warmupCount   The number of pings before measuring
+   * @param measuredCount The number of pings to measure
+   *
+   * @return The bytes allocated per ping round trip by the caller and the monitor thread
+   */
+  private long measureBytesPerPing(AbstractTrezor trezor, int warmupCount, int measuredCount) throws Exception {
+
+    QueueListener listener = new QueueListener();
+    trezor.addListener(listener);
+
+    // Identify the monitor thread from the first frame it reads
+    MonitorThreadTap tap = new MonitorThreadTap();
+    trezor.setWireTap(tap);
+
+    trezor.connect();
+    listener.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
+
+    // Warm up so the JIT has settled (and remove the tap since it copies each frame)
+    Message ping = TrezorMessage.Ping.newBuilder().setMessage("allocation").build();
+    ping(trezor, listener, ping);
+    trezor.setWireTap(null);
+    for (int i = 0; i < warmupCount; i++) {
+      ping(trezor, listener, ping);
+    }
+
+    long callerThreadId = Thread.currentThread().getId();
+    long before = allocatedBytes(callerThreadId) + allocatedBytes(tap.monitorThreadId);
+    for (int i = 0; i < measuredCount; i++) {
+      ping(trezor, listener, ping);
+    }
+    long after = allocatedBytes(callerThreadId) + allocatedBytes(tap.monitorThreadId);
+
+    return (after - before) / measuredCount;
+  }
+
+  private void ping(AbstractTrezor trezor, QueueListener listener, Message ping) throws InterruptedException {
+
+    trezor.sendMessage(ping);
+
+    TrezorEvent event = listener.getTrezorEventQueue().poll(5, TimeUnit.SECONDS);
+    assertThat(event).isNotNull();
+    assertThat(event.protocolMessageType().get()).isEqualTo(MessageType.SUCCESS);
+  }
+
+  private static boolean isAllocationMeasurable() {
+    return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+      && ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).isThreadAllocatedMemoryEnabled();
+  }
+
+  private static long allocatedBytes(long threadId) {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(threadId);
+  }
+
+  private static class MonitorThreadTap implements WireTap {
+
+    private volatile long monitorThreadId = -1;
+
+    @Override
+    public void onFrame(WireDirection direction, short headerCode, byte[] detail) {
+      if (WireDirection.FROM_DEVICE.equals(direction)) {
+        monitorThreadId = Thread.currentThread().getId();
+      }
+    }
+  }
+
+}
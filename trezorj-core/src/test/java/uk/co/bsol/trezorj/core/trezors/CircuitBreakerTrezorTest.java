@@ -0,0 +1,291 @@
+package uk.co.bsol.trezorj.core.trezors;
+
+import com.google.common.collect.Lists;
+import com.google.protobuf.Message;
+import org.junit.Test;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.events.TrezorEvents;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.utils.VirtualClock;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class CircuitBreakerTrezorTest {
+
+  @Test
+  public void testTripsOnFailuresAndRecoversAfterProbe() throws Exception {
+
+    // Arrange
+    EchoTrezor device = new EchoTrezor();
+    device.isFailing = true;
+
+    CircuitBreakerTrezor testObject = CircuitBreakerTrezor.newInstance(
+      device,
+      new CircuitBreakerPolicy(4, 4, 0.5, 3, 1000, 200)
+    );
+    QueueListener listener = new QueueListener();
+    QueueListener stateListener = new QueueListener();
+    testObject.addListener(listener);
+    testObject.addStateListener(stateListener);
+    testObject.connect();
+    assertThat(listener.take().eventType()).isEqualTo(TrezorEventType.DEVICE_CONNECTED);
+
+    // Act
+    for (int i = 0; i < 4; i++) {
+      testObject.sendMessage(ping("request"));
+      assertThat(listener.take().protocolMessageType().get()).isEqualTo(MessageType.FAILURE);
+    }
+    assertThat(stateListener.take().eventType()).isEqualTo(TrezorEventType.DEVICE_CIRCUIT_OPEN);
+
+    long startNanos = System.nanoTime();
+    testObject.sendMessage(ping("rejected"));
+    TrezorEvent rejected = listener.take();
+    long rejectedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+    device.isFailing = false;
+
+    // Assert
+    assertThat(rejected.eventType()).isEqualTo(TrezorEventType.DEVICE_CIRCUIT_OPEN);
+    assertThat(rejectedMillis).isLessThan(100);
+    assertThat(testObject.getRejectedCount()).isEqualTo(1);
+
+    assertThat(stateListener.take().eventType()).isEqualTo(TrezorEventType.DEVICE_CIRCUIT_HALF_OPEN);
+    assertThat(stateListener.take().eventType()).isEqualTo(TrezorEventType.DEVICE_CIRCUIT_CLOSED);
+    assertThat(testObject.getState()).isEqualTo(CircuitState.CLOSED);
+
+    // The probe response is not seen by the listener
+    testObject.sendMessage(ping("after"));
+    TrezorEvent event = listener.take();
+    assertThat(event.protocolMessageType().get()).isEqualTo(MessageType.SUCCESS);
+    assertThat(((TrezorMessage.Success) event.protocolMessage().get()).getMessage()).isEqualTo("after");
+
+    assertThat(device.getReceived()).hasSize(6);
+
+    testObject.close();
+
+  }
+
+  @Test
+  public void testTripsOnConsecutiveTimeouts() throws Exception {
+
+    // Arrange
+    EchoTrezor device = new EchoTrezor();
+    device.isSilent = true;
+
+    CircuitBreakerTrezor testObject = CircuitBreakerTrezor.newInstance(
+      device,
+      new CircuitBreakerPolicy(10, 10, 1.0, 2, 50, 60000)
+    );
+    QueueListener stateListener = new QueueListener();
+    testObject.addStateListener(stateListener);
+    testObject.connect();
+
+    // Act
+    testObject.sendMessage(ping("first"));
+    testObject.sendMessage(ping("second"));
+
+    // Assert
+    assertThat(stateListener.take().eventType()).isEqualTo(TrezorEventType.DEVICE_CIRCUIT_OPEN);
+    assertThat(testObject.getState()).isEqualTo(CircuitState.OPEN);
+
+    testObject.close();
+
+  }
+
+  @Test
+  public void testLateResponseAfterTimeoutIsDropped() throws Exception {
+
+    // Arrange
+    VirtualClock clock = new VirtualClock();
+    clock.setAutoAdvance(false);
+    EchoTrezor device = new EchoTrezor();
+    device.isHeld = true;
+
+    CircuitBreakerTrezor testObject = CircuitBreakerTrezor.newInstance(
+      device,
+      new CircuitBreakerPolicy(10, 10, 1.0, 3, 100, 60000)
+    );
+    testObject.setClock(clock);
+    QueueListener listener = new QueueListener();
+    testObject.addListener(listener);
+    testObject.connect();
+    assertThat(listener.take().eventType()).isEqualTo(TrezorEventType.DEVICE_CONNECTED);
+
+    // Act (the caller is answered in place once the request times out)
+    testObject.sendMessage(ping("slow"));
+    TrezorEvent timedOut = advanceUntilEvent(clock, listener);
+
+    device.release();
+    device.isHeld = false;
+    testObject.sendMessage(ping("next"));
+
+    // Assert (the late answer to the first request is not taken as the answer to the second)
+    assertThat(((TrezorMessage.Failure) timedOut.protocolMessage().get()).getMessage()).isEqualTo("No response from the device");
+    TrezorEvent event = listener.take();
+    assertThat(((TrezorMessage.Success) event.protocolMessage().get()).getMessage()).isEqualTo("next");
+    assertThat(listener.getTrezorEventQueue().poll(200, TimeUnit.MILLISECONDS)).isNull();
+    assertThat(testObject.getState()).isEqualTo(CircuitState.CLOSED);
+
+    testObject.close();
+
+  }
+
+  @Test
+  public void testResponseFromBeforeTripIsDroppedAndProbeRunsOnClock() throws Exception {
+
+    // Arrange
+    VirtualClock clock = new VirtualClock();
+    clock.setAutoAdvance(false);
+    EchoTrezor device = new EchoTrezor();
+    device.isHeld = true;
+
+    CircuitBreakerTrezor testObject = CircuitBreakerTrezor.newInstance(
+      device,
+      new CircuitBreakerPolicy(10, 10, 1.0, 1, 100, 1000)
+    );
+    testObject.setClock(clock);
+    QueueListener listener = new QueueListener();
+    QueueListener stateListener = new QueueListener();
+    testObject.addListener(listener);
+    testObject.addStateListener(stateListener);
+    testObject.connect();
+    assertThat(listener.take().eventType()).isEqualTo(TrezorEventType.DEVICE_CONNECTED);
+
+    // Act (the first timeout trips the breaker while the second request is outstanding)
+    testObject.sendMessage(ping("first"));
+    testObject.sendMessage(ping("second"));
+    TrezorEvent timedOut = advanceUntilEvent(clock, listener);
+    TrezorEvent tripped = listener.take();
+
+    device.release();
+    device.isHeld = false;
+
+    // Assert (neither late answer is passed on)
+    assertThat(((TrezorMessage.Failure) timedOut.protocolMessage().get()).getMessage()).isEqualTo("No response from the device");
+    assertThat(((TrezorMessage.Failure) tripped.protocolMessage().get()).getMessage()).isEqualTo("Circuit breaker is open");
+    assertThat(stateListener.take().eventType()).isEqualTo(TrezorEventType.DEVICE_CIRCUIT_OPEN);
+    assertThat(listener.getTrezorEventQueue().poll(200, TimeUnit.MILLISECONDS)).isNull();
+
+    // The open period is on the clock so the breaker waits for it
+    assertThat(stateListener.getTrezorEventQueue().poll(200, TimeUnit.MILLISECONDS)).isNull();
+    clock.advance(1, TimeUnit.SECONDS);
+    assertThat(stateListener.take().eventType()).isEqualTo(TrezorEventType.DEVICE_CIRCUIT_HALF_OPEN);
+    assertThat(stateListener.take().eventType()).isEqualTo(TrezorEventType.DEVICE_CIRCUIT_CLOSED);
+    assertThat(listener.getTrezorEventQueue().poll()).isNull();
+
+    testObject.close();
+
+  }
+
+  @Test
+  public void testLateResponseWhileHalfOpenIsNotTakenForTheProbe() throws Exception {
+
+    // Arrange
+    VirtualClock clock = new VirtualClock();
+    clock.setAutoAdvance(false);
+    EchoTrezor device = new EchoTrezor();
+    device.isHeld = true;
+
+    CircuitBreakerTrezor testObject = CircuitBreakerTrezor.newInstance(
+      device,
+      new CircuitBreakerPolicy(10, 10, 1.0, 1, 100, 1000)
+    );
+    testObject.setClock(clock);
+    QueueListener listener = new QueueListener();
+    QueueListener stateListener = new QueueListener();
+    testObject.addListener(listener);
+    testObject.addStateListener(stateListener);
+    testObject.connect();
+    assertThat(listener.take().eventType()).isEqualTo(TrezorEventType.DEVICE_CONNECTED);
+
+    // Trip with two requests outstanding and lose the answer to the first
+    testObject.sendMessage(ping("first"));
+    testObject.sendMessage(ping("second"));
+    advanceUntilEvent(clock, listener);
+    listener.take();
+    assertThat(stateListener.take().eventType()).isEqualTo(TrezorEventType.DEVICE_CIRCUIT_OPEN);
+    device.held.remove(0);
+
+    // Act (the late answer to the second request arrives just ahead of the probe's)
+    clock.advance(1, TimeUnit.SECONDS);
+    assertThat(stateListener.take().eventType()).isEqualTo(TrezorEventType.DEVICE_CIRCUIT_HALF_OPEN);
+    while (device.held.size() < 2) {
+      // The probe only needs to reach the device
+      Thread.yield();
+    }
+    device.isHeld = false;
+    device.release();
+
+    // Assert (the probe's echo closes the breaker and the late answer is not passed on)
+    assertThat(stateListener.take().eventType()).isEqualTo(TrezorEventType.DEVICE_CIRCUIT_CLOSED);
+    assertThat(testObject.getState()).isEqualTo(CircuitState.CLOSED);
+    assertThat(listener.getTrezorEventQueue().poll(200, TimeUnit.MILLISECONDS)).isNull();
+
+    testObject.close();
+
+  }
+
+  /**
+   * <p>Advance the clock in small steps until the breaker's timer gives the listener an event</p>
+   */
+  private static TrezorEvent advanceUntilEvent(VirtualClock clock, QueueListener listener) throws InterruptedException {
+
+    for (int i = 0; i < 500; i++) {
+      clock.advance(10, TimeUnit.MILLISECONDS);
+      TrezorEvent event = listener.getTrezorEventQueue().poll(10, TimeUnit.MILLISECONDS);
+      if (event != null) {
+        return event;
+      }
+    }
+    return listener.take();
+  }
+
+  private static Message ping(String message) {
+    return TrezorMessage.Ping.newBuilder().setMessage(message).build();
+  }
+
+  /**
+   * A device that answers each Ping at once with a Failure, an echo or not at all (or holds the answers back)
+   */
+  private static class EchoTrezor extends ScriptedTrezor {
+
+    private volatile boolean isFailing = false;
+    private volatile boolean isSilent = false;
+    private volatile boolean isHeld = false;
+
+    // Responses held back until released (in order)
+    private final List<TrezorEvent> held = Lists.newCopyOnWriteArrayList();
+
+    private void release() {
+      for (TrezorEvent event : held) {
+        emit(event);
+      }
+      held.clear();
+    }
+
+    @Override
+    protected void respond(Message message) {
+      if (isSilent) {
+        return;
+      }
+      TrezorEvent event;
+      if (isFailing) {
+        event = TrezorEvents.newProtocolEvent(MessageType.FAILURE, TrezorMessage.Failure.getDefaultInstance());
+      } else {
+        String echo = ((TrezorMessage.Ping) message).getMessage();
+        event = TrezorEvents.newProtocolEvent(MessageType.SUCCESS, TrezorMessage.Success.newBuilder().setMessage(echo).build());
+      }
+      if (isHeld) {
+        held.add(event);
+      } else {
+        emit(event);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,41 @@
+package uk.co.bsol.trezorj.core.trezors;
+
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorListener;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * <p>Test utility to provide the following to tests of event sources:</p>
+ * <ul>
+ * <li>A listener holding the queue provided by the source</li>
+ * <li>A bounded wait for the next event</li>
+ * </ul>
+ */
+public class QueueListener implements TrezorListener {
+
+  private volatile BlockingQueue<TrezorEvent> trezorEventQueue;
+
+  /**
+   * @return The next event (fails the test if none arrives within 2 seconds)
+   */
+  public TrezorEvent take() throws InterruptedException {
+    TrezorEvent event = trezorEventQueue.poll(2, TimeUnit.SECONDS);
+    assertThat(event).isNotNull();
+    return event;
+  }
+
+  @Override
+  public BlockingQueue<TrezorEvent> getTrezorEventQueue() {
+    return trezorEventQueue;
+  }
+
+  @Override
+  public void setTrezorEventQueue(BlockingQueue<TrezorEvent> trezorEventQueue) {
+    this.trezorEventQueue = trezorEventQueue;
+  }
+
+}
@@ -0,0 +1,95 @@
+package uk.co.bsol.trezorj.core.trezors;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Queues;
+import com.google.protobuf.Message;
+import uk.co.bsol.trezorj.core.Trezor;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.TrezorListener;
+import uk.co.bsol.trezorj.core.events.TrezorEvents;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * <p>Test utility to provide the following to tests of wrappers and clients:</p>
+ * <ul>
+ * <li>A fake device recording every message sent to it</li>
+ * <li>DEVICE_CONNECTED and DEVICE_DISCONNECTED on connect and close</li>
+ * <li>A {@link #respond(Message)} hook for each test's own answers (by default the device is silent)</li>
+ * </ul>
+ */
+public class ScriptedTrezor implements Trezor {
+
+  private final BlockingQueue<Message> received = Queues.newLinkedBlockingQueue();
+  private final List<TrezorListener> listeners = Lists.newCopyOnWriteArrayList();
+
+  private volatile boolean isClosed = false;
+
+  /**
+   * @return The messages sent to the device in order
+   */
+  public BlockingQueue<Message> getReceived() {
+    return received;
+  }
+
+  /**
+   * @return True once the device has been closed
+   */
+  public boolean isClosed() {
+    return isClosed;
+  }
+
+  /**
+   * @param event The event to give every listener
+   */
+  public void emit(TrezorEvent event) {
+    for (TrezorListener listener : listeners) {
+      listener.getTrezorEventQueue().add(event);
+    }
+  }
+
+  /**
+   * <p>Answer a message (called after it is recorded)</p>
+   *
+   * @param message The message sent to the device
+   */
+  protected void respond(Message message) {
+    // Silent unless overridden
+  }
+
+  @Override
+  public void connect() {
+    emit(TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_CONNECTED));
+  }
+
+  @Override
+  public void close() {
+    isClosed = true;
+    emit(TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_DISCONNECTED));
+  }
+
+  @Override
+  public void sendMessage(Message message) {
+    received.add(message);
+    respond(message);
+  }
+
+  @Override
+  public String getDeviceId() {
+    return "scripted";
+  }
+
+  @Override
+  public void addListener(TrezorListener trezorListener) {
+    listeners.add(trezorListener);
+    trezorListener.setTrezorEventQueue(Queues.<TrezorEvent>newArrayBlockingQueue(AbstractTrezor.MAX_QUEUE_SIZE));
+  }
+
+  @Override
+  public void removeListener(TrezorListener trezorListener) {
+    listeners.remove(trezorListener);
+  }
+
+}
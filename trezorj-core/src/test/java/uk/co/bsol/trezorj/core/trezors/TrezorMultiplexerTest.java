@@ -0,0 +1,262 @@
+package uk.co.bsol.trezorj.core.trezors;
+
+import com.google.bitcoin.core.Transaction;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.protobuf.Message;
+import org.junit.Test;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorFactory;
+import uk.co.bsol.trezorj.core.clients.BlockingTrezorClient;
+import uk.co.bsol.trezorj.core.clients.TrezorClients;
+import uk.co.bsol.trezorj.core.emulators.ReactiveTrezorEmulator;
+import uk.co.bsol.trezorj.core.events.TrezorEvents;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.utils.FakeTransactions;
+import uk.co.bsol.trezorj.core.utils.VirtualClock;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+
+public class TrezorMultiplexerTest {
+
+  @Test
+  public void testSigningIsNotInterleavedWithPings() throws Exception {
+
+    // Arrange
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.start();
+
+    TrezorMultiplexer testObject = TrezorMultiplexer.newInstance(TrezorFactory.newSocketTrezor("localhost", emulator.getPort()));
+    testObject.connect();
+
+    MultiplexedTrezor signerSession = testObject.newSession("signer");
+    MultiplexedTrezor pingerSession = testObject.newSession("pinger");
+
+    final BlockingTrezorClient signer = TrezorClients.newBlockingInstance(signerSession, TrezorClients.newSessionId());
+    final BlockingTrezorClient pinger = TrezorClients.newBlockingInstance(pingerSession, TrezorClients.newSessionId());
+    signer.connect();
+    pinger.connect();
+
+    final Transaction tx = FakeTransactions.newMainNetFakeTx(
+      FakeTransactions.getElectrumAddressN(new int[]{0, 0}),
+      FakeTransactions.getElectrumAddressN(new int[]{0, 1}),
+      FakeTransactions.asMainNetAddress("1MKw8vWxvBnaBcrL2yXvZceqyRMoeG2kRn"),
+      BigInteger.TEN,
+      BigInteger.ONE
+    );
+
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+    // Act
+    Future<Optional<Transaction>> signed = executorService.submit(new Callable<Optional<Transaction>>() {
+      @Override
+      public Optional<Transaction> call() throws Exception {
+        return signer.signTx(tx);
+      }
+    });
+    Future<List<TrezorEvent>> pinged = executorService.submit(new Callable<List<TrezorEvent>>() {
+      @Override
+      public List<TrezorEvent> call() throws Exception {
+        List<TrezorEvent> events = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+          events.add(pinger.ping());
+        }
+        return events;
+      }
+    });
+
+    // Assert
+    assertThat(signed.get(20, TimeUnit.SECONDS).isPresent()).isTrue();
+    for (TrezorEvent event : pinged.get(20, TimeUnit.SECONDS)) {
+      assertThat(event.protocolMessageType().get()).isEqualTo(MessageType.SUCCESS);
+    }
+    assertThat(signerSession.getConversationCount()).isEqualTo(1);
+    assertThat(pingerSession.getConversationCount()).isEqualTo(10);
+    assertThat(signerSession.getDeviceId()).isEqualTo(testObject.getDeviceId() + "/signer");
+    assertThat(testObject.getDeviceId()).startsWith("socket:localhost:" + emulator.getPort() + "#");
+
+    executorService.shutdownNow();
+    testObject.close();
+    emulator.stop();
+
+  }
+
+  @Test
+  public void testWaitingSessionsAreScheduledByWeight() throws Exception {
+
+    // Arrange (time stands still so the holder keeps the device until it is answered)
+    VirtualClock clock = new VirtualClock();
+    HeldTrezor device = new HeldTrezor();
+    TrezorMultiplexer testObject = TrezorMultiplexer.newInstance(device);
+    testObject.setClock(clock);
+    testObject.connect();
+
+    final MultiplexedTrezor holder = testObject.newSession("holder");
+    List<MultiplexedTrezor> waiters = Lists.newArrayList(
+      testObject.newSession("light1"),
+      testObject.newSession("light2"),
+      testObject.newSession("heavy", 3)
+    );
+    holder.connect();
+
+    // Act
+    holder.sendMessage(ping("holder"));
+    assertThat(device.getReceived().poll(1, TimeUnit.SECONDS)).isNotNull();
+
+    // Queue the others behind the holder (the heavy session last)
+    ExecutorService executorService = Executors.newFixedThreadPool(waiters.size());
+    for (final MultiplexedTrezor waiter : waiters) {
+      waiter.connect();
+      executorService.submit(new Runnable() {
+        @Override
+        public void run() {
+          waiter.sendMessage(ping(waiter.getName()));
+        }
+      });
+      while (!isWaiting(testObject, waiter)) {
+        // The waiter only needs to reach the queue
+        Thread.yield();
+      }
+    }
+
+    List<String> order = Lists.newArrayList();
+    for (int i = 0; i < waiters.size(); i++) {
+      device.answer();
+      order.add(((TrezorMessage.Ping) device.getReceived().poll(1, TimeUnit.SECONDS)).getMessage());
+    }
+
+    // Assert
+    assertThat(order).containsExactly("heavy", "light1", "light2");
+
+    executorService.shutdownNow();
+    testObject.close();
+
+  }
+
+  @Test
+  public void testUnansweredRequestIsExpired() throws Exception {
+
+    // Arrange (a device that never answers the first request, with every response scripted on the clock)
+    VirtualClock clock = new VirtualClock();
+    clock.setAutoAdvanceTimeouts(true);
+    HeldTrezor device = new HeldTrezor();
+    TrezorMultiplexer testObject = TrezorMultiplexer.newInstance(device);
+    testObject.setClock(clock);
+    testObject.connect();
+
+    MultiplexedTrezor holder = testObject.newSession("holder");
+    final MultiplexedTrezor waiter = testObject.newSession("waiter");
+    QueueListener holderListener = new QueueListener();
+    QueueListener waiterListener = new QueueListener();
+    holder.addListener(holderListener);
+    waiter.addListener(waiterListener);
+    holder.connect();
+    waiter.connect();
+    holderListener.getTrezorEventQueue().clear();
+    waiterListener.getTrezorEventQueue().clear();
+
+    holder.sendMessage(ping("holder"));
+    assertThat(device.getReceived().poll(1, TimeUnit.SECONDS)).isNotNull();
+
+    // Act (the waiter gets the device once the holder's request has expired)
+    long startNanos = System.nanoTime();
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        waiter.sendMessage(ping("waiter"));
+      }
+    });
+    thread.start();
+    Message sent = device.getReceived().poll(5, TimeUnit.SECONDS);
+    thread.join(1000);
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+    // The late answer to the holder's request and then the answer to the waiter's
+    device.answer();
+    device.answer();
+
+    // Assert (the holder is told and the late answer is not passed to the waiter)
+    assertThat(((TrezorMessage.Ping) sent).getMessage()).isEqualTo("waiter");
+    assertThat(clock.nanoTime()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(TrezorMultiplexer.DEFAULT_CONVERSATION_TIMEOUT_MILLIS));
+    assertThat(elapsedMillis).isLessThan(5000);
+    TrezorEvent holderEvent = holderListener.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
+    assertThat(holderEvent.protocolMessageType().get()).isEqualTo(MessageType.FAILURE);
+    assertThat(waiterListener.getTrezorEventQueue().poll(1, TimeUnit.SECONDS).protocolMessageType().get()).isEqualTo(MessageType.SUCCESS);
+    assertThat(waiterListener.getTrezorEventQueue().poll(200, TimeUnit.MILLISECONDS)).isNull();
+    assertThat(holderListener.getTrezorEventQueue().poll()).isNull();
+    assertThat(waiter.getConversationCount()).isEqualTo(1);
+
+    testObject.close();
+
+  }
+
+  @Test
+  public void testSendGivesUpAfterTimeout() throws Exception {
+
+    // Arrange (the holder's conversation outlasts the waiter's patience)
+    VirtualClock clock = new VirtualClock();
+    clock.setAutoAdvanceTimeouts(true);
+    HeldTrezor device = new HeldTrezor();
+    TrezorMultiplexer testObject = TrezorMultiplexer.newInstance(device);
+    testObject.setClock(clock);
+    testObject.setSendTimeout(10, TimeUnit.SECONDS);
+    testObject.connect();
+
+    MultiplexedTrezor holder = testObject.newSession("holder");
+    MultiplexedTrezor waiter = testObject.newSession("waiter");
+    holder.connect();
+    waiter.connect();
+
+    holder.sendMessage(ping("holder"));
+    assertThat(device.getReceived().poll(1, TimeUnit.SECONDS)).isNotNull();
+
+    // Act
+    long startNanos = System.nanoTime();
+    long startClockNanos = clock.nanoTime();
+    try {
+      waiter.sendMessage(ping("waiter"));
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      // Assert
+      assertThat(e.getMessage()).isEqualTo("Session 'waiter' timed out waiting for the device");
+    }
+    assertThat(clock.nanoTime() - startClockNanos).isEqualTo(TimeUnit.SECONDS.toNanos(10));
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)).isLessThan(5000);
+    assertThat(device.getReceived().isEmpty()).isTrue();
+    assertThat(isWaiting(testObject, waiter)).isFalse();
+
+    testObject.close();
+
+  }
+
+  private static boolean isWaiting(TrezorMultiplexer multiplexer, MultiplexedTrezor session) {
+    synchronized (multiplexer) {
+      return session.isWaiting;
+    }
+  }
+
+  private static Message ping(String name) {
+    return TrezorMessage.Ping.newBuilder().setMessage(name).build();
+  }
+
+  /**
+   * A device that answers only when told to (with a Success)
+   */
+  private static class HeldTrezor extends ScriptedTrezor {
+
+    private void answer() {
+      emit(TrezorEvents.newProtocolEvent(MessageType.SUCCESS, TrezorMessage.Success.getDefaultInstance()));
+    }
+  }
+
+}
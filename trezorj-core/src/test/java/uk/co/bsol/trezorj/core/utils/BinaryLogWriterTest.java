@@ -0,0 +1,139 @@
+package uk.co.bsol.trezorj.core.utils;
+
+import com.google.common.collect.Lists;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+
+public class BinaryLogWriterTest {
+
+  private static final int MAGIC = 0x54455354;
+  private static final short VERSION = 3;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testRecordsLargerThanTheBufferAreKeptInOrder() throws Exception {
+
+    // Arrange
+    File file = temporaryFolder.newFile("records.log");
+    BinaryLogWriter testObject = BinaryLogWriter.newInstance(file, MAGIC, VERSION);
+    int[] lengths = new int[]{10, BinaryLogWriter.BUFFER_SIZE - 100, 3 * BinaryLogWriter.BUFFER_SIZE, 1};
+
+    // Act
+    for (int i = 0; i < lengths.length; i++) {
+      testObject.reserve(8).putInt(i).putInt(lengths[i]);
+      testObject.put(newBytes(i, lengths[i]));
+    }
+    testObject.close();
+
+    // Assert
+    List<byte[]> records = readRecords(file);
+    assertThat(records).hasSize(lengths.length);
+    for (int i = 0; i < lengths.length; i++) {
+      assertThat(records.get(i)).isEqualTo(newBytes(i, lengths[i]));
+    }
+
+  }
+
+  @Test
+  public void testRecordCutShortIsIgnored() throws Exception {
+
+    // Arrange
+    File file = temporaryFolder.newFile("truncated.log");
+    BinaryLogWriter testObject = BinaryLogWriter.newInstance(file, MAGIC, VERSION);
+    testObject.reserve(8).putInt(0).putInt(4);
+    testObject.put(newBytes(0, 4));
+    testObject.reserve(8).putInt(1).putInt(100);
+    testObject.put(newBytes(1, 100));
+    testObject.close();
+
+    // Act (as if the process died part way through the second record)
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+    randomAccessFile.setLength(randomAccessFile.length() - 50);
+    randomAccessFile.close();
+
+    // Assert
+    assertThat(readRecords(file)).hasSize(1);
+
+  }
+
+  @Test
+  public void testOtherFormatIsRejected() throws Exception {
+
+    // Arrange
+    File file = temporaryFolder.newFile("other.log");
+    BinaryLogWriter.newInstance(file, MAGIC + 1, VERSION).close();
+
+    // Act
+    try {
+      BinaryLogReader.open(file, MAGIC, VERSION, "test log");
+      fail("Expected IOException");
+    } catch (IOException e) {
+      // Assert
+      assertThat(e.getMessage()).isEqualTo("Not a test log: other.log");
+    }
+
+  }
+
+  @Test
+  public void testAbandonedWriterDropsBufferedRecords() throws Exception {
+
+    // Arrange
+    File file = temporaryFolder.newFile("abandoned.log");
+    BinaryLogWriter testObject = BinaryLogWriter.newInstance(file, MAGIC, VERSION);
+    testObject.reserve(8).putInt(0).putInt(4);
+    testObject.put(newBytes(0, 4));
+
+    // Act
+    testObject.abandon();
+    testObject.close();
+
+    // Assert (not even the header was written)
+    assertThat(testObject.isOpen()).isFalse();
+    assertThat(file.length()).isEqualTo(0);
+
+  }
+
+  private static List<byte[]> readRecords(File file) throws IOException {
+
+    final List<byte[]> records = Lists.newArrayList();
+
+    BinaryLogReader reader = BinaryLogReader.open(file, MAGIC, VERSION, "test log");
+    try {
+      reader.readRecords(new BinaryLogReader.RecordReader() {
+        @Override
+        public void read(DataInputStream in) throws IOException {
+          assertThat(in.readInt()).isEqualTo(records.size());
+          byte[] bytes = new byte[in.readInt()];
+          in.readFully(bytes);
+          records.add(bytes);
+        }
+      });
+    } finally {
+      reader.close();
+    }
+
+    return records;
+  }
+
+  private static byte[] newBytes(int record, int length) {
+
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) (record + i);
+    }
+    return bytes;
+  }
+
+}
@@ -5,6 +5,7 @@ import com.google.bitcoin.core.Transaction;
 import org.junit.Test;
 import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigInteger;
 
 import static org.fest.assertions.api.Assertions.assertThat;
@@ -76,5 +77,38 @@ public class TrezorMessageUtilsTest {
 
   }
 
+  @Test
+  public void testSkipToAlignmentAfterNoiseEndingInMarker() throws Exception {
+
+    // Arrange (noise ending in '#' directly ahead of the alignment string)
+    byte[] bytes = new byte[]{1, 2, '#', '#', '#', 0, 2, 0, 0, 0, 0};
+    FrameInputStream in = new FrameInputStream(new ByteArrayInputStream(bytes));
+
+    // Act
+    int skipped = TrezorMessageUtils.skipToAlignment(in);
+
+    // Assert (the stray marker is not taken as part of the header)
+    assertThat(skipped).isEqualTo(3);
+    assertThat(in.readShort()).isEqualTo((short) 2);
+    assertThat(in.readInt()).isEqualTo(0);
+
+  }
+
+  @Test
+  public void testUnreadHeader() throws Exception {
+
+    // Arrange
+    FrameInputStream in = new FrameInputStream(new ByteArrayInputStream(new byte[]{'#', '#', 9}));
+
+    // Act
+    TrezorMessageUtils.unreadHeader(in, (short) 0x0102, 0x03040506);
+
+    // Assert (the header comes back in order ahead of the rest of the stream)
+    assertThat(in.readShort()).isEqualTo((short) 0x0102);
+    assertThat(in.readInt()).isEqualTo(0x03040506);
+    assertThat(TrezorMessageUtils.skipToAlignment(in)).isEqualTo(0);
+    assertThat(in.readByte()).isEqualTo((byte) 9);
+
+  }
 
 }
@@ -0,0 +1,168 @@
+package uk.co.bsol.trezorj.core.utils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Queues;
+import com.google.protobuf.Message;
+import org.junit.Test;
+import uk.co.bsol.trezorj.core.emulators.TrezorEmulator;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+
+import java.io.DataInputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class VirtualClockTest {
+
+  @Test
+  public void testPollTimeoutIsVirtual() throws Exception {
+
+    // Arrange (fully virtual so the timeout may be advanced)
+    VirtualClock testObject = new VirtualClock();
+    testObject.setAutoAdvanceTimeouts(true);
+    BlockingQueue<String> queue = Queues.newArrayBlockingQueue(1);
+
+    // Act
+    long start = System.currentTimeMillis();
+    String element = testObject.poll(queue, 30, TimeUnit.SECONDS);
+    long elapsed = System.currentTimeMillis() - start;
+
+    // Assert
+    assertThat(element).isNull();
+    assertThat(testObject.nanoTime()).isEqualTo(TimeUnit.SECONDS.toNanos(30));
+    assertThat(elapsed).isLessThan(1000);
+
+  }
+
+  @Test
+  public void testRealTimeResponseIsNotTimedOut() throws Exception {
+
+    // Arrange (a response that arrives in real time well after the settle window)
+    VirtualClock testObject = new VirtualClock();
+    final BlockingQueue<String> queue = Queues.newArrayBlockingQueue(1);
+
+    new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(100);
+          queue.add("response");
+        } catch (InterruptedException e) {
+          // Leave the queue empty to fail the test
+        }
+      }
+    }).start();
+
+    // Act
+    String element = testObject.poll(queue, 1, TimeUnit.SECONDS);
+
+    // Assert
+    assertThat(element).isEqualTo("response");
+    assertThat(testObject.nanoTime()).isEqualTo(0);
+
+  }
+
+  @Test
+  public void testSleepersWakeInDeadlineOrder() throws Exception {
+
+    // Arrange (a settle window long enough for all the sleepers to start)
+    final VirtualClock testObject = new VirtualClock(100, TimeUnit.MILLISECONDS);
+    final List<Integer> wakeOrder = Collections.synchronizedList(Lists.<Integer>newArrayList());
+    final CountDownLatch latch = new CountDownLatch(3);
+
+    // Act
+    for (final int seconds : new int[]{30, 10, 20}) {
+      new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            testObject.sleep(seconds, TimeUnit.SECONDS);
+            wakeOrder.add(seconds);
+          } catch (InterruptedException e) {
+            // Leave the latch to fail the test
+            return;
+          }
+          latch.countDown();
+        }
+      }).start();
+    }
+
+    // Assert
+    assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(wakeOrder).containsExactly(10, 20, 30);
+    assertThat(testObject.nanoTime()).isEqualTo(TimeUnit.SECONDS.toNanos(30));
+
+  }
+
+  @Test
+  public void testManualAdvance() throws Exception {
+
+    // Arrange
+    final VirtualClock testObject = new VirtualClock();
+    testObject.setAutoAdvance(false);
+    final CountDownLatch latch = new CountDownLatch(1);
+
+    new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          testObject.sleep(1, TimeUnit.HOURS);
+          latch.countDown();
+        } catch (InterruptedException e) {
+          // Leave the latch to fail the test
+        }
+      }
+    }).start();
+
+    // Act
+    boolean isEarly = latch.await(100, TimeUnit.MILLISECONDS);
+    testObject.advance(1, TimeUnit.HOURS);
+
+    // Assert
+    assertThat(isEarly).isFalse();
+    assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+
+  }
+
+  @Test
+  public void testScriptedEmulatorWithoutRealDelays() throws Exception {
+
+    // Arrange
+    VirtualClock clock = new VirtualClock();
+
+    PipedOutputStream emulatorOut = new PipedOutputStream();
+    DataInputStream in = new DataInputStream(new PipedInputStream(emulatorOut));
+
+    // The streaming emulator starts with a 1 second Success
+    TrezorEmulator emulator = TrezorEmulator.newStreamingTrezorEmulator(emulatorOut, null);
+    for (int i = 0; i < 3; i++) {
+      TrezorEmulator.addSuccessMessage(emulator, 5, TimeUnit.SECONDS);
+    }
+    emulator.setClock(clock);
+
+    // Act
+    long start = System.currentTimeMillis();
+    emulator.start();
+
+    List<Message> messages = Lists.newArrayList();
+    for (int i = 0; i < 4; i++) {
+      messages.add(TrezorMessageUtils.readMessage(in));
+    }
+    long elapsed = System.currentTimeMillis() - start;
+
+    // Assert
+    for (Message message : messages) {
+      assertThat(message).isInstanceOf(TrezorMessage.Success.class);
+    }
+    assertThat(clock.nanoTime()).isEqualTo(TimeUnit.SECONDS.toNanos(16));
+    assertThat(elapsed).isLessThan(1000);
+
+  }
+
+}
@@ -0,0 +1,157 @@
+package uk.co.bsol.trezorj.core.wire;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorFactory;
+import uk.co.bsol.trezorj.core.clients.BlockingTrezorClient;
+import uk.co.bsol.trezorj.core.clients.TrezorClients;
+import uk.co.bsol.trezorj.core.emulators.EmulatorHandler;
+import uk.co.bsol.trezorj.core.emulators.EmulatorSession;
+import uk.co.bsol.trezorj.core.emulators.FaultProfile;
+import uk.co.bsol.trezorj.core.emulators.ReactiveTrezorEmulator;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.trezors.SocketTrezor;
+import uk.co.bsol.trezorj.core.utils.VirtualClock;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class WireRecorderTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testRecordAndReplay() throws Exception {
+
+    // Arrange
+    File file = temporaryFolder.newFile("session.wire");
+    ByteString sessionId = TrezorClients.newSessionId();
+
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.setSeed(7);
+    emulator.start();
+
+    WireRecorder testObject = WireRecorder.newInstance(file);
+    SocketTrezor trezor = TrezorFactory.newSocketTrezor("localhost", emulator.getPort());
+    trezor.setWireTap(testObject);
+
+    // Act
+    String recordedAddress = runSession(TrezorClients.newBlockingInstance(trezor, sessionId));
+    testObject.close();
+    emulator.stop();
+
+    WireLog wireLog = WireLog.read(file);
+
+    // Assert
+    List<WireFrame> frames = wireLog.getFrames();
+    assertThat(testObject.getFrameCount()).isEqualTo(8);
+    assertThat(frames).hasSize(8);
+    assertThat(frames.get(0).getDirection()).isEqualTo(WireDirection.TO_DEVICE);
+    assertThat(frames.get(0).getMessageType()).isEqualTo(MessageType.INITALIZE);
+    assertThat(frames.get(1).getDirection()).isEqualTo(WireDirection.FROM_DEVICE);
+    assertThat(frames.get(1).getMessageType()).isEqualTo(MessageType.FEATURES);
+    for (int i = 1; i < frames.size(); i++) {
+      assertThat(frames.get(i).getOffsetNanos()).isGreaterThanOrEqualTo(frames.get(i - 1).getOffsetNanos());
+    }
+
+    // Replay against a fresh client (a different seed would give a different address)
+    ReactiveTrezorEmulator replayEmulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    replayEmulator.setSeed(99);
+    WireReplayer replayer = WireReplayer.addTo(replayEmulator, wireLog, WireReplayer.Speed.MAXIMUM);
+    replayEmulator.start();
+
+    BlockingTrezorClient client = TrezorClients.newBlockingSocketInstance("localhost", replayEmulator.getPort(), sessionId);
+    String replayedAddress = runSession(client);
+    assertThat(replayedAddress).isEqualTo(recordedAddress);
+    assertThat(replayer.getReplayedCount()).isEqualTo(4);
+
+    replayEmulator.stop();
+
+  }
+
+  @Test
+  public void testOriginalSpeedKeepsTheSpacingBetweenResponses() throws Exception {
+
+    // Arrange (one request answered by two frames 100 ms and 300 ms after it)
+    WireLog wireLog = new WireLog(0, Lists.newArrayList(
+      newFrame(0, WireDirection.TO_DEVICE, TrezorMessage.Ping.getDefaultInstance()),
+      newFrame(100, WireDirection.FROM_DEVICE, TrezorMessage.ButtonRequest.getDefaultInstance()),
+      newFrame(300, WireDirection.FROM_DEVICE, TrezorMessage.Success.getDefaultInstance())
+    ));
+    WireReplayer testObject = new WireReplayer(wireLog, WireReplayer.Speed.ORIGINAL);
+
+    final VirtualClock clock = new VirtualClock();
+    final List<Long> writeMillis = Lists.newArrayList();
+    OutputStream out = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        writeMillis.add(TimeUnit.NANOSECONDS.toMillis(clock.nanoTime()));
+      }
+    };
+    long startMillis = TimeUnit.NANOSECONDS.toMillis(clock.nanoTime());
+    EmulatorSession session = new EmulatorSession(
+      Maps.<MessageType, EmulatorHandler>newHashMap(),
+      Maps.<MessageType, Long>newHashMap(),
+      FaultProfile.newInstance(),
+      new DataInputStream(new ByteArrayInputStream(new byte[0])),
+      new DataOutputStream(out),
+      0,
+      clock
+    );
+
+    // Act
+    List<Message> returned = testObject.handle(session, TrezorMessage.Ping.getDefaultInstance());
+
+    // Assert (each response goes out at its own offset rather than all at the last one)
+    assertThat(returned).isEmpty();
+    assertThat(writeMillis).isNotEmpty();
+    assertThat(writeMillis.get(0) - startMillis).isEqualTo(100);
+    assertThat(writeMillis.get(writeMillis.size() - 1) - startMillis).isEqualTo(300);
+    assertThat(testObject.getReplayedCount()).isEqualTo(1);
+
+  }
+
+  private static WireFrame newFrame(long offsetMillis, WireDirection direction, Message message) {
+    return new WireFrame(
+      TimeUnit.MILLISECONDS.toNanos(offsetMillis),
+      direction,
+      MessageType.getHeaderCode(message),
+      message.toByteArray()
+    );
+  }
+
+  /**
+   * @return The address from the session
+   */
+  private String runSession(BlockingTrezorClient client) throws Exception {
+
+    client.connect();
+    client.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
+
+    client.initialize();
+    client.ping();
+    client.ping();
+    TrezorEvent address = client.getAddress(0, 1);
+
+    client.close();
+
+    return ((TrezorMessage.Address) address.protocolMessage().get()).getAddress();
+  }
+
+}
@@ -0,0 +1,183 @@
+package uk.co.bsol.trezorj.core.wire;
+
+import org.junit.Test;
+import uk.co.bsol.trezorj.core.clients.BlockingTrezorClient;
+import uk.co.bsol.trezorj.core.clients.TrezorClients;
+import uk.co.bsol.trezorj.core.emulators.ReactiveTrezorEmulator;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class WireTraceTest {
+
+  @Test
+  public void testDisabledByDefault() throws Exception {
+
+    // Arrange
+    WireTrace testObject = new WireTrace(8);
+
+    // Act
+    testObject.record(WireTraceType.HID_IN, -1, new byte[]{1, 2, 3}, 0, 3);
+
+    // Assert
+    assertThat(testObject.isEnabled()).isFalse();
+    assertThat(testObject.snapshot()).isEmpty();
+
+  }
+
+  @Test
+  public void testRingKeepsMostRecent() throws Exception {
+
+    // Arrange
+    WireTrace testObject = new WireTrace(8);
+    testObject.setEnabled(true);
+
+    // Act
+    for (int i = 0; i < 20; i++) {
+      testObject.record(WireTraceType.FRAME_IN, i, new byte[]{(byte) i}, 0, 1);
+    }
+    testObject.record(WireTraceType.HID_OUT, -1, new byte[100], 0, 100);
+
+    List<WireTraceEntry> entries = testObject.snapshot();
+
+    // Assert
+    assertThat(entries).hasSize(8);
+    assertThat(entries.get(0).getSequence()).isEqualTo(13);
+    assertThat(entries.get(0).getHeaderCode()).isEqualTo(13);
+    assertThat(entries.get(0).getCaptured()).isEqualTo(new byte[]{13});
+    assertThat(entries.get(0).toString()).contains("FRAME_IN").contains("0d");
+
+    // Only the leading bytes of a large transfer are captured
+    WireTraceEntry last = entries.get(7);
+    assertThat(last.getLength()).isEqualTo(100);
+    assertThat(last.getCaptured().length).isEqualTo(WireTrace.CAPTURE_SIZE);
+    assertThat(last.toString()).endsWith("...");
+
+    testObject.clear();
+    assertThat(testObject.snapshot()).isEmpty();
+
+  }
+
+  @Test
+  public void testConcurrentWritersProduceConsistentEntries() throws Exception {
+
+    // Arrange
+    final WireTrace testObject = new WireTrace(64);
+    testObject.setEnabled(true);
+
+    int writerCount = 4;
+    final CountDownLatch latch = new CountDownLatch(writerCount);
+
+    // Act (every record is different so a torn entry cannot match what its writer recorded)
+    for (int w = 0; w < writerCount; w++) {
+      final int writer = w;
+      new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 10000; i++) {
+            byte[] bytes = newRecordBytes(writer, i);
+            testObject.record(newRecordType(writer, i), newRecordHeaderCode(writer, i), bytes, 0, bytes.length);
+          }
+          latch.countDown();
+        }
+      }).start();
+    }
+
+    // Assert
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!latch.await(1, TimeUnit.MILLISECONDS) && System.currentTimeMillis() < deadline) {
+      assertAsRecorded(testObject.snapshot(), writerCount);
+    }
+    assertThat(latch.getCount()).isEqualTo(0);
+
+    List<WireTraceEntry> entries = testObject.snapshot();
+    assertThat(entries.size() + testObject.getDroppedCount()).isGreaterThanOrEqualTo(64);
+    assertAsRecorded(entries, writerCount);
+
+  }
+
+  @Test
+  public void testEmulatorInSameJvmIsNotTraced() throws Exception {
+
+    // Arrange
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.start();
+
+    BlockingTrezorClient client = TrezorClients.newBlockingSocketInstance("localhost", emulator.getPort(), TrezorClients.newSessionId());
+    client.connect();
+
+    WireTrace testObject = WireTrace.getDefaultInstance();
+    testObject.clear();
+    testObject.setEnabled(true);
+
+    // Act
+    try {
+      client.ping();
+    } finally {
+      testObject.setEnabled(false);
+      client.close();
+      emulator.stop();
+    }
+
+    // Assert (only the client side of the conversation is recorded)
+    List<WireTraceEntry> entries = testObject.snapshot();
+    testObject.clear();
+
+    assertThat(entries).hasSize(2);
+    assertThat(entries.get(0).getType()).isEqualTo(WireTraceType.FRAME_OUT);
+    assertThat(entries.get(0).getHeaderCode()).isEqualTo((int) MessageType.PING.getHeaderCode());
+    assertThat(entries.get(1).getType()).isEqualTo(WireTraceType.FRAME_IN);
+    assertThat(entries.get(1).getHeaderCode()).isEqualTo((int) MessageType.SUCCESS.getHeaderCode());
+
+  }
+
+  /**
+   * <p>Check every entry against the record its writer made and that each writer's entries are in order</p>
+   */
+  private void assertAsRecorded(List<WireTraceEntry> entries, int writerCount) {
+
+    int[] lastIteration = new int[writerCount];
+    Arrays.fill(lastIteration, -1);
+
+    for (WireTraceEntry entry : entries) {
+
+      int writer = entry.getHeaderCode() >>> 16;
+      int iteration = entry.getHeaderCode() & 0xffff;
+      assertThat(writer).isLessThan(writerCount);
+
+      byte[] bytes = newRecordBytes(writer, iteration);
+      assertThat(entry.getType()).isEqualTo(newRecordType(writer, iteration));
+      assertThat(entry.getLength()).isEqualTo(bytes.length);
+      assertThat(entry.getCaptured()).isEqualTo(Arrays.copyOf(bytes, Math.min(bytes.length, WireTrace.CAPTURE_SIZE)));
+
+      assertThat(iteration).isGreaterThan(lastIteration[writer]);
+      lastIteration[writer] = iteration;
+    }
+  }
+
+  private static int newRecordHeaderCode(int writer, int iteration) {
+    return (writer << 16) | iteration;
+  }
+
+  private static WireTraceType newRecordType(int writer, int iteration) {
+    return (writer + iteration) % 2 == 0 ? WireTraceType.HID_IN : WireTraceType.HID_OUT;
+  }
+
+  /**
+   * @return Bytes unique to the writer and iteration (some longer than the capture size)
+   */
+  private static byte[] newRecordBytes(int writer, int iteration) {
+
+    byte[] bytes = new byte[1 + (iteration + writer * 17) % 80];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) (writer * 31 + iteration * 7 + i);
+    }
+    return bytes;
+  }
+
+}
@@ -0,0 +1,380 @@
+package uk.co.bsol.trezorj.examples.load;
+
+import com.google.bitcoin.core.Transaction;
+import com.google.common.base.Preconditions;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.TrezorFactory;
+import uk.co.bsol.trezorj.core.TrezorListener;
+import uk.co.bsol.trezorj.core.clients.TrezorClients;
+import uk.co.bsol.trezorj.core.events.TrezorEvents;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+import uk.co.bsol.trezorj.core.protobuf.TrezorMessage;
+import uk.co.bsol.trezorj.core.trezors.SocketTrezor;
+import uk.co.bsol.trezorj.core.utils.TrezorMessageUtils;
+
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Load client to provide the following to the load generator:</p>
+ * <ul>
+ * <li>Pipelined requests written straight to a {@link SocketTrezor} with up to a window of responses outstanding</li>
+ * <li>A receiver thread matching responses to requests in order and recording them</li>
+ * </ul>
+ * <p>A signing conversation needs each response before the next request so it waits for the window to drain and
+ * then holds the whole window until it completes. A conversation step that times out is withdrawn and a response
+ * of a type the oldest request cannot expect is dropped as late, so a slow answer is never matched to the next
+ * request. A pipelined request with no response by its deadline is withdrawn by the receiver, which releases its
+ * permit and records it as a timeout so a lost response cannot shrink the window for the rest of the run.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class AsyncLoadClient implements LoadClient, TrezorListener {
+
+  private static final Logger log = LoggerFactory.getLogger(AsyncLoadClient.class);
+
+  private static final int RESPONSE_TIMEOUT_SECONDS = 10;
+
+  private final SocketTrezor trezor;
+  private final Transaction tx;
+  private final ByteString sessionId = TrezorClients.newSessionId();
+
+  private final int window;
+  private final Semaphore permits;
+
+  // Requests awaiting a response in the order they were sent (only the worker thread adds)
+  private final Queue<Pending> pendings = new ConcurrentLinkedQueue<Pending>();
+
+  private volatile BlockingQueue<TrezorEvent> trezorEventQueue;
+  private volatile LoadRecorder recorder;
+  private volatile boolean running = true;
+  private Thread receiverThread;
+
+  /**
+   * @param host   The socket host
+   * @param port   The socket port
+   * @param tx     The transaction to sign
+   * @param window The maximum number of requests awaiting a response
+   */
+  public AsyncLoadClient(String host, int port, Transaction tx, int window) {
+
+    Preconditions.checkArgument(window > 0, "'window' must be greater than zero");
+
+    this.trezor = TrezorFactory.newSocketTrezor(host, port);
+    this.tx = tx;
+    this.window = window;
+    this.permits = new Semaphore(window);
+  }
+
+  /**
+   * @param recorder The recorder for responses matched by the receiver thread
+   */
+  public void setRecorder(LoadRecorder recorder) {
+    this.recorder = recorder;
+  }
+
+  @Override
+  public void connect() {
+
+    Preconditions.checkNotNull(recorder, "'recorder' must be present");
+
+    trezor.addListener(this);
+    trezor.connect();
+
+    // Consume the connection event so it cannot be matched to a request
+    try {
+      trezorEventQueue.poll(1, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+
+    receiverThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        receive();
+      }
+    }, Thread.currentThread().getName() + "-receiver");
+    receiverThread.setDaemon(true);
+    receiverThread.start();
+
+    TrezorEvent features = converse(TrezorMessage.Initialize.newBuilder().setSessionId(sessionId).build(), MessageType.FEATURES);
+    Preconditions.checkState(MessageType.FEATURES.equals(features.protocolMessageType().orNull()), "Initialize failed: " + features.eventType());
+  }
+
+  @Override
+  public boolean execute(LoadOperation loadOperation, long intendedStartNanos, LoadRecorder recorder) {
+
+    try {
+      switch (loadOperation) {
+        case PING:
+          return send(loadOperation, TrezorMessage.Ping.getDefaultInstance(), intendedStartNanos);
+        case GET_ADDRESS:
+          return send(loadOperation, TrezorMessage.GetAddress.newBuilder().addAddressN(0).addAddressN(1).build(), intendedStartNanos);
+        case GET_ENTROPY:
+          return send(loadOperation, TrezorMessage.GetEntropy.newBuilder().setSize(32).build(), intendedStartNanos);
+        case SIGN_TX:
+          return signTx(intendedStartNanos, recorder);
+        default:
+          throw new IllegalStateException("Unknown operation " + loadOperation.name());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  @Override
+  public void close() {
+
+    try {
+      // Allow outstanding responses to arrive
+      if (permits.tryAcquire(window, RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        permits.release(window);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    running = false;
+    if (receiverThread != null) {
+      receiverThread.interrupt();
+      try {
+        // The receiver adds its thread usage as it finishes so wait for it before the results are merged
+        receiverThread.join(TimeUnit.SECONDS.toMillis(RESPONSE_TIMEOUT_SECONDS));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    trezor.close();
+  }
+
+  @Override
+  public BlockingQueue<TrezorEvent> getTrezorEventQueue() {
+    return trezorEventQueue;
+  }
+
+  @Override
+  public void setTrezorEventQueue(BlockingQueue<TrezorEvent> trezorEventQueue) {
+    this.trezorEventQueue = trezorEventQueue;
+  }
+
+  /**
+   * <p>Send a request without waiting for the response (the receiver records it)</p>
+   */
+  private boolean send(LoadOperation loadOperation, Message message, long intendedStartNanos) throws InterruptedException {
+
+    if (!permits.tryAcquire(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+      recorder.recordError(TrezorEventType.DEVICE_UNRESPONSIVE);
+      return false;
+    }
+
+    pendings.add(new Pending(loadOperation, loadOperation.getResponseType(), intendedStartNanos, deadlineNanos()));
+    trezor.sendMessage(message);
+
+    return true;
+  }
+
+  /**
+   * <p>Run a signing conversation holding the whole window</p>
+   */
+  private boolean signTx(long intendedStartNanos, LoadRecorder recorder) throws InterruptedException {
+
+    if (!permits.tryAcquire(window, RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+      recorder.recordError(TrezorEventType.DEVICE_UNRESPONSIVE);
+      return false;
+    }
+
+    try {
+
+      TrezorEvent event = converse(TrezorMessage.SignTx
+        .newBuilder()
+        .setInputsCount(tx.getInputs().size())
+        .setOutputsCount(tx.getOutputs().size())
+        .setRandom(ByteString.copyFrom(new byte[256]))
+        .build(), MessageType.TX_REQUEST);
+
+      while (LoadOperation.SIGN_TX.isExpected(event)) {
+
+        TrezorMessage.TxRequest txRequest = (TrezorMessage.TxRequest) event.protocolMessage().get();
+        if (!txRequest.hasRequestIndex() || txRequest.getRequestIndex() < 0) {
+          // Conversation complete
+          recorder.recordSuccess(LoadOperation.SIGN_TX, System.nanoTime() - intendedStartNanos);
+          return true;
+        }
+
+        if (TrezorMessage.RequestType.TXINPUT.equals(txRequest.getRequestType())) {
+          event = converse(TrezorMessageUtils.newTxInput(tx, txRequest.getRequestIndex()), MessageType.TX_REQUEST);
+        } else {
+          event = converse(TrezorMessageUtils.newTxOutput(tx, txRequest.getRequestIndex()), MessageType.TX_REQUEST);
+        }
+      }
+
+      recorder.recordError(event.eventType());
+      return !TrezorEventType.DEVICE_UNRESPONSIVE.equals(event.eventType());
+
+    } finally {
+      permits.release(window);
+    }
+  }
+
+  /**
+   * <p>Send a request and wait for its response (the caller must hold the whole window)</p>
+   *
+   * @param message      The request
+   * @param responseType The expected response type (a Failure is always accepted)
+   */
+  private TrezorEvent converse(Message message, MessageType responseType) {
+
+    Pending pending = new Pending(null, responseType, System.nanoTime(), deadlineNanos());
+    pendings.add(pending);
+    trezor.sendMessage(message);
+
+    try {
+      if (pending.done.await(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        return pending.response;
+      }
+      if (!pendings.remove(pending)) {
+        // The receiver matched the response as the wait ended
+        pending.done.await();
+        return pending.response;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      pendings.remove(pending);
+    }
+
+    // Withdrawn so that the next request is matched to the next response (a late answer is dropped by type)
+    return TrezorEvents.newSystemEvent(TrezorEventType.DEVICE_UNRESPONSIVE);
+  }
+
+  /**
+   * <p>Match each response to the oldest outstanding request</p>
+   */
+  private void receive() {
+
+    ThreadUsage.Sampler sampler = ThreadUsage.start();
+
+    while (running) {
+
+      expireOverdue();
+
+      TrezorEvent event;
+      try {
+        event = trezorEventQueue.poll(nextWaitNanos(), TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        break;
+      }
+      if (event == null) {
+        continue;
+      }
+
+      Pending pending = pendings.peek();
+      if (pending == null) {
+        // Spontaneous event (e.g. the connection)
+        log.debug("Unsolicited event: {}", event.eventType());
+        continue;
+      }
+
+      if (!pending.isExpected(event)) {
+        // The late answer to a withdrawn request
+        log.debug("Dropped late response: {}", event.protocolMessageType().orNull());
+        continue;
+      }
+
+      if (!pendings.remove(pending)) {
+        // Withdrawn while this response was on its way so it is late too
+        log.debug("Dropped late response: {}", event.protocolMessageType().orNull());
+        continue;
+      }
+
+      if (pending.loadOperation == null) {
+        // Part of a conversation
+        pending.response = event;
+        pending.done.countDown();
+        continue;
+      }
+
+      recorder.record(pending.loadOperation, event, System.nanoTime() - pending.intendedStartNanos);
+      permits.release();
+    }
+
+    recorder.addThreadUsage(sampler.stop());
+  }
+
+  /**
+   * <p>Withdraw pipelined requests that are past their deadline, releasing their permits</p>
+   */
+  private void expireOverdue() {
+
+    long now = System.nanoTime();
+    Pending pending;
+    // Only the receiver withdraws pipelined requests and their deadlines follow the order they were sent
+    while ((pending = pendings.peek()) != null && pending.loadOperation != null && now - pending.deadlineNanos >= 0) {
+      if (pendings.remove(pending)) {
+        recorder.recordTimeout(pending.loadOperation, now - pending.intendedStartNanos);
+        permits.release();
+      }
+    }
+  }
+
+  /**
+   * @return The time to wait for the next event before the oldest pipelined request expires
+   */
+  private long nextWaitNanos() {
+
+    Pending pending = pendings.peek();
+    if (pending == null || pending.loadOperation == null) {
+      // A request sent later has a deadline at least this far away
+      return TimeUnit.SECONDS.toNanos(RESPONSE_TIMEOUT_SECONDS);
+    }
+    return Math.max(0, pending.deadlineNanos - System.nanoTime());
+  }
+
+  private static long deadlineNanos() {
+    return System.nanoTime() + TimeUnit.SECONDS.toNanos(RESPONSE_TIMEOUT_SECONDS);
+  }
+
+  /**
+   * <p>A request awaiting its response</p>
+   */
+  private static class Pending {
+
+    // Absent for a conversation step that is awaited rather than recorded
+    private final LoadOperation loadOperation;
+    private final MessageType responseType;
+    private final long intendedStartNanos;
+    // Only applied to pipelined requests (a conversation step is withdrawn by its own wait)
+    private final long deadlineNanos;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile TrezorEvent response;
+
+    private Pending(LoadOperation loadOperation, MessageType responseType, long intendedStartNanos, long deadlineNanos) {
+      this.loadOperation = loadOperation;
+      this.responseType = responseType;
+      this.intendedStartNanos = intendedStartNanos;
+      this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * @param event The next event from the device
+     *
+     * @return True if the event can answer this request (a system event such as a disconnect ends any request)
+     */
+    private boolean isExpected(TrezorEvent event) {
+
+      MessageType messageType = event.protocolMessageType().orNull();
+      return messageType == null || responseType.equals(messageType) || MessageType.FAILURE.equals(messageType);
+    }
+  }
+
+}
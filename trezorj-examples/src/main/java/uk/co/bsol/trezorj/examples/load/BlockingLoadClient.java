@@ -0,0 +1,85 @@
+package uk.co.bsol.trezorj.examples.load;
+
+import com.google.bitcoin.core.Transaction;
+import com.google.common.base.Optional;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.clients.BlockingTrezorClient;
+import uk.co.bsol.trezorj.core.clients.TrezorClients;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Load client to provide the following to the load generator:</p>
+ * <ul>
+ * <li>Operations through the {@link BlockingTrezorClient}</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ *
+ */
+public class BlockingLoadClient implements LoadClient {
+
+  private final BlockingTrezorClient client;
+  private final Transaction tx;
+
+  /**
+   * @param host The socket host
+   * @param port The socket port
+   * @param tx   The transaction to sign
+   */
+  public BlockingLoadClient(String host, int port, Transaction tx) {
+    this.client = TrezorClients.newBlockingSocketInstance(host, port, TrezorClients.newSessionId());
+    this.tx = tx;
+  }
+
+  @Override
+  public void connect() {
+
+    client.connect();
+    try {
+      // Consume the connection event
+      client.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+    client.initialize();
+  }
+
+  @Override
+  public boolean execute(LoadOperation loadOperation, long intendedStartNanos, LoadRecorder recorder) {
+
+    switch (loadOperation) {
+      case PING:
+        record(loadOperation, client.ping(), intendedStartNanos, recorder);
+        break;
+      case GET_ADDRESS:
+        record(loadOperation, client.getAddress(0, 1), intendedStartNanos, recorder);
+        break;
+      case GET_ENTROPY:
+        record(loadOperation, client.getEntropy(32), intendedStartNanos, recorder);
+        break;
+      case SIGN_TX:
+        Optional<Transaction> signedTx = client.signTx(tx);
+        if (signedTx.isPresent()) {
+          recorder.recordSuccess(loadOperation, System.nanoTime() - intendedStartNanos);
+        } else {
+          recorder.recordUnclassifiedError();
+        }
+        break;
+      default:
+        throw new IllegalStateException("Unknown operation " + loadOperation.name());
+    }
+
+    return true;
+  }
+
+  @Override
+  public void close() {
+    client.close();
+  }
+
+  private void record(LoadOperation loadOperation, TrezorEvent event, long intendedStartNanos, LoadRecorder recorder) {
+    recorder.record(loadOperation, event, System.nanoTime() - intendedStartNanos);
+  }
+
+}
@@ -0,0 +1,139 @@
+package uk.co.bsol.trezorj.examples.load;
+
+/**
+ * <p>Histogram to provide the following to the load generator:</p>
+ * <ul>
+ * <li>Constant time, allocation-free recording of latencies from nanoseconds to hours</li>
+ * <li>Percentiles with a relative error of about 3%</li>
+ * </ul>
+ * <p>Values below 64ns are held exactly. Above that each power of two is split into 32 linear buckets. The
+ * histogram is not thread safe: record into one per thread and {@link #merge} for the report.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKETS = 32;
+  private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+  // Enough to cover Long.MAX_VALUE
+  private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - 5) * SUB_BUCKETS;
+
+  private final long[] counts = new long[BUCKET_COUNT];
+  private long totalCount = 0;
+  private long totalNanos = 0;
+  private long maxNanos = 0;
+  private long timeoutCount = 0;
+
+  /**
+   * @param nanos The latency to record (negative values are recorded as zero)
+   */
+  public void record(long nanos) {
+
+    long value = Math.max(0, nanos);
+    counts[bucketIndex(value)]++;
+    totalCount++;
+    totalNanos += value;
+    maxNanos = Math.max(maxNanos, value);
+  }
+
+  /**
+   * <p>Record an operation that had no response by its deadline</p>
+   *
+   * @param nanos The latency at the deadline (recorded like any other so the percentiles show the stall)
+   */
+  public void recordTimeout(long nanos) {
+
+    record(nanos);
+    timeoutCount++;
+  }
+
+  /**
+   * @param other The histogram to add into this one
+   */
+  public void merge(LatencyHistogram other) {
+
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] += other.counts[i];
+    }
+    totalCount += other.totalCount;
+    timeoutCount += other.timeoutCount;
+    totalNanos += other.totalNanos;
+    maxNanos = Math.max(maxNanos, other.maxNanos);
+  }
+
+  /**
+   * @return The number of values recorded
+   */
+  public long getCount() {
+    return totalCount;
+  }
+
+  /**
+   * @return The number of values recorded as timeouts (included in the count)
+   */
+  public long getTimeoutCount() {
+    return timeoutCount;
+  }
+
+  /**
+   * @return The mean latency in nanoseconds (zero if empty)
+   */
+  public double getMeanNanos() {
+    return totalCount == 0 ? 0 : (double) totalNanos / totalCount;
+  }
+
+  /**
+   * @return The largest latency recorded in nanoseconds
+   */
+  public long getMaxNanos() {
+    return maxNanos;
+  }
+
+  /**
+   * @param percentile The percentile (0 to 100)
+   *
+   * @return The latency in nanoseconds at or below which the percentile of values fall (zero if empty)
+   */
+  public long getPercentileNanos(double percentile) {
+
+    if (totalCount == 0) {
+      return 0;
+    }
+
+    long rank = (long) Math.ceil(percentile / 100.0 * totalCount);
+    rank = Math.max(1, Math.min(totalCount, rank));
+
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(bucketUpperValue(i), maxNanos);
+      }
+    }
+    return maxNanos;
+  }
+
+  private static int bucketIndex(long value) {
+
+    if (value < LINEAR_LIMIT) {
+      return (int) value;
+    }
+
+    // Shift so that the leading bit lands in the top half of the sub-buckets
+    int shift = 63 - Long.numberOfLeadingZeros(value) - 5;
+    return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+  }
+
+  private static long bucketUpperValue(int index) {
+
+    if (index < LINEAR_LIMIT) {
+      return index;
+    }
+
+    int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+    long subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+}
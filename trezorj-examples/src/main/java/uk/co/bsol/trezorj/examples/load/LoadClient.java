@@ -0,0 +1,36 @@
+package uk.co.bsol.trezorj.examples.load;
+
+/**
+ * <p>Interface to provide the following to the load generator:</p>
+ * <ul>
+ * <li>A uniform way to drive each client style with the same operation mix</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ *
+ */
+public interface LoadClient {
+
+  /**
+   * <p>Connect and initialize the session</p>
+   */
+  void connect();
+
+  /**
+   * <p>Perform an operation and record its outcome (asynchronous clients may record it later)</p>
+   *
+   * @param loadOperation      The operation
+   * @param intendedStartNanos The time the operation should have started (latency is measured from here so a
+   *                           slow response also counts against the operations queued behind it)
+   * @param recorder           The recorder
+   *
+   * @return False if the client can no longer be used
+   */
+  boolean execute(LoadOperation loadOperation, long intendedStartNanos, LoadRecorder recorder);
+
+  /**
+   * <p>Wait for outstanding operations and close the connection</p>
+   */
+  void close();
+
+}
@@ -0,0 +1,32 @@
+package uk.co.bsol.trezorj.examples.load;
+
+/**
+ * <p>Enum to provide the following to the load generator:</p>
+ * <ul>
+ * <li>The client styles that can be put under load</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ *
+ */
+public enum LoadClientMode {
+
+  /**
+   * One request at a time through the BlockingTrezorClient
+   */
+  BLOCKING,
+
+  /**
+   * One request at a time through the NonBlockingTrezorClient, collecting the response from its event queue
+   */
+  NON_BLOCKING,
+
+  /**
+   * Pipelined requests written straight to the Trezor with a separate receiver thread (bounded by a window)
+   */
+  ASYNC,
+
+  // End of enum
+  ;
+
+}
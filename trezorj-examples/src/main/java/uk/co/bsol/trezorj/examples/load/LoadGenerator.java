@@ -0,0 +1,253 @@
+package uk.co.bsol.trezorj.examples.load;
+
+import com.google.bitcoin.core.Transaction;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.utils.FakeTransactions;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Generator to provide the following to load tests:</p>
+ * <ul>
+ * <li>N clients of a chosen style driving a weighted operation mix against a socket device or emulator</li>
+ * <li>Either closed-loop operation (each client starts its next operation when the last completes) or a target
+ * aggregate rate (open loop, with latency measured from the scheduled start)</li>
+ * </ul>
+ * <p>Example:</p>
+ * <pre>
+ * LoadGenerator generator = LoadGenerator.newInstance("localhost", port);
+ * generator.setClientCount(8);
+ * generator.setClientMode(LoadClientMode.ASYNC);
+ * generator.setOperationMix(OperationMix.parse("ping=50,getAddress=30,getEntropy=15,signTx=5"));
+ * generator.setTargetRate(500);
+ * LoadReport report = generator.run(30, TimeUnit.SECONDS);
+ * </pre>
+ *
+ * @since 0.0.1
+ *
+ */
+public class LoadGenerator {
+
+  private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+
+  private final String host;
+  private final int port;
+
+  private int clientCount = 1;
+  private LoadClientMode clientMode = LoadClientMode.BLOCKING;
+  private OperationMix operationMix = OperationMix.parse("ping=1");
+  private double targetRate = 0;
+  private int window = 4;
+  private long seed = 1;
+
+  /**
+   * @param host The socket host
+   * @param port The socket port
+   *
+   * @return A new generator with a single closed-loop blocking client issuing pings
+   */
+  public static LoadGenerator newInstance(String host, int port) {
+    return new LoadGenerator(host, port);
+  }
+
+  /**
+   * Use the utility constructor
+   */
+  private LoadGenerator(String host, int port) {
+    this.host = host;
+    this.port = port;
+  }
+
+  public void setClientCount(int clientCount) {
+    Preconditions.checkArgument(clientCount > 0, "'clientCount' must be greater than zero");
+    this.clientCount = clientCount;
+  }
+
+  public void setClientMode(LoadClientMode clientMode) {
+    Preconditions.checkNotNull(clientMode, "'clientMode' must be present");
+    this.clientMode = clientMode;
+  }
+
+  public void setOperationMix(OperationMix operationMix) {
+    Preconditions.checkNotNull(operationMix, "'operationMix' must be present");
+    this.operationMix = operationMix;
+  }
+
+  /**
+   * @param targetRate The aggregate operations per second across all clients (zero for closed loop)
+   */
+  public void setTargetRate(double targetRate) {
+    Preconditions.checkArgument(targetRate >= 0, "'targetRate' must not be negative");
+    this.targetRate = targetRate;
+  }
+
+  /**
+   * @param window The maximum outstanding requests per client in async mode
+   */
+  public void setWindow(int window) {
+    Preconditions.checkArgument(window > 0, "'window' must be greater than zero");
+    this.window = window;
+  }
+
+  /**
+   * @param seed The seed for the operation mix (each client derives its own)
+   */
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * @param duration The duration of the measured run
+   * @param timeUnit The time unit
+   *
+   * @return The report once all clients have finished
+   *
+   * @throws InterruptedException If interrupted while waiting for the clients
+   */
+  public LoadReport run(long duration, TimeUnit timeUnit) throws InterruptedException {
+
+    final Transaction tx = FakeTransactions.newMainNetFakeTx(
+      FakeTransactions.getElectrumAddressN(new int[]{0, 0}),
+      FakeTransactions.getElectrumAddressN(new int[]{0, 1}),
+      FakeTransactions.asMainNetAddress("1MKw8vWxvBnaBcrL2yXvZceqyRMoeG2kRn"),
+      BigInteger.TEN,
+      BigInteger.ONE
+    );
+
+    final long intervalNanos = targetRate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) * clientCount / targetRate) : 0;
+    final CountDownLatch ready = new CountDownLatch(clientCount);
+    final CountDownLatch go = new CountDownLatch(1);
+    final long[] startNanos = new long[1];
+    final long durationNanos = timeUnit.toNanos(duration);
+
+    final List<LoadRecorder> recorders = Lists.newArrayList();
+    List<Thread> threads = Lists.newArrayList();
+
+    for (int i = 0; i < clientCount; i++) {
+
+      final int clientIndex = i;
+      final LoadRecorder recorder = new LoadRecorder();
+      recorders.add(recorder);
+
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+
+          LoadClient client = newLoadClient(tx, recorder);
+          Random random = new Random(seed + clientIndex);
+
+          try {
+            client.connect();
+          } catch (RuntimeException e) {
+            log.error("Client {} could not connect", clientIndex, e);
+            recorder.recordException();
+            ready.countDown();
+            return;
+          }
+
+          ready.countDown();
+
+          ThreadUsage.Sampler sampler = ThreadUsage.start();
+          try {
+            go.await();
+
+            long deadline = startNanos[0] + durationNanos;
+            // Stagger the clients across the interval so the aggregate rate is smooth
+            long next = startNanos[0] + intervalNanos * clientIndex / clientCount;
+
+            while (true) {
+
+              long intendedStartNanos;
+              if (intervalNanos > 0) {
+                if (next >= deadline) {
+                  break;
+                }
+                parkUntil(next);
+                intendedStartNanos = next;
+                next += intervalNanos;
+              } else {
+                intendedStartNanos = System.nanoTime();
+                if (intendedStartNanos >= deadline) {
+                  break;
+                }
+              }
+
+              try {
+                if (!client.execute(operationMix.next(random), intendedStartNanos, recorder)) {
+                  log.warn("Client {} stopped early", clientIndex);
+                  break;
+                }
+              } catch (RuntimeException e) {
+                log.warn("Client {} operation failed: {}", clientIndex, e.getMessage());
+                recorder.recordException();
+              }
+            }
+
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            recorder.addThreadUsage(sampler.stop());
+            try {
+              client.close();
+            } catch (RuntimeException e) {
+              log.debug("Close failed", e);
+            }
+          }
+        }
+      }, "load-client-" + i);
+
+      threads.add(thread);
+      thread.start();
+    }
+
+    // Start measuring once every client is connected
+    ready.await();
+    startNanos[0] = System.nanoTime();
+    go.countDown();
+
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long elapsedNanos = System.nanoTime() - startNanos[0];
+
+    LoadRecorder total = new LoadRecorder();
+    for (LoadRecorder recorder : recorders) {
+      total.merge(recorder);
+    }
+
+    return new LoadReport(clientMode, clientCount, operationMix, targetRate, elapsedNanos, total);
+  }
+
+  private LoadClient newLoadClient(Transaction tx, LoadRecorder recorder) {
+
+    switch (clientMode) {
+      case BLOCKING:
+        return new BlockingLoadClient(host, port, tx);
+      case NON_BLOCKING:
+        return new NonBlockingLoadClient(host, port, tx);
+      case ASYNC:
+        AsyncLoadClient client = new AsyncLoadClient(host, port, tx, window);
+        client.setRecorder(recorder);
+        return client;
+      default:
+        throw new IllegalStateException("Unknown client mode " + clientMode.name());
+    }
+  }
+
+  private static void parkUntil(long deadlineNanos) {
+
+    long remaining;
+    while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(remaining);
+    }
+  }
+
+}
@@ -0,0 +1,95 @@
+package uk.co.bsol.trezorj.examples.load;
+
+import com.google.common.collect.Maps;
+import uk.co.bsol.trezorj.core.emulators.ReactiveTrezorEmulator;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Load generator to provide the following to developers:</p>
+ * <ul>
+ * <li>A command line entry point for putting an emulator or socket device under load from many clients</li>
+ * </ul>
+ * <p>Options (all optional):</p>
+ * <pre>
+ * --target   emulator | host:port            (default emulator, started in-process on an ephemeral port)
+ * --clients  number of clients                (default 4)
+ * --mode     blocking | non-blocking | async  (default blocking)
+ * --mix      operation weights                (default ping=50,getAddress=30,getEntropy=15,signTx=5)
+ * --rate     aggregate ops/s, 0 = closed loop (default 0)
+ * --duration seconds                          (default 10)
+ * --window   outstanding requests per async client (default 4)
+ * --seed     seed for the operation mix       (default 1)
+ * </pre>
+ * <p>Example: <code>--clients 16 --mode async --rate 2000 --duration 30</code></p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class LoadGeneratorExample {
+
+  /**
+   * Entry point to the example
+   *
+   * @param args The options described above
+   *
+   * @throws Exception If something goes wrong
+   */
+  public static void main(String[] args) throws Exception {
+
+    Map<String, String> options = Maps.newHashMap();
+    options.put("target", "emulator");
+    options.put("clients", "4");
+    options.put("mode", "blocking");
+    options.put("mix", "ping=50,getAddress=30,getEntropy=15,signTx=5");
+    options.put("rate", "0");
+    options.put("duration", "10");
+    options.put("window", "4");
+    options.put("seed", "1");
+
+    for (int i = 0; i < args.length; i++) {
+      String key = args[i].startsWith("--") ? args[i].substring(2) : "";
+      if (!options.containsKey(key) || i + 1 >= args.length) {
+        System.err.println("Unknown or incomplete option '" + args[i] + "'. Options are " + options.keySet());
+        System.exit(1);
+      }
+      options.put(key, args[++i]);
+    }
+
+    // Select the target
+    ReactiveTrezorEmulator emulator = null;
+    String host;
+    int port;
+    if ("emulator".equals(options.get("target"))) {
+      emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+      emulator.start();
+      host = "localhost";
+      port = emulator.getPort();
+    } else {
+      String target = options.get("target");
+      int separator = target.lastIndexOf(':');
+      host = target.substring(0, separator);
+      port = Integer.parseInt(target.substring(separator + 1));
+    }
+
+    LoadGenerator generator = LoadGenerator.newInstance(host, port);
+    generator.setClientCount(Integer.parseInt(options.get("clients")));
+    generator.setClientMode(LoadClientMode.valueOf(options.get("mode").toUpperCase().replace('-', '_')));
+    generator.setOperationMix(OperationMix.parse(options.get("mix")));
+    generator.setTargetRate(Double.parseDouble(options.get("rate")));
+    generator.setWindow(Integer.parseInt(options.get("window")));
+    generator.setSeed(Long.parseLong(options.get("seed")));
+
+    LoadReport report = generator.run(Long.parseLong(options.get("duration")), TimeUnit.SECONDS);
+    report.print(System.out);
+
+    if (emulator != null) {
+      emulator.stop();
+    }
+
+    System.exit(report.getErrorCount() == 0 ? 0 : 2);
+
+  }
+
+}
@@ -0,0 +1,78 @@
+package uk.co.bsol.trezorj.examples.load;
+
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.protobuf.MessageType;
+
+/**
+ * <p>Enum to provide the following to the load generator:</p>
+ * <ul>
+ * <li>The operations that can be mixed into a load test</li>
+ * <li>The response that indicates success for each</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ *
+ */
+public enum LoadOperation {
+
+  PING("ping", MessageType.SUCCESS),
+  GET_ADDRESS("getAddress", MessageType.ADDRESS),
+  GET_ENTROPY("getEntropy", MessageType.ENTROPY),
+  // A complete signing conversation
+  SIGN_TX("signTx", MessageType.TX_REQUEST),
+
+  // End of enum
+  ;
+
+  private final String name;
+  private final MessageType responseType;
+
+  LoadOperation(String name, MessageType responseType) {
+    this.name = name;
+    this.responseType = responseType;
+  }
+
+  /**
+   * @return The name used on the command line (e.g. "getAddress")
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return The response type that indicates success
+   */
+  public MessageType getResponseType() {
+    return responseType;
+  }
+
+  /**
+   * @param event The response event
+   *
+   * @return True if the event is the expected protocol message for this operation
+   */
+  public boolean isExpected(TrezorEvent event) {
+    return TrezorEventType.PROTOCOL_MESSAGE.equals(event.eventType())
+      && responseType.equals(event.protocolMessageType().orNull());
+  }
+
+  /**
+   * @param name The command line name
+   *
+   * @return The matching operation
+   *
+   * @throws IllegalArgumentException If the name is not known
+   */
+  public static LoadOperation getLoadOperationByName(String name) {
+
+    for (LoadOperation loadOperation : LoadOperation.values()) {
+      if (loadOperation.name.equalsIgnoreCase(name)) {
+        return loadOperation;
+      }
+    }
+
+    throw new IllegalArgumentException("Operation '" + name + "' is not known");
+  }
+
+}
@@ -0,0 +1,138 @@
+package uk.co.bsol.trezorj.examples.load;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorEventType;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Recorder to provide the following to load clients:</p>
+ * <ul>
+ * <li>Latency histograms of successful and timed out operations</li>
+ * <li>Error counts broken down by {@link TrezorEventType}</li>
+ * <li>Per-thread CPU and allocation figures</li>
+ * </ul>
+ * <p>Each client has its own recorder so contention is limited to a client and its receiver thread. Recorders are
+ * merged for the report.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class LoadRecorder {
+
+  private final Map<LoadOperation, LatencyHistogram> histograms = Maps.newEnumMap(LoadOperation.class);
+  private final Map<TrezorEventType, Long> errors = Maps.newEnumMap(TrezorEventType.class);
+  private final List<ThreadUsage> threadUsages = Lists.newArrayList();
+
+  // Failures with no event to classify them (e.g. a signing conversation ending early)
+  private long unclassifiedErrors = 0;
+  private long exceptions = 0;
+
+  public LoadRecorder() {
+    for (LoadOperation loadOperation : LoadOperation.values()) {
+      histograms.put(loadOperation, new LatencyHistogram());
+    }
+  }
+
+  /**
+   * @param loadOperation The operation
+   * @param event         The response
+   * @param latencyNanos  The latency from the intended start
+   */
+  public synchronized void record(LoadOperation loadOperation, TrezorEvent event, long latencyNanos) {
+
+    if (loadOperation.isExpected(event)) {
+      histograms.get(loadOperation).record(latencyNanos);
+    } else {
+      recordError(event.eventType());
+    }
+  }
+
+  /**
+   * @param loadOperation The operation
+   * @param latencyNanos  The latency from the intended start
+   */
+  public synchronized void recordSuccess(LoadOperation loadOperation, long latencyNanos) {
+    histograms.get(loadOperation).record(latencyNanos);
+  }
+
+  /**
+   * @param loadOperation The operation that had no response by its deadline
+   * @param latencyNanos  The latency from the intended start to the deadline
+   */
+  public synchronized void recordTimeout(LoadOperation loadOperation, long latencyNanos) {
+    histograms.get(loadOperation).recordTimeout(latencyNanos);
+  }
+
+  /**
+   * @param eventType The event type that ended the operation
+   */
+  public synchronized void recordError(TrezorEventType eventType) {
+    Long count = errors.get(eventType);
+    errors.put(eventType, count == null ? 1 : count + 1);
+  }
+
+  /**
+   * <p>Record a failure that has no event to classify it</p>
+   */
+  public synchronized void recordUnclassifiedError() {
+    unclassifiedErrors++;
+  }
+
+  /**
+   * <p>Record an exception thrown by the client</p>
+   */
+  public synchronized void recordException() {
+    exceptions++;
+  }
+
+  /**
+   * @param threadUsage The usage of a thread that worked for this recorder
+   */
+  public synchronized void addThreadUsage(ThreadUsage threadUsage) {
+    threadUsages.add(threadUsage);
+  }
+
+  /**
+   * @param other The recorder to add into this one
+   */
+  public synchronized void merge(LoadRecorder other) {
+
+    synchronized (other) {
+      for (LoadOperation loadOperation : LoadOperation.values()) {
+        histograms.get(loadOperation).merge(other.histograms.get(loadOperation));
+      }
+      for (Map.Entry<TrezorEventType, Long> entry : other.errors.entrySet()) {
+        Long count = errors.get(entry.getKey());
+        errors.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
+      }
+      threadUsages.addAll(other.threadUsages);
+      unclassifiedErrors += other.unclassifiedErrors;
+      exceptions += other.exceptions;
+    }
+  }
+
+  public synchronized LatencyHistogram getHistogram(LoadOperation loadOperation) {
+    return histograms.get(loadOperation);
+  }
+
+  public synchronized Map<TrezorEventType, Long> getErrors() {
+    return Maps.newEnumMap(errors);
+  }
+
+  public synchronized List<ThreadUsage> getThreadUsages() {
+    return Lists.newArrayList(threadUsages);
+  }
+
+  public synchronized long getUnclassifiedErrors() {
+    return unclassifiedErrors;
+  }
+
+  public synchronized long getExceptions() {
+    return exceptions;
+  }
+
+}
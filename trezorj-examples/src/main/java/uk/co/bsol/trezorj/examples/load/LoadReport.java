@@ -0,0 +1,161 @@
+package uk.co.bsol.trezorj.examples.load;
+
+import uk.co.bsol.trezorj.core.TrezorEventType;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Report to provide the following to load tests:</p>
+ * <ul>
+ * <li>Throughput and latency percentiles for each operation</li>
+ * <li>An error breakdown by {@link TrezorEventType}</li>
+ * <li>CPU time and allocation for each thread</li>
+ * </ul>
+ *
+ * @since 0.0.1
+ *
+ */
+public class LoadReport {
+
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+  private final LoadClientMode clientMode;
+  private final int clientCount;
+  private final OperationMix operationMix;
+  private final double targetRate;
+  private final long elapsedNanos;
+  private final LoadRecorder recorder;
+
+  LoadReport(LoadClientMode clientMode, int clientCount, OperationMix operationMix, double targetRate, long elapsedNanos, LoadRecorder recorder) {
+    this.clientMode = clientMode;
+    this.clientCount = clientCount;
+    this.operationMix = operationMix;
+    this.targetRate = targetRate;
+    this.elapsedNanos = elapsedNanos;
+    this.recorder = recorder;
+  }
+
+  /**
+   * @return The merged results
+   */
+  public LoadRecorder getRecorder() {
+    return recorder;
+  }
+
+  /**
+   * @return The number of successful operations
+   */
+  public long getSuccessCount() {
+
+    long count = 0;
+    for (LoadOperation loadOperation : LoadOperation.values()) {
+      LatencyHistogram histogram = recorder.getHistogram(loadOperation);
+      count += histogram.getCount() - histogram.getTimeoutCount();
+    }
+    return count;
+  }
+
+  /**
+   * @return The number of operations that had no response by their deadline
+   */
+  public long getTimeoutCount() {
+
+    long count = 0;
+    for (LoadOperation loadOperation : LoadOperation.values()) {
+      count += recorder.getHistogram(loadOperation).getTimeoutCount();
+    }
+    return count;
+  }
+
+  /**
+   * @return The number of failed operations (errors, timeouts, unclassified failures and exceptions)
+   */
+  public long getErrorCount() {
+
+    long count = getTimeoutCount() + recorder.getUnclassifiedErrors() + recorder.getExceptions();
+    for (Long errors : recorder.getErrors().values()) {
+      count += errors;
+    }
+    return count;
+  }
+
+  /**
+   * @return The successful operations per second
+   */
+  public double getThroughput() {
+    return getSuccessCount() / seconds(elapsedNanos);
+  }
+
+  /**
+   * @param out The stream to print the report to
+   */
+  public void print(PrintStream out) {
+
+    out.println(String.format(Locale.UK, "Mode: %s, clients: %d, mix: %s, target: %s",
+      clientMode, clientCount, operationMix, targetRate > 0 ? targetRate + " ops/s" : "closed loop"));
+    out.println(String.format(Locale.UK, "Elapsed: %.1f s, operations: %d, errors: %d, timeouts: %d, throughput: %.1f ops/s",
+      seconds(elapsedNanos), getSuccessCount(), getErrorCount(), getTimeoutCount(), getThroughput()));
+
+    out.println();
+    out.println(String.format(Locale.UK, "%-12s %10s %10s %10s %10s %10s %10s %10s %10s %10s",
+      "Operation", "Count", "Timeouts", "ops/s", "Mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "Max ms"));
+    for (LoadOperation loadOperation : LoadOperation.values()) {
+      LatencyHistogram histogram = recorder.getHistogram(loadOperation);
+      if (histogram.getCount() == 0) {
+        continue;
+      }
+      StringBuilder sb = new StringBuilder(String.format(Locale.UK, "%-12s %10d %10d %10.1f %10.3f",
+        loadOperation.getName(),
+        histogram.getCount(),
+        histogram.getTimeoutCount(),
+        histogram.getCount() / seconds(elapsedNanos),
+        histogram.getMeanNanos() / 1e6));
+      for (double percentile : PERCENTILES) {
+        sb.append(String.format(Locale.UK, " %10.3f", histogram.getPercentileNanos(percentile) / 1e6));
+      }
+      sb.append(String.format(Locale.UK, " %10.3f", histogram.getMaxNanos() / 1e6));
+      out.println(sb);
+    }
+
+    out.println();
+    out.println("Errors by event type:");
+    if (getErrorCount() == 0) {
+      out.println("  none");
+    }
+    for (Map.Entry<TrezorEventType, Long> entry : recorder.getErrors().entrySet()) {
+      out.println(String.format(Locale.UK, "  %-20s %d", entry.getKey(), entry.getValue()));
+    }
+    if (getTimeoutCount() > 0) {
+      out.println(String.format(Locale.UK, "  %-20s %d", "(timeouts)", getTimeoutCount()));
+    }
+    if (recorder.getUnclassifiedErrors() > 0) {
+      out.println(String.format(Locale.UK, "  %-20s %d", "(unclassified)", recorder.getUnclassifiedErrors()));
+    }
+    if (recorder.getExceptions() > 0) {
+      out.println(String.format(Locale.UK, "  %-20s %d", "(exceptions)", recorder.getExceptions()));
+    }
+
+    out.println();
+    out.println(String.format(Locale.UK, "%-24s %10s %10s %12s %12s", "Thread", "CPU ms", "CPU %", "Alloc MB", "Alloc MB/s"));
+    for (ThreadUsage threadUsage : recorder.getThreadUsages()) {
+      out.println(String.format(Locale.UK, "%-24s %10s %10s %12s %12s",
+        threadUsage.getThreadName(),
+        format(threadUsage.getCpuNanos(), 1e6),
+        format(threadUsage.getCpuNanos(), elapsedNanos / 100.0),
+        format(threadUsage.getAllocatedBytes(), 1024 * 1024),
+        format(threadUsage.getAllocatedBytes(), 1024 * 1024 * seconds(elapsedNanos))));
+    }
+  }
+
+  private static double seconds(long nanos) {
+    return Math.max(1, nanos) / (double) TimeUnit.SECONDS.toNanos(1);
+  }
+
+  private static String format(long value, double divisor) {
+    return value < 0 ? "n/a" : String.format(Locale.UK, "%.1f", value / divisor);
+  }
+
+}
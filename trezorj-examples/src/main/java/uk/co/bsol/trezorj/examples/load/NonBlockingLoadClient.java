@@ -0,0 +1,94 @@
+package uk.co.bsol.trezorj.examples.load;
+
+import com.google.bitcoin.core.Transaction;
+import uk.co.bsol.trezorj.core.TrezorEvent;
+import uk.co.bsol.trezorj.core.TrezorEventType;
+import uk.co.bsol.trezorj.core.clients.NonBlockingTrezorClient;
+import uk.co.bsol.trezorj.core.clients.TrezorClients;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Load client to provide the following to the load generator:</p>
+ * <ul>
+ * <li>Operations through the {@link NonBlockingTrezorClient}, collecting each response from its event queue</li>
+ * </ul>
+ * <p>The client runs a signing conversation to completion without reporting the outcome so signTx is recorded as a
+ * success unless it throws.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class NonBlockingLoadClient implements LoadClient {
+
+  private static final int RESPONSE_TIMEOUT_SECONDS = 10;
+
+  private final NonBlockingTrezorClient client;
+  private final Transaction tx;
+
+  /**
+   * @param host The socket host
+   * @param port The socket port
+   * @param tx   The transaction to sign
+   */
+  public NonBlockingLoadClient(String host, int port, Transaction tx) {
+    this.client = TrezorClients.newNonBlockingSocketInstance(host, port, TrezorClients.newSessionId());
+    this.tx = tx;
+  }
+
+  @Override
+  public void connect() {
+
+    client.connect();
+    try {
+      // Consume the connection event and the features
+      client.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
+      client.initialize();
+      client.getTrezorEventQueue().poll(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public boolean execute(LoadOperation loadOperation, long intendedStartNanos, LoadRecorder recorder) {
+
+    switch (loadOperation) {
+      case PING:
+        client.ping();
+        break;
+      case GET_ADDRESS:
+        client.getAddress(0, 1);
+        break;
+      case GET_ENTROPY:
+        client.getEntropy(32);
+        break;
+      case SIGN_TX:
+        client.signTx(tx);
+        recorder.recordSuccess(loadOperation, System.nanoTime() - intendedStartNanos);
+        return true;
+      default:
+        throw new IllegalStateException("Unknown operation " + loadOperation.name());
+    }
+
+    try {
+      TrezorEvent event = client.getTrezorEventQueue().poll(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      if (event == null) {
+        recorder.recordError(TrezorEventType.DEVICE_UNRESPONSIVE);
+        return false;
+      }
+      recorder.record(loadOperation, event, System.nanoTime() - intendedStartNanos);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+
+    return true;
+  }
+
+  @Override
+  public void close() {
+    client.close();
+  }
+
+}
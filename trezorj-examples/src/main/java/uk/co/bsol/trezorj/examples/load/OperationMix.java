@@ -0,0 +1,97 @@
+package uk.co.bsol.trezorj.examples.load;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+
+import java.util.Random;
+
+/**
+ * <p>Weighted mix to provide the following to the load generator:</p>
+ * <ul>
+ * <li>Random selection of the next operation in proportion to its weight</li>
+ * </ul>
+ * <p>Example: "ping=50,getAddress=30,getEntropy=15,signTx=5"</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class OperationMix {
+
+  private final int[] cumulativeWeights = new int[LoadOperation.values().length];
+  private final int totalWeight;
+
+  /**
+   * @param mix The comma separated operation weights (e.g. "ping=50,signTx=5")
+   *
+   * @return The parsed mix
+   *
+   * @throws IllegalArgumentException If the mix is not valid
+   */
+  public static OperationMix parse(String mix) {
+
+    int[] weights = new int[LoadOperation.values().length];
+    for (String entry : Splitter.on(',').trimResults().omitEmptyStrings().split(mix)) {
+      int separator = entry.indexOf('=');
+      Preconditions.checkArgument(separator > 0, "Mix entry '" + entry + "' must be 'operation=weight'");
+
+      LoadOperation loadOperation = LoadOperation.getLoadOperationByName(entry.substring(0, separator).trim());
+      int weight = Integer.parseInt(entry.substring(separator + 1).trim());
+      Preconditions.checkArgument(weight >= 0, "Weight for '" + loadOperation.getName() + "' must not be negative");
+
+      weights[loadOperation.ordinal()] = weight;
+    }
+
+    return new OperationMix(weights);
+  }
+
+  /**
+   * Use the utility constructor
+   */
+  private OperationMix(int[] weights) {
+
+    int total = 0;
+    for (int i = 0; i < weights.length; i++) {
+      total += weights[i];
+      cumulativeWeights[i] = total;
+    }
+    Preconditions.checkArgument(total > 0, "At least one operation must have a positive weight");
+
+    this.totalWeight = total;
+  }
+
+  /**
+   * @param random The source of randomness (one per thread)
+   *
+   * @return The next operation
+   */
+  public LoadOperation next(Random random) {
+
+    int value = random.nextInt(totalWeight);
+    for (int i = 0; i < cumulativeWeights.length; i++) {
+      if (value < cumulativeWeights[i]) {
+        return LoadOperation.values()[i];
+      }
+    }
+
+    throw new IllegalStateException("Weights are not consistent");
+  }
+
+  @Override
+  public String toString() {
+
+    StringBuilder sb = new StringBuilder();
+    int previous = 0;
+    for (LoadOperation loadOperation : LoadOperation.values()) {
+      int weight = cumulativeWeights[loadOperation.ordinal()] - previous;
+      previous = cumulativeWeights[loadOperation.ordinal()];
+      if (weight > 0) {
+        if (sb.length() > 0) {
+          sb.append(',');
+        }
+        sb.append(loadOperation.getName()).append('=').append(weight);
+      }
+    }
+    return sb.toString();
+  }
+
+}
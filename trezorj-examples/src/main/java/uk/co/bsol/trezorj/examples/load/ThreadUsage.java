@@ -0,0 +1,93 @@
+package uk.co.bsol.trezorj.examples.load;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * <p>Value object to provide the following to the load report:</p>
+ * <ul>
+ * <li>The CPU time and heap allocation of a single thread over a load test</li>
+ * </ul>
+ * <p>Allocation is only available on JVMs exposing <code>com.sun.management.ThreadMXBean</code> and CPU time only
+ * where thread CPU time is supported. Unavailable figures are reported as -1.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class ThreadUsage {
+
+  private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+  private final String threadName;
+  private final long cpuNanos;
+  private final long allocatedBytes;
+
+  /**
+   * <p>Measures the calling thread from creation until {@link #stop()}</p>
+   */
+  public static class Sampler {
+
+    private final long startCpuNanos = currentCpuNanos();
+    private final long startAllocatedBytes = currentAllocatedBytes();
+
+    /**
+     * @return The usage of the calling thread since this sampler was created (on the same thread)
+     */
+    public ThreadUsage stop() {
+
+      long cpuNanos = startCpuNanos < 0 ? -1 : currentCpuNanos() - startCpuNanos;
+      long allocatedBytes = startAllocatedBytes < 0 ? -1 : currentAllocatedBytes() - startAllocatedBytes;
+
+      return new ThreadUsage(Thread.currentThread().getName(), cpuNanos, allocatedBytes);
+    }
+  }
+
+  /**
+   * @return A sampler for the calling thread
+   */
+  public static Sampler start() {
+    return new Sampler();
+  }
+
+  private ThreadUsage(String threadName, long cpuNanos, long allocatedBytes) {
+    this.threadName = threadName;
+    this.cpuNanos = cpuNanos;
+    this.allocatedBytes = allocatedBytes;
+  }
+
+  /**
+   * @return The name of the measured thread
+   */
+  public String getThreadName() {
+    return threadName;
+  }
+
+  /**
+   * @return The CPU time used in nanoseconds (-1 if not available)
+   */
+  public long getCpuNanos() {
+    return cpuNanos;
+  }
+
+  /**
+   * @return The bytes allocated on the heap (-1 if not available)
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  private static long currentCpuNanos() {
+    if (!threadMXBean.isCurrentThreadCpuTimeSupported()) {
+      return -1;
+    }
+    return threadMXBean.getCurrentThreadCpuTime();
+  }
+
+  private static long currentAllocatedBytes() {
+    if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+    return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+}
@@ -5,6 +5,7 @@ import com.google.bitcoin.core.AddressFormatException;
 import com.google.bitcoin.core.Transaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.StartupProfile;
 import uk.co.bsol.trezorj.core.TrezorEvent;
 import uk.co.bsol.trezorj.core.TrezorEventType;
 import uk.co.bsol.trezorj.core.clients.BlockingTrezorClient;
@@ -47,6 +48,9 @@ public class RaspberryPiShieldUsbExample {
    */
   public static void main(String[] args) throws Exception {
 
+    // Load the native HID library and seed the random source while the example starts
+    StartupProfile.prewarm(true);
+
     // All the work is done in the class
     RaspberryPiShieldUsbExample example = new RaspberryPiShieldUsbExample();
 
@@ -0,0 +1,103 @@
+package uk.co.bsol.trezorj.examples.tracing;
+
+import com.google.bitcoin.core.Transaction;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.bsol.trezorj.core.clients.BlockingTrezorClient;
+import uk.co.bsol.trezorj.core.clients.TrezorClients;
+import uk.co.bsol.trezorj.core.emulators.ReactiveTrezorEmulator;
+import uk.co.bsol.trezorj.core.tracing.TraceFileExporter;
+import uk.co.bsol.trezorj.core.tracing.TraceLog;
+import uk.co.bsol.trezorj.core.tracing.TraceRecord;
+import uk.co.bsol.trezorj.core.tracing.Tracer;
+import uk.co.bsol.trezorj.core.utils.FakeTransactions;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Demonstrates tracing a signing conversation against the reactive emulator</p>
+ * <p>The spans are written to a trace file which is then converted into the Chrome trace event format. Open the
+ * JSON in chrome://tracing or Perfetto for a timeline of each thread.</p>
+ * <p>Usage: <code>TracedSigningExample [trace file] [json file]</code>. If the trace file already exists it is
+ * converted without running the emulator.</p>
+ *
+ * @since 0.0.1
+ *
+ */
+public class TracedSigningExample {
+
+  private static final Logger log = LoggerFactory.getLogger(TracedSigningExample.class);
+
+  /**
+   * Entry point to the example
+   *
+   * @param args The optional trace file and JSON file
+   *
+   * @throws Exception If something goes wrong
+   */
+  public static void main(String[] args) throws Exception {
+
+    File traceFile = new File(args.length > 0 ? args[0] : "signing.trace");
+    File jsonFile = new File(args.length > 1 ? args[1] : traceFile.getPath() + ".json");
+
+    if (!traceFile.exists()) {
+      traceSigning(traceFile);
+    }
+
+    TraceLog traceLog = TraceLog.read(traceFile);
+    for (TraceRecord record : traceLog.getRecords()) {
+      log.info("{}", record);
+    }
+
+    StringBuilder json = new StringBuilder();
+    traceLog.writeChromeTrace(json);
+    Files.write(json, jsonFile, Charsets.UTF_8);
+
+    log.info("Wrote {} spans to '{}'", traceLog.getRecords().size(), jsonFile.getAbsolutePath());
+
+    System.exit(0);
+  }
+
+  private static void traceSigning(File traceFile) throws Exception {
+
+    ReactiveTrezorEmulator emulator = ReactiveTrezorEmulator.newServerEmulator(0);
+    emulator.start();
+
+    BlockingTrezorClient client = TrezorClients.newBlockingSocketInstance(
+      "localhost",
+      emulator.getPort(),
+      TrezorClients.newSessionId()
+    );
+    client.connect();
+    client.getTrezorEventQueue().poll(1, TimeUnit.SECONDS);
+
+    Transaction tx = FakeTransactions.newMainNetFakeTx(
+      FakeTransactions.getElectrumAddressN(new int[]{0, 0}),
+      FakeTransactions.getElectrumAddressN(new int[]{0, 1}),
+      FakeTransactions.asMainNetAddress("1MKw8vWxvBnaBcrL2yXvZceqyRMoeG2kRn"),
+      BigInteger.TEN,
+      BigInteger.ONE
+    );
+
+    TraceFileExporter exporter = TraceFileExporter.newInstance(traceFile);
+    Tracer.getDefaultInstance().setExporter(exporter);
+    try {
+      client.initialize();
+      client.signTx(tx);
+      client.ping();
+    } finally {
+      Tracer.getDefaultInstance().setExporter(null);
+      exporter.close();
+    }
+
+    client.close();
+    emulator.stop();
+
+    log.info("Traced {} spans to '{}'", exporter.getSpanCount(), traceFile.getAbsolutePath());
+  }
+
+}
@@ -0,0 +1,132 @@
+package uk.co.bsol.trezorj.examples.load;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void testEmptyHistogram() throws Exception {
+
+    // Arrange
+    LatencyHistogram testObject = new LatencyHistogram();
+
+    // Act
+    long p50 = testObject.getPercentileNanos(50);
+
+    // Assert
+    assertThat(p50).isEqualTo(0);
+    assertThat(testObject.getCount()).isEqualTo(0);
+    assertThat(testObject.getMeanNanos()).isEqualTo(0.0);
+
+  }
+
+  @Test
+  public void testSmallValuesAreExact() throws Exception {
+
+    // Arrange
+    LatencyHistogram testObject = new LatencyHistogram();
+
+    // Act (a negative value is recorded as zero)
+    for (int i = 1; i <= 60; i++) {
+      testObject.record(i);
+    }
+    testObject.record(-5);
+
+    // Assert
+    assertThat(testObject.getCount()).isEqualTo(61);
+    assertThat(testObject.getPercentileNanos(0)).isEqualTo(0);
+    assertThat(testObject.getPercentileNanos(50)).isEqualTo(30);
+    assertThat(testObject.getPercentileNanos(100)).isEqualTo(60);
+    assertThat(testObject.getMaxNanos()).isEqualTo(60);
+
+  }
+
+  @Test
+  public void testPercentilesAreWithinRelativeError() throws Exception {
+
+    // Arrange (1us to 10s in 1us steps so the exact percentile is known)
+    LatencyHistogram testObject = new LatencyHistogram();
+    long step = TimeUnit.MICROSECONDS.toNanos(1);
+    int count = 10000000;
+
+    // Act
+    for (long i = 1; i <= count; i++) {
+      testObject.record(i * step);
+    }
+
+    // Assert (never below the exact value and at most about 3% above it)
+    for (double percentile : new double[]{1, 10, 50, 90, 99, 99.9, 99.99}) {
+      long exact = (long) Math.ceil(percentile / 100.0 * count) * step;
+      long actual = testObject.getPercentileNanos(percentile);
+      assertThat(actual).isGreaterThanOrEqualTo(exact);
+      assertThat((double) (actual - exact) / exact).isLessThanOrEqualTo(1.0 / 32);
+    }
+    assertThat(testObject.getPercentileNanos(100)).isEqualTo(count * step);
+    assertThat(testObject.getMeanNanos()).isEqualTo((count + 1) / 2.0 * step);
+
+  }
+
+  @Test
+  public void testLargestValuesAreRecorded() throws Exception {
+
+    // Arrange
+    LatencyHistogram testObject = new LatencyHistogram();
+
+    // Act
+    testObject.record(TimeUnit.HOURS.toNanos(1));
+    testObject.record(Long.MAX_VALUE);
+
+    // Assert (the top percentile is capped at the maximum)
+    assertThat(testObject.getPercentileNanos(50)).isGreaterThanOrEqualTo(TimeUnit.HOURS.toNanos(1));
+    assertThat(testObject.getPercentileNanos(100)).isEqualTo(Long.MAX_VALUE);
+
+  }
+
+  @Test
+  public void testMerge() throws Exception {
+
+    // Arrange
+    LatencyHistogram testObject = new LatencyHistogram();
+    LatencyHistogram other = new LatencyHistogram();
+    testObject.record(10);
+    testObject.record(20);
+    other.record(30);
+    other.record(1000);
+
+    // Act
+    testObject.merge(other);
+
+    // Assert
+    assertThat(testObject.getCount()).isEqualTo(4);
+    assertThat(testObject.getMaxNanos()).isEqualTo(1000);
+    assertThat(testObject.getMeanNanos()).isEqualTo(265.0);
+    assertThat(testObject.getPercentileNanos(75)).isEqualTo(30);
+    assertThat(other.getCount()).isEqualTo(2);
+
+  }
+
+  @Test
+  public void testTimeoutsAreCountedAndMerged() throws Exception {
+
+    // Arrange
+    LatencyHistogram testObject = new LatencyHistogram();
+    LatencyHistogram other = new LatencyHistogram();
+    testObject.record(10);
+    other.recordTimeout(TimeUnit.SECONDS.toNanos(10));
+
+    // Act
+    testObject.merge(other);
+
+    // Assert (the timeout latency shows in the tail)
+    assertThat(testObject.getCount()).isEqualTo(2);
+    assertThat(testObject.getTimeoutCount()).isEqualTo(1);
+    assertThat(testObject.getMaxNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(10));
+    assertThat(testObject.getPercentileNanos(100)).isEqualTo(TimeUnit.SECONDS.toNanos(10));
+
+  }
+
+}